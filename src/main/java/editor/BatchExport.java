@@ -0,0 +1,183 @@
+package editor;
+
+import editor.export.DiagramExporter;
+import editor.export.PdfExporter;
+import editor.export.PngExporter;
+import editor.export.SvgExporter;
+import editor.io.FlowchartCodec;
+import editor.io.FlowchartCodecs;
+import editor.io.FlowchartData;
+import editor.io.ProgressListener;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * 命令行批量导出：把目录（含子目录）中的所有流程图导出为 PNG、SVG 或 PDF，不需要图形界面。
+ * <pre>
+ *   java -cp ... editor.BatchExport [-format png|svg|pdf] [-dpi 96] [-threads N] 源目录 输出目录
+ * </pre>
+ * 输出文件保持源文件的相对路径，扩展名换成导出格式；同一目录下只有扩展名不同的源文件（如 a.json 和 a.fcb）
+ * 保留源文件的扩展名（a.json.png 和 a.fcb.png），不会互相覆盖。各文件在大小为 CPU 核数（或 -threads）的线程池中并行导出，
+ * 每完成一个输出读取、导出耗时，最后输出总耗时和吞吐量（按成功的文件计算）。有文件失败时退出码为 1，参数错误时为 2。
+ */
+public class BatchExport {
+    private final String format;
+    private final double dpi;
+    private final ForkJoinPool pool;
+    private final AtomicInteger finished = new AtomicInteger();
+    private final AtomicInteger failed = new AtomicInteger();
+    private final AtomicLong shapeCount = new AtomicLong();
+    private final AtomicLong outputBytes = new AtomicLong();
+
+    private BatchExport(String format, double dpi, ForkJoinPool pool) {
+        this.format = format;
+        this.dpi = dpi;
+        this.pool = pool;
+    }
+
+    public static void main(String[] args) throws Exception {
+        System.setProperty("java.awt.headless", "true");
+        String format = "png";
+        double dpi = PngExporter.SCREEN_DPI;
+        int threads = Runtime.getRuntime().availableProcessors();
+        List<String> paths = new ArrayList<>();
+        try {
+            for (int i = 0; i < args.length; i++) {
+                switch (args[i]) {
+                    case "-format": format = value(args, ++i).toLowerCase(Locale.ROOT); break;
+                    case "-dpi": dpi = Double.parseDouble(value(args, ++i)); break;
+                    case "-threads": threads = Integer.parseInt(value(args, ++i)); break;
+                    default: paths.add(args[i]);
+                }
+            }
+        } catch (NumberFormatException e) {
+            usage();
+        }
+        if (paths.size() != 2 || !List.of("png", "svg", "pdf").contains(format) || dpi <= 0 || threads <= 0) usage();
+        Path source = Paths.get(paths.get(0)), target = Paths.get(paths.get(1));
+        List<Path> files = findFlowcharts(source);
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        try {
+            System.out.printf("导出 %d 个文件为 %s，%d 个线程%n", files.size(), format.toUpperCase(Locale.ROOT), threads);
+            if (!new BatchExport(format, dpi, pool).run(source, target, files)) System.exit(1);
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    // 选项缺少取值时输出用法
+    private static String value(String[] args, int i) {
+        if (i >= args.length) usage();
+        return args[i];
+    }
+
+    private static void usage() {
+        System.err.println("用法: BatchExport [-format png|svg|pdf] [-dpi 96] [-threads N] 源目录 输出目录");
+        System.exit(2);
+    }
+
+    // 按扩展名查找能读取的流程图文件，按路径排序
+    private static List<Path> findFlowcharts(Path source) throws IOException {
+        List<String> extensions = new ArrayList<>();
+        for (FlowchartCodec codec : FlowchartCodecs.all()) extensions.add("." + codec.getExtension());
+        try (Stream<Path> walk = Files.walk(source)) {
+            return walk.filter(Files::isRegularFile)
+                    .filter(file -> extensions.stream().anyMatch(file.getFileName().toString().toLowerCase(Locale.ROOT)::endsWith))
+                    .sorted()
+                    .collect(Collectors.toList());
+        }
+    }
+
+    /**
+     * @return 全部文件都导出成功时返回 true
+     */
+    private boolean run(Path source, Path target, List<Path> files) {
+        long start = System.nanoTime();
+        List<ForkJoinTask<?>> tasks = new ArrayList<>(files.size());
+        // 按不区分大小写的绝对路径判断输出是否重复，在 Windows 和 macOS 上同样不会覆盖
+        Map<String, Integer> uses = new HashMap<>();
+        for (Path file : files) uses.merge(outputKey(outputFor(source, target, file, false)), 1, Integer::sum);
+        Map<String, Path> outputs = new HashMap<>();
+        for (Path file : files) {
+            // 只有扩展名不同的源文件（a.json 和 a.fcb）都保留源扩展名：a.json.png、a.fcb.png
+            Path output = outputFor(source, target, file, uses.get(outputKey(outputFor(source, target, file, false))) > 1);
+            // 保留扩展名后仍然重复（如只有大小写不同的文件名）时不导出，记为失败
+            Path other = outputs.putIfAbsent(outputKey(output), file);
+            if (other != null) {
+                failed.incrementAndGet();
+                System.err.printf("[%d/%d] %s：导出失败: 输出文件 %s 与 %s 重复%n", finished.incrementAndGet(), files.size(),
+                        file, output, other);
+                continue;
+            }
+            tasks.add(pool.submit(() -> exportOne(file, output, files.size())));
+        }
+        for (ForkJoinTask<?> task : tasks) task.join();
+        double seconds = (System.nanoTime() - start) / 1e9;
+        int succeeded = files.size() - failed.get();
+        System.out.printf("完成 %d 个文件（失败 %d），共 %d 个图形，输出 %.1f MB，用时 %.1f s；%.1f 个文件/s，%.0f 个图形/s%n",
+                succeeded, failed.get(), shapeCount.get(), outputBytes.get() / 1048576.0, seconds,
+                succeeded / seconds, shapeCount.get() / seconds);
+        return failed.get() == 0;
+    }
+
+    // 源文件相对路径不变，去掉流程图扩展名（如 .json.gz，keepExtension 时保留）后加上导出格式的扩展名
+    private Path outputFor(Path source, Path target, Path file, boolean keepExtension) {
+        String name = file.getFileName().toString();
+        String extension = FlowchartCodecs.forFile(file).getExtension();
+        if (!keepExtension && name.toLowerCase(Locale.ROOT).endsWith("." + extension)) {
+            name = name.substring(0, name.length() - extension.length() - 1);
+        }
+        return target.resolve(source.relativize(file)).resolveSibling(name + "." + format);
+    }
+
+    private static String outputKey(Path output) {
+        return output.toAbsolutePath().normalize().toString().toLowerCase(Locale.ROOT);
+    }
+
+    private void exportOne(Path file, Path output, int total) {
+        try {
+            long start = System.nanoTime();
+            FlowchartData data = FlowchartCodecs.forFile(file).read(file);
+            long read = System.nanoTime();
+            Files.createDirectories(output.toAbsolutePath().getParent());
+            createExporter().export(output, data.getShapes(), data.getConnections(), ProgressListener.NONE);
+            long exported = System.nanoTime();
+            long size = Files.size(output);
+            shapeCount.addAndGet(data.getShapes().size());
+            outputBytes.addAndGet(size);
+            System.out.printf("[%d/%d] %s：%d 个图形，读取 %d ms，导出 %d ms，%.1f KB%n", finished.incrementAndGet(), total,
+                    file, data.getShapes().size(), (read - start) / 1_000_000, (exported - read) / 1_000_000, size / 1024.0);
+        } catch (IOException | RuntimeException e) {
+            failed.incrementAndGet();
+            System.err.printf("[%d/%d] %s：导出失败: %s%n", finished.incrementAndGet(), total, file, e);
+        }
+    }
+
+    private DiagramExporter createExporter() {
+        switch (format) {
+            case "svg":
+                return new SvgExporter();
+            case "pdf":
+                // PDF 的页面并行生成使用同一个线程池，不额外占用线程
+                PdfExporter pdf = new PdfExporter();
+                pdf.setPool(pool);
+                return pdf;
+            default:
+                return new PngExporter(dpi);
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package editor.bench;
+
+import editor.io.BinaryFlowchartCodec;
+import editor.io.ChunkedFlowchartCodec;
+import editor.io.FlowchartCodec;
+import editor.io.FlowchartData;
+import editor.io.GzipJsonFlowchartCodec;
+import editor.io.JsonFlowchartCodec;
+import editor.io.JsonFlowchartReader;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 比较各文件格式（含不同压缩级别的 .json.gz）的文件大小与读写耗时。
+ * <pre>
+ *   java -cp ... editor.bench.FormatBenchmark [图形数] [JSON 文件] [轮数]
+ * </pre>
+ * 文件不存在时先生成（见 OpenBenchmark）。输出各格式写出、读取耗时的中位数和文件大小。
+ */
+public class FormatBenchmark {
+    public static void main(String[] args) throws Exception {
+        int count = args.length > 0 ? Integer.parseInt(args[0]) : 200_000;
+        Path source = Paths.get(args.length > 1 ? args[1] : "bench-" + count + ".json");
+        int rounds = args.length > 2 ? Integer.parseInt(args[2]) : 3;
+        if (!Files.exists(source)) OpenBenchmark.generate(source, count);
+        FlowchartData data = JsonFlowchartReader.load(source);
+
+        Map<String, FlowchartCodec> codecs = new LinkedHashMap<>();
+        codecs.put("json", new JsonFlowchartCodec());
+        codecs.put("json.gz 级别 1", new GzipJsonFlowchartCodec(1));
+        codecs.put("json.gz 级别 6", new GzipJsonFlowchartCodec(6));
+        codecs.put("json.gz 级别 9", new GzipJsonFlowchartCodec(9));
+        codecs.put("fcb", new BinaryFlowchartCodec());
+        codecs.put("fcx", new ChunkedFlowchartCodec());
+
+        System.out.printf("%d 个图形，%d 条连接线%n", data.getShapes().size(), data.getConnections().size());
+        System.out.printf("%-16s %12s %8s %10s %10s%n", "格式", "大小(KB)", "比例", "写出(ms)", "读取(ms)");
+        long jsonSize = 0;
+        for (Map.Entry<String, FlowchartCodec> entry : codecs.entrySet()) {
+            FlowchartCodec codec = entry.getValue();
+            Path file = Files.createTempFile("format-bench", "." + codec.getExtension());
+            try {
+                long write = median(rounds, () -> codec.write(file, data.getShapes(), data.getConnections()));
+                long read = median(rounds, () -> codec.read(file));
+                long size = Files.size(file);
+                if (jsonSize == 0) jsonSize = size;
+                System.out.printf("%-16s %12d %7.1f%% %10d %10d%n", entry.getKey(), size / 1024,
+                        100.0 * size / jsonSize, write, read);
+            } finally {
+                Files.deleteIfExists(file);
+            }
+        }
+    }
+
+    private interface Step {
+        void run() throws Exception;
+    }
+
+    // 先预热一轮，再取 rounds 轮的中位数（毫秒）
+    private static long median(int rounds, Step step) throws Exception {
+        step.run();
+        long[] times = new long[rounds];
+        for (int i = 0; i < rounds; i++) {
+            long start = System.nanoTime();
+            step.run();
+            times[i] = (System.nanoTime() - start) / 1_000_000;
+        }
+        Arrays.sort(times);
+        return times[rounds / 2];
+    }
+}
@@ -0,0 +1,111 @@
+package editor.bench;
+
+import editor.io.FlowchartData;
+import editor.io.JsonFlowchartReader;
+import editor.io.JsonFlowchartWriter;
+import editor.io.ParallelJsonFlowchartReader;
+import editor.io.ProgressListener;
+import editor.model.ConnectionLine;
+import editor.model.FlowchartShape;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * 比较顺序读取与并行读取大型 JSON 文件的耗时。
+ * <pre>
+ *   java -cp ... editor.bench.OpenBenchmark [图形数] [文件] [轮数]
+ * </pre>
+ * 文件不存在时先生成：N 个图形、N-1 条连接线。并行读取依次使用 1 到 CPU 核数个线程，输出各自耗时的中位数。
+ */
+public class OpenBenchmark {
+    private static final String[] TYPES = {"rectangle", "ellipse", "diamond", "parallelogram", "circle", "hexagon"};
+
+    public static void main(String[] args) throws Exception {
+        int count = args.length > 0 ? Integer.parseInt(args[0]) : 200_000;
+        Path file = Paths.get(args.length > 1 ? args[1] : "bench-" + count + ".json");
+        int rounds = args.length > 2 ? Integer.parseInt(args[2]) : 5;
+
+        if (!Files.exists(file)) {
+            long start = System.nanoTime();
+            generate(file, count);
+            System.out.printf("生成 %s（%d 个图形，%.1f MB）用时 %d ms%n", file, count,
+                    Files.size(file) / 1048576.0, (System.nanoTime() - start) / 1_000_000);
+        }
+
+        FlowchartData expected = JsonFlowchartReader.load(file);
+        System.out.printf("图形 %d，连接线 %d%n", expected.getShapes().size(), expected.getConnections().size());
+
+        System.out.printf("顺序读取：%d ms%n", median(rounds, () -> JsonFlowchartReader.load(file)));
+        int cores = Runtime.getRuntime().availableProcessors();
+        for (int threads = 1; threads <= cores; threads++) {
+            ForkJoinPool pool = new ForkJoinPool(threads);
+            try {
+                ParallelJsonFlowchartReader reader = new ParallelJsonFlowchartReader(pool, ProgressListener.NONE);
+                check(expected, reader.read(file));
+                System.out.printf("并行读取（%d 线程）：%d ms%n", threads, median(rounds, () -> reader.read(file)));
+            } finally {
+                pool.shutdown();
+            }
+        }
+    }
+
+    private interface Load {
+        FlowchartData run() throws IOException;
+    }
+
+    // 先预热一轮，再取 rounds 轮的中位数（毫秒）
+    private static long median(int rounds, Load load) throws IOException {
+        load.run();
+        long[] times = new long[rounds];
+        for (int i = 0; i < rounds; i++) {
+            long start = System.nanoTime();
+            load.run();
+            times[i] = (System.nanoTime() - start) / 1_000_000;
+        }
+        Arrays.sort(times);
+        return times[rounds / 2];
+    }
+
+    // 并行读取的结果必须与顺序读取一致
+    private static void check(FlowchartData expected, FlowchartData actual) {
+        if (expected.getShapes().size() != actual.getShapes().size()
+                || expected.getConnections().size() != actual.getConnections().size()) {
+            throw new IllegalStateException("并行读取的图形或连接线数量不一致");
+        }
+        for (int i = 0; i < expected.getConnections().size(); i++) {
+            ConnectionLine a = expected.getConnections().get(i);
+            ConnectionLine b = actual.getConnections().get(i);
+            if (a.getId() != b.getId() || !a.getStartPoint().getId().equals(b.getStartPoint().getId())) {
+                throw new IllegalStateException("第 " + i + " 条连接线不一致");
+            }
+        }
+    }
+
+    static void generate(Path file, int count) throws IOException {
+        Random random = new Random(42);
+        List<FlowchartShape> shapes = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            FlowchartShape shape = FlowchartShape.create(TYPES[i % TYPES.length],
+                    (i % 500) * 160.0, (i / 500) * 120.0, 120, 60, "步骤 " + i, "");
+            shape.setId(i + 1);
+            shapes.add(shape);
+        }
+        List<ConnectionLine> lines = new ArrayList<>(count);
+        for (int i = 1; i < count; i++) {
+            ConnectionLine line = new ConnectionLine();
+            line.setId(i);
+            line.setStartPoint(shapes.get(random.nextInt(i)).getConnectionPoints().get(0));
+            line.setEndPoint(shapes.get(i).getConnectionPoints().get(1));
+            lines.add(line);
+        }
+        JsonFlowchartWriter.save(file, shapes, lines, true);
+    }
+}
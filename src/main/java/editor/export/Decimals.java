@@ -0,0 +1,23 @@
+package editor.export;
+
+/**
+ * 矢量格式中的坐标写法：保留两位小数，去掉末尾的 0。导出时每个坐标都会调用，不用 String.format。
+ */
+final class Decimals {
+    private Decimals() {
+    }
+
+    static void append(StringBuilder sb, double v) {
+        long scaled = Math.round(v * 100);
+        if (scaled < 0) {
+            sb.append('-');
+            scaled = -scaled;
+        }
+        sb.append(scaled / 100);
+        int fraction = (int) (scaled % 100);
+        if (fraction != 0) {
+            sb.append('.').append(fraction / 10);
+            if (fraction % 10 != 0) sb.append(fraction % 10);
+        }
+    }
+}
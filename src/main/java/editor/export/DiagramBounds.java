@@ -0,0 +1,69 @@
+package editor.export;
+
+import editor.model.ConnectionLine;
+import editor.model.FlowchartShape;
+
+import java.util.Collection;
+
+/**
+ * 导出时使用的绘制范围，与 CanvasRenderer 中的估算方法一致：
+ * 图形为包围盒加描边和文字（按每个字符一个字号宽估算），连接线为路径包围盒加箭头和线宽。
+ * 结果格式为 [minX, minY, maxX, maxY]（世界坐标）。
+ */
+public final class DiagramBounds {
+    public static final double LABEL_OFFSET = 20; // 文字相对图形左边的距离
+    private static final double LINE_PAD = 12;
+    private static final double SHAPE_PAD = 2;
+
+    private DiagramBounds() {
+    }
+
+    public static double[] of(FlowchartShape shape, double fontSize) {
+        double x = shape.getX(), y = shape.getY();
+        double maxX = x + shape.getWidth(), maxY = y + shape.getHeight();
+        String label = shape.getLabel();
+        if (label != null && !label.isEmpty()) {
+            double baseline = y + shape.getHeight() / 2;
+            maxX = Math.max(maxX, x + LABEL_OFFSET + label.length() * fontSize);
+            maxY = Math.max(maxY, baseline + fontSize / 2);
+        }
+        return new double[] { x - SHAPE_PAD, y - SHAPE_PAD, maxX + SHAPE_PAD, maxY + SHAPE_PAD };
+    }
+
+    /**
+     * @return 连接线的绘制范围，没有起点的连接线返回 null。
+     */
+    public static double[] of(ConnectionLine line) {
+        double[] p = line.getPathPoints();
+        if (p.length == 0) return null;
+        double minX = p[0], minY = p[1], maxX = p[0], maxY = p[1];
+        for (int i = 2; i < p.length; i += 2) {
+            minX = Math.min(minX, p[i]);
+            maxX = Math.max(maxX, p[i]);
+            minY = Math.min(minY, p[i + 1]);
+            maxY = Math.max(maxY, p[i + 1]);
+        }
+        double pad = LINE_PAD + line.getStrokeWidth();
+        return new double[] { minX - pad, minY - pad, maxX + pad, maxY + pad };
+    }
+
+    /**
+     * @return 全部图形和连接线的绘制范围，文档为空时返回 null。
+     */
+    public static double[] of(Collection<FlowchartShape> shapes, Collection<ConnectionLine> lines, double fontSize) {
+        double[] total = null;
+        for (FlowchartShape shape : shapes) total = union(total, of(shape, fontSize));
+        for (ConnectionLine line : lines) total = union(total, of(line));
+        return total;
+    }
+
+    private static double[] union(double[] total, double[] bounds) {
+        if (bounds == null) return total;
+        if (total == null) return bounds;
+        total[0] = Math.min(total[0], bounds[0]);
+        total[1] = Math.min(total[1], bounds[1]);
+        total[2] = Math.max(total[2], bounds[2]);
+        total[3] = Math.max(total[3], bounds[3]);
+        return total;
+    }
+}
@@ -0,0 +1,31 @@
+package editor.export;
+
+import editor.io.ProgressListener;
+import editor.model.ConnectionLine;
+import editor.model.FlowchartShape;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Collection;
+
+/**
+ * 一种导出格式（图片、矢量图、PDF）。导出只读取模型，不依赖 JavaFX，可以在后台线程和无界面环境中使用。
+ */
+public interface DiagramExporter {
+    /**
+     * @return 文件扩展名（不含点，小写），如 "png"。
+     */
+    String getExtension();
+
+    /**
+     * @return 文件对话框中显示的格式名称。
+     */
+    String getDescription();
+
+    /**
+     * 导出整个文档。先写临时文件，完成后再替换目标，中途失败或取消不会留下不完整的文件。
+     * @param listener 进度，回调中抛出的运行时异常会中止导出
+     */
+    void export(Path file, Collection<FlowchartShape> shapes, Collection<ConnectionLine> lines,
+                ProgressListener listener) throws IOException;
+}
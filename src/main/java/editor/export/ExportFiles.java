@@ -0,0 +1,32 @@
+package editor.export;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * 导出文件的公共处理：写到同目录下的临时文件，写完后原子替换目标。
+ */
+final class ExportFiles {
+    interface Body {
+        void write(OutputStream out) throws IOException;
+    }
+
+    private ExportFiles() {
+    }
+
+    static void write(Path file, Body body) throws IOException {
+        // 临时文件名唯一，同时导出到同一目标（或同名目标）时不会互相踩到对方的临时文件
+        Path tmp = Files.createTempFile(file.toAbsolutePath().getParent(), file.getFileName().toString(), ".tmp");
+        try {
+            try (OutputStream out = Files.newOutputStream(tmp)) {
+                body.write(out);
+            }
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+}
@@ -0,0 +1,116 @@
+package editor.export;
+
+import editor.model.ConnectionLine;
+import editor.model.FlowColor;
+import editor.model.FlowchartShape;
+import editor.model.OutlineVisitor;
+
+import java.awt.BasicStroke;
+import java.awt.Color;
+import java.awt.Font;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.Shape;
+import java.awt.geom.Ellipse2D;
+import java.awt.geom.Path2D;
+import java.awt.geom.Rectangle2D;
+
+/**
+ * 用 Java2D 把模型画到 Graphics2D 上，样式与 CanvasRenderer 中未选中的图形、连接线相同。
+ * 不依赖 JavaFX，可以在无界面环境和后台线程中使用。
+ */
+public class Java2DPainter {
+    public static final double FONT_SIZE = 13;
+
+    private final Graphics2D g;
+    private final Font font = new Font(Font.SANS_SERIF, Font.PLAIN, (int) FONT_SIZE);
+    private boolean labelsVisible = true;
+
+    public Java2DPainter(Graphics2D g) {
+        this.g = g;
+        g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+        g.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
+        g.setRenderingHint(RenderingHints.KEY_STROKE_CONTROL, RenderingHints.VALUE_STROKE_PURE);
+    }
+
+    public static Color toAwt(FlowColor color) {
+        return new Color((float) color.getRed(), (float) color.getGreen(), (float) color.getBlue(),
+                (float) color.getOpacity());
+    }
+
+    /**
+     * @param labelsVisible 是否绘制文字（缩略图等缩得很小时文字已无法辨认）
+     */
+    public void setLabelsVisible(boolean labelsVisible) {
+        this.labelsVisible = labelsVisible;
+    }
+
+    public void paintShape(FlowchartShape shape) {
+        Color fill = toAwt(shape.getColor());
+        g.setStroke(new BasicStroke(1f));
+        shape.outline(new OutlineVisitor() {
+            @Override
+            public void rectangle(double x, double y, double width, double height) {
+                draw(new Rectangle2D.Double(x, y, width, height));
+            }
+
+            @Override
+            public void ellipse(double centerX, double centerY, double radiusX, double radiusY) {
+                draw(new Ellipse2D.Double(centerX - radiusX, centerY - radiusY, radiusX * 2, radiusY * 2));
+            }
+
+            @Override
+            public void polygon(double[] points) {
+                draw(polygonPath(points));
+            }
+
+            private void draw(Shape outline) {
+                g.setColor(fill);
+                g.fill(outline);
+                g.setColor(Color.BLACK);
+                g.draw(outline);
+            }
+        });
+        String label = shape.getLabel();
+        if (labelsVisible && label != null && !label.isEmpty()) {
+            g.setFont(font);
+            g.setColor(Color.BLACK);
+            g.drawString(label, (float) (shape.getX() + DiagramBounds.LABEL_OFFSET),
+                    (float) (shape.getY() + shape.getHeight() / 2));
+        }
+    }
+
+    public void paintLine(ConnectionLine line) {
+        double[] p = line.getPathPoints();
+        if (p.length == 0) return;
+        Color color = toAwt(line.getColor());
+        g.setColor(color);
+        g.setStroke(new BasicStroke((float) line.getStrokeWidth()));
+        Path2D.Double path = new Path2D.Double();
+        path.moveTo(p[0], p[1]);
+        if (line.getLineType() == ConnectionLine.LineType.CURVE) {
+            path.quadTo(p[2], p[3], p[4], p[5]);
+        } else {
+            for (int i = 2; i < p.length; i += 2) {
+                path.lineTo(p[i], p[i + 1]);
+            }
+        }
+        g.draw(path);
+
+        if (line.isArrowVisible()) {
+            Path2D.Double head = polygonPath(ConnectionLine.arrowHead(p));
+            g.fill(head);
+            g.draw(head);
+        }
+    }
+
+    private static Path2D.Double polygonPath(double[] points) {
+        Path2D.Double path = new Path2D.Double();
+        path.moveTo(points[0], points[1]);
+        for (int i = 2; i < points.length; i += 2) {
+            path.lineTo(points[i], points[i + 1]);
+        }
+        path.closePath();
+        return path;
+    }
+}
@@ -0,0 +1,442 @@
+package editor.export;
+
+import editor.io.ProgressListener;
+import editor.model.ConnectionLine;
+import editor.model.FlowColor;
+import editor.model.FlowchartShape;
+import editor.model.OutlineVisitor;
+import org.apache.fontbox.ttf.TrueTypeCollection;
+import org.apache.fontbox.ttf.TrueTypeFont;
+import org.apache.pdfbox.cos.COSName;
+import org.apache.pdfbox.cos.COSStream;
+import org.apache.pdfbox.io.MemoryUsageSetting;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.PDResources;
+import org.apache.pdfbox.pdmodel.common.PDRectangle;
+import org.apache.pdfbox.pdmodel.common.PDStream;
+import org.apache.pdfbox.pdmodel.font.PDFont;
+import org.apache.pdfbox.pdmodel.font.PDType0Font;
+import org.apache.pdfbox.pdmodel.font.PDType1Font;
+import org.apache.pdfbox.pdmodel.graphics.state.PDExtendedGraphicsState;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.zip.DeflaterOutputStream;
+
+/**
+ * 把整个文档导出为多页矢量 PDF。文档按纸张大小分页，相邻页之间重叠 overlap，便于打印后拼接；页面按行从左到右排列。
+ * <ul>
+ *   <li>所有页面共用同一个资源字典：字体只嵌入一次，透明度用的图形状态按取值各建一个；</li>
+ *   <li>按页面行处理：同一行各页的内容流在线程池上并行生成并压缩（只涉及字节，不访问 PDDocument），
+ *       然后依次挂到页面上。PDDocument 不是线程安全的，对它的操作都在调用线程上进行；</li>
+ *   <li>页面内容写入 PDFBox 的暂存区，超过 MEMORY_BYTES 后放在临时文件中，上千页的文档内存占用也有上限。</li>
+ * </ul>
+ * 文字需要能显示中文的字体：优先使用 setFontFile 指定的 TrueType 字体，其次在常见的系统字体位置查找，
+ * 都没有时使用 PDF 内置的 Helvetica，无法显示的字符写成 "?"。
+ */
+public class PdfExporter implements DiagramExporter {
+    private static final double SCREEN_DPI = 96;
+    private static final long MEMORY_BYTES = 16L << 20;
+    private static final double KAPPA = 0.5522847498; // 四段三次贝塞尔曲线近似椭圆的控制点系数
+    private static final String[] SYSTEM_FONTS = {
+        "C:/Windows/Fonts/msyh.ttc",
+        "C:/Windows/Fonts/simhei.ttf",
+        "C:/Windows/Fonts/simsun.ttc",
+        "/System/Library/Fonts/STHeiti Light.ttc",
+        "/Library/Fonts/Arial Unicode.ttf",
+        "/usr/share/fonts/truetype/wqy/wqy-microhei.ttc",
+        "/usr/share/fonts/truetype/wqy/wqy-zenhei.ttc",
+        "/usr/share/fonts/truetype/droid/DroidSansFallbackFull.ttf",
+        "/usr/share/fonts/truetype/dejavu/DejaVuSans.ttf",
+    };
+
+    private PDRectangle paper = PDRectangle.A4;
+    private double margin = 36;   // 纸张边距（点）
+    private double overlap = 36;  // 相邻页面重叠的宽度（点）
+    private double scale = 72 / SCREEN_DPI; // 每个画布单位对应的点数，默认按 96 DPI 原大打印
+    private Path fontFile;
+    private ForkJoinPool pool = ForkJoinPool.commonPool();
+
+    @Override
+    public String getExtension() {
+        return "pdf";
+    }
+
+    @Override
+    public String getDescription() {
+        return "PDF 文档";
+    }
+
+    /**
+     * @param paper 纸张大小（点），横向打印时传入宽高互换的矩形
+     */
+    public void setPaper(PDRectangle paper) {
+        this.paper = paper;
+    }
+
+    public void setMargin(double margin) {
+        this.margin = margin;
+    }
+
+    public void setOverlap(double overlap) {
+        this.overlap = overlap;
+    }
+
+    /**
+     * @param scale 每个画布单位对应的点数（1 点 = 1/72 英寸）
+     */
+    public void setScale(double scale) {
+        this.scale = scale;
+    }
+
+    /**
+     * @param fontFile 用于文字的 TrueType 字体（.ttf 或 .ttc），null 表示自动查找
+     */
+    public void setFontFile(Path fontFile) {
+        this.fontFile = fontFile;
+    }
+
+    public void setPool(ForkJoinPool pool) {
+        this.pool = pool;
+    }
+
+    /**
+     * @param listener 进度，单位为页
+     */
+    @Override
+    public void export(Path file, Collection<FlowchartShape> shapes, Collection<ConnectionLine> lines,
+                       ProgressListener listener) throws IOException {
+        ExportFiles.write(file, out -> export(out, shapes, lines, listener));
+    }
+
+    /**
+     * 导出到输出流，完成后不关闭输出流。
+     */
+    public void export(OutputStream out, Collection<FlowchartShape> shapes, Collection<ConnectionLine> lines,
+                       ProgressListener listener) throws IOException {
+        double pageWidth = (paper.getWidth() - margin * 2) / scale;   // 每页容纳的画布范围
+        double pageHeight = (paper.getHeight() - margin * 2) / scale;
+        double step = overlap / scale;
+        if (pageWidth <= step || pageHeight <= step) {
+            throw new IllegalArgumentException("纸张减去边距后必须大于重叠宽度");
+        }
+        double[] found = DiagramBounds.of(shapes, lines, Java2DPainter.FONT_SIZE);
+        double[] bounds = found != null ? found : new double[] { 0, 0, 0, 0 };
+        int columns = pageCount(bounds[2] - bounds[0], pageWidth, step);
+        int rows = pageCount(bounds[3] - bounds[1], pageHeight, step);
+        long total = (long) columns * rows;
+
+        Sweep<ConnectionLine> lineSweep = Sweep.ofLines(lines);
+        Sweep<FlowchartShape> shapeSweep = Sweep.ofShapes(shapes, Java2DPainter.FONT_SIZE);
+        List<Closeable> fontSources = new ArrayList<>();
+        try (PDDocument document = new PDDocument(MemoryUsageSetting.setupMixed(MEMORY_BYTES))) {
+            PDResources resources = new PDResources();
+            Fonts fonts = new Fonts(loadFont(document, fontSources));
+            COSName fontName = resources.add(fonts.font);
+            Map<Integer, COSName> alphaStates = addAlphaStates(resources, shapes, lines);
+
+            for (int row = 0; row < rows; row++) {
+                double top = bounds[1] + row * (pageHeight - step);
+                lineSweep.advance(top, top + pageHeight);
+                shapeSweep.advance(top, top + pageHeight);
+                // 同一行的各页并行生成内容流
+                List<byte[]> contents = pool.submit(() -> IntStream.range(0, columns).parallel()
+                        .mapToObj(column -> {
+                            double left = bounds[0] + column * (pageWidth - step);
+                            Page page = new Page(fonts, fontName, alphaStates);
+                            page.begin(left, top, pageWidth, pageHeight);
+                            for (ConnectionLine line : lineSweep.between(left, left + pageWidth)) page.line(line);
+                            for (FlowchartShape shape : shapeSweep.between(left, left + pageWidth)) page.shape(shape);
+                            return page.finish();
+                        }).collect(Collectors.toList())).join();
+                for (byte[] content : contents) {
+                    PDPage page = new PDPage(paper);
+                    page.setResources(resources);
+                    COSStream stream = document.getDocument().createCOSStream();
+                    try (OutputStream raw = stream.createRawOutputStream()) {
+                        raw.write(content);
+                    }
+                    stream.setItem(COSName.FILTER, COSName.FLATE_DECODE);
+                    page.setContents(new PDStream(stream));
+                    document.addPage(page);
+                }
+                listener.progress((long) (row + 1) * columns, total);
+            }
+            document.save(out);
+        } finally {
+            for (Closeable source : fontSources) source.close();
+        }
+    }
+
+    private static int pageCount(double extent, double page, double step) {
+        if (extent <= page) return 1;
+        return 1 + (int) Math.ceil((extent - page) / (page - step));
+    }
+
+    // 加载文字字体；嵌入 TrueType 字体时只写入用到的字形（保存文档时生成子集），字体文件在保存之后才能关闭
+    private PDFont loadFont(PDDocument document, List<Closeable> sources) {
+        List<Path> candidates = new ArrayList<>();
+        if (fontFile != null) candidates.add(fontFile);
+        for (String path : SYSTEM_FONTS) candidates.add(Paths.get(path));
+        for (Path path : candidates) {
+            if (!Files.isRegularFile(path)) continue;
+            try {
+                if (path.getFileName().toString().toLowerCase().endsWith(".ttc")) {
+                    TrueTypeCollection collection = new TrueTypeCollection(path.toFile());
+                    sources.add(collection);
+                    TrueTypeFont[] first = new TrueTypeFont[1];
+                    collection.processAllFonts(font -> {
+                        if (first[0] == null) first[0] = font;
+                    });
+                    if (first[0] != null) return PDType0Font.load(document, first[0], true);
+                } else {
+                    return PDType0Font.load(document, path.toFile());
+                }
+            } catch (IOException | RuntimeException e) {
+                // 字体格式不受支持（如 PostScript 轮廓的 OpenType），试下一个
+            }
+        }
+        return PDType1Font.HELVETICA;
+    }
+
+    // 为用到的每种透明度建一个图形状态：图形只有填充半透明，连接线的线条和箭头都半透明
+    private static Map<Integer, COSName> addAlphaStates(PDResources resources, Collection<FlowchartShape> shapes,
+                                                        Collection<ConnectionLine> lines) {
+        Map<Integer, COSName> states = new HashMap<>();
+        for (FlowchartShape shape : shapes) {
+            int alpha = shape.getColor().toRgba() & 0xff;
+            if (alpha != 0xff) states.computeIfAbsent(alphaKey(alpha, 0xff), key -> addState(resources, key));
+        }
+        for (ConnectionLine line : lines) {
+            int alpha = line.getColor().toRgba() & 0xff;
+            if (alpha != 0xff) states.computeIfAbsent(alphaKey(alpha, alpha), key -> addState(resources, key));
+        }
+        return states;
+    }
+
+    private static int alphaKey(int fillAlpha, int strokeAlpha) {
+        return fillAlpha << 8 | strokeAlpha;
+    }
+
+    private static COSName addState(PDResources resources, int key) {
+        PDExtendedGraphicsState state = new PDExtendedGraphicsState();
+        state.setNonStrokingAlphaConstant((key >>> 8) / 255f);
+        state.setStrokingAlphaConstant((key & 0xff) / 255f);
+        return resources.add(state);
+    }
+
+    // 文字编码。嵌入字体在编码时记录用到的字形，不是线程安全的，这里加锁；编码结果按字符串缓存
+    private static class Fonts {
+        final PDFont font;
+        private final Map<String, byte[]> cache = new HashMap<>();
+
+        Fonts(PDFont font) {
+            this.font = font;
+        }
+
+        synchronized byte[] encode(String text) {
+            return cache.computeIfAbsent(text, key -> {
+                ByteArrayOutputStream out = new ByteArrayOutputStream();
+                for (int i = 0; i < key.length(); ) {
+                    int codePoint = key.codePointAt(i);
+                    String ch = new String(Character.toChars(codePoint));
+                    i += ch.length();
+                    try {
+                        out.write(font.encode(ch));
+                    } catch (IOException | IllegalArgumentException e) {
+                        try {
+                            out.write(font.encode("?")); // 字体中没有该字符
+                        } catch (IOException | IllegalArgumentException ignored) {
+                            // 连 "?" 也没有时跳过
+                        }
+                    }
+                }
+                return out.toByteArray();
+            });
+        }
+    }
+
+    /**
+     * 一页的内容流。只写字节，不访问 PDDocument，可以在任意线程上生成。
+     * 页面坐标系变换为画布坐标（y 轴向下），文字再翻转回来。
+     */
+    private class Page {
+        private final Fonts fonts;
+        private final COSName fontName;
+        private final Map<Integer, COSName> alphaStates;
+        private final StringBuilder sb = new StringBuilder(4096);
+
+        Page(Fonts fonts, COSName fontName, Map<Integer, COSName> alphaStates) {
+            this.fonts = fonts;
+            this.fontName = fontName;
+            this.alphaStates = alphaStates;
+        }
+
+        void begin(double left, double top, double width, double height) {
+            // 裁剪到纸张边距以内
+            num(margin);
+            num(margin);
+            num(paper.getWidth() - margin * 2);
+            num(paper.getHeight() - margin * 2);
+            sb.append("re W n\n");
+            num(scale);
+            sb.append("0 0 ");
+            num(-scale);
+            num(margin - left * scale);
+            num(paper.getHeight() - margin + top * scale);
+            sb.append("cm\n2 J\n"); // 方形线帽，与画布相同
+        }
+
+        void shape(FlowchartShape shape) {
+            int alpha = shape.getColor().toRgba() & 0xff;
+            if (alpha != 0xff) sb.append("q /").append(alphaStates.get(alphaKey(alpha, 0xff)).getName()).append(" gs\n");
+            color(shape.getColor());
+            sb.append("rg 0 0 0 RG 1 w\n");
+            shape.outline(new OutlineVisitor() {
+                @Override
+                public void rectangle(double x, double y, double width, double height) {
+                    num(x);
+                    num(y);
+                    num(width);
+                    num(height);
+                    sb.append("re B\n");
+                }
+
+                @Override
+                public void ellipse(double cx, double cy, double rx, double ry) {
+                    double kx = rx * KAPPA, ky = ry * KAPPA;
+                    point(cx + rx, cy);
+                    sb.append("m ");
+                    curve(cx + rx, cy + ky, cx + kx, cy + ry, cx, cy + ry);
+                    curve(cx - kx, cy + ry, cx - rx, cy + ky, cx - rx, cy);
+                    curve(cx - rx, cy - ky, cx - kx, cy - ry, cx, cy - ry);
+                    curve(cx + kx, cy - ry, cx + rx, cy - ky, cx + rx, cy);
+                    sb.append("B\n");
+                }
+
+                @Override
+                public void polygon(double[] points) {
+                    polygonPath(points);
+                    sb.append("B\n");
+                }
+            });
+            if (alpha != 0xff) sb.append("Q\n");
+            String label = shape.getLabel();
+            if (label != null && !label.isEmpty()) {
+                sb.append("0 g BT /").append(fontName.getName()).append(' ');
+                num(Java2DPainter.FONT_SIZE);
+                sb.append("Tf 1 0 0 -1 ");
+                num(shape.getX() + DiagramBounds.LABEL_OFFSET);
+                num(shape.getY() + shape.getHeight() / 2);
+                sb.append("Tm <");
+                for (byte b : fonts.encode(label)) {
+                    sb.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+                }
+                sb.append("> Tj ET\n");
+            }
+        }
+
+        void line(ConnectionLine line) {
+            double[] p = line.getPathPoints();
+            if (p.length == 0) return;
+            int alpha = line.getColor().toRgba() & 0xff;
+            sb.append("q ");
+            if (alpha != 0xff) sb.append('/').append(alphaStates.get(alphaKey(alpha, alpha)).getName()).append(" gs ");
+            color(line.getColor());
+            sb.append("RG ");
+            color(line.getColor());
+            sb.append("rg ");
+            num(line.getStrokeWidth());
+            sb.append("w\n");
+            point(p[0], p[1]);
+            sb.append("m ");
+            if (line.getLineType() == ConnectionLine.LineType.CURVE) {
+                // 二次曲线换算成三次曲线
+                curve(p[0] + (p[2] - p[0]) * 2 / 3, p[1] + (p[3] - p[1]) * 2 / 3,
+                        p[4] + (p[2] - p[4]) * 2 / 3, p[5] + (p[3] - p[5]) * 2 / 3, p[4], p[5]);
+            } else {
+                for (int i = 2; i < p.length; i += 2) {
+                    point(p[i], p[i + 1]);
+                    sb.append("l ");
+                }
+            }
+            sb.append("S\n");
+            if (line.isArrowVisible()) {
+                polygonPath(ConnectionLine.arrowHead(p));
+                sb.append("B\n");
+            }
+            sb.append("Q\n");
+        }
+
+        byte[] finish() {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(sb.length() / 4 + 64);
+            try (DeflaterOutputStream out = new DeflaterOutputStream(bytes)) {
+                out.write(sb.toString().getBytes(StandardCharsets.US_ASCII));
+            } catch (IOException e) {
+                throw new IllegalStateException(e); // 内存中的流不会抛出
+            }
+            return bytes.toByteArray();
+        }
+
+        private void polygonPath(double[] points) {
+            point(points[0], points[1]);
+            sb.append("m ");
+            for (int i = 2; i < points.length; i += 2) {
+                point(points[i], points[i + 1]);
+                sb.append("l ");
+            }
+            sb.append("h ");
+        }
+
+        private void curve(double x1, double y1, double x2, double y2, double x3, double y3) {
+            point(x1, y1);
+            point(x2, y2);
+            point(x3, y3);
+            sb.append("c ");
+        }
+
+        private void point(double x, double y) {
+            num(x);
+            num(y);
+        }
+
+        // 数值后面跟一个空格
+        private void num(double v) {
+            Decimals.append(sb, v);
+            sb.append(' ');
+        }
+
+        // 颜色分量保留三位小数
+        private void color(FlowColor color) {
+            int rgba = color.toRgba();
+            component(rgba >>> 24);
+            component((rgba >>> 16) & 0xff);
+            component((rgba >>> 8) & 0xff);
+        }
+
+        private void component(int value) {
+            if (value == 0 || value == 255) {
+                sb.append(value / 255).append(' ');
+                return;
+            }
+            int thousandths = Math.round(value * 1000 / 255f);
+            sb.append('.').append((char) ('0' + thousandths / 100)).append((char) ('0' + thousandths / 10 % 10))
+                    .append((char) ('0' + thousandths % 10)).append(' ');
+        }
+    }
+}
@@ -0,0 +1,109 @@
+package editor.export;
+
+import editor.io.ProgressListener;
+import editor.model.ConnectionLine;
+import editor.model.FlowColor;
+import editor.model.FlowchartShape;
+
+import java.awt.AlphaComposite;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Path;
+import java.util.Collection;
+
+/**
+ * 把整个文档按指定分辨率导出为 PNG，不受窗口大小限制。
+ * 图片按横条逐条绘制：每条与图片等宽、高度按 STRIP_BYTES 计算，画好后逐行交给 PngWriter 压缩写出，
+ * 同一块 BufferedImage 反复使用。内存占用是一条的像素，与导出图片的总大小无关。
+ * 图形和连接线按上边缘排序后扫描（见 Sweep），每条只绘制与它相交的对象，前后顺序与画布一致（先连接线后图形，按列表顺序）。
+ * 只读取模型，可以在后台线程上对快照调用。
+ */
+public class PngExporter implements DiagramExporter {
+    public static final double SCREEN_DPI = 96; // 画布坐标 1 个单位在 96 DPI 下为 1 像素
+    private static final double MARGIN = 20;    // 文档四周留白（画布坐标）
+    private static final long STRIP_BYTES = 16L << 20;
+
+    private final double dpi;
+    private FlowColor background = FlowColor.WHITE;
+
+    public PngExporter(double dpi) {
+        if (dpi <= 0) throw new IllegalArgumentException("分辨率无效: " + dpi);
+        this.dpi = dpi;
+    }
+
+    /**
+     * @param background 背景色，null 表示透明背景
+     */
+    public void setBackground(FlowColor background) {
+        this.background = background;
+    }
+
+    @Override
+    public String getExtension() {
+        return "png";
+    }
+
+    @Override
+    public String getDescription() {
+        return "PNG 图片";
+    }
+
+    /**
+     * @param listener 进度，单位为像素行
+     */
+    @Override
+    public void export(Path file, Collection<FlowchartShape> shapes, Collection<ConnectionLine> lines,
+                       ProgressListener listener) throws IOException {
+        ExportFiles.write(file, out -> export(out, shapes, lines, listener));
+    }
+
+    /**
+     * 导出到输出流，完成后关闭输出流。
+     */
+    public void export(OutputStream out, Collection<FlowchartShape> shapes, Collection<ConnectionLine> lines,
+                       ProgressListener listener) throws IOException {
+        double[] bounds = DiagramBounds.of(shapes, lines, Java2DPainter.FONT_SIZE);
+        if (bounds == null) bounds = new double[] { 0, 0, 0, 0 };
+        double scale = dpi / SCREEN_DPI;
+        double originX = bounds[0] - MARGIN, originY = bounds[1] - MARGIN;
+        long width = (long) Math.ceil((bounds[2] - bounds[0] + MARGIN * 2) * scale);
+        long height = (long) Math.ceil((bounds[3] - bounds[1] + MARGIN * 2) * scale);
+        if (width > Integer.MAX_VALUE / 4 || height > Integer.MAX_VALUE) {
+            throw new IOException("图片过大（" + width + "x" + height + "），请降低分辨率");
+        }
+        int stripHeight = (int) Math.max(1, Math.min(height, STRIP_BYTES / (width * 4)));
+
+        Sweep<ConnectionLine> lineSweep = Sweep.ofLines(lines);
+        Sweep<FlowchartShape> shapeSweep = Sweep.ofShapes(shapes, Java2DPainter.FONT_SIZE);
+        BufferedImage strip = new BufferedImage((int) width, stripHeight, BufferedImage.TYPE_INT_ARGB);
+        int[] pixels = ((DataBufferInt) strip.getRaster().getDataBuffer()).getData();
+        try (PngWriter writer = new PngWriter(out, (int) width, (int) height, background == null, dpi)) {
+            for (int top = 0; top < height; top += stripHeight) {
+                int rows = (int) Math.min(stripHeight, height - top);
+                double worldTop = originY + top / scale, worldBottom = originY + (top + rows) / scale;
+                Graphics2D g = strip.createGraphics();
+                try {
+                    g.setComposite(AlphaComposite.Src);
+                    g.setColor(background != null ? Java2DPainter.toAwt(background) : new Color(0, true));
+                    g.fillRect(0, 0, (int) width, stripHeight);
+                    g.setComposite(AlphaComposite.SrcOver);
+                    g.scale(scale, scale);
+                    g.translate(-originX, -worldTop);
+                    Java2DPainter painter = new Java2DPainter(g);
+                    for (ConnectionLine line : lineSweep.advance(worldTop, worldBottom)) painter.paintLine(line);
+                    for (FlowchartShape shape : shapeSweep.advance(worldTop, worldBottom)) painter.paintShape(shape);
+                } finally {
+                    g.dispose();
+                }
+                for (int y = 0; y < rows; y++) {
+                    writer.writeRow(pixels, y * (int) width);
+                }
+                listener.progress(top + rows, height);
+            }
+        }
+    }
+}
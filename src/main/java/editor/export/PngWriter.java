@@ -0,0 +1,154 @@
+package editor.export;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * 逐行写出 PNG（8 位真彩色，可带透明通道）。每行交给 writeRow 后立即过滤、压缩，
+ * 压缩结果攒满 IDAT_SIZE 就写出一个 IDAT 块，内存占用只有两行像素和一个块缓冲，与图片大小无关。
+ * 每行在 Sub 和 Up 两种过滤方式中选绝对值之和较小的一种（PNG 规范推荐的启发式）。
+ */
+public class PngWriter implements Closeable {
+    private static final byte[] SIGNATURE = { (byte) 137, 'P', 'N', 'G', '\r', '\n', 26, '\n' };
+    private static final int IDAT_SIZE = 64 * 1024;
+    private static final byte FILTER_SUB = 1, FILTER_UP = 2;
+
+    private final DataOutputStream out;
+    private final int width, height;
+    private final int bytesPerPixel;
+    private final Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION);
+    private final CRC32 crc = new CRC32();
+    private byte[] previous, current;   // 未过滤的上一行和本行
+    private final byte[] sub, up;       // 两种过滤结果，首字节为过滤方式
+    private final byte[] idat = new byte[IDAT_SIZE];
+    private int idatLength;
+    private int rows;
+
+    /**
+     * 写出文件头、IHDR 和 pHYs 块。
+     * @param alpha 是否保留透明通道
+     * @param dpi   写入 pHYs 的分辨率，不大于 0 时不写
+     */
+    public PngWriter(OutputStream out, int width, int height, boolean alpha, double dpi) throws IOException {
+        if (width <= 0 || height <= 0) throw new IllegalArgumentException("图片尺寸无效: " + width + "x" + height);
+        this.out = new DataOutputStream(new BufferedOutputStream(out, IDAT_SIZE + 12));
+        this.width = width;
+        this.height = height;
+        this.bytesPerPixel = alpha ? 4 : 3;
+        int rowBytes = Math.multiplyExact(width, bytesPerPixel);
+        previous = new byte[rowBytes];
+        current = new byte[rowBytes];
+        sub = new byte[rowBytes + 1];
+        up = new byte[rowBytes + 1];
+        sub[0] = FILTER_SUB;
+        up[0] = FILTER_UP;
+
+        this.out.write(SIGNATURE);
+        byte[] header = new byte[13];
+        putInt(header, 0, width);
+        putInt(header, 4, height);
+        header[8] = 8;                  // 位深
+        header[9] = (byte) (alpha ? 6 : 2); // 颜色类型：RGBA / RGB
+        writeChunk("IHDR", header, header.length);
+        if (dpi > 0) {
+            byte[] phys = new byte[9];
+            int perMeter = (int) Math.round(dpi / 0.0254);
+            putInt(phys, 0, perMeter);
+            putInt(phys, 4, perMeter);
+            phys[8] = 1; // 单位：米
+            writeChunk("pHYs", phys, phys.length);
+        }
+    }
+
+    /**
+     * 写出一行像素。
+     * @param argb   非预乘的 ARGB 像素（BufferedImage.TYPE_INT_ARGB 的格式）
+     * @param offset 本行第一个像素在数组中的位置
+     */
+    public void writeRow(int[] argb, int offset) throws IOException {
+        if (rows >= height) throw new IllegalStateException("已写满 " + height + " 行");
+        byte[] row = current;
+        for (int x = 0, i = 0; x < width; x++) {
+            int pixel = argb[offset + x];
+            row[i++] = (byte) (pixel >>> 16);
+            row[i++] = (byte) (pixel >>> 8);
+            row[i++] = (byte) pixel;
+            if (bytesPerPixel == 4) row[i++] = (byte) (pixel >>> 24);
+        }
+        long subCost = 0, upCost = 0;
+        for (int i = 0; i < row.length; i++) {
+            byte s = (byte) (row[i] - (i >= bytesPerPixel ? row[i - bytesPerPixel] : 0));
+            byte u = (byte) (row[i] - previous[i]);
+            sub[i + 1] = s;
+            up[i + 1] = u;
+            subCost += Math.abs(s);
+            upCost += Math.abs(u);
+        }
+        deflate(upCost < subCost ? up : sub);
+        current = previous;
+        previous = row;
+        rows++;
+    }
+
+    private void deflate(byte[] data) throws IOException {
+        deflater.setInput(data);
+        while (!deflater.needsInput()) {
+            drain();
+        }
+    }
+
+    // 把压缩结果取到块缓冲中，缓冲满了写出一个 IDAT 块
+    private void drain() throws IOException {
+        idatLength += deflater.deflate(idat, idatLength, idat.length - idatLength);
+        if (idatLength == idat.length) flushIdat();
+    }
+
+    private void flushIdat() throws IOException {
+        if (idatLength == 0) return;
+        writeChunk("IDAT", idat, idatLength);
+        idatLength = 0;
+    }
+
+    private void writeChunk(String type, byte[] data, int length) throws IOException {
+        byte[] typeBytes = type.getBytes(StandardCharsets.US_ASCII);
+        crc.reset();
+        crc.update(typeBytes);
+        crc.update(data, 0, length);
+        out.writeInt(length);
+        out.write(typeBytes);
+        out.write(data, 0, length);
+        out.writeInt((int) crc.getValue());
+    }
+
+    private static void putInt(byte[] buf, int pos, int value) {
+        buf[pos] = (byte) (value >>> 24);
+        buf[pos + 1] = (byte) (value >>> 16);
+        buf[pos + 2] = (byte) (value >>> 8);
+        buf[pos + 3] = (byte) value;
+    }
+
+    /**
+     * 写完最后的 IDAT 和 IEND 块并关闭输出流。所有行都必须已经写出。
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            if (rows != height) throw new IOException("只写出了 " + rows + " 行，应为 " + height + " 行");
+            deflater.finish();
+            while (!deflater.finished()) {
+                drain();
+            }
+            flushIdat();
+            writeChunk("IEND", new byte[0], 0);
+        } finally {
+            deflater.end();
+            out.close();
+        }
+    }
+}
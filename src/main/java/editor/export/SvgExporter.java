@@ -0,0 +1,286 @@
+package editor.export;
+
+import editor.io.ProgressListener;
+import editor.model.ConnectionLine;
+import editor.model.FlowchartShape;
+import editor.model.LineStyle;
+import editor.model.OutlineVisitor;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 把整个文档导出为 SVG 矢量图，样式与画布上未选中的图形、连接线相同。
+ * 逐个元素直接写入输出流，不在内存中构建 DOM。
+ * 文件尽量小：颜色、线型写成 &lt;style&gt; 中的 CSS 类，元素只引用类名；
+ * 箭头只在 &lt;defs&gt; 中定义一次，每条连接线用 &lt;use&gt; 平移旋转后引用；坐标保留两位小数。
+ */
+public class SvgExporter implements DiagramExporter {
+    private static final double MARGIN = 20; // 文档四周留白，与 PNG 导出相同
+    private static final int PROGRESS_STEP = 1024;
+
+    @Override
+    public String getExtension() {
+        return "svg";
+    }
+
+    @Override
+    public String getDescription() {
+        return "SVG 矢量图";
+    }
+
+    /**
+     * @param listener 进度，单位为已写出的图形和连接线数
+     */
+    @Override
+    public void export(Path file, Collection<FlowchartShape> shapes, Collection<ConnectionLine> lines,
+                       ProgressListener listener) throws IOException {
+        ExportFiles.write(file, out -> export(out, shapes, lines, listener));
+    }
+
+    /**
+     * 导出到输出流（UTF-8），完成后不关闭输出流。
+     */
+    public void export(OutputStream out, Collection<FlowchartShape> shapes, Collection<ConnectionLine> lines,
+                       ProgressListener listener) throws IOException {
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), 64 * 1024);
+        new Document(writer, listener, (long) shapes.size() + lines.size()).write(shapes, lines);
+        writer.flush();
+    }
+
+    // 一次导出的状态：样式表和复用的字符串缓冲
+    private static class Document {
+        private final Writer out;
+        private final ProgressListener listener;
+        private final long total;
+        private long done;
+        private final StringBuilder sb = new StringBuilder(256);
+        private final Map<Integer, String> fillClasses = new LinkedHashMap<>(); // 填充色 (RGBA) → 类名
+        private final Map<LineStyle, String> lineClasses = new LinkedHashMap<>();
+
+        Document(Writer out, ProgressListener listener, long total) {
+            this.out = out;
+            this.listener = listener;
+            this.total = total;
+        }
+
+        void write(Collection<FlowchartShape> shapes, Collection<ConnectionLine> lines) throws IOException {
+            // 先收集用到的样式，写在文件开头
+            for (FlowchartShape shape : shapes) {
+                fillClasses.computeIfAbsent(shape.getColor().toRgba(), k -> "f" + fillClasses.size());
+            }
+            for (ConnectionLine line : lines) {
+                if (line.getStartPoint() != null) {
+                    lineClasses.computeIfAbsent(line.getStyle(), k -> "l" + lineClasses.size());
+                }
+            }
+            double[] bounds = DiagramBounds.of(shapes, lines, Java2DPainter.FONT_SIZE);
+            if (bounds == null) bounds = new double[] { 0, 0, 0, 0 };
+            writeHeader(bounds);
+
+            out.write("<g id=\"connections\">\n");
+            for (ConnectionLine line : lines) {
+                writeLine(line);
+                step();
+            }
+            out.write("</g>\n<g id=\"shapes\">\n");
+            for (FlowchartShape shape : shapes) {
+                writeShape(shape);
+                step();
+            }
+            out.write("</g>\n</svg>\n");
+            listener.progress(total, total);
+        }
+
+        private void step() {
+            if (++done % PROGRESS_STEP == 0) listener.progress(done, total);
+        }
+
+        private void writeHeader(double[] bounds) throws IOException {
+            double x = bounds[0] - MARGIN, y = bounds[1] - MARGIN;
+            double width = bounds[2] - bounds[0] + MARGIN * 2, height = bounds[3] - bounds[1] + MARGIN * 2;
+            sb.setLength(0);
+            sb.append("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
+            sb.append("<svg xmlns=\"http://www.w3.org/2000/svg\" xmlns:xlink=\"http://www.w3.org/1999/xlink\"");
+            sb.append(" width=\"");
+            num(width);
+            sb.append("\" height=\"");
+            num(height);
+            sb.append("\" viewBox=\"");
+            num(x);
+            sb.append(' ');
+            num(y);
+            sb.append(' ');
+            num(width);
+            sb.append(' ');
+            num(height);
+            sb.append("\">\n<style>\n");
+            sb.append(".s{stroke:#000;stroke-width:1}\n");
+            sb.append("text{font-family:sans-serif;font-size:");
+            num(Java2DPainter.FONT_SIZE);
+            sb.append("px;fill:#000;stroke:none;white-space:pre}\n");
+            for (Map.Entry<Integer, String> entry : fillClasses.entrySet()) {
+                sb.append('.').append(entry.getValue()).append('{');
+                paint("fill", entry.getKey());
+                sb.append("}\n");
+            }
+            for (Map.Entry<LineStyle, String> entry : lineClasses.entrySet()) {
+                // 连接线的箭头用同一个类，填充色与线条颜色相同；线条本身再加上 .n 去掉填充
+                int rgba = entry.getKey().getColor().toRgba();
+                sb.append('.').append(entry.getValue()).append('{');
+                paint("stroke", rgba);
+                sb.append(";stroke-width:");
+                num(entry.getKey().getStrokeWidth());
+                sb.append(";stroke-linecap:square;");
+                paint("fill", rgba);
+                sb.append("}\n");
+            }
+            sb.append(".n{fill:none}\n</style>\n");
+            // 箭头：尖端在原点，指向 +x 方向，与 ConnectionLine.arrowHead 相同
+            double size = ConnectionLine.ARROW_SIZE, half = size / 2;
+            sb.append("<defs><path id=\"a\" d=\"M0 0L");
+            num(-size);
+            sb.append(' ');
+            num(-half);
+            sb.append('L');
+            num(-size);
+            sb.append(' ');
+            num(half);
+            sb.append("Z\"/></defs>\n");
+            out.append(sb);
+        }
+
+        // 颜色写成 #rrggbb，半透明时另加 -opacity 属性
+        private void paint(String property, int rgba) {
+            sb.append(property).append(":#");
+            hex(rgba >>> 24);
+            hex((rgba >>> 16) & 0xff);
+            hex((rgba >>> 8) & 0xff);
+            int alpha = rgba & 0xff;
+            if (alpha != 0xff) {
+                sb.append(';').append(property).append("-opacity:");
+                num(alpha / 255.0);
+            }
+        }
+
+        private void writeLine(ConnectionLine line) throws IOException {
+            double[] p = line.getPathPoints();
+            if (p.length == 0) return;
+            String cls = lineClasses.get(line.getStyle());
+            sb.setLength(0);
+            sb.append("<path class=\"").append(cls).append(" n\" d=\"M");
+            point(p[0], p[1]);
+            if (line.getLineType() == ConnectionLine.LineType.CURVE) {
+                sb.append('Q');
+                point(p[2], p[3]);
+                sb.append(' ');
+                point(p[4], p[5]);
+            } else {
+                for (int i = 2; i < p.length; i += 2) {
+                    sb.append('L');
+                    point(p[i], p[i + 1]);
+                }
+            }
+            sb.append("\"/>\n");
+            if (line.isArrowVisible()) {
+                double ex = p[p.length - 2], ey = p[p.length - 1];
+                double angle = Math.toDegrees(Math.atan2(ey - p[1], ex - p[0]));
+                sb.append("<use xlink:href=\"#a\" class=\"").append(cls).append("\" transform=\"translate(");
+                point(ex, ey);
+                sb.append(") rotate(");
+                num(angle);
+                sb.append(")\"/>\n");
+            }
+            out.append(sb);
+        }
+
+        private void writeShape(FlowchartShape shape) throws IOException {
+            String cls = fillClasses.get(shape.getColor().toRgba());
+            sb.setLength(0);
+            shape.outline(new OutlineVisitor() {
+                @Override
+                public void rectangle(double x, double y, double width, double height) {
+                    sb.append("<rect class=\"s ").append(cls).append("\" x=\"");
+                    num(x);
+                    sb.append("\" y=\"");
+                    num(y);
+                    sb.append("\" width=\"");
+                    num(width);
+                    sb.append("\" height=\"");
+                    num(height);
+                    sb.append("\"/>\n");
+                }
+
+                @Override
+                public void ellipse(double centerX, double centerY, double radiusX, double radiusY) {
+                    sb.append("<ellipse class=\"s ").append(cls).append("\" cx=\"");
+                    num(centerX);
+                    sb.append("\" cy=\"");
+                    num(centerY);
+                    sb.append("\" rx=\"");
+                    num(radiusX);
+                    sb.append("\" ry=\"");
+                    num(radiusY);
+                    sb.append("\"/>\n");
+                }
+
+                @Override
+                public void polygon(double[] points) {
+                    sb.append("<polygon class=\"s ").append(cls).append("\" points=\"");
+                    for (int i = 0; i < points.length; i += 2) {
+                        if (i > 0) sb.append(' ');
+                        point(points[i], points[i + 1]);
+                    }
+                    sb.append("\"/>\n");
+                }
+            });
+            String label = shape.getLabel();
+            if (label != null && !label.isEmpty()) {
+                sb.append("<text x=\"");
+                num(shape.getX() + DiagramBounds.LABEL_OFFSET);
+                sb.append("\" y=\"");
+                num(shape.getY() + shape.getHeight() / 2);
+                sb.append("\">");
+                escape(label);
+                sb.append("</text>\n");
+            }
+            out.append(sb);
+        }
+
+        private void point(double x, double y) {
+            num(x);
+            sb.append(',');
+            num(y);
+        }
+
+        private void num(double v) {
+            Decimals.append(sb, v);
+        }
+
+        private void hex(int value) {
+            sb.append(Character.forDigit(value >> 4, 16)).append(Character.forDigit(value & 0xf, 16));
+        }
+
+        // XML 文本转义，去掉 XML 中不允许出现的控制字符
+        private void escape(String text) {
+            for (int i = 0; i < text.length(); i++) {
+                char c = text.charAt(i);
+                switch (c) {
+                    case '<': sb.append("&lt;"); break;
+                    case '>': sb.append("&gt;"); break;
+                    case '&': sb.append("&amp;"); break;
+                    default:
+                        if (c >= 0x20 || c == '\t' || c == '\n' || c == '\r') sb.append(c);
+                }
+            }
+        }
+    }
+}
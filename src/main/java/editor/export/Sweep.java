@@ -0,0 +1,76 @@
+package editor.export;
+
+import editor.model.ConnectionLine;
+import editor.model.FlowchartShape;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * 自上而下扫描横条：对象按上边缘排序，横条下移时加入新进入的对象、移除已经完全在上方的对象。
+ * 每个对象的绘制范围只计算一次。结果保持原列表顺序，即画布上的前后顺序。
+ */
+final class Sweep<T> {
+    private final List<T> items;
+    private final double[] minX, minY, maxX, maxY;
+    private final Integer[] byTop; // 按上边缘排序的对象序号
+    private int next;
+    private final List<Integer> active = new ArrayList<>();
+
+    Sweep(Collection<T> items, Function<T, double[]> boundsFunction) {
+        this.items = new ArrayList<>(items);
+        int n = this.items.size();
+        minX = new double[n];
+        minY = new double[n];
+        maxX = new double[n];
+        maxY = new double[n];
+        List<Integer> valid = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            double[] bounds = boundsFunction.apply(this.items.get(i));
+            if (bounds == null) continue;
+            minX[i] = bounds[0];
+            minY[i] = bounds[1];
+            maxX[i] = bounds[2];
+            maxY[i] = bounds[3];
+            valid.add(i);
+        }
+        byTop = valid.toArray(new Integer[0]);
+        Arrays.sort(byTop, Comparator.comparingDouble(i -> minY[i]));
+    }
+
+    static Sweep<ConnectionLine> ofLines(Collection<ConnectionLine> lines) {
+        return new Sweep<>(lines, DiagramBounds::of);
+    }
+
+    static Sweep<FlowchartShape> ofShapes(Collection<FlowchartShape> shapes, double fontSize) {
+        return new Sweep<>(shapes, shape -> DiagramBounds.of(shape, fontSize));
+    }
+
+    /**
+     * 下移到横条 [top, bottom]，横条必须自上而下依次给出。
+     * @return 与横条相交的对象
+     */
+    List<T> advance(double top, double bottom) {
+        while (next < byTop.length && minY[byTop[next]] <= bottom) {
+            active.add(byTop[next++]);
+        }
+        active.removeIf(i -> maxY[i] < top);
+        active.sort(null);
+        return between(Double.NEGATIVE_INFINITY, Double.POSITIVE_INFINITY);
+    }
+
+    /**
+     * 当前横条中与 [left, right] 相交的对象。不修改状态，可以在多个线程上同时调用。
+     */
+    List<T> between(double left, double right) {
+        List<T> result = new ArrayList<>();
+        for (int i : active) {
+            if (maxX[i] >= left && minX[i] <= right) result.add(items.get(i));
+        }
+        return result;
+    }
+}
@@ -0,0 +1,180 @@
+package editor.export;
+
+import editor.io.FlowchartCodecs;
+import editor.io.FlowchartData;
+import editor.model.ConnectionLine;
+import editor.model.FlowchartShape;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
+
+/**
+ * 文档缩略图的磁盘缓存。缩略图是 PNG 文件，文件名由文档路径的哈希、修改时间和大小组成，
+ * 文档被修改后文件名随之改变，旧缩略图在生成新缩略图时删除。
+ * 缓存按最近使用顺序淘汰，超过 maxEntries 个时删除最久未用的；使用顺序记录在缩略图文件的修改时间上，重启后仍然有效。
+ * get 会读取整个文档并绘制，应在后台线程上调用，可以多个线程同时调用。
+ */
+public class ThumbnailCache {
+    public static final int WIDTH = 200, HEIGHT = 150;
+    private static final double MIN_TEXT_SIZE = 4; // 缩小后字号小于该值时不画文字
+
+    private final Path directory;
+    private final int maxEntries;
+    private final LinkedHashMap<String, Path> entries = new LinkedHashMap<>(16, 0.75f, true); // 按使用顺序
+    private final Map<String, Object> generating = new ConcurrentHashMap<>(); // 正在生成的缩略图，同名只生成一次
+
+    public ThumbnailCache(Path directory, int maxEntries) throws IOException {
+        this.directory = directory;
+        this.maxEntries = maxEntries;
+        Files.createDirectories(directory);
+        List<Path> existing = new ArrayList<>();
+        try (Stream<Path> files = Files.list(directory)) {
+            files.filter(file -> file.getFileName().toString().endsWith(".png")).forEach(existing::add);
+        }
+        existing.sort(Comparator.comparing(ThumbnailCache::lastModified));
+        for (Path file : existing) entries.put(file.getFileName().toString(), file);
+        evict();
+    }
+
+    public static Path defaultDirectory() {
+        return Paths.get(System.getProperty("user.home"), ".flowchart-editor", "thumbnails");
+    }
+
+    /**
+     * @return 文档的缩略图文件，没有缓存或文档已修改时读取文档重新生成
+     */
+    public Path get(Path document) throws IOException {
+        BasicFileAttributes attributes = Files.readAttributes(document, BasicFileAttributes.class);
+        String prefix = hash(document.toAbsolutePath().normalize().toString());
+        String name = prefix + "-" + Long.toHexString(attributes.lastModifiedTime().toMillis())
+                + "-" + Long.toHexString(attributes.size()) + ".png";
+        Path cached = lookup(name);
+        if (cached != null) return cached;
+
+        Object lock = generating.computeIfAbsent(name, key -> new Object());
+        synchronized (lock) {
+            try {
+                cached = lookup(name); // 其他线程刚刚生成
+                if (cached != null) return cached;
+                FlowchartData data = FlowchartCodecs.forFile(document).read(document);
+                Path file = directory.resolve(name);
+                write(file, data.getShapes(), data.getConnections());
+                synchronized (this) {
+                    // 删除同一文档修改之前的缩略图
+                    Iterator<Map.Entry<String, Path>> it = entries.entrySet().iterator();
+                    while (it.hasNext()) {
+                        Map.Entry<String, Path> entry = it.next();
+                        if (entry.getKey().startsWith(prefix + "-")) {
+                            Files.deleteIfExists(entry.getValue());
+                            it.remove();
+                        }
+                    }
+                    entries.put(name, file);
+                    evict();
+                }
+                return file;
+            } finally {
+                generating.remove(name);
+            }
+        }
+    }
+
+    // 命中时更新使用顺序
+    private synchronized Path lookup(String name) throws IOException {
+        Path file = entries.get(name);
+        if (file == null) return null;
+        if (!Files.exists(file)) {
+            entries.remove(name);
+            return null;
+        }
+        Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis()));
+        return file;
+    }
+
+    private synchronized void evict() throws IOException {
+        Iterator<Path> it = entries.values().iterator();
+        while (entries.size() > maxEntries && it.hasNext()) {
+            Files.deleteIfExists(it.next());
+            it.remove();
+        }
+    }
+
+    private static void write(Path file, Collection<FlowchartShape> shapes, Collection<ConnectionLine> lines)
+            throws IOException {
+        BufferedImage image = render(shapes, lines, WIDTH, HEIGHT);
+        int[] pixels = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+        ExportFiles.write(file, out -> {
+            try (PngWriter writer = new PngWriter(out, image.getWidth(), image.getHeight(), false, 0)) {
+                for (int y = 0; y < image.getHeight(); y++) writer.writeRow(pixels, y * image.getWidth());
+            }
+        });
+    }
+
+    /**
+     * 把整个文档缩小绘制到不超过 maxWidth × maxHeight 的图片中（保持比例，不放大），白色背景。
+     */
+    public static BufferedImage render(Collection<FlowchartShape> shapes, Collection<ConnectionLine> lines,
+                                       int maxWidth, int maxHeight) {
+        double[] bounds = DiagramBounds.of(shapes, lines, Java2DPainter.FONT_SIZE);
+        if (bounds == null) bounds = new double[] { 0, 0, maxWidth, maxHeight };
+        double width = Math.max(1, bounds[2] - bounds[0]), height = Math.max(1, bounds[3] - bounds[1]);
+        double scale = Math.min(1, Math.min(maxWidth / width, maxHeight / height));
+        BufferedImage image = new BufferedImage((int) Math.max(1, Math.ceil(width * scale)),
+                (int) Math.max(1, Math.ceil(height * scale)), BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g = image.createGraphics();
+        try {
+            g.setColor(Color.WHITE);
+            g.fillRect(0, 0, image.getWidth(), image.getHeight());
+            g.scale(scale, scale);
+            g.translate(-bounds[0], -bounds[1]);
+            Java2DPainter painter = new Java2DPainter(g);
+            painter.setLabelsVisible(Java2DPainter.FONT_SIZE * scale >= MIN_TEXT_SIZE);
+            for (ConnectionLine line : lines) painter.paintLine(line);
+            for (FlowchartShape shape : shapes) painter.paintShape(shape);
+        } finally {
+            g.dispose();
+        }
+        return image;
+    }
+
+    private static FileTime lastModified(Path file) {
+        try {
+            return Files.getLastModifiedTime(file);
+        } catch (IOException e) {
+            return FileTime.fromMillis(0);
+        }
+    }
+
+    private static String hash(String text) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(text.getBytes(StandardCharsets.UTF_8));
+            StringBuilder sb = new StringBuilder(16);
+            for (int i = 0; i < 8; i++) {
+                sb.append(Character.forDigit((digest[i] >> 4) & 0xf, 16)).append(Character.forDigit(digest[i] & 0xf, 16));
+            }
+            return sb.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e); // 每个 JVM 都支持 SHA-256
+        }
+    }
+}
@@ -0,0 +1,35 @@
+package editor.io;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * 整个文件重写的保存：写到同目录下的临时文件，写完并刷到磁盘后原子替换目标。
+ * 保存过程中崩溃时原文件保持不变，日志恢复（Journal.replay）仍有完整的基准文件。
+ */
+final class AtomicFiles {
+    interface Body {
+        void write(FileChannel channel) throws IOException;
+    }
+
+    private AtomicFiles() {
+    }
+
+    static void write(Path file, Body body) throws IOException {
+        // 临时文件名唯一，同时保存到同一目标时不会互相踩到对方的临时文件
+        Path tmp = Files.createTempFile(file.toAbsolutePath().getParent(), file.getFileName().toString(), ".tmp");
+        try {
+            try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.WRITE)) {
+                body.write(channel);
+                channel.force(true);
+            }
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+}
@@ -0,0 +1,308 @@
+package editor.io;
+
+import editor.model.ConnectionLine;
+import editor.model.ConnectionPoint;
+import editor.model.FlowColor;
+import editor.model.FlowchartDocument;
+import editor.model.FlowchartShape;
+import editor.model.LineStyle;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 二进制格式（.fcb），读取时经固定大小的缓冲区顺序读取 FileChannel，按固定长度的记录直接构造模型。
+ * 不使用内存映射：映射在被回收前会一直锁住文件（Windows 上无法覆盖保存）。
+ *
+ * <pre>
+ * 文件头（64 字节，小端序）：
+ *   0  int  魔数 "FCB1"        4  int  版本
+ *   8  int  字符串数          12  int  图形数
+ *  16  int  连接线数          20  int  保留
+ *  24  long 字符串表偏移      32  long 图形表偏移
+ *  40  long 连接线表偏移      48  long 文件长度
+ * 字符串表：每项为 int 字节数 + UTF-8 内容。类型名、文字、链接都存为表中的序号，重复的只存一份。
+ * 图形记录（56 字节）：long id, int 类型, int 颜色(0xRRGGBBAA), double x, y, width, height, int 文字, int 链接
+ * 连接线记录（40 字节）：long id, long 起点图形 id, long 终点图形 id（-1 表示无）,
+ *   byte 起点序号, byte 终点序号, byte 线型, byte 箭头, int 颜色, double 线宽
+ * </pre>
+ * 版本 1 的连接线记录没有开头的 id（32 字节），不再读取，打开时报告不支持的版本。
+ * 颜色直接存为打包的整数，读取时不需要解析字符串。
+ */
+public class BinaryFlowchartCodec implements FlowchartCodec {
+    private static final int MAGIC = 0x31424346; // 小端序下为 "FCB1"
+    private static final int VERSION = 2;
+    private static final int HEADER_SIZE = 64;
+    private static final int SHAPE_RECORD = 56;
+    private static final int LINE_RECORD = 40;
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final int PROGRESS_STEP = 16 * 1024; // 每读取这么多条记录报告一次进度
+    private static final ConnectionLine.LineType[] LINE_TYPES = ConnectionLine.LineType.values();
+
+    @Override
+    public String getExtension() {
+        return "fcb";
+    }
+
+    @Override
+    public String getDescription() {
+        return "二进制流程图";
+    }
+
+    @Override
+    public void write(Path file, Collection<FlowchartShape> shapes, Collection<ConnectionLine> lines) throws IOException {
+        // 先收集字符串表
+        Map<String, Integer> stringIndex = new HashMap<>();
+        List<String> strings = new ArrayList<>();
+        for (FlowchartShape shape : shapes) {
+            intern(shape.getType(), stringIndex, strings);
+            intern(shape.getLabel(), stringIndex, strings);
+            intern(shape.getLink(), stringIndex, strings);
+        }
+        List<ConnectionLine> saved = new ArrayList<>(lines.size());
+        for (ConnectionLine line : lines) {
+            if (line.getStartPoint() != null) saved.add(line); // 跳过未完成的临时连线
+        }
+
+        // 写到临时文件后原子替换，保存中途崩溃时原文件不受影响
+        AtomicFiles.write(file, channel -> {
+            ByteBuffer buf = ByteBuffer.allocate(BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+            channel.position(HEADER_SIZE);
+
+            long stringsOffset = HEADER_SIZE;
+            for (String s : strings) {
+                byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+                ensure(channel, buf, 4);
+                buf.putInt(bytes.length);
+                if (bytes.length > buf.remaining()) {
+                    drain(channel, buf);
+                    channel.write(ByteBuffer.wrap(bytes));
+                } else {
+                    buf.put(bytes);
+                }
+            }
+            drain(channel, buf);
+
+            long shapesOffset = channel.position();
+            for (FlowchartShape shape : shapes) {
+                ensure(channel, buf, SHAPE_RECORD);
+                buf.putLong(shape.getId());
+                buf.putInt(stringIndex.get(shape.getType()));
+                buf.putInt(shape.getColor().toRgba());
+                buf.putDouble(shape.getX());
+                buf.putDouble(shape.getY());
+                buf.putDouble(shape.getWidth());
+                buf.putDouble(shape.getHeight());
+                buf.putInt(stringIndex.get(shape.getLabel()));
+                buf.putInt(stringIndex.get(shape.getLink()));
+            }
+            drain(channel, buf);
+
+            long linesOffset = channel.position();
+            for (ConnectionLine line : saved) {
+                ConnectionPoint start = line.getStartPoint();
+                ConnectionPoint end = line.getEndPoint();
+                ensure(channel, buf, LINE_RECORD);
+                buf.putLong(line.getId());
+                buf.putLong(start.getParentShape().getId());
+                buf.putLong(end != null ? end.getParentShape().getId() : -1);
+                buf.put((byte) start.getIndex());
+                buf.put((byte) (end != null ? end.getIndex() : -1));
+                buf.put((byte) line.getLineType().ordinal());
+                buf.put((byte) (line.isArrowEnabled() ? 1 : 0));
+                buf.putInt(line.getColor().toRgba());
+                buf.putDouble(line.getStrokeWidth());
+            }
+            drain(channel, buf);
+            long length = channel.position();
+
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+            header.putInt(MAGIC).putInt(VERSION)
+                    .putInt(strings.size()).putInt(shapes.size()).putInt(saved.size()).putInt(0)
+                    .putLong(stringsOffset).putLong(shapesOffset).putLong(linesOffset).putLong(length);
+            header.clear();
+            channel.write(header, 0);
+        });
+    }
+
+    @Override
+    public FlowchartData read(Path file) throws IOException {
+        return read(file, ProgressListener.NONE);
+    }
+
+    @Override
+    public FlowchartData read(Path file, ProgressListener listener) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            return read(new RecordInput(channel, file), listener);
+        }
+    }
+
+    private FlowchartData read(RecordInput in, ProgressListener listener) throws IOException {
+        Path file = in.file;
+        long size = in.channel.size();
+        if (size < HEADER_SIZE) throw new IOException("不是有效的 .fcb 文件: " + file);
+        ByteBuffer header = in.need(HEADER_SIZE);
+        if (header.getInt() != MAGIC) throw new IOException("不是有效的 .fcb 文件: " + file);
+        int version = header.getInt();
+        if (version != VERSION) throw new IOException("不支持的 .fcb 版本: " + version);
+        int stringCount = header.getInt();
+        int shapeCount = header.getInt();
+        int lineCount = header.getInt();
+        header.getInt(); // 保留
+        long stringsOffset = header.getLong();
+        long shapesOffset = header.getLong();
+        long linesOffset = header.getLong();
+        header.getLong(); // 文件长度
+        if (stringCount < 0 || shapeCount < 0 || lineCount < 0
+                || stringsOffset < HEADER_SIZE || shapesOffset < stringsOffset || linesOffset < shapesOffset
+                || shapesOffset + (long) shapeCount * SHAPE_RECORD > linesOffset
+                || linesOffset + (long) lineCount * LINE_RECORD > size) {
+            throw new IOException(".fcb 文件头损坏: " + file);
+        }
+
+        String[] strings = new String[stringCount];
+        in.seek(stringsOffset);
+        long pos = stringsOffset;
+        for (int i = 0; i < stringCount; i++) {
+            int length = pos + 4 <= shapesOffset ? in.need(4).getInt() : -1;
+            if (length < 0 || length > shapesOffset - pos - 4) throw new IOException(".fcb 字符串表损坏: " + file);
+            strings[i] = new String(in.bytes(length), StandardCharsets.UTF_8);
+            pos += 4 + length;
+        }
+
+        FlowchartDocument document = new FlowchartDocument();
+        List<FlowchartShape> shapes = new ArrayList<>(shapeCount);
+        // 记录按顺序经缓冲区读取，重复的颜色只创建一次
+        Map<Integer, FlowColor> colors = new HashMap<>();
+        long total = (long) shapeCount + lineCount;
+        in.seek(shapesOffset);
+        for (int i = 0; i < shapeCount; i++) {
+            if (i % PROGRESS_STEP == 0) listener.progress(i, total);
+            ByteBuffer r = in.need(SHAPE_RECORD);
+            long id = r.getLong();
+            String type = string(strings, r.getInt(), file);
+            int color = r.getInt();
+            double x = r.getDouble(), y = r.getDouble(), width = r.getDouble(), height = r.getDouble();
+            FlowchartShape shape = FlowchartShape.create(type, x, y, width, height,
+                    string(strings, r.getInt(), file), string(strings, r.getInt(), file));
+            if (shape == null) continue;
+            shape.setId(id);
+            shape.setColor(colors.computeIfAbsent(color, FlowColor::fromRgba));
+            document.register(shape);
+            shapes.add(shape);
+        }
+
+        List<ConnectionLine> lines = new ArrayList<>(lineCount);
+        in.seek(linesOffset);
+        for (int i = 0; i < lineCount; i++) {
+            if (i % PROGRESS_STEP == 0) listener.progress(shapeCount + i, total);
+            ByteBuffer r = in.need(LINE_RECORD);
+            long id = r.getLong();
+            long startId = r.getLong();
+            long endId = r.getLong();
+            byte startIndex = r.get(), endIndex = r.get(), type = r.get(), arrow = r.get();
+            int color = r.getInt();
+            double width = r.getDouble();
+            ConnectionPoint start = FlowchartDocument.getPoint(document.getShape(startId), startIndex);
+            if (start == null) continue; // 端点图形不存在
+            ConnectionPoint end = endId >= 0 ? FlowchartDocument.getPoint(document.getShape(endId), endIndex) : null;
+            ConnectionLine line = new ConnectionLine();
+            line.setId(id);
+            line.setStartPoint(start);
+            if (end != null) line.setEndPoint(end);
+            if (type >= 0 && type < LINE_TYPES.length) line.setLineType(LINE_TYPES[type]);
+            line.setArrowEnabled(arrow != 0);
+            line.setStyle(new LineStyle(colors.computeIfAbsent(color, FlowColor::fromRgba), width));
+            document.registerLine(line);
+            line.attach();
+            lines.add(line);
+        }
+        listener.progress(total, total);
+        return new FlowchartData(shapes, lines);
+    }
+
+    private static String string(String[] strings, int index, Path file) throws IOException {
+        if (index < 0 || index >= strings.length) throw new IOException(".fcb 字符串序号越界: " + file);
+        return strings[index];
+    }
+
+    private static void intern(String s, Map<String, Integer> index, List<String> strings) {
+        if (index.putIfAbsent(s, strings.size()) == null) strings.add(s);
+    }
+
+    // 缓冲区剩余空间不足时先写出
+    private static void ensure(FileChannel channel, ByteBuffer buf, int bytes) throws IOException {
+        if (buf.remaining() < bytes) drain(channel, buf);
+    }
+
+    private static void drain(FileChannel channel, ByteBuffer buf) throws IOException {
+        buf.flip();
+        while (buf.hasRemaining()) channel.write(buf);
+        buf.clear();
+    }
+
+    /**
+     * 顺序读取文件：固定大小的缓冲区，取用的字节不足时从通道补充，内存占用与文件大小无关。
+     */
+    private static final class RecordInput {
+        final FileChannel channel;
+        final Path file;
+        private final ByteBuffer buf = ByteBuffer.allocate(BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        private long position; // 下一次从通道读取的位置
+
+        RecordInput(FileChannel channel, Path file) {
+            this.channel = channel;
+            this.file = file;
+            buf.limit(0);
+        }
+
+        void seek(long offset) {
+            position = offset;
+            buf.limit(0);
+        }
+
+        /**
+         * @return 至少还有 bytes 个字节可读的缓冲区，从当前读取位置开始。
+         */
+        ByteBuffer need(int bytes) throws IOException {
+            if (buf.remaining() < bytes) {
+                buf.compact();
+                while (buf.position() < bytes) {
+                    int n = channel.read(buf, position);
+                    if (n < 0) throw new IOException(".fcb 文件不完整: " + file);
+                    position += n;
+                }
+                buf.flip();
+            }
+            return buf;
+        }
+
+        byte[] bytes(int length) throws IOException {
+            byte[] bytes = new byte[length];
+            if (length <= BUFFER_SIZE) {
+                need(length).get(bytes);
+                return bytes;
+            }
+            // 超过缓冲区的长字符串：先取走缓冲区中剩余的部分，其余直接读入数组
+            int buffered = buf.remaining();
+            buf.get(bytes, 0, buffered);
+            ByteBuffer rest = ByteBuffer.wrap(bytes, buffered, length - buffered);
+            while (rest.hasRemaining()) {
+                int n = channel.read(rest, position);
+                if (n < 0) throw new IOException(".fcb 文件不完整: " + file);
+                position += n;
+            }
+            return bytes;
+        }
+    }
+}
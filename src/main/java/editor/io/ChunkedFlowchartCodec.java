@@ -0,0 +1,498 @@
+package editor.io;
+
+import editor.model.ConnectionLine;
+import editor.model.FlowchartDocument;
+import editor.model.FlowchartShape;
+import editor.model.StyleSection;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.function.LongFunction;
+import java.util.zip.CRC32;
+
+/**
+ * 分块格式（.fcx），支持增量保存。图形和连接线按 ID 分块（ID / CHUNK_SIZE 相同的在同一块），
+ * 每块是一段独立的紧凑 JSON（带自己的样式表），文件末尾的索引记录每块的位置、长度和 CRC32。
+ * 保存时只把修改过的块追加到文件末尾，再追加新索引，最后改写文件头指向新索引；
+ * 旧的块和索引在文件头切换之前一直有效，任何时候中断都能读出上一次保存的内容。
+ *
+ * <pre>
+ * 文件头（64 字节，小端序）：两个 32 字节的槽，轮流写入，读取时取序号大且校验正确的一个：
+ *   int 魔数 "FCX1", int 版本, long 序号, long 索引偏移, int 索引长度, int 前 28 字节的 CRC32
+ * 索引：int 块数，每块 32 字节：
+ *   byte 种类(0 图形, 1 连接线), 3 字节保留, int 记录数, long 块号, long 偏移, int 长度, int CRC32
+ *   最后是 int 索引内容的 CRC32
+ * </pre>
+ * 读取得到的图形按 ID 排序。废弃的旧块超过有效数据量时，保存后整理文件（复制有效块到新文件后原子替换）。
+ */
+public class ChunkedFlowchartCodec implements FlowchartCodec {
+    public static final int CHUNK_SIZE = 1024; // 每块的 ID 范围
+    public static final byte SHAPES = 0;
+    public static final byte LINES = 1;
+
+    private static final int MAGIC = 0x31584346; // 小端序下为 "FCX1"
+    private static final int VERSION = 1;
+    private static final int SLOT_SIZE = 32;
+    private static final int HEADER_SIZE = 2 * SLOT_SIZE;
+    private static final int ENTRY_SIZE = 32;
+    private static final long COMPACT_MIN_GARBAGE = 4L << 20;
+
+    /**
+     * 一个数据块：某个 ID 范围内的全部图形或连接线。记录数为 0 表示该块已清空，保存时从索引中删除。
+     */
+    public static final class Chunk {
+        final byte kind;
+        final long key;
+        final int count;
+        final byte[] data;
+
+        Chunk(byte kind, long key, int count, byte[] data) {
+            this.kind = kind;
+            this.key = key;
+            this.count = count;
+            this.data = data;
+        }
+    }
+
+    // 索引项
+    private static final class Entry {
+        final byte kind;
+        final long key;
+        final int count;
+        final long offset;
+        final int length;
+        final int crc;
+
+        Entry(byte kind, long key, int count, long offset, int length, int crc) {
+            this.kind = kind;
+            this.key = key;
+            this.count = count;
+            this.offset = offset;
+            this.length = length;
+            this.crc = crc;
+        }
+    }
+
+    /**
+     * 只读取有变化的块的结果（见 readChanges）。
+     */
+    public static final class Changes {
+        private final Set<Long> shapeChunks;
+        private final Set<Long> lineChunks;
+        private final FlowchartData data;
+        private final Map<Long, Integer> checksums;
+
+        Changes(Set<Long> shapeChunks, Set<Long> lineChunks, FlowchartData data, Map<Long, Integer> checksums) {
+            this.shapeChunks = shapeChunks;
+            this.lineChunks = lineChunks;
+            this.data = data;
+            this.checksums = checksums;
+        }
+
+        /** @return 读取了的图形块号（包括文件中已删除的块） */
+        public Set<Long> getShapeChunks() { return shapeChunks; }
+        /** @return 读取了的连接线块号 */
+        public Set<Long> getLineChunks() { return lineChunks; }
+        /** @return 这些块中的图形和连接线 */
+        public FlowchartData getData() { return data; }
+        /** @return 文件当前各块的 CRC32 */
+        public Map<Long, Integer> getChecksums() { return checksums; }
+    }
+
+    // 当前文件头
+    private static final class Header {
+        long sequence;
+        long indexOffset;
+        int indexLength;
+    }
+
+    @Override
+    public String getExtension() {
+        return "fcx";
+    }
+
+    @Override
+    public String getDescription() {
+        return "分块流程图";
+    }
+
+    /**
+     * @return ID 所在的块号。
+     */
+    public static long chunkOf(long id) {
+        return id / CHUNK_SIZE;
+    }
+
+    /**
+     * 把一个块的图形或连接线序列化为紧凑 JSON。
+     */
+    public static Chunk chunk(byte kind, long key, Collection<FlowchartShape> shapes, Collection<ConnectionLine> lines) {
+        int count = kind == SHAPES ? shapes.size() : lines.size();
+        if (count == 0) return new Chunk(kind, key, 0, null);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(count * 160);
+        try (Writer writer = new OutputStreamWriter(bytes, StandardCharsets.UTF_8)) {
+            new JsonFlowchartWriter(writer, true).write(shapes, lines);
+        } catch (IOException e) {
+            throw new IllegalStateException(e); // 写内存不会失败
+        }
+        return new Chunk(kind, key, count, bytes.toByteArray());
+    }
+
+    @Override
+    public void write(Path file, Collection<FlowchartShape> shapes, Collection<ConnectionLine> lines) throws IOException {
+        Map<Long, List<FlowchartShape>> shapeChunks = new TreeMap<>();
+        for (FlowchartShape shape : shapes) {
+            shapeChunks.computeIfAbsent(chunkOf(shape.getId()), k -> new ArrayList<>()).add(shape);
+        }
+        Map<Long, List<ConnectionLine>> lineChunks = new TreeMap<>();
+        for (ConnectionLine line : lines) {
+            if (line.getStartPoint() == null) continue; // 未完成的临时连线
+            lineChunks.computeIfAbsent(chunkOf(line.getId()), k -> new ArrayList<>()).add(line);
+        }
+        List<Chunk> chunks = new ArrayList<>(shapeChunks.size() + lineChunks.size());
+        shapeChunks.forEach((key, list) -> chunks.add(chunk(SHAPES, key, list, List.of())));
+        lineChunks.forEach((key, list) -> chunks.add(chunk(LINES, key, List.of(), list)));
+
+        // 写到临时文件后原子替换
+        Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            TreeMap<Long, Entry> index = new TreeMap<>();
+            long end = appendChunks(channel, HEADER_SIZE, chunks, index);
+            commit(channel, new Header(), end, index);
+        }
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * 增量保存：把修改过的块追加到已有文件，然后切换索引。
+     * @param chunks 修改过的块，记录数为 0 的块从文件中删除
+     * @throws IOException 文件不存在或不是有效的 .fcx 文件时，调用方应改为完整保存。
+     */
+    public static void update(Path file, List<Chunk> chunks) throws IOException {
+        long live;
+        long size;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            Header header = readHeader(channel, file);
+            TreeMap<Long, Entry> index = readIndex(channel, header, file);
+            long end = appendChunks(channel, channel.size(), chunks, index);
+            int indexLength = commit(channel, header, end, index);
+            live = HEADER_SIZE + indexLength;
+            for (Entry entry : index.values()) live += entry.length;
+            size = channel.size();
+        }
+        if (size - live > Math.max(live, COMPACT_MIN_GARBAGE)) compact(file);
+    }
+
+    /**
+     * 整理文件：只复制有效的块，废弃的旧块不再占用空间。
+     */
+    public static void compact(Path file) throws IOException {
+        Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (FileChannel in = FileChannel.open(file, StandardOpenOption.READ);
+             FileChannel out = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                     StandardOpenOption.TRUNCATE_EXISTING)) {
+            Header header = readHeader(in, file);
+            TreeMap<Long, Entry> index = new TreeMap<>();
+            long pos = HEADER_SIZE;
+            for (Entry entry : readIndex(in, header, file).values()) {
+                long copied = 0;
+                while (copied < entry.length) {
+                    copied += in.transferTo(entry.offset + copied, entry.length - copied, out.position(pos + copied));
+                }
+                index.put(indexKey(entry.kind, entry.key),
+                        new Entry(entry.kind, entry.key, entry.count, pos, entry.length, entry.crc));
+                pos += entry.length;
+            }
+            commit(out, new Header(), pos, index);
+        }
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    // 从 position 开始依次写入各块，更新索引，返回写完后的位置
+    private static long appendChunks(FileChannel channel, long position, List<Chunk> chunks,
+                                     TreeMap<Long, Entry> index) throws IOException {
+        CRC32 crc = new CRC32();
+        for (Chunk chunk : chunks) {
+            long key = indexKey(chunk.kind, chunk.key);
+            if (chunk.count == 0) {
+                index.remove(key);
+                continue;
+            }
+            crc.reset();
+            crc.update(chunk.data);
+            writeFully(channel, ByteBuffer.wrap(chunk.data), position);
+            index.put(key, new Entry(chunk.kind, chunk.key, chunk.count, position, chunk.data.length, (int) crc.getValue()));
+            position += chunk.data.length;
+        }
+        return position;
+    }
+
+    // 在 position 处写出索引并刷盘，再写入另一个文件头槽并刷盘。返回索引长度
+    private static int commit(FileChannel channel, Header previous, long position,
+                              TreeMap<Long, Entry> index) throws IOException {
+        ByteBuffer buf = ByteBuffer.allocate(4 + index.size() * ENTRY_SIZE + 4).order(ByteOrder.LITTLE_ENDIAN);
+        buf.putInt(index.size());
+        for (Entry entry : index.values()) {
+            buf.put(entry.kind).put((byte) 0).put((byte) 0).put((byte) 0);
+            buf.putInt(entry.count).putLong(entry.key).putLong(entry.offset).putInt(entry.length).putInt(entry.crc);
+        }
+        buf.putInt(crc(buf.array(), 0, buf.position()));
+        buf.flip();
+        int indexLength = buf.remaining();
+        writeFully(channel, buf, position);
+        channel.truncate(position + indexLength); // 更早一次中断的保存可能在后面留下残余
+        channel.force(true);
+
+        long sequence = previous.sequence + 1;
+        ByteBuffer slot = ByteBuffer.allocate(SLOT_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        slot.putInt(MAGIC).putInt(VERSION).putLong(sequence).putLong(position).putInt(indexLength);
+        slot.putInt(crc(slot.array(), 0, SLOT_SIZE - 4));
+        slot.flip();
+        writeFully(channel, slot, (sequence % 2) * SLOT_SIZE);
+        channel.force(true);
+        return indexLength;
+    }
+
+    private static Header readHeader(FileChannel channel, Path file) throws IOException {
+        if (channel.size() < HEADER_SIZE) throw new IOException("不是有效的 .fcx 文件: " + file);
+        ByteBuffer buf = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        readFully(channel, buf, 0);
+        Header best = null;
+        for (int slot = 0; slot < 2; slot++) {
+            int base = slot * SLOT_SIZE;
+            if (buf.getInt(base) != MAGIC || buf.getInt(base + 4) != VERSION
+                    || buf.getInt(base + 28) != crc(buf.array(), base, SLOT_SIZE - 4)) {
+                continue; // 未写入或写到一半的槽
+            }
+            Header header = new Header();
+            header.sequence = buf.getLong(base + 8);
+            header.indexOffset = buf.getLong(base + 16);
+            header.indexLength = buf.getInt(base + 24);
+            if (header.indexOffset < HEADER_SIZE || header.indexOffset + header.indexLength > channel.size()) continue;
+            if (best == null || header.sequence > best.sequence) best = header;
+        }
+        if (best == null) throw new IOException("不是有效的 .fcx 文件: " + file);
+        return best;
+    }
+
+    private static TreeMap<Long, Entry> readIndex(FileChannel channel, Header header, Path file) throws IOException {
+        ByteBuffer buf = ByteBuffer.allocate(header.indexLength).order(ByteOrder.LITTLE_ENDIAN);
+        readFully(channel, buf, header.indexOffset);
+        int count = header.indexLength >= 8 ? buf.getInt(0) : -1;
+        if (count < 0 || header.indexLength != 4 + count * ENTRY_SIZE + 4
+                || buf.getInt(header.indexLength - 4) != crc(buf.array(), 0, header.indexLength - 4)) {
+            throw new IOException(".fcx 索引损坏: " + file);
+        }
+        TreeMap<Long, Entry> index = new TreeMap<>();
+        for (int i = 0; i < count; i++) {
+            int p = 4 + i * ENTRY_SIZE;
+            Entry entry = new Entry(buf.get(p), buf.getLong(p + 8), buf.getInt(p + 4),
+                    buf.getLong(p + 16), buf.getInt(p + 24), buf.getInt(p + 28));
+            if (entry.offset < HEADER_SIZE || entry.offset + entry.length > channel.size()) {
+                throw new IOException(".fcx 索引损坏: " + file);
+            }
+            index.put(indexKey(entry.kind, entry.key), entry);
+        }
+        return index;
+    }
+
+    // 图形块排在连接线块之前，同类按块号排序
+    private static long indexKey(byte kind, long key) {
+        return ((long) kind << 62) + key;
+    }
+
+    /**
+     * 只读取文件头和索引。
+     * @return 各块的 CRC32，键由块的种类和块号组成，只用于与 readChanges 比较
+     */
+    public static Map<Long, Integer> checksums(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            return checksums(readIndex(channel, readHeader(channel, file), file));
+        }
+    }
+
+    private static Map<Long, Integer> checksums(TreeMap<Long, Entry> index) {
+        Map<Long, Integer> checksums = new HashMap<>(index.size() * 2);
+        index.forEach((key, entry) -> checksums.put(key, entry.crc));
+        return checksums;
+    }
+
+    /**
+     * 文件被外部修改后只读取有变化的块：CRC 与 known 不同、新增或删除的块，以及画布上修改过的块。
+     * 其余块的内容与画布一致，不读取也不比较。
+     * 连接线的端点在没有读取的图形块中时，用 canvasShapes 按 ID 取得画布上的图形，复制一份作为端点；
+     * 复制的图形不出现在结果的图形列表中。
+     * @param known 上次画布与文件一致时的 checksums(file)
+     */
+    public static Changes readChanges(Path file, Map<Long, Integer> known, Set<Long> dirtyShapes, Set<Long> dirtyLines,
+                                      LongFunction<FlowchartShape> canvasShapes) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            TreeMap<Long, Entry> index = readIndex(channel, readHeader(channel, file), file);
+            Set<Long> shapeChunks = new TreeSet<>(dirtyShapes);
+            Set<Long> lineChunks = new TreeSet<>(dirtyLines);
+            index.forEach((key, entry) -> {
+                if (!Objects.equals(known.get(key), entry.crc)) (entry.kind == SHAPES ? shapeChunks : lineChunks).add(entry.key);
+            });
+            for (long key : known.keySet()) { // 文件中删除了的块，键的高两位是种类
+                if (!index.containsKey(key)) (key >>> 62 == SHAPES ? shapeChunks : lineChunks).add(key & ~(3L << 62));
+            }
+
+            FlowchartDocument document = new FlowchartDocument();
+            List<FlowchartShape> shapes = new ArrayList<>();
+            List<ConnectionLine> lines = new ArrayList<>();
+            try {
+                for (long chunk : shapeChunks) {
+                    Entry entry = index.get(indexKey(SHAPES, chunk));
+                    if (entry == null) continue; // 块已删除
+                    JSONObject json = readChunk(channel, entry, file);
+                    StyleSection styles = styles(json);
+                    JSONArray records = json.getJSONArray("shapes");
+                    for (int i = 0; i < records.length(); i++) {
+                        FlowchartShape shape = FlowchartShape.fromJsonObject(records.getJSONObject(i), styles);
+                        if (shape == null) continue;
+                        document.register(shape);
+                        shapes.add(shape);
+                    }
+                }
+                for (long chunk : lineChunks) {
+                    Entry entry = index.get(indexKey(LINES, chunk));
+                    if (entry == null) continue;
+                    JSONObject json = readChunk(channel, entry, file);
+                    StyleSection styles = styles(json);
+                    JSONArray records = json.getJSONArray("connections");
+                    for (int i = 0; i < records.length(); i++) {
+                        JSONObject record = records.getJSONObject(i);
+                        for (String key : new String[] {"startShapeId", "endShapeId"}) {
+                            long id = record.optLong(key, -1);
+                            if (id < 0 || shapeChunks.contains(chunkOf(id)) || document.getShape(id) != null) continue;
+                            FlowchartShape shape = canvasShapes.apply(id);
+                            if (shape == null) continue;
+                            FlowchartShape copy = FlowchartShape.create(shape.getType(), shape.getX(), shape.getY(),
+                                    shape.getWidth(), shape.getHeight(), shape.getLabel(), shape.getLink());
+                            if (copy == null) continue;
+                            copy.setId(id);
+                            document.register(copy);
+                        }
+                        ConnectionLine line = ConnectionLine.fromJsonObject(record, document, shapes, styles);
+                        if (line == null) continue; // 端点图形不存在
+                        document.registerLine(line);
+                        line.attach();
+                        lines.add(line);
+                    }
+                }
+            } catch (JSONException | IllegalArgumentException e) {
+                throw new IOException("流程图文件格式错误: " + e.getMessage(), e);
+            }
+            return new Changes(shapeChunks, lineChunks, new FlowchartData(shapes, lines), checksums(index));
+        }
+    }
+
+    @Override
+    public FlowchartData read(Path file) throws IOException {
+        return read(file, ProgressListener.NONE);
+    }
+
+    @Override
+    public FlowchartData read(Path file, ProgressListener listener) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            TreeMap<Long, Entry> index = readIndex(channel, readHeader(channel, file), file);
+            List<Entry> shapeEntries = new ArrayList<>();
+            List<Entry> lineEntries = new ArrayList<>();
+            long total = 0;
+            for (Entry entry : index.values()) {
+                (entry.kind == SHAPES ? shapeEntries : lineEntries).add(entry);
+                total += entry.count;
+            }
+
+            FlowchartDocument document = new FlowchartDocument();
+            List<FlowchartShape> shapes = new ArrayList<>();
+            List<ConnectionLine> lines = new ArrayList<>();
+            long done = 0;
+            try {
+                for (Entry entry : shapeEntries) {
+                    JSONObject json = readChunk(channel, entry, file);
+                    StyleSection styles = styles(json);
+                    JSONArray records = json.getJSONArray("shapes");
+                    for (int i = 0; i < records.length(); i++) {
+                        FlowchartShape shape = FlowchartShape.fromJsonObject(records.getJSONObject(i), styles);
+                        if (shape == null) continue;
+                        document.register(shape);
+                        shapes.add(shape);
+                    }
+                    listener.progress(done += entry.count, total);
+                }
+                for (Entry entry : lineEntries) {
+                    JSONObject json = readChunk(channel, entry, file);
+                    StyleSection styles = styles(json);
+                    JSONArray records = json.getJSONArray("connections");
+                    for (int i = 0; i < records.length(); i++) {
+                        ConnectionLine line = ConnectionLine.fromJsonObject(records.getJSONObject(i), document, shapes, styles);
+                        if (line == null) continue; // 端点图形不存在
+                        document.registerLine(line);
+                        line.attach();
+                        lines.add(line);
+                    }
+                    listener.progress(done += entry.count, total);
+                }
+            } catch (JSONException | IllegalArgumentException e) {
+                throw new IOException("流程图文件格式错误: " + e.getMessage(), e);
+            }
+            return new FlowchartData(shapes, lines);
+        }
+    }
+
+    private static JSONObject readChunk(FileChannel channel, Entry entry, Path file) throws IOException {
+        ByteBuffer buf = ByteBuffer.allocate(entry.length);
+        readFully(channel, buf, entry.offset);
+        if (crc(buf.array(), 0, entry.length) != entry.crc) {
+            throw new IOException(".fcx 数据块校验失败（块 " + entry.key + "）: " + file);
+        }
+        return new JSONObject(new String(buf.array(), StandardCharsets.UTF_8));
+    }
+
+    private static StyleSection styles(JSONObject chunk) {
+        JSONObject styles = chunk.optJSONObject("styles");
+        return styles != null ? StyleSection.fromJsonObject(styles) : new StyleSection();
+    }
+
+    private static int crc(byte[] bytes, int offset, int length) {
+        CRC32 crc = new CRC32();
+        crc.update(bytes, offset, length);
+        return (int) crc.getValue();
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buf, long position) throws IOException {
+        while (buf.hasRemaining()) position += channel.write(buf, position);
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buf, long position) throws IOException {
+        while (buf.hasRemaining()) {
+            int n = channel.read(buf, position);
+            if (n < 0) throw new IOException("文件意外结束");
+            position += n;
+        }
+    }
+}
@@ -0,0 +1,120 @@
+package editor.io;
+
+import editor.model.ConnectionLine;
+import editor.model.FlowchartDocument;
+import editor.model.FlowchartShape;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * 记录自上次保存以来修改过的 .fcx 数据块（见 ChunkedFlowchartCodec），用于增量保存。
+ * base 为与"当前内容减去这些修改"一致的文件；为 null 时下次保存必须完整写出。
+ * checksums 为 base 中各块的 CRC（见 ChunkedFlowchartCodec.checksums），文件被外部修改时用来找出有变化的块。
+ * 只在 FX 线程上使用。
+ */
+public class DirtyChunks {
+    private final Set<Long> shapeChunks = new TreeSet<>();
+    private final Set<Long> lineChunks = new TreeSet<>();
+    private Path base;
+    private Map<Long, Integer> checksums; // null 表示未知
+
+    public void shapeChanged(FlowchartShape shape) {
+        shapeChunks.add(ChunkedFlowchartCodec.chunkOf(shape.getId()));
+    }
+
+    public void lineChanged(ConnectionLine line) {
+        lineChunks.add(ChunkedFlowchartCodec.chunkOf(line.getId()));
+    }
+
+    public void shapesChanged(Collection<? extends FlowchartShape> shapes) {
+        for (FlowchartShape shape : shapes) shapeChanged(shape);
+    }
+
+    public void linesChanged(Collection<? extends ConnectionLine> lines) {
+        for (ConnectionLine line : lines) lineChanged(line);
+    }
+
+    public Path getBase() {
+        return base;
+    }
+
+    /**
+     * 完整保存成功：base 加上保存开始后记录的修改即为当前内容。
+     */
+    public void setBase(Path base) {
+        this.base = base;
+        checksums = null;
+    }
+
+    /**
+     * 当前内容已与 base 一致（打开或完整保存之后）。
+     */
+    public void reset(Path base) {
+        this.base = base;
+        checksums = null;
+        shapeChunks.clear();
+        lineChunks.clear();
+    }
+
+    public Map<Long, Integer> getChecksums() {
+        return checksums;
+    }
+
+    /**
+     * 记录文件各块的 CRC。file 已不是 base 时（期间另存为或保存失败）忽略。
+     */
+    public void setChecksums(Path file, Map<Long, Integer> checksums) {
+        if (file.equals(base)) this.checksums = checksums;
+    }
+
+    /**
+     * @return 修改过的图形块号的副本
+     */
+    public Set<Long> getShapeChunks() {
+        return new TreeSet<>(shapeChunks);
+    }
+
+    /**
+     * @return 修改过的连接线块号的副本
+     */
+    public Set<Long> getLineChunks() {
+        return new TreeSet<>(lineChunks);
+    }
+
+    public boolean isEmpty() {
+        return shapeChunks.isEmpty() && lineChunks.isEmpty();
+    }
+
+    /**
+     * 按文档当前内容序列化修改过的块，并清空修改记录。之后的修改重新记录。
+     * 耗时只与修改过的块数有关：每块按 ID 范围在文档 ID 表中查找。
+     */
+    public List<ChunkedFlowchartCodec.Chunk> take(FlowchartDocument document) {
+        List<ChunkedFlowchartCodec.Chunk> chunks = new ArrayList<>(shapeChunks.size() + lineChunks.size());
+        for (long key : shapeChunks) {
+            List<FlowchartShape> shapes = new ArrayList<>();
+            for (long id = key * ChunkedFlowchartCodec.CHUNK_SIZE; id < (key + 1) * ChunkedFlowchartCodec.CHUNK_SIZE; id++) {
+                FlowchartShape shape = document.getShape(id);
+                if (shape != null) shapes.add(shape);
+            }
+            chunks.add(ChunkedFlowchartCodec.chunk(ChunkedFlowchartCodec.SHAPES, key, shapes, List.of()));
+        }
+        for (long key : lineChunks) {
+            List<ConnectionLine> lines = new ArrayList<>();
+            for (long id = key * ChunkedFlowchartCodec.CHUNK_SIZE; id < (key + 1) * ChunkedFlowchartCodec.CHUNK_SIZE; id++) {
+                ConnectionLine line = document.getLine(id);
+                if (line != null && line.getStartPoint() != null) lines.add(line);
+            }
+            chunks.add(ChunkedFlowchartCodec.chunk(ChunkedFlowchartCodec.LINES, key, List.of(), lines));
+        }
+        shapeChunks.clear();
+        lineChunks.clear();
+        return chunks;
+    }
+}
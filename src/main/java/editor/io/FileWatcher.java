@@ -0,0 +1,72 @@
+package editor.io;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 监视一个文件被其他程序修改。WatchService 只能监视目录，这里监视文件所在目录并按文件名过滤；
+ * 写文件通常产生一连串事件（截断、多次写入、改名替换），最后一个事件之后 SETTLE_MILLIS 内没有新事件才通知一次。
+ * onChange 在监视线程上调用。
+ */
+public class FileWatcher implements Closeable {
+    private static final long SETTLE_MILLIS = 300;
+
+    private final Path file;
+    private final Runnable onChange;
+    private final WatchService service;
+
+    public FileWatcher(Path file, Runnable onChange) throws IOException {
+        this.file = file.toAbsolutePath();
+        this.onChange = onChange;
+        this.service = FileSystems.getDefault().newWatchService();
+        this.file.getParent().register(service, StandardWatchEventKinds.ENTRY_CREATE,
+                StandardWatchEventKinds.ENTRY_MODIFY);
+        Thread thread = new Thread(this::run, "flowchart-file-watcher");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    public Path getFile() {
+        return file;
+    }
+
+    private void run() {
+        try {
+            boolean pending = false;
+            while (true) {
+                WatchKey key = pending ? service.poll(SETTLE_MILLIS, TimeUnit.MILLISECONDS) : service.take();
+                if (key == null) {
+                    // 事件已经停止
+                    pending = false;
+                    onChange.run();
+                    continue;
+                }
+                for (WatchEvent<?> event : key.pollEvents()) {
+                    if (event.kind() == StandardWatchEventKinds.OVERFLOW || file.getFileName().equals(event.context())) {
+                        pending = true;
+                    }
+                }
+                if (!key.reset()) return; // 目录已被删除
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            // 已关闭
+        }
+    }
+
+    @Override
+    public void close() {
+        try {
+            service.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+}
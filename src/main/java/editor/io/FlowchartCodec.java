@@ -0,0 +1,55 @@
+package editor.io;
+
+import editor.model.ConnectionLine;
+import editor.model.FlowchartShape;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Collection;
+import java.util.function.Consumer;
+
+/**
+ * 一种流程图文件格式的读写实现。按扩展名在 FlowchartCodecs 中查找。
+ */
+public interface FlowchartCodec {
+    /**
+     * @return 文件扩展名（不含点，小写），如 "json"。
+     */
+    String getExtension();
+
+    /**
+     * @return 文件对话框中显示的格式名称。
+     */
+    String getDescription();
+
+    FlowchartData read(Path file) throws IOException;
+
+    /**
+     * 读取并报告进度。默认实现不报告进度。
+     */
+    default FlowchartData read(Path file, ProgressListener listener) throws IOException {
+        return read(file);
+    }
+
+    /**
+     * 用户打开文档时的读取（文档旁没有需要重放的日志），可以用更快但更占内存的方式。
+     * 恢复、重新载入、批量导出等其他读取都用 read()。默认实现同 read()。
+     */
+    default FlowchartData readForOpen(Path file, ProgressListener listener) throws IOException {
+        return read(file, listener);
+    }
+
+    /**
+     * 分块读取：读到的内容分批交给 chunkListener（在读取线程上调用），供边读边显示。
+     * 每块的连接线只引用本块或之前各块中的图形，且尚未登记到两端图形上（由接收方调用 attach()）。
+     * 默认实现读完后一次交付。
+     */
+    default void readChunks(Path file, ProgressListener listener, Consumer<FlowchartData> chunkListener)
+            throws IOException {
+        FlowchartData data = read(file, listener);
+        for (ConnectionLine line : data.getConnections()) line.detach();
+        chunkListener.accept(data);
+    }
+
+    void write(Path file, Collection<FlowchartShape> shapes, Collection<ConnectionLine> lines) throws IOException;
+}
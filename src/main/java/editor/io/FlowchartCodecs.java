@@ -0,0 +1,50 @@
+package editor.io;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * 文件格式注册表：根据文件扩展名选择读写实现，未知扩展名按 JSON 处理。
+ */
+public final class FlowchartCodecs {
+    private static final FlowchartCodec JSON = new JsonFlowchartCodec();
+    private static final List<FlowchartCodec> CODECS = new ArrayList<>(List.of(JSON, new GzipJsonFlowchartCodec(),
+            new BinaryFlowchartCodec(), new ChunkedFlowchartCodec()));
+
+    private FlowchartCodecs() {
+    }
+
+    /**
+     * 注册新的文件格式。扩展名相同时新注册的优先。
+     */
+    public static synchronized void register(FlowchartCodec codec) {
+        CODECS.add(0, codec);
+    }
+
+    public static synchronized List<FlowchartCodec> all() {
+        return Collections.unmodifiableList(new ArrayList<>(CODECS));
+    }
+
+    /**
+     * @return 与文件扩展名匹配的格式，没有匹配时返回 JSON 格式。
+     */
+    public static synchronized FlowchartCodec forFile(Path file) {
+        String name = file.getFileName().toString().toLowerCase(Locale.ROOT);
+        for (FlowchartCodec codec : CODECS) {
+            if (name.endsWith("." + codec.getExtension())) return codec;
+        }
+        return JSON;
+    }
+
+    /**
+     * 格式转换：按源文件扩展名读取，再按目标文件扩展名写出（如 .json ↔ .fcb）。
+     */
+    public static void convert(Path source, Path target) throws IOException {
+        FlowchartData data = forFile(source).read(source);
+        forFile(target).write(target, data.getShapes(), data.getConnections());
+    }
+}
@@ -0,0 +1,72 @@
+package editor.io;
+
+import editor.model.ConnectionLine;
+import editor.model.ConnectionPoint;
+import editor.model.FlowchartDocument;
+import editor.model.FlowchartShape;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 读写文件时交换的文档内容：图形列表和连接线列表。
+ * 读取得到的连接线已经挂到两端图形的入线/出线上。
+ */
+public class FlowchartData {
+    private final List<FlowchartShape> shapes;
+    private final List<ConnectionLine> connections;
+
+    public FlowchartData(List<FlowchartShape> shapes, List<ConnectionLine> connections) {
+        this.shapes = shapes;
+        this.connections = connections;
+    }
+
+    /**
+     * 复制图形和连接线，得到与画布互不影响的快照。后台保存时写出快照，用户可以继续编辑。
+     */
+    public static FlowchartData copyOf(Collection<FlowchartShape> shapes, Collection<ConnectionLine> lines) {
+        Map<FlowchartShape, FlowchartShape> copies = new IdentityHashMap<>(shapes.size() * 2);
+        List<FlowchartShape> shapeCopies = new ArrayList<>(shapes.size());
+        for (FlowchartShape shape : shapes) {
+            FlowchartShape copy = FlowchartShape.create(shape.getType(), shape.getX(), shape.getY(),
+                    shape.getWidth(), shape.getHeight(), shape.getLabel(), shape.getLink());
+            copy.setId(shape.getId());
+            copy.setColor(shape.getColor());
+            copies.put(shape, copy);
+            shapeCopies.add(copy);
+        }
+        List<ConnectionLine> lineCopies = new ArrayList<>(lines.size());
+        for (ConnectionLine line : lines) {
+            ConnectionPoint start = copyPoint(line.getStartPoint(), copies);
+            if (start == null) continue; // 未完成的临时连线
+            ConnectionLine copy = new ConnectionLine();
+            copy.setId(line.getId());
+            copy.setStartPoint(start);
+            ConnectionPoint end = copyPoint(line.getEndPoint(), copies);
+            if (end != null) copy.setEndPoint(end);
+            copy.setLineType(line.getLineType());
+            copy.setStyle(line.getStyle());
+            copy.setArrowEnabled(line.isArrowEnabled());
+            lineCopies.add(copy);
+        }
+        return new FlowchartData(Collections.unmodifiableList(shapeCopies), Collections.unmodifiableList(lineCopies));
+    }
+
+    private static ConnectionPoint copyPoint(ConnectionPoint point, Map<FlowchartShape, FlowchartShape> copies) {
+        if (point == null) return null;
+        FlowchartShape copy = copies.get(point.getParentShape());
+        return copy != null ? FlowchartDocument.getPoint(copy, point.getIndex()) : null;
+    }
+
+    public List<FlowchartShape> getShapes() {
+        return shapes;
+    }
+
+    public List<ConnectionLine> getConnections() {
+        return connections;
+    }
+}
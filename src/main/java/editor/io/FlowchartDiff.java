@@ -0,0 +1,172 @@
+package editor.io;
+
+import editor.model.ConnectionLine;
+import editor.model.ConnectionPoint;
+import editor.model.FlowchartShape;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * 画布内容与重新读取的文件内容之间的结构差异。图形和连接线按 ID 对应，
+ * 保存到文件的字段逐一相等的记录视为未修改，不做任何处理。两边的对象都在内存中，直接比较字段，
+ * 不用哈希代替（字符串的 32 位哈希很容易相同，例如 "Aa" 和 "BB"）。
+ * 应用差异（见 CanvasPane.applyExternalChanges）的开销只与修改的记录数有关。
+ * 计算差异只读取参数，不修改画布上的对象，在后台线程上进行（画布此时只读）。
+ */
+public class FlowchartDiff {
+    private final List<FlowchartShape> addedShapes = new ArrayList<>();     // 文件中的新图形
+    private final List<FlowchartShape> removedShapes = new ArrayList<>();   // 画布上要删除的图形
+    private final Map<FlowchartShape, FlowchartShape> changedShapes = new HashMap<>(); // 画布图形 → 文件中的新值
+    private final List<ConnectionLine> addedLines = new ArrayList<>();
+    private final List<ConnectionLine> removedLines = new ArrayList<>();
+    private final Map<ConnectionLine, ConnectionLine> changedLines = new HashMap<>();
+
+    /**
+     * 比较画布上的图形、连接线与文件内容。
+     */
+    public static FlowchartDiff compute(Collection<FlowchartShape> shapes, Collection<ConnectionLine> lines,
+                                        FlowchartData incoming) {
+        FlowchartDiff diff = new FlowchartDiff();
+        Map<Long, FlowchartShape> newShapes = new HashMap<>(incoming.getShapes().size() * 2);
+        for (FlowchartShape shape : incoming.getShapes()) newShapes.put(shape.getId(), shape);
+        Map<Long, ConnectionLine> newLines = new HashMap<>(incoming.getConnections().size() * 2);
+        for (ConnectionLine line : incoming.getConnections()) newLines.put(line.getId(), line);
+
+        // 类型变化的图形要换成新对象，连在它上面的连接线都要重新连接
+        Set<Long> replacedShapes = new HashSet<>();
+        Set<Long> seen = new HashSet<>(shapes.size() * 2);
+        for (FlowchartShape shape : shapes) {
+            seen.add(shape.getId());
+            FlowchartShape updated = newShapes.get(shape.getId());
+            if (updated == null) {
+                diff.removedShapes.add(shape);
+            } else if (!shape.getType().equals(updated.getType())) {
+                diff.removedShapes.add(shape);
+                diff.addedShapes.add(updated);
+                replacedShapes.add(shape.getId());
+            } else if (!sameContent(shape, updated)) {
+                diff.changedShapes.put(shape, updated);
+            }
+        }
+        for (FlowchartShape shape : incoming.getShapes()) {
+            if (!seen.contains(shape.getId())) diff.addedShapes.add(shape);
+        }
+
+        seen.clear();
+        for (ConnectionLine line : lines) {
+            if (line.getStartPoint() == null) continue; // 正在绘制的临时连线
+            seen.add(line.getId());
+            ConnectionLine updated = newLines.get(line.getId());
+            if (updated == null) {
+                diff.removedLines.add(line);
+            } else if (!sameContent(line, updated) || touches(line, replacedShapes)) {
+                diff.changedLines.put(line, updated);
+            }
+        }
+        for (ConnectionLine line : incoming.getConnections()) {
+            if (!seen.contains(line.getId())) diff.addedLines.add(line);
+        }
+        return diff;
+    }
+
+    /**
+     * 只比较 .fcx 文件中读取了的块（见 ChunkedFlowchartCodec.readChanges），其余块视为未修改。
+     * 块外的连接线起点图形被删除时一并删除，其余连在被删除或被替换的图形上的按 ID 重新连接
+     * （与读取整个文件的结果相同：终点图形不存在的连接线没有终点）。
+     */
+    public static FlowchartDiff compute(Collection<FlowchartShape> shapes, Collection<ConnectionLine> lines,
+                                        FlowchartData incoming, Set<Long> shapeChunks, Set<Long> lineChunks) {
+        List<FlowchartShape> scopedShapes = new ArrayList<>();
+        for (FlowchartShape shape : shapes) {
+            if (shapeChunks.contains(ChunkedFlowchartCodec.chunkOf(shape.getId()))) scopedShapes.add(shape);
+        }
+        List<ConnectionLine> scopedLines = new ArrayList<>();
+        for (ConnectionLine line : lines) {
+            if (lineChunks.contains(ChunkedFlowchartCodec.chunkOf(line.getId()))) scopedLines.add(line);
+        }
+        FlowchartDiff diff = compute(scopedShapes, scopedLines, incoming);
+
+        Set<Long> deleted = new HashSet<>();
+        for (FlowchartShape shape : diff.removedShapes) deleted.add(shape.getId());
+        for (FlowchartShape shape : diff.addedShapes) deleted.remove(shape.getId()); // 类型变化，换成了新图形
+        Set<ConnectionLine> handled = new HashSet<>();
+        for (FlowchartShape shape : diff.removedShapes) {
+            List<ConnectionLine> attached = new ArrayList<>(shape.getIncomingLines());
+            attached.addAll(shape.getOutgoingLines());
+            for (ConnectionLine line : attached) {
+                if (lineChunks.contains(ChunkedFlowchartCodec.chunkOf(line.getId())) || !handled.add(line)) continue;
+                if (deleted.contains(line.getStartPoint().getParentShape().getId())) {
+                    diff.removedLines.add(line);
+                } else {
+                    diff.changedLines.put(line, line); // 两端按 ID 重新解析
+                }
+            }
+        }
+        return diff;
+    }
+
+    private static boolean touches(ConnectionLine line, Set<Long> shapeIds) {
+        if (shapeIds.isEmpty()) return false;
+        ConnectionPoint end = line.getEndPoint();
+        return shapeIds.contains(line.getStartPoint().getParentShape().getId())
+                || (end != null && shapeIds.contains(end.getParentShape().getId()));
+    }
+
+    /**
+     * @return 两个图形保存到文件的全部字段是否相同（不含选中状态等界面状态）。
+     */
+    public static boolean sameContent(FlowchartShape a, FlowchartShape b) {
+        return a.getType().equals(b.getType())
+                && Double.compare(a.getX(), b.getX()) == 0
+                && Double.compare(a.getY(), b.getY()) == 0
+                && Double.compare(a.getWidth(), b.getWidth()) == 0
+                && Double.compare(a.getHeight(), b.getHeight()) == 0
+                && Objects.equals(a.getLabel(), b.getLabel())
+                && Objects.equals(a.getLink(), b.getLink())
+                && a.getColor().toRgba() == b.getColor().toRgba();
+    }
+
+    /**
+     * @return 两条连接线保存到文件的全部字段是否相同，两端按图形 ID 和连接点序号比较。
+     */
+    public static boolean sameContent(ConnectionLine a, ConnectionLine b) {
+        return sameEnd(a.getStartPoint(), b.getStartPoint())
+                && sameEnd(a.getEndPoint(), b.getEndPoint())
+                && a.getLineType() == b.getLineType()
+                && a.getColor().toRgba() == b.getColor().toRgba()
+                && Double.compare(a.getStrokeWidth(), b.getStrokeWidth()) == 0
+                && a.isArrowEnabled() == b.isArrowEnabled();
+    }
+
+    private static boolean sameEnd(ConnectionPoint a, ConnectionPoint b) {
+        if (a == null || b == null) return a == b;
+        return a.getParentShape().getId() == b.getParentShape().getId() && a.getIndex() == b.getIndex();
+    }
+
+    public boolean isEmpty() {
+        return addedShapes.isEmpty() && removedShapes.isEmpty() && changedShapes.isEmpty()
+                && addedLines.isEmpty() && removedLines.isEmpty() && changedLines.isEmpty();
+    }
+
+    /**
+     * @return 新增、删除、修改的图形和连接线总数。
+     */
+    public int size() {
+        return addedShapes.size() + removedShapes.size() + changedShapes.size()
+                + addedLines.size() + removedLines.size() + changedLines.size();
+    }
+
+    public List<FlowchartShape> getAddedShapes() { return addedShapes; }
+    public List<FlowchartShape> getRemovedShapes() { return removedShapes; }
+    public Map<FlowchartShape, FlowchartShape> getChangedShapes() { return changedShapes; }
+    public List<ConnectionLine> getAddedLines() { return addedLines; }
+    public List<ConnectionLine> getRemovedLines() { return removedLines; }
+    public Map<ConnectionLine, ConnectionLine> getChangedLines() { return changedLines; }
+}
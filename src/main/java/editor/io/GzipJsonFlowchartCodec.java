@@ -0,0 +1,109 @@
+package editor.io;
+
+import editor.model.ConnectionLine;
+import editor.model.FlowchartShape;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Collection;
+import java.util.function.Consumer;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * gzip 压缩的 JSON 格式（.json.gz）。写出时 JsonFlowchartWriter 的输出直接经 Deflater 压缩写入文件，
+ * 读取时 Inflater 解压的字节直接交给流式解析器，两个方向都不在内存中保留完整的文件内容。
+ * 解压后与 .json 文件完全相同，可以用 gzip -d 得到普通 JSON。
+ */
+public class GzipJsonFlowchartCodec implements FlowchartCodec {
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final int level;
+
+    public GzipJsonFlowchartCodec() {
+        this(6); // 与级别 1 相比写出只慢约 10%，文件小约 20%（见 FormatBenchmark）
+    }
+
+    /**
+     * @param level Deflater 压缩级别 1~9
+     */
+    public GzipJsonFlowchartCodec(int level) {
+        this.level = level;
+    }
+
+    @Override
+    public String getExtension() {
+        return "json.gz";
+    }
+
+    @Override
+    public String getDescription() {
+        return "压缩的 JSON 流程图";
+    }
+
+    @Override
+    public void write(Path file, Collection<FlowchartShape> shapes, Collection<ConnectionLine> lines) throws IOException {
+        AtomicFiles.write(file, channel -> {
+            try (OutputStream gzip = new GZIPOutputStream(Channels.newOutputStream(channel), BUFFER_SIZE) {
+                     {
+                         def.setLevel(level);
+                     }
+
+                     @Override
+                     public void close() throws IOException {
+                         // 写完 gzip 尾部并释放 Deflater，通道由 AtomicFiles 刷盘后关闭
+                         finish();
+                         def.end();
+                     }
+                 };
+                 Writer writer = new OutputStreamWriter(gzip, StandardCharsets.UTF_8)) {
+                new JsonFlowchartWriter(writer, true).write(shapes, lines);
+            }
+        });
+    }
+
+    @Override
+    public FlowchartData read(Path file) throws IOException {
+        return read(file, ProgressListener.NONE);
+    }
+
+    /**
+     * 进度按已读入的压缩字节数报告。
+     */
+    @Override
+    public FlowchartData read(Path file, ProgressListener listener) throws IOException {
+        try (Reader reader = open(file, listener)) {
+            return JsonFlowchartReader.read(reader, null);
+        }
+    }
+
+    @Override
+    public void readChunks(Path file, ProgressListener listener, Consumer<FlowchartData> chunkListener)
+            throws IOException {
+        try (Reader reader = open(file, listener)) {
+            JsonFlowchartReader.read(reader, chunkListener);
+        }
+    }
+
+    private static Reader open(Path file, ProgressListener listener) throws IOException {
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+        try {
+            return new BufferedReader(new InputStreamReader(new GZIPInputStream(Channels.newInputStream(
+                    new JsonFlowchartReader.ProgressChannel(channel, listener)), BUFFER_SIZE),
+                    StandardCharsets.UTF_8), BUFFER_SIZE);
+        } catch (IOException e) {
+            channel.close(); // 不是 gzip 文件
+            throw e;
+        }
+    }
+}
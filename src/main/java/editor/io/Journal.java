@@ -0,0 +1,315 @@
+package editor.io;
+
+import editor.model.ConnectionLine;
+import editor.model.FlowchartDocument;
+import editor.model.FlowchartShape;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 追加写入的操作日志，用于自动保存和崩溃恢复。日志放在文档旁边（"文档名.journal"），
+ * 每行一条紧凑的 JSON 记录：
+ * <pre>
+ *   {"op":"shape", ...图形字段}      新增或修改图形（整条记录覆盖）
+ *   {"op":"line", ...连接线字段}     新增或修改连接线
+ *   {"op":"removeShape","id":N}    删除图形
+ *   {"op":"removeLine","id":N}     删除连接线
+ *   {"op":"reset"}                 清空，之后的记录构成完整文档（压缩后的检查点）
+ * </pre>
+ * 打开文档时先读文档文件，再按顺序重放日志；保存成功后丢弃已保存的部分。
+ * 所有写入在一个后台线程上按提交顺序执行。
+ */
+public class Journal {
+    public static final String SUFFIX = ".journal";
+
+    private final ExecutorService writer = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "flowchart-journal");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private Path file;              // 以下字段只在写线程上访问
+    private FileChannel channel;
+    private long mark = -1;         // 正在进行的保存所覆盖的日志长度
+    private volatile long size;
+
+    public Journal(Path file) {
+        this.file = file;
+        try {
+            this.size = Files.exists(file) ? Files.size(file) : 0;
+        } catch (IOException e) {
+            this.size = 0;
+        }
+    }
+
+    /**
+     * @return 文档对应的日志文件（与文档在同一目录）。
+     */
+    public static Path forDocument(Path document) {
+        return document.resolveSibling(document.getFileName() + SUFFIX);
+    }
+
+    /**
+     * @return 未保存过的新文档使用的日志文件。
+     */
+    public static Path untitled() {
+        return Paths.get(System.getProperty("user.home"), ".flowchart-editor", "untitled" + SUFFIX);
+    }
+
+    /**
+     * @return 日志中是否有尚未保存到文档的记录。
+     */
+    public static boolean isDirty(Path journal) {
+        try {
+            return Files.isRegularFile(journal) && Files.size(journal) > 0;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * @return 已写入（或排队待写入后）的日志字节数，用于判断是否需要压缩。
+     */
+    public long size() {
+        return size;
+    }
+
+    /**
+     * 追加一批记录。写入在后台进行，每批写完后刷到磁盘。
+     */
+    public void append(List<String> records) {
+        if (records.isEmpty()) return;
+        StringBuilder sb = new StringBuilder();
+        for (String record : records) sb.append(record).append('\n');
+        byte[] bytes = sb.toString().getBytes(StandardCharsets.UTF_8);
+        size += bytes.length;
+        submit(() -> {
+            FileChannel ch = channel();
+            ByteBuffer buf = ByteBuffer.wrap(bytes);
+            while (buf.hasRemaining()) ch.write(buf);
+            ch.force(false);
+        });
+    }
+
+    /**
+     * 压缩：用一个检查点（完整的文档记录）替换整个日志。先写临时文件再原子替换，中途崩溃不会丢失旧日志。
+     */
+    public void checkpoint(List<String> records) {
+        StringBuilder sb = new StringBuilder(reset()).append('\n');
+        for (String record : records) sb.append(record).append('\n');
+        byte[] bytes = sb.toString().getBytes(StandardCharsets.UTF_8);
+        size = bytes.length;
+        submit(() -> {
+            closeChannel();
+            Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+            Files.write(tmp, bytes);
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            if (mark >= 0) mark = 0; // 检查点包含全部内容，保存完成后也要保留
+        });
+    }
+
+    /**
+     * 开始保存：此前提交的记录都包含在即将保存的快照中。
+     */
+    public void mark() {
+        submit(() -> mark = Files.exists(file) ? Files.size(file) : 0);
+    }
+
+    /**
+     * 保存成功：丢弃 mark() 之前的记录，保留保存开始后的修改。
+     * @param target 保存后的日志位置（另存为时随文档移动）
+     */
+    public void commitSave(Path target) {
+        submit(() -> {
+            closeChannel();
+            long keep = Math.max(0, mark);
+            mark = -1;
+            byte[] tail = new byte[0];
+            if (Files.exists(file)) {
+                try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+                    long length = ch.size() - keep;
+                    if (length > 0) {
+                        ByteBuffer buf = ByteBuffer.allocate((int) length);
+                        while (buf.hasRemaining() && ch.read(buf, keep + buf.position()) >= 0) { }
+                        tail = buf.array();
+                    }
+                }
+            }
+            if (tail.length == 0) {
+                Files.deleteIfExists(target);
+            } else {
+                Path tmp = target.resolveSibling(target.getFileName() + ".tmp");
+                Files.write(tmp, tail);
+                Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            }
+            if (!target.equals(file)) Files.deleteIfExists(file);
+            file = target;
+            size = tail.length;
+        });
+    }
+
+    /**
+     * 删除日志（放弃未保存的修改，例如新建文档时）。
+     */
+    public void discard() {
+        size = 0;
+        submit(() -> {
+            closeChannel();
+            Files.deleteIfExists(file);
+        });
+    }
+
+    /**
+     * 等待已提交的写入完成并停止写线程。
+     */
+    public void close() {
+        submit(this::closeChannel);
+        writer.shutdown();
+        try {
+            writer.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private interface IoTask {
+        void run() throws IOException;
+    }
+
+    // 写日志失败不影响编辑，只输出错误
+    private void submit(IoTask task) {
+        if (writer.isShutdown()) return;
+        writer.execute(() -> {
+            try {
+                task.run();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        });
+    }
+
+    private FileChannel channel() throws IOException {
+        if (channel == null) {
+            if (file.getParent() != null) Files.createDirectories(file.getParent());
+            channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.APPEND);
+        }
+        return channel;
+    }
+
+    private void closeChannel() throws IOException {
+        if (channel != null) {
+            channel.close();
+            channel = null;
+        }
+    }
+
+    // ---- 记录 ----
+
+    public static String shapeRecord(FlowchartShape shape) {
+        return shape.toJsonObject().put("op", "shape").toString();
+    }
+
+    public static String lineRecord(ConnectionLine line) {
+        return line.toJsonObject().put("op", "line").toString();
+    }
+
+    public static String removeShapeRecord(long id) {
+        return "{\"op\":\"removeShape\",\"id\":" + id + "}";
+    }
+
+    public static String removeLineRecord(long id) {
+        return "{\"op\":\"removeLine\",\"id\":" + id + "}";
+    }
+
+    private static String reset() {
+        return "{\"op\":\"reset\"}";
+    }
+
+    /**
+     * 把日志重放到读取到的文档内容上。最后一行不完整（写入时崩溃）时忽略该行及之后的内容。
+     * @return 重放后的文档内容；日志不存在时原样返回 base。
+     */
+    public static FlowchartData replay(Path journal, FlowchartData base) throws IOException {
+        if (!Files.isRegularFile(journal)) return base;
+        // 以 ID 为键保持原有顺序，连接线统一以 JSON 形式在最后重新解析
+        Map<Long, FlowchartShape> shapes = new LinkedHashMap<>();
+        Map<Long, JSONObject> lines = new LinkedHashMap<>();
+        for (FlowchartShape shape : base.getShapes()) shapes.put(shape.getId(), shape);
+        for (ConnectionLine line : base.getConnections()) {
+            line.detach();
+            lines.put(line.getId(), line.toJsonObject());
+        }
+        try (BufferedReader reader = Files.newBufferedReader(journal, StandardCharsets.UTF_8)) {
+            String text;
+            while ((text = reader.readLine()) != null) {
+                if (text.isBlank()) continue;
+                JSONObject record;
+                try {
+                    record = new JSONObject(text);
+                } catch (JSONException e) {
+                    break; // 崩溃时未写完的记录
+                }
+                switch (record.optString("op")) {
+                    case "reset":
+                        shapes.clear();
+                        lines.clear();
+                        break;
+                    case "shape": {
+                        FlowchartShape shape = FlowchartShape.fromJsonObject(record);
+                        if (shape != null) shapes.put(shape.getId(), shape);
+                        break;
+                    }
+                    case "removeShape":
+                        shapes.remove(record.getLong("id"));
+                        break;
+                    case "line":
+                        lines.put(record.getLong("id"), record);
+                        break;
+                    case "removeLine":
+                        lines.remove(record.getLong("id"));
+                        break;
+                    default:
+                        // 未知记录跳过
+                }
+            }
+        }
+
+        FlowchartDocument document = new FlowchartDocument();
+        List<FlowchartShape> shapeList = new ArrayList<>(shapes.size());
+        for (FlowchartShape shape : shapes.values()) {
+            shape.getIncomingLines().clear();
+            shape.getOutgoingLines().clear();
+            document.register(shape);
+            shapeList.add(shape);
+        }
+        List<ConnectionLine> lineList = new ArrayList<>(lines.size());
+        for (JSONObject json : lines.values()) {
+            ConnectionLine line = ConnectionLine.fromJsonObject(json, document, shapeList);
+            if (line == null || (json.optLong("endShapeId", -1) >= 0 && line.getEndPoint() == null)) {
+                continue; // 端点图形已被删除
+            }
+            document.registerLine(line);
+            line.attach();
+            lineList.add(line);
+        }
+        return new FlowchartData(shapeList, lineList);
+    }
+}
@@ -0,0 +1,68 @@
+package editor.io;
+
+import editor.model.ConnectionLine;
+import editor.model.FlowchartShape;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collection;
+import java.util.function.Consumer;
+
+/**
+ * JSON 格式（.json），保存时使用紧凑排版。
+ */
+public class JsonFlowchartCodec implements FlowchartCodec {
+    private static final long MAX_PARALLEL_SIZE = 256L * 1024 * 1024; // 并行解析的文件大小上限
+    private static final int HEAP_FACTOR = 8;                          // 剩余堆空间至少为文件大小的倍数
+
+    @Override
+    public String getExtension() {
+        return "json";
+    }
+
+    @Override
+    public String getDescription() {
+        return "JSON 流程图";
+    }
+
+    @Override
+    public FlowchartData read(Path file) throws IOException {
+        return read(file, ProgressListener.NONE);
+    }
+
+    @Override
+    public FlowchartData read(Path file, ProgressListener listener) throws IOException {
+        return JsonFlowchartReader.load(file, listener);
+    }
+
+    /**
+     * 多核且文件不大时使用 ParallelJsonFlowchartReader 并行解析，其余情况顺序流式读取。
+     * 并行解析要把整个文件读入堆内存，所以限制文件大小，并要求剩余的堆空间足够。
+     */
+    @Override
+    public FlowchartData readForOpen(Path file, ProgressListener listener) throws IOException {
+        if (Runtime.getRuntime().availableProcessors() > 1 && fitsInHeap(Files.size(file))) {
+            return ParallelJsonFlowchartReader.load(file, listener);
+        }
+        return JsonFlowchartReader.load(file, listener);
+    }
+
+    // 文件内容之外还要为解析出的模型留出空间（模型通常比文件大数倍）
+    private static boolean fitsInHeap(long size) {
+        Runtime runtime = Runtime.getRuntime();
+        long free = runtime.maxMemory() - (runtime.totalMemory() - runtime.freeMemory());
+        return size <= MAX_PARALLEL_SIZE && size <= free / HEAP_FACTOR;
+    }
+
+    @Override
+    public void readChunks(Path file, ProgressListener listener, Consumer<FlowchartData> chunkListener)
+            throws IOException {
+        JsonFlowchartReader.loadChunks(file, listener, chunkListener);
+    }
+
+    @Override
+    public void write(Path file, Collection<FlowchartShape> shapes, Collection<ConnectionLine> lines) throws IOException {
+        JsonFlowchartWriter.save(file, shapes, lines, true);
+    }
+}
@@ -0,0 +1,236 @@
+package editor.io;
+
+import editor.model.ConnectionLine;
+import editor.model.FlowchartDocument;
+import editor.model.FlowchartShape;
+import editor.model.StyleSection;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.json.JSONTokener;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * 流式读取流程图 JSON：只解析顶层结构，数组中的每条记录单独解析后立即创建图形或连接线，
+ * 不会把整个文件读成字符串或构造完整的 JSONObject。
+ * 缩进和紧凑两种排版都能读取；"connections" 出现在 "shapes" 之前的旧文件也能读取。
+ * 记录中引用的样式表 "styles" 必须出现在 "shapes" 和 "connections" 之前（保存时总是如此）。
+ */
+public class JsonFlowchartReader {
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final int FIRST_CHUNK = 500;
+    private static final int MAX_CHUNK = 20000;
+
+    private final JSONTokener tokener;
+    private final FlowchartDocument document = new FlowchartDocument(); // 解析连接线用的 ID 表
+    private final List<FlowchartShape> shapes = new ArrayList<>();
+    private final List<ConnectionLine> connections = new ArrayList<>();
+    private final List<JSONObject> pendingConnections = new ArrayList<>();
+    private boolean shapesRead = false;
+    private StyleSection styles = new StyleSection(); // 没有样式表时也用来缓存颜色解析结果
+    // 分块交付：每读够一块就交给 chunkListener，第一块较小以便尽快显示
+    private Consumer<FlowchartData> chunkListener;
+    private int chunkSize = FIRST_CHUNK;
+    private List<FlowchartShape> chunkShapes = new ArrayList<>();
+    private List<ConnectionLine> chunkLines = new ArrayList<>();
+
+    public JsonFlowchartReader(Reader in) {
+        this.tokener = new JSONTokener(in);
+    }
+
+    /**
+     * 从文件（UTF-8）读取，经带缓冲的 FileChannel 读入。
+     */
+    public static FlowchartData load(Path file) throws IOException {
+        return load(file, ProgressListener.NONE);
+    }
+
+    /**
+     * 从文件读取，并按已读入的字节数报告进度。
+     */
+    public static FlowchartData load(Path file, ProgressListener listener) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+             Reader reader = new BufferedReader(Channels.newReader(new ProgressChannel(channel, listener),
+                     StandardCharsets.UTF_8), BUFFER_SIZE)) {
+            return read(reader, null);
+        }
+    }
+
+    /**
+     * 分块读取文件：图形和连接线每凑够一块就交给 chunkListener（在读取线程上调用），
+     * 块的大小从 500 个对象开始逐块加倍。连接线在两端图形都读到之后才交付，
+     * 交付时尚未登记到两端图形的入线/出线上，接收方需要调用 ConnectionLine.attach()。
+     */
+    public static void loadChunks(Path file, ProgressListener listener, Consumer<FlowchartData> chunkListener)
+            throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+             Reader reader = new BufferedReader(Channels.newReader(new ProgressChannel(channel, listener),
+                     StandardCharsets.UTF_8), BUFFER_SIZE)) {
+            read(reader, chunkListener);
+        }
+    }
+
+    /**
+     * 从已打开的字符流读取，chunkListener 不为 null 时分块交付（见 loadChunks）。
+     */
+    static FlowchartData read(Reader reader, Consumer<FlowchartData> chunkListener) throws IOException {
+        JsonFlowchartReader jsonReader = new JsonFlowchartReader(reader);
+        jsonReader.chunkListener = chunkListener;
+        return jsonReader.read();
+    }
+
+    /**
+     * @throws IOException 读取失败或文件格式错误。
+     */
+    public FlowchartData read() throws IOException {
+        try {
+            readDocument();
+        } catch (JSONException | IllegalArgumentException e) {
+            throw new IOException("流程图文件格式错误: " + e.getMessage(), e);
+        }
+        emitChunk();
+        return new FlowchartData(shapes, connections);
+    }
+
+    private void emitChunk() {
+        if (chunkListener == null || (chunkShapes.isEmpty() && chunkLines.isEmpty())) return;
+        FlowchartData chunk = new FlowchartData(chunkShapes, chunkLines);
+        chunkShapes = new ArrayList<>();
+        chunkLines = new ArrayList<>();
+        chunkSize = Math.min(chunkSize * 2, MAX_CHUNK);
+        chunkListener.accept(chunk);
+    }
+
+    private void addToChunk(FlowchartShape shape, ConnectionLine line) {
+        if (chunkListener == null) return;
+        if (shape != null) chunkShapes.add(shape);
+        if (line != null) chunkLines.add(line);
+        if (chunkShapes.size() + chunkLines.size() >= chunkSize) emitChunk();
+    }
+
+    private void readDocument() {
+        expect('{');
+        if (tokener.nextClean() != '}') {
+            tokener.back();
+            while (true) {
+                Object key = tokener.nextValue();
+                if (!(key instanceof String)) throw tokener.syntaxError("应为字段名");
+                expect(':');
+                switch ((String) key) {
+                    case "styles": {
+                        Object value = tokener.nextValue();
+                        if (!(value instanceof JSONObject)) throw tokener.syntaxError("styles 应为对象");
+                        styles = StyleSection.fromJsonObject((JSONObject) value);
+                        break;
+                    }
+                    case "shapes":
+                        readArray(this::addShape);
+                        shapesRead = true;
+                        pendingConnections.forEach(this::addConnection);
+                        pendingConnections.clear();
+                        break;
+                    case "connections":
+                        readArray(json -> {
+                            if (shapesRead) addConnection(json);
+                            else pendingConnections.add(json);
+                        });
+                        break;
+                    default:
+                        tokener.nextValue(); // 未知字段跳过
+                }
+                char c = tokener.nextClean();
+                if (c == '}') break;
+                if (c != ',') throw tokener.syntaxError("应为 ',' 或 '}'");
+            }
+        }
+        pendingConnections.forEach(this::addConnection); // 文件中没有 "shapes" 时连线都无法解析
+        pendingConnections.clear();
+    }
+
+    // 逐条读取数组中的对象
+    private void readArray(Consumer<JSONObject> handler) {
+        expect('[');
+        if (tokener.nextClean() == ']') return;
+        tokener.back();
+        while (true) {
+            Object value = tokener.nextValue();
+            if (!(value instanceof JSONObject)) throw tokener.syntaxError("数组元素应为对象");
+            handler.accept((JSONObject) value);
+            char c = tokener.nextClean();
+            if (c == ']') return;
+            if (c != ',') throw tokener.syntaxError("应为 ',' 或 ']'");
+        }
+    }
+
+    private void addShape(JSONObject json) {
+        FlowchartShape shape = FlowchartShape.fromJsonObject(json, styles);
+        if (shape == null) return;
+        document.register(shape);
+        shapes.add(shape);
+        addToChunk(shape, null);
+    }
+
+    private void addConnection(JSONObject json) {
+        ConnectionLine line = ConnectionLine.fromJsonObject(json, document, shapes, styles);
+        if (line == null) return; // 端点图形不存在
+        document.registerLine(line);
+        connections.add(line);
+        // 维护入线/出线。分块交付时两端图形可能已经显示在画布上，由接收方在 FX 线程上登记
+        if (chunkListener == null) line.attach();
+        addToChunk(null, line);
+    }
+
+    // 统计读入字节数的通道，每读入约 1MB 报告一次进度
+    static class ProgressChannel implements ReadableByteChannel {
+        private static final long STEP = 1 << 20;
+        private final FileChannel channel;
+        private final ProgressListener listener;
+        private final long total;
+        private long done;
+        private long reported;
+
+        ProgressChannel(FileChannel channel, ProgressListener listener) throws IOException {
+            this.channel = channel;
+            this.listener = listener;
+            this.total = channel.size();
+        }
+
+        @Override
+        public int read(ByteBuffer dst) throws IOException {
+            int n = channel.read(dst);
+            if (n > 0) done += n;
+            if (done - reported >= STEP || (n < 0 && reported < done)) {
+                reported = done;
+                listener.progress(done, total);
+            }
+            return n;
+        }
+
+        @Override
+        public boolean isOpen() {
+            return channel.isOpen();
+        }
+
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
+    }
+
+    private void expect(char expected) {
+        char c = tokener.nextClean();
+        if (c != expected) throw tokener.syntaxError("应为 '" + expected + "'");
+    }
+}
@@ -0,0 +1,240 @@
+package editor.io;
+
+import editor.model.ConnectionLine;
+import editor.model.ConnectionPoint;
+import editor.model.FlowColor;
+import editor.model.FlowchartShape;
+import editor.model.LineStyle;
+import editor.model.StyleSection;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.Collection;
+
+/**
+ * 流式写出流程图 JSON：逐个图形、逐条连接线直接把字段写入输出流，
+ * 不构造 JSONObject，也不生成完整的字符串。
+ * 先写出样式表 "styles"（见 StyleSection），记录中的颜色、重复的文字和连接线样式写为表中的序号，
+ * 其余字段与 toJsonObject() 相同。
+ */
+public class JsonFlowchartWriter {
+    private static final int INDENT = 4;
+    private static final int FLUSH_THRESHOLD = 16 * 1024;
+
+    private final Writer out;
+    private final boolean compact;
+    private final StringBuilder buf = new StringBuilder(FLUSH_THRESHOLD + 1024);
+    private StyleSection styles;
+
+    /**
+     * @param compact true 时不换行不缩进，文件更小；false 时与原来 toString(4) 的排版一致。
+     */
+    public JsonFlowchartWriter(Writer out, boolean compact) {
+        this.out = out;
+        this.compact = compact;
+    }
+
+    /**
+     * 保存到文件（UTF-8），按块写入临时文件的 FileChannel，写完后原子替换原文件。
+     */
+    public static void save(Path file, Collection<FlowchartShape> shapes, Collection<ConnectionLine> lines,
+                            boolean compact) throws IOException {
+        // write() 结束时已 flush，通道由 AtomicFiles 关闭
+        AtomicFiles.write(file, channel -> new JsonFlowchartWriter(
+                Channels.newWriter(channel, StandardCharsets.UTF_8), compact).write(shapes, lines));
+    }
+
+    public void write(Collection<FlowchartShape> shapes, Collection<ConnectionLine> lines) throws IOException {
+        styles = StyleSection.collect(shapes, lines);
+        buf.append('{');
+        newLine(1);
+        writeStyles();
+        buf.append(',');
+        newLine(1);
+        buf.append(compact ? "\"shapes\":[" : "\"shapes\": [");
+        boolean first = true;
+        for (FlowchartShape shape : shapes) {
+            if (!first) buf.append(',');
+            first = false;
+            newLine(2);
+            writeShape(shape);
+            flushIfFull();
+        }
+        if (!first) newLine(1);
+        buf.append("],");
+        newLine(1);
+        buf.append(compact ? "\"connections\":[" : "\"connections\": [");
+        first = true;
+        for (ConnectionLine line : lines) {
+            if (line.getStartPoint() == null) continue; // 未完成的临时连线
+            if (!first) buf.append(',');
+            first = false;
+            newLine(2);
+            writeLine(line);
+            flushIfFull();
+        }
+        if (!first) newLine(1);
+        buf.append(']');
+        newLine(0);
+        buf.append('}');
+        out.append(buf);
+        buf.setLength(0);
+        out.flush();
+    }
+
+    private void writeStyles() throws IOException {
+        buf.append(compact ? "\"styles\":{" : "\"styles\": {");
+        newLine(2);
+        buf.append(compact ? "\"colors\":[" : "\"colors\": [");
+        boolean first = true;
+        for (FlowColor color : styles.getColors()) {
+            if (!first) buf.append(compact ? "," : ", ");
+            first = false;
+            string(color.toString());
+        }
+        buf.append("],");
+        newLine(2);
+        buf.append(compact ? "\"strings\":[" : "\"strings\": [");
+        first = true;
+        for (String s : styles.getStrings()) {
+            if (!first) buf.append(',');
+            first = false;
+            newLine(3);
+            string(s);
+            flushIfFull();
+        }
+        if (!first) newLine(2);
+        buf.append("],");
+        newLine(2);
+        buf.append(compact ? "\"lineStyles\":[" : "\"lineStyles\": [");
+        first = true;
+        for (LineStyle style : styles.getLineStyles()) {
+            if (!first) buf.append(',');
+            first = false;
+            newLine(3);
+            buf.append(compact ? "{\"color\":" : "{\"color\": ").append(styles.indexOf(style.getColor()));
+            buf.append(compact ? ",\"width\":" : ", \"width\": ");
+            number(style.getStrokeWidth());
+            buf.append('}');
+        }
+        if (!first) newLine(2);
+        buf.append(']');
+        newLine(1);
+        buf.append('}');
+    }
+
+    private void writeShape(FlowchartShape shape) {
+        buf.append('{');
+        field("id", true);
+        buf.append(shape.getId());
+        field("type", false);
+        string(shape.getType());
+        field("x", false);
+        number(shape.getX());
+        field("y", false);
+        number(shape.getY());
+        field("width", false);
+        number(shape.getWidth());
+        field("height", false);
+        number(shape.getHeight());
+        field("label", false);
+        stringRef(shape.getLabel());
+        field("color", false);
+        buf.append(styles.indexOf(shape.getColor()));
+        field("link", false);
+        stringRef(shape.getLink());
+        newLine(2);
+        buf.append('}');
+    }
+
+    private void writeLine(ConnectionLine line) {
+        ConnectionPoint start = line.getStartPoint();
+        ConnectionPoint end = line.getEndPoint();
+        buf.append('{');
+        field("id", true);
+        buf.append(line.getId());
+        field("startShapeId", false);
+        buf.append(start.getParentShape().getId());
+        field("startPoint", false);
+        buf.append(start.getIndex());
+        field("endShapeId", false);
+        buf.append(end != null ? end.getParentShape().getId() : -1);
+        field("endPoint", false);
+        buf.append(end != null ? end.getIndex() : -1);
+        field("lineType", false);
+        string(line.getLineType().toString());
+        field("style", false);
+        buf.append(styles.indexOf(line.getStyle()));
+        field("arrowEnabled", false);
+        buf.append(line.isArrowEnabled());
+        newLine(2);
+        buf.append('}');
+    }
+
+    // 记录先拼在缓冲区里，攒够一块再写出，避免逐字符调用 Writer
+    private void flushIfFull() throws IOException {
+        if (buf.length() < FLUSH_THRESHOLD) return;
+        out.append(buf);
+        buf.setLength(0);
+    }
+
+    // 写出记录内的字段名（记录位于第 2 层，字段位于第 3 层）
+    private void field(String name, boolean first) {
+        if (!first) buf.append(',');
+        newLine(3);
+        buf.append('"').append(name).append(compact ? "\":" : "\": ");
+    }
+
+    // 整数值不带小数部分，与 JSONObject 的输出一致
+    private void number(double value) {
+        if (value == Math.rint(value) && Math.abs(value) < 1e15) {
+            buf.append((long) value);
+        } else {
+            buf.append(value);
+        }
+    }
+
+    // 表中有的字符串写序号，否则写字符串本身
+    private void stringRef(String value) {
+        int index = styles.indexOf(value);
+        if (index >= 0) {
+            buf.append(index);
+        } else {
+            string(value);
+        }
+    }
+
+    // 按 JSON 规则转义字符串
+    private void string(String value) {
+        buf.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"': buf.append("\\\""); break;
+                case '\\': buf.append("\\\\"); break;
+                case '\n': buf.append("\\n"); break;
+                case '\r': buf.append("\\r"); break;
+                case '\t': buf.append("\\t"); break;
+                case '\b': buf.append("\\b"); break;
+                case '\f': buf.append("\\f"); break;
+                default:
+                    if (c < 0x20 || c == '\u2028' || c == '\u2029') {
+                        buf.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        buf.append(c);
+                    }
+            }
+        }
+        buf.append('"');
+    }
+
+    // 非紧凑模式下换行并缩进到指定层级
+    private void newLine(int level) {
+        if (compact) return;
+        buf.append('\n');
+        for (int i = 0; i < level * INDENT; i++) buf.append(' ');
+    }
+}
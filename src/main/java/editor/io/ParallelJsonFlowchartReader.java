@@ -0,0 +1,264 @@
+package editor.io;
+
+import editor.model.ConnectionLine;
+import editor.model.FlowchartDocument;
+import editor.model.FlowchartShape;
+import editor.model.StyleSection;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 多核并行读取流程图 JSON。
+ * <ol>
+ *   <li>把文件一次读入堆内存（不做内存映射，以免文件在回收前一直被锁住），顺序扫描一遍字节，找出 "shapes" 和 "connections" 数组中每条记录的起止位置
+ *       以及样式表 "styles" 的位置；</li>
+ *   <li>用 fork/join 并行解析图形记录并创建图形（各条记录互不依赖）；</li>
+ *   <li>按文件顺序登记图形 ID 后，再并行解析连接线记录，此时 ID 表只读；</li>
+ *   <li>最后顺序登记连接线并挂到两端图形上。</li>
+ * </ol>
+ * 结果与 JsonFlowchartReader 相同。文件超过 2GB 时退回顺序读取。
+ * 只用于打开文档（见 JsonFlowchartCodec.readForOpen），其他读取都用顺序流式的 JsonFlowchartReader。
+ */
+public class ParallelJsonFlowchartReader {
+    private static final int LEAF_SIZE = 1024; // 每个子任务解析的记录数
+
+    private final ForkJoinPool pool;
+    private final ProgressListener listener;
+
+    public ParallelJsonFlowchartReader(ForkJoinPool pool, ProgressListener listener) {
+        this.pool = pool;
+        this.listener = listener;
+    }
+
+    /**
+     * 使用公共 fork/join 线程池读取文件。
+     */
+    public static FlowchartData load(Path file, ProgressListener listener) throws IOException {
+        return new ParallelJsonFlowchartReader(ForkJoinPool.commonPool(), listener).read(file);
+    }
+
+    public FlowchartData read(Path file) throws IOException {
+        if (Files.size(file) > Integer.MAX_VALUE - 8) return JsonFlowchartReader.load(file, listener);
+        ByteBuffer bytes = ByteBuffer.wrap(Files.readAllBytes(file));
+        RecordScanner scanner = new RecordScanner(bytes);
+        try {
+            scanner.scan();
+        } catch (IllegalStateException e) {
+            throw new IOException("流程图文件格式错误: " + e.getMessage(), e);
+        }
+        StyleSection styles = new StyleSection();
+        if (scanner.stylesEnd > 0) {
+            try {
+                styles = StyleSection.fromJsonObject(new JSONObject(slice(bytes, scanner.stylesStart, scanner.stylesEnd)));
+            } catch (JSONException | IllegalArgumentException e) {
+                throw new IOException("流程图文件格式错误: " + e.getMessage(), e);
+            }
+        }
+        StyleSection fileStyles = styles;
+        int shapeCount = scanner.shapes.size();
+        int lineCount = scanner.connections.size();
+        long total = (long) shapeCount + lineCount;
+        AtomicLong done = new AtomicLong();
+
+        // 第一阶段：并行创建图形
+        FlowchartShape[] parsedShapes = new FlowchartShape[shapeCount];
+        invoke(new ParseTask(bytes, scanner.shapes, 0, shapeCount, done, total,
+                (index, json) -> parsedShapes[index] = FlowchartShape.fromJsonObject(json, fileStyles)));
+        FlowchartDocument document = new FlowchartDocument();
+        List<FlowchartShape> shapes = new ArrayList<>(shapeCount);
+        for (FlowchartShape shape : parsedShapes) {
+            if (shape == null) continue;
+            document.register(shape);
+            shapes.add(shape);
+        }
+
+        // 第二阶段：ID 表已经固定，并行解析连接线
+        ConnectionLine[] parsedLines = new ConnectionLine[lineCount];
+        invoke(new ParseTask(bytes, scanner.connections, 0, lineCount, done, total,
+                (index, json) -> parsedLines[index] = ConnectionLine.fromJsonObject(json, document, shapes, fileStyles)));
+        List<ConnectionLine> lines = new ArrayList<>(lineCount);
+        for (ConnectionLine line : parsedLines) {
+            if (line == null) continue; // 端点图形不存在
+            document.registerLine(line);
+            line.attach();
+            lines.add(line);
+        }
+        listener.progress(total, total);
+        return new FlowchartData(shapes, lines);
+    }
+
+    private void invoke(ParseTask task) throws IOException {
+        try {
+            pool.invoke(task);
+        } catch (JSONException | IllegalArgumentException e) {
+            throw new IOException("流程图文件格式错误: " + e.getMessage(), e);
+        }
+    }
+
+    private static String slice(ByteBuffer bytes, int start, int end) {
+        byte[] buf = new byte[end - start];
+        bytes.duplicate().get(start, buf, 0, buf.length);
+        return new String(buf, StandardCharsets.UTF_8);
+    }
+
+    private interface RecordParser {
+        void parse(int index, JSONObject json);
+    }
+
+    // 解析 [from, to) 范围内的记录，超过 LEAF_SIZE 条时一分为二；任务不会被序列化
+    @SuppressWarnings("serial")
+    private class ParseTask extends RecursiveAction {
+        private final ByteBuffer bytes;
+        private final IntPairs ranges;
+        private final int from, to;
+        private final AtomicLong done;
+        private final long total;
+        private final RecordParser parser;
+
+        ParseTask(ByteBuffer bytes, IntPairs ranges, int from, int to, AtomicLong done, long total,
+                  RecordParser parser) {
+            this.bytes = bytes;
+            this.ranges = ranges;
+            this.from = from;
+            this.to = to;
+            this.done = done;
+            this.total = total;
+            this.parser = parser;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > LEAF_SIZE) {
+                int mid = (from + to) >>> 1;
+                invokeAll(new ParseTask(bytes, ranges, from, mid, done, total, parser),
+                        new ParseTask(bytes, ranges, mid, to, done, total, parser));
+                return;
+            }
+            ByteBuffer view = bytes.duplicate();
+            byte[] buf = new byte[256];
+            for (int i = from; i < to; i++) {
+                int start = ranges.first(i), length = ranges.second(i) - start;
+                if (buf.length < length) buf = new byte[Math.max(length, buf.length * 2)];
+                view.get(start, buf, 0, length);
+                parser.parse(i, new JSONObject(new String(buf, 0, length, StandardCharsets.UTF_8)));
+            }
+            listener.progress(done.addAndGet(to - from), total);
+        }
+    }
+
+    /**
+     * 顺序扫描整个文件的字节，记录顶层 "shapes"、"connections" 数组中每个对象的起止位置，
+     * 以及顶层 "styles" 对象的起止位置。
+     * UTF-8 的多字节字符不包含 ASCII 字节，所以按字节识别结构字符是安全的。
+     */
+    private static class RecordScanner {
+        private final ByteBuffer bytes;
+        final IntPairs shapes = new IntPairs();
+        final IntPairs connections = new IntPairs();
+        int stylesStart = -1, stylesEnd = -1;
+
+        RecordScanner(ByteBuffer bytes) {
+            this.bytes = bytes;
+        }
+
+        void scan() {
+            int depth = 0;
+            int keyStart = -1, keyEnd = -1; // 最近一个第 1 层字符串
+            IntPairs array = null;          // 当前所在的记录数组
+            int recordStart = -1;
+            boolean inString = false, escaped = false;
+            int stringStart = -1;
+            int limit = bytes.limit();
+            for (int i = 0; i < limit; i++) {
+                byte b = bytes.get(i);
+                if (inString) {
+                    if (escaped) {
+                        escaped = false;
+                    } else if (b == '\\') {
+                        escaped = true;
+                    } else if (b == '"') {
+                        inString = false;
+                        if (depth == 1) {
+                            keyStart = stringStart;
+                            keyEnd = i;
+                        }
+                    }
+                    continue;
+                }
+                switch (b) {
+                    case '"':
+                        inString = true;
+                        stringStart = i + 1;
+                        break;
+                    case '{':
+                    case '[':
+                        depth++;
+                        if (depth == 2 && b == '{' && keyEquals(keyStart, keyEnd, "styles")) {
+                            stylesStart = i;
+                        } else if (depth == 2 && b == '[') {
+                            array = keyEquals(keyStart, keyEnd, "shapes") ? shapes
+                                    : keyEquals(keyStart, keyEnd, "connections") ? connections : null;
+                        } else if (depth == 3 && array != null && b == '{') {
+                            recordStart = i;
+                        }
+                        break;
+                    case '}':
+                    case ']':
+                        if (depth == 3 && array != null && b == '}') array.add(recordStart, i + 1);
+                        if (depth == 2 && b == '}' && stylesStart >= 0 && stylesEnd < 0) stylesEnd = i + 1;
+                        if (depth == 2) array = null;
+                        depth--;
+                        if (depth < 0) throw new IllegalStateException("括号不匹配，位置 " + i);
+                        break;
+                    default:
+                }
+            }
+            if (depth != 0 || inString) throw new IllegalStateException("文件不完整");
+        }
+
+        private boolean keyEquals(int start, int end, String key) {
+            if (start < 0 || end - start != key.length()) return false;
+            for (int i = 0; i < key.length(); i++) {
+                if (bytes.get(start + i) != key.charAt(i)) return false;
+            }
+            return true;
+        }
+    }
+
+    // 成对存放的 int（记录的起止位置），避免为每条记录创建对象
+    private static class IntPairs {
+        private int[] data = new int[1024];
+        private int size;
+
+        void add(int first, int second) {
+            if (size * 2 + 2 > data.length) data = Arrays.copyOf(data, data.length * 2);
+            data[size * 2] = first;
+            data[size * 2 + 1] = second;
+            size++;
+        }
+
+        int first(int index) {
+            return data[index * 2];
+        }
+
+        int second(int index) {
+            return data[index * 2 + 1];
+        }
+
+        int size() {
+            return size;
+        }
+    }
+}
@@ -0,0 +1,16 @@
+package editor.io;
+
+/**
+ * 读写进度回调，在执行读写的线程上调用。
+ * 回调中抛出的运行时异常（如 CancellationException）会中止读写。
+ */
+@FunctionalInterface
+public interface ProgressListener {
+    ProgressListener NONE = (done, total) -> { };
+
+    /**
+     * @param done  已完成的工作量
+     * @param total 总工作量（单位由格式决定，JSON 为字节数，二进制为记录数）
+     */
+    void progress(long done, long total);
+}
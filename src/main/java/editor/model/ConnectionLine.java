@@ -1,75 +1,50 @@
 package editor.model;
 
-import javafx.scene.shape.Line;
-import javafx.scene.paint.Color;
-import javafx.scene.shape.Polygon;
-import javafx.scene.transform.Rotate;
-import javafx.scene.shape.Polyline;
-import javafx.scene.shape.QuadCurve;
-import javafx.scene.shape.Shape;
 import org.json.JSONObject;
 import java.util.List;
 
+/**
+ * 连接两个连接点的连接线模型。几何形状由线型和两端位置决定（见 getPathPoints），
+ * 绘制由 editor.ui 中的渲染器完成。
+ */
 public class ConnectionLine {
-    private Shape line; // 可为Line、Polyline、QuadCurve
-    private final Polygon arrow;
+    public static final double ARROW_SIZE = 10.0;
+
+    private long id; // 文档内的稳定 ID，0 表示尚未分配（见 FlowchartDocument）
     private ConnectionPoint startPoint;
     private ConnectionPoint endPoint;
     private Double tempEndX = null, tempEndY = null;
-    private static final double ARROW_SIZE = 10.0;
 
     public enum LineType { STRAIGHT, POLYLINE, CURVE }
     private LineType lineType = LineType.STRAIGHT;
-    private Color color = Color.BLACK;
-    private double strokeWidth = 2.0;
+    private LineStyle style = LineStyle.DEFAULT; // 颜色和线宽，相同样式的连接线共用实例
     private boolean arrowEnabled = true;
     private boolean selected = false;
-
-    public ConnectionLine() {
-        // 默认直线
-        line = new Line();
-        line.setStroke(color);
-        line.setStrokeWidth(strokeWidth);
-        // 创建箭头
-        arrow = new Polygon();
-        arrow.getPoints().addAll(
-            0.0, 0.0,
-            -ARROW_SIZE, -ARROW_SIZE/2,
-            -ARROW_SIZE, ARROW_SIZE/2
-        );
-        arrow.setFill(color);
-        arrow.setStroke(color);
-        arrow.setStrokeWidth(1.0);
-    }
+    private ModelListener listener; // 画布注册的变更监听器
 
     public void setLineType(LineType type) {
         if (this.lineType == type) return;
         this.lineType = type;
-        // 切换线型
-        Shape oldLine = this.line;
-        if (type == LineType.STRAIGHT) {
-            this.line = new Line();
-        } else if (type == LineType.POLYLINE) {
-            Polyline poly = new Polyline();
-            poly.setFill(Color.TRANSPARENT);
-            this.line = poly;
-        } else {
-            QuadCurve curve = new QuadCurve();
-            curve.setFill(Color.TRANSPARENT);
-            this.line = curve;
-        }
-        // 继承样式
-        this.line.setStroke(color);
-        this.line.setStrokeWidth(strokeWidth);
-        // 保持选中高亮
-        if (selected) {
-            this.line.setStroke(Color.DODGERBLUE);
-            this.line.setStrokeWidth(strokeWidth + 2);
-        }
-        updatePosition();
+        fireChanged();
     }
     public LineType getLineType() { return lineType; }
 
+    public long getId() { return id; }
+
+    /**
+     * 设置 ID。一般由 FlowchartDocument 在登记时调用。
+     */
+    public void setId(long id) { this.id = id; }
+
+    public void setModelListener(ModelListener listener) {
+        this.listener = listener;
+    }
+
+    // 通知监听器本连接线已变化
+    private void fireChanged() {
+        if (listener != null) listener.lineChanged(this);
+    }
+
     public void setStartPoint(ConnectionPoint point) {
         this.startPoint = point;
         updatePosition();
@@ -87,13 +62,40 @@ public class ConnectionLine {
         updatePosition();
     }
 
+    /**
+     * 两端所属图形移动后调用，通知监听器重新计算几何形状。
+     */
     public void updatePosition() {
         if (startPoint == null) return;
-        double sx = startPoint.getX(), sy = startPoint.getY();
+        fireChanged();
+    }
+
+    /**
+     * @return 是否需要在终点处画箭头。
+     */
+    public boolean isArrowVisible() {
+        return arrowEnabled && (endPoint != null || (tempEndX != null && tempEndY != null));
+    }
+
+    /**
+     * 按当前线型计算连接线经过的关键点，格式为 [x0, y0, x1, y1, ...]。
+     * 直线返回起点和终点，折线返回四个拐点，曲线返回起点、控制点和终点。
+     */
+    public double[] getPathPoints() {
+        return getPathPoints(0, 0, 0, 0);
+    }
+
+    /**
+     * 假设起点、终点所属图形分别平移 (startDx, startDy)、(endDx, endDy) 后的关键点，
+     * 用于拖动过程中预览连接线而不修改模型。
+     */
+    public double[] getPathPoints(double startDx, double startDy, double endDx, double endDy) {
+        if (startPoint == null) return new double[0];
+        double sx = startPoint.getX() + startDx, sy = startPoint.getY() + startDy;
         double ex, ey;
         if (endPoint != null) {
-            ex = endPoint.getX();
-            ey = endPoint.getY();
+            ex = endPoint.getX() + endDx;
+            ey = endPoint.getY() + endDy;
         } else if (tempEndX != null && tempEndY != null) {
             ex = tempEndX;
             ey = tempEndY;
@@ -101,109 +103,137 @@ public class ConnectionLine {
             ex = sx;
             ey = sy;
         }
-        if (lineType == LineType.STRAIGHT && line instanceof Line) {
-            Line l = (Line) line;
-            l.setStartX(sx);
-            l.setStartY(sy);
-            l.setEndX(ex);
-            l.setEndY(ey);
-        } else if (lineType == LineType.POLYLINE && line instanceof Polyline) {
-            Polyline poly = (Polyline)line;
-            poly.getPoints().clear();
+        if (lineType == LineType.POLYLINE) {
             double mx = (sx + ex) / 2;
-            poly.getPoints().addAll(sx, sy, mx, sy, mx, ey, ex, ey);
-        } else if (lineType == LineType.CURVE && line instanceof QuadCurve) {
-            QuadCurve curve = (QuadCurve)line;
-            curve.setStartX(sx);
-            curve.setStartY(sy);
+            return new double[] { sx, sy, mx, sy, mx, ey, ex, ey };
+        } else if (lineType == LineType.CURVE) {
             double ctrlX = (sx + ex) / 2;
             double ctrlY = Math.min(sy, ey) - 40;
-            curve.setControlX(ctrlX);
-            curve.setControlY(ctrlY);
-            curve.setEndX(ex);
-            curve.setEndY(ey);
-        }
-        // 箭头
-        if ((endPoint != null || (tempEndX != null && tempEndY != null)) && arrowEnabled) {
-            double angle = Math.atan2(ey - sy, ex - sx) * 180 / Math.PI;
-            arrow.setTranslateX(ex);
-            arrow.setTranslateY(ey);
-            arrow.setRotate(angle);
+            return new double[] { sx, sy, ctrlX, ctrlY, ex, ey };
         }
+        return new double[] { sx, sy, ex, ey };
+    }
+
+    /**
+     * 计算终点处箭头三角形的三个顶点 [x0, y0, x1, y1, x2, y2]，方向由起点指向终点。
+     * @param p getPathPoints() 的结果
+     */
+    public static double[] arrowHead(double[] p) {
+        double ex = p[p.length - 2], ey = p[p.length - 1];
+        double angle = Math.atan2(ey - p[1], ex - p[0]);
+        double cos = Math.cos(angle), sin = Math.sin(angle);
+        double half = ARROW_SIZE / 2;
+        return new double[] {
+            ex, ey,
+            ex - ARROW_SIZE * cos + half * sin, ey - ARROW_SIZE * sin - half * cos,
+            ex - ARROW_SIZE * cos - half * sin, ey - ARROW_SIZE * sin + half * cos
+        };
+    }
+
+    /**
+     * 把本连接线登记到两端图形的出线/入线列表（读取文件后使用）。
+     */
+    public void attach() {
+        if (startPoint != null) startPoint.getParentShape().addOutgoingLine(this);
+        if (endPoint != null) endPoint.getParentShape().addIncomingLine(this);
+    }
+
+    /**
+     * 从两端图形的出线/入线列表中移除本连接线。
+     */
+    public void detach() {
+        if (startPoint != null) startPoint.getParentShape().removeOutgoingLine(this);
+        if (endPoint != null) endPoint.getParentShape().removeIncomingLine(this);
     }
 
-    public Shape getLine() { return line; }
-    public Polygon getArrow() { return arrow; }
     public ConnectionPoint getStartPoint() { return startPoint; }
     public ConnectionPoint getEndPoint() { return endPoint; }
-    public void setColor(Color color) {
-        this.color = color;
-        line.setStroke(color);
-        arrow.setFill(color);
-        arrow.setStroke(color);
+    public void setStyle(LineStyle style) {
+        this.style = style;
+        fireChanged();
+    }
+    public LineStyle getStyle() { return style; }
+    public void setColor(FlowColor color) {
+        setStyle(style.withColor(color));
     }
-    public Color getColor() { return color; }
+    public FlowColor getColor() { return style.getColor(); }
     public void setStrokeWidth(double width) {
-        this.strokeWidth = width;
-        line.setStrokeWidth(width);
-        arrow.setStrokeWidth(width);
+        setStyle(style.withStrokeWidth(width));
+    }
+    public double getStrokeWidth() { return style.getStrokeWidth(); }
+
+    void internStyles(StyleTable styles) {
+        style = styles.intern(style);
     }
-    public double getStrokeWidth() { return strokeWidth; }
     public void setArrowEnabled(boolean enabled) {
         this.arrowEnabled = enabled;
-        arrow.setVisible(enabled);
+        fireChanged();
     }
     public boolean isArrowEnabled() { return arrowEnabled; }
     public void setSelected(boolean selected) {
         this.selected = selected;
-        if (selected) {
-            line.setStrokeWidth(strokeWidth + 2);
-            line.setStroke(Color.DODGERBLUE);
-            arrow.setStroke(Color.DODGERBLUE);
-            arrow.setFill(Color.DODGERBLUE);
-        } else {
-            line.setStrokeWidth(strokeWidth);
-            line.setStroke(color);
-            arrow.setStroke(color);
-            arrow.setFill(color);
-        }
+        fireChanged();
     }
     public boolean isSelected() { return selected; }
 
-    public JSONObject toJsonObject(List<FlowchartShape> shapes) {
+    /**
+     * 按 ID 引用两端连接点："startShapeId"/"endShapeId" 为图形 ID，
+     * "startPoint"/"endPoint" 为连接点在图形上的序号，与图形在列表中的位置无关。
+     */
+    public JSONObject toJsonObject() {
         JSONObject json = new JSONObject();
-        // 保存起点终点的图形索引和连接点索引
-        int startShapeIdx = shapes.indexOf(startPoint.getParentShape());
-        int startPointIdx = startPoint.getParentShape().getConnectionPoints().indexOf(startPoint);
-        int endShapeIdx = endPoint.getParentShape() != null ? shapes.indexOf(endPoint.getParentShape()) : -1;
-        int endPointIdx = endPoint.getParentShape() != null ? endPoint.getParentShape().getConnectionPoints().indexOf(endPoint) : -1;
-        json.put("startShape", startShapeIdx);
-        json.put("startPoint", startPointIdx);
-        json.put("endShape", endShapeIdx);
-        json.put("endPoint", endPointIdx);
+        json.put("id", id);
+        json.put("startShapeId", startPoint.getParentShape().getId());
+        json.put("startPoint", startPoint.getIndex());
+        json.put("endShapeId", endPoint != null ? endPoint.getParentShape().getId() : -1);
+        json.put("endPoint", endPoint != null ? endPoint.getIndex() : -1);
         json.put("lineType", lineType.toString());
-        json.put("color", color.toString());
-        json.put("strokeWidth", strokeWidth);
+        json.put("color", style.getColor().toString());
+        json.put("strokeWidth", style.getStrokeWidth());
         json.put("arrowEnabled", arrowEnabled);
         return json;
     }
 
-    public static ConnectionLine fromJsonObject(JSONObject json, List<FlowchartShape> shapes) {
-        int startShapeIdx = json.getInt("startShape");
-        int startPointIdx = json.getInt("startPoint");
-        int endShapeIdx = json.getInt("endShape");
-        int endPointIdx = json.getInt("endPoint");
-        FlowchartShape startShape = shapes.get(startShapeIdx);
-        ConnectionPoint startPoint = startShape.getConnectionPoints().get(startPointIdx);
-        FlowchartShape endShape = endShapeIdx >= 0 ? shapes.get(endShapeIdx) : null;
-        ConnectionPoint endPoint = (endShape != null && endPointIdx >= 0) ? endShape.getConnectionPoints().get(endPointIdx) : null;
+    /**
+     * 从 JSON 对象恢复连接线。有图形 ID 时通过文档的 ID 表查找两端，
+     * 旧文件只有 "startShape"/"endShape"（图形在列表中的位置）时按位置查找。
+     * @return 连接线，起点无法解析时返回 null。
+     */
+    public static ConnectionLine fromJsonObject(JSONObject json, FlowchartDocument document, List<FlowchartShape> shapes) {
+        return fromJsonObject(json, document, shapes, StyleSection.NONE);
+    }
+
+    /**
+     * 同上，"style" 为文件样式表中连接线样式的序号；没有 "style" 时读取 "color" 和 "strokeWidth"。
+     */
+    public static ConnectionLine fromJsonObject(JSONObject json, FlowchartDocument document, List<FlowchartShape> shapes,
+                                                StyleSection styles) {
+        FlowchartShape startShape = resolveShape(json, "startShapeId", "startShape", document, shapes);
+        FlowchartShape endShape = resolveShape(json, "endShapeId", "endShape", document, shapes);
+        ConnectionPoint startPoint = FlowchartDocument.getPoint(startShape, json.optInt("startPoint", -1));
+        ConnectionPoint endPoint = FlowchartDocument.getPoint(endShape, json.optInt("endPoint", -1));
+        if (startPoint == null) return null;
         ConnectionLine line = new ConnectionLine();
+        line.id = json.optLong("id", 0);
         line.setStartPoint(startPoint);
         if (endPoint != null) line.setEndPoint(endPoint);
         if (json.has("lineType")) line.setLineType(LineType.valueOf(json.getString("lineType")));
-        if (json.has("color")) line.setColor(Color.valueOf(json.getString("color")));
-        if (json.has("strokeWidth")) line.setStrokeWidth(json.getDouble("strokeWidth"));
+        if (json.has("style")) {
+            line.style = styles.lineStyle(json.getInt("style"));
+        } else {
+            if (json.has("color")) line.style = line.style.withColor(styles.color(json.get("color")));
+            if (json.has("strokeWidth")) line.style = line.style.withStrokeWidth(json.getDouble("strokeWidth"));
+        }
         if (json.has("arrowEnabled")) line.setArrowEnabled(json.getBoolean("arrowEnabled"));
         return line;
     }
+
+    private static FlowchartShape resolveShape(JSONObject json, String idKey, String indexKey,
+                                               FlowchartDocument document, List<FlowchartShape> shapes) {
+        if (json.has(idKey)) {
+            return document.getShape(json.getLong(idKey));
+        }
+        int index = json.optInt(indexKey, -1);
+        return index >= 0 && index < shapes.size() ? shapes.get(index) : null;
+    }
 } 
\ No newline at end of file
@@ -1,65 +1,80 @@
 package editor.model;
 
-import javafx.scene.shape.Circle;
-import javafx.scene.paint.Color;
-
+/**
+ * 图形上的连接点，位置由所属图形的左上角加上相对偏移确定。
+ * 是否显示只是一个标记，具体的控制柄节点由 editor.ui 负责绘制。
+ */
 public class ConnectionPoint {
-    private static final double POINT_RADIUS = 5.0;
-    private final Circle visualPoint;
     private final FlowchartShape parentShape;
-    private final double relativeX;
-    private final double relativeY;
+    private double relativeX;
+    private double relativeY;
+    private double x, y;
     private boolean isVisible = false;
 
     public ConnectionPoint(FlowchartShape parentShape, double relativeX, double relativeY) {
         this.parentShape = parentShape;
         this.relativeX = relativeX;
         this.relativeY = relativeY;
-        
-        // 创建连接点的视觉表示
-        this.visualPoint = new Circle(POINT_RADIUS);
-        this.visualPoint.setFill(Color.WHITE);
-        this.visualPoint.setStroke(Color.BLUE);
-        this.visualPoint.setStrokeWidth(1.5);
-        this.visualPoint.setVisible(false);
-        
         updatePosition();
     }
 
     public void updatePosition() {
-        double x = parentShape.getX() + relativeX;
-        double y = parentShape.getY() + relativeY;
-        visualPoint.setCenterX(x);
-        visualPoint.setCenterY(y);
+        x = parentShape.getX() + relativeX;
+        y = parentShape.getY() + relativeY;
+    }
+
+    /**
+     * 更新相对于所属图形左上角的位置（图形大小变化时使用）。
+     */
+    public void setRelative(double relativeX, double relativeY) {
+        this.relativeX = relativeX;
+        this.relativeY = relativeY;
+        updatePosition();
+    }
+
+    public double getRelativeX() {
+        return relativeX;
+    }
+
+    public double getRelativeY() {
+        return relativeY;
     }
 
     public void show() {
         isVisible = true;
-        visualPoint.setVisible(true);
     }
 
     public void hide() {
         isVisible = false;
-        visualPoint.setVisible(false);
     }
 
     public boolean isVisible() {
         return isVisible;
     }
 
-    public Circle getVisualPoint() {
-        return visualPoint;
-    }
-
     public double getX() {
-        return visualPoint.getCenterX();
+        return x;
     }
 
     public double getY() {
-        return visualPoint.getCenterY();
+        return y;
     }
 
     public FlowchartShape getParentShape() {
         return parentShape;
     }
-} 
\ No newline at end of file
+
+    /**
+     * @return 本连接点在所属图形连接点列表中的序号（每个图形最多几个连接点）。
+     */
+    public int getIndex() {
+        return parentShape.getConnectionPoints().indexOf(this);
+    }
+
+    /**
+     * @return 稳定 ID，格式为 "图形ID:序号"。
+     */
+    public String getId() {
+        return parentShape.getId() + ":" + getIndex();
+    }
+}
@@ -1,24 +1,8 @@
 package editor.model;
 
-import javafx.scene.paint.Color;
-import javafx.scene.shape.Polygon;
-import javafx.scene.shape.Shape;
-import org.json.JSONObject;
-
 public class DiamondShape extends FlowchartShape {
-    private Polygon diamond;
-
     public DiamondShape(double x, double y, double width, double height, String label) {
         super(x, y, width, height, label);
-        // 初始化时创建 Polygon 实例，并设置初始坐标
-        diamond = new Polygon(
-            x + width / 2, y,
-            x + width, y + height / 2,
-            x + width / 2, y + height,
-            x, y + height / 2
-        );
-        diamond.setFill(color);
-        diamond.setStroke(Color.BLACK);
     }
 
     public DiamondShape(double x, double y, double width, double height, String label, String link) {
@@ -26,32 +10,30 @@ public class DiamondShape extends FlowchartShape {
         this.link = link;
     }
 
-    @Override
-    public Shape getShape() {
-        // 刷新菱形的四个顶点坐标
+    // 菱形的四个顶点坐标
+    private double[] points() {
         double cx = x + width / 2;
         double cy = y + height / 2;
         double leftX = x;
         double rightX = x + width;
         double topY = y;
         double bottomY = y + height;
-
-        diamond.getPoints().setAll(
+        return new double[] {
             cx, topY,      // 顶点
             rightX, cy,    // 右顶点
             cx, bottomY,   // 底部顶点
             leftX, cy      // 左顶点
-        );
-        // 更新填充色与边框色
-        diamond.setFill(color);
-        diamond.setStroke(selected ? Color.RED : Color.BLACK);
-        return diamond;
+        };
+    }
+
+    @Override
+    public void outline(OutlineVisitor visitor) {
+        visitor.polygon(points());
     }
 
     @Override
     public boolean contains(double px, double py) {
-        // 直接使用 Polygon 自带的 contains 方法
-        return diamond.contains(px, py);
+        return polygonContains(points(), px, py);
     }
 
     @Override
@@ -60,17 +42,8 @@ public class DiamondShape extends FlowchartShape {
     }
 
     @Override
-    public JSONObject toJsonObject() {
-        JSONObject json = new JSONObject();
-        json.put("type", "diamond");
-        json.put("x", x);
-        json.put("y", y);
-        json.put("width", width);
-        json.put("height", height);
-        json.put("label", label);
-        json.put("color", color.toString());
-        json.put("link", link);
-        return json;
+    public String getType() {
+        return "diamond";
     }
 
     @Override
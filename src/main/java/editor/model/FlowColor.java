@@ -0,0 +1,134 @@
+package editor.model;
+
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * 模型使用的颜色值（RGBA，各分量取值 0~1），不依赖 JavaFX。
+ * 字符串形式与 JavaFX Color.toString() 相同（"0xrrggbbaa"），已有文件可以直接读取。
+ */
+public final class FlowColor {
+    public static final FlowColor WHITE = new FlowColor(1, 1, 1, 1);
+    public static final FlowColor BLACK = new FlowColor(0, 0, 0, 1);
+    public static final FlowColor TRANSPARENT = new FlowColor(0, 0, 0, 0);
+
+    // 常用的颜色名称，其余颜色请使用十六进制形式
+    private static final Map<String, FlowColor> NAMED = Map.of(
+        "white", WHITE,
+        "black", BLACK,
+        "transparent", TRANSPARENT,
+        "red", rgb(255, 0, 0),
+        "green", rgb(0, 128, 0),
+        "blue", rgb(0, 0, 255),
+        "yellow", rgb(255, 255, 0),
+        "gray", rgb(128, 128, 128),
+        "lightgray", rgb(211, 211, 211),
+        "dodgerblue", rgb(30, 144, 255)
+    );
+
+    private final double red, green, blue, opacity;
+
+    public FlowColor(double red, double green, double blue, double opacity) {
+        this.red = clamp(red);
+        this.green = clamp(green);
+        this.blue = clamp(blue);
+        this.opacity = clamp(opacity);
+    }
+
+    public static FlowColor rgb(int red, int green, int blue) {
+        return new FlowColor(red / 255.0, green / 255.0, blue / 255.0, 1);
+    }
+
+    /**
+     * 解析颜色字符串，支持 "0xrrggbb[aa]"、"#rgb"、"#rrggbb[aa]" 以及少量颜色名称。
+     */
+    public static FlowColor valueOf(String value) {
+        if (value == null) throw new IllegalArgumentException("颜色不能为空");
+        String s = value.trim().toLowerCase(Locale.ROOT);
+        FlowColor named = NAMED.get(s);
+        if (named != null) return named;
+        if (s.startsWith("0x")) {
+            s = s.substring(2);
+        } else if (s.startsWith("#")) {
+            s = s.substring(1);
+        } else {
+            throw new IllegalArgumentException("无法识别的颜色: " + value);
+        }
+        try {
+            if (s.length() == 3) {
+                return new FlowColor(Integer.parseInt(s.substring(0, 1), 16) / 15.0,
+                        Integer.parseInt(s.substring(1, 2), 16) / 15.0,
+                        Integer.parseInt(s.substring(2, 3), 16) / 15.0, 1);
+            }
+            if (s.length() == 6 || s.length() == 8) {
+                double alpha = s.length() == 8 ? Integer.parseInt(s.substring(6, 8), 16) / 255.0 : 1;
+                return new FlowColor(Integer.parseInt(s.substring(0, 2), 16) / 255.0,
+                        Integer.parseInt(s.substring(2, 4), 16) / 255.0,
+                        Integer.parseInt(s.substring(4, 6), 16) / 255.0, alpha);
+            }
+        } catch (NumberFormatException e) {
+            // 按格式错误处理
+        }
+        throw new IllegalArgumentException("无法识别的颜色: " + value);
+    }
+
+    /**
+     * 由打包的 0xRRGGBBAA 整数创建颜色。
+     */
+    public static FlowColor fromRgba(int rgba) {
+        return new FlowColor((rgba >>> 24) / 255.0, ((rgba >>> 16) & 0xff) / 255.0,
+                ((rgba >>> 8) & 0xff) / 255.0, (rgba & 0xff) / 255.0);
+    }
+
+    /**
+     * @return 打包为 0xRRGGBBAA 的整数，供二进制文件格式使用。
+     */
+    public int toRgba() {
+        return (to8Bit(red) << 24) | (to8Bit(green) << 16) | (to8Bit(blue) << 8) | to8Bit(opacity);
+    }
+
+    public double getRed() { return red; }
+    public double getGreen() { return green; }
+    public double getBlue() { return blue; }
+    public double getOpacity() { return opacity; }
+
+    private static double clamp(double v) {
+        return Math.max(0, Math.min(1, v));
+    }
+
+    private static int to8Bit(double v) {
+        return (int) Math.round(v * 255);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof FlowColor)) return false;
+        FlowColor c = (FlowColor) o;
+        return to8Bit(red) == to8Bit(c.red) && to8Bit(green) == to8Bit(c.green)
+                && to8Bit(blue) == to8Bit(c.blue) && to8Bit(opacity) == to8Bit(c.opacity);
+    }
+
+    @Override
+    public int hashCode() {
+        return toRgba();
+    }
+
+    @Override
+    public String toString() {
+        // 保存文件时每个图形都会调用，不用 String.format
+        char[] c = new char[10];
+        c[0] = '0';
+        c[1] = 'x';
+        hex(c, 2, to8Bit(red));
+        hex(c, 4, to8Bit(green));
+        hex(c, 6, to8Bit(blue));
+        hex(c, 8, to8Bit(opacity));
+        return new String(c);
+    }
+
+    private static void hex(char[] c, int pos, int value) {
+        c[pos] = Character.forDigit(value >> 4, 16);
+        c[pos + 1] = Character.forDigit(value & 0xf, 16);
+    }
+}
@@ -0,0 +1,120 @@
+package editor.model;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 文档级的 ID 表：图形 ID → 图形对象，连接线 ID → 连接线对象。
+ * 对象加入文档时登记，没有 ID 或 ID 已被其他对象占用时分配新的 ID；
+ * 连接点的 ID 由所属图形 ID 和连接点序号组成（见 ConnectionPoint.getId()）。
+ * 登记时图形和连接线的颜色、文字等换成文档样式池（StyleTable）中的共享实例。
+ */
+public class FlowchartDocument {
+    private final Map<Long, FlowchartShape> shapesById = new HashMap<>();
+    private final Map<Long, ConnectionLine> linesById = new HashMap<>();
+    private long nextId = 1;
+    private long nextLineId = 1;
+    private final StyleTable styles = new StyleTable();
+
+    /**
+     * 登记图形，必要时为其分配新的 ID。
+     * @return 图形最终使用的 ID。
+     */
+    public long register(FlowchartShape shape) {
+        long id = shape.getId();
+        FlowchartShape existing = id > 0 ? shapesById.get(id) : null;
+        if (id <= 0 || (existing != null && existing != shape)) {
+            id = nextId++;
+            shape.setId(id);
+        } else if (id >= nextId) {
+            nextId = id + 1;
+        }
+        shapesById.put(id, shape);
+        shape.internStyles(styles);
+        return id;
+    }
+
+    public void unregister(FlowchartShape shape) {
+        shapesById.remove(shape.getId(), shape);
+    }
+
+    public FlowchartShape getShape(long id) {
+        return shapesById.get(id);
+    }
+
+    /**
+     * 登记连接线，规则与图形相同，连接线的 ID 单独编号。
+     * @return 连接线最终使用的 ID。
+     */
+    public long registerLine(ConnectionLine line) {
+        long id = line.getId();
+        ConnectionLine existing = id > 0 ? linesById.get(id) : null;
+        if (id <= 0 || (existing != null && existing != line)) {
+            id = nextLineId++;
+            line.setId(id);
+        } else if (id >= nextLineId) {
+            nextLineId = id + 1;
+        }
+        linesById.put(id, line);
+        line.internStyles(styles);
+        return id;
+    }
+
+    public void unregisterLine(ConnectionLine line) {
+        linesById.remove(line.getId(), line);
+    }
+
+    public ConnectionLine getLine(long id) {
+        return linesById.get(id);
+    }
+
+    /**
+     * 编辑完成后重新去重，使编辑产生的新值也使用共享实例。输入过程中不要调用，否则半截的文字会一直留在池中。
+     */
+    public void intern(FlowchartShape shape) {
+        shape.internStyles(styles);
+    }
+
+    public void intern(ConnectionLine line) {
+        line.internStyles(styles);
+    }
+
+    public StyleTable getStyles() {
+        return styles;
+    }
+
+    /**
+     * 按 ID 查找连接点，ID 格式为 "图形ID:序号"。
+     */
+    public ConnectionPoint getPoint(String pointId) {
+        int sep = pointId.indexOf(':');
+        if (sep < 0) return null;
+        try {
+            FlowchartShape shape = getShape(Long.parseLong(pointId.substring(0, sep)));
+            return getPoint(shape, Integer.parseInt(pointId.substring(sep + 1)));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    /**
+     * @return 图形上指定序号的连接点，图形不存在或序号越界时返回 null。
+     */
+    public static ConnectionPoint getPoint(FlowchartShape shape, int index) {
+        if (shape == null || index < 0 || index >= shape.getConnectionPoints().size()) return null;
+        return shape.getConnectionPoints().get(index);
+    }
+
+    public int size() {
+        return shapesById.size();
+    }
+
+    /**
+     * 清空 ID 表和样式池（载入新内容或清空画布时）。ID 计数不回退，新文档中的图形不会与撤销栈里残留的旧图形重号。
+     */
+    public void clear() {
+        shapesById.clear();
+        linesById.clear();
+        styles.clear();
+    }
+}
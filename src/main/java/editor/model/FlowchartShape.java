@@ -1,20 +1,27 @@
 package editor.model;
 
-import javafx.scene.paint.Color;
-import javafx.scene.shape.Shape;
 import org.json.JSONObject;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Set;
 
+/**
+ * 流程图图形的模型：位置、大小、颜色、文字与连接关系，只包含普通字段，不依赖 JavaFX。
+ * 绘制由 editor.ui 中的渲染器根据 outline() 完成。
+ */
 public abstract class FlowchartShape implements Cloneable {
+    protected long id; // 文档内的稳定 ID，0 表示尚未分配（见 FlowchartDocument）
     protected double x, y, width, height;
-    protected Color color = Color.WHITE;
+    protected FlowColor color = FlowColor.WHITE;
     protected String label = "";
     protected boolean selected = false;
     protected List<ConnectionPoint> connectionPoints = new ArrayList<>();
     protected List<ConnectionLine> incomingLines = new ArrayList<>();
     protected List<ConnectionLine> outgoingLines = new ArrayList<>();
     protected String link = "";
+    protected ModelListener listener; // 画布注册的变更监听器
 
     public FlowchartShape(double x, double y, double width, double height, String label) {
         this.x = x; this.y = y; this.width = width; this.height = height; this.label = label;
@@ -61,6 +68,14 @@ public abstract class FlowchartShape implements Cloneable {
         outgoingLines.remove(line);
     }
 
+    public List<ConnectionLine> getIncomingLines() {
+        return incomingLines;
+    }
+
+    public List<ConnectionLine> getOutgoingLines() {
+        return outgoingLines;
+    }
+
     public void updateConnectedLines() {
         for (ConnectionLine line : incomingLines) {
             line.updatePosition();
@@ -70,46 +85,196 @@ public abstract class FlowchartShape implements Cloneable {
         }
     }
 
-    public abstract Shape getShape();
+    public void setModelListener(ModelListener listener) {
+        this.listener = listener;
+    }
+
+    // 通知监听器本图形已变化
+    protected void fireChanged() {
+        if (listener != null) listener.shapeChanged(this);
+    }
+
+    /**
+     * 按模型坐标描述图形轮廓，供不依赖 JavaFX 节点的绘制使用。
+     */
+    public abstract void outline(OutlineVisitor visitor);
     public abstract boolean contains(double px, double py);
 
-    // 新增抽象方法，用于将图形数据转换为 JSON 对象
-    public abstract JSONObject toJsonObject();
+    /**
+     * 射线法判断点是否在多边形内。
+     * @param points 多边形顶点，格式为 [x0, y0, x1, y1, ...]
+     */
+    protected static boolean polygonContains(double[] points, double px, double py) {
+        boolean inside = false;
+        int n = points.length / 2;
+        for (int i = 0, j = n - 1; i < n; j = i++) {
+            double xi = points[i * 2], yi = points[i * 2 + 1];
+            double xj = points[j * 2], yj = points[j * 2 + 1];
+            if ((yi > py) != (yj > py) && px < (xj - xi) * (py - yi) / (yj - yi) + xi) {
+                inside = !inside;
+            }
+        }
+        return inside;
+    }
+
+    /**
+     * @return 保存文件时使用的类型名，如 "rectangle"。
+     */
+    public abstract String getType();
+
+    // 将图形数据转换为 JSON 对象
+    public JSONObject toJsonObject() {
+        JSONObject json = new JSONObject();
+        json.put("id", id);
+        json.put("type", getType());
+        json.put("x", x);
+        json.put("y", y);
+        json.put("width", width);
+        json.put("height", height);
+        json.put("label", label);
+        json.put("color", color.toString());
+        json.put("link", link);
+        return json;
+    }
+
+    /**
+     * 根据 JSON 对象创建图形，保留文件中的 ID（旧文件没有 ID，加入文档时再分配）。
+     * @return 新图形，类型无法识别时返回 null。
+     */
+    public static FlowchartShape fromJsonObject(JSONObject json) {
+        return fromJsonObject(json, StyleSection.NONE);
+    }
+
+    /**
+     * 同上，"color"、"label"、"link" 可以是文件样式表中的序号。
+     */
+    public static FlowchartShape fromJsonObject(JSONObject json, StyleSection styles) {
+        Object link = json.opt("link");
+        FlowchartShape shape = create(json.getString("type"), json.getDouble("x"), json.getDouble("y"),
+                json.getDouble("width"), json.getDouble("height"), styles.string(json.get("label")),
+                link != null ? styles.string(link) : "");
+        if (shape == null) return null;
+        shape.color = styles.color(json.get("color"));
+        shape.id = json.optLong("id", 0);
+        return shape;
+    }
+
+    // 颜色和字符串换成文档样式池中的实例，不通知监听器（值没有变化）
+    void internStyles(StyleTable styles) {
+        color = styles.intern(color);
+        label = styles.intern(label);
+        link = styles.intern(link);
+    }
+
+    /**
+     * 按类型名（见 getType()）创建图形，供各种文件格式的读取使用。
+     * @return 新图形，类型无法识别时返回 null。
+     */
+    public static FlowchartShape create(String type, double x, double y, double width, double height,
+                                        String label, String link) {
+        switch (type) {
+            case "rectangle": return new RectangleShape(x, y, width, height, label, link);
+            case "ellipse": return new EllipseShape(x, y, width, height, label, link);
+            case "diamond": return new DiamondShape(x, y, width, height, label, link);
+            case "parallelogram": return new ParallelogramShape(x, y, width, height, label, link);
+            case "circle": return new CircleShape(x, y, width, height, label, link);
+            case "hexagon": return new HexagonShape(x, y, width, height, label, link);
+            default: return null;
+        }
+    }
 
     // getter/setter
     public double getX() { return x; }
     public double getY() { return y; }
     public double getWidth() { return width; }
     public double getHeight() { return height; }
-    public Color getColor() { return color; }
+    public FlowColor getColor() { return color; }
     public String getLabel() { return label; }
     public boolean isSelected() { return selected; }
     public String getLink() { return link; }
+    public long getId() { return id; }
+
+    /**
+     * 设置 ID。一般由 FlowchartDocument 在登记时调用。
+     */
+    public void setId(long id) { this.id = id; }
 
-    public void setX(double x) {
-        this.x = x;
+    public void setX(double x) { setBounds(x, y, width, height); }
+    public void setY(double y) { setBounds(x, y, width, height); }
+    public void setWidth(double width) { setBounds(x, y, width, height); }
+    public void setHeight(double height) { setBounds(x, y, width, height); }
+
+    /**
+     * 一次性设置位置和大小。连接点和相连的连接线只更新一次；
+     * 大小变化时按新尺寸重新计算连接点在图形上的位置。
+     */
+    public void setBounds(double x, double y, double width, double height) {
+        boolean resized = width != this.width || height != this.height;
+        this.x = x; this.y = y; this.width = width; this.height = height;
+        if (resized) relayoutConnectionPoints();
         updateConnectionPoints();
         updateConnectedLines();
+        fireChanged();
     }
-    public void setY(double y) {
-        this.y = y;
-        updateConnectionPoints();
-        updateConnectedLines();
+
+    public void setPosition(double x, double y) {
+        setBounds(x, y, width, height);
+    }
+
+    public void translateBy(double dx, double dy) {
+        setBounds(x + dx, y + dy, width, height);
+    }
+
+    /**
+     * 批量平移多个图形。每个图形的连接点更新一次，
+     * 受影响的连接线（包括两端都在被移动图形上的）只重新计算一次。
+     */
+    public static void moveAll(Collection<? extends FlowchartShape> shapes, double dx, double dy) {
+        Set<ConnectionLine> lines = new LinkedHashSet<>();
+        for (FlowchartShape shape : shapes) {
+            shape.x += dx;
+            shape.y += dy;
+            shape.updateConnectionPoints();
+            lines.addAll(shape.incomingLines);
+            lines.addAll(shape.outgoingLines);
+        }
+        for (ConnectionLine line : lines) {
+            line.updatePosition();
+        }
+        for (FlowchartShape shape : shapes) {
+            shape.fireChanged();
+        }
     }
-    public void setWidth(double width) { this.width = width; }
-    public void setHeight(double height) { this.height = height; }
-    public void setColor(Color color) {
-        System.out.println("FlowchartShape.setColor() called. Shape: " + this.label + ", Old Color: " + this.color + ", New Color: " + color);
+
+    // 按当前尺寸重新生成连接点的相对位置，连接点对象本身保持不变（连接线仍引用它们）
+    private void relayoutConnectionPoints() {
+        List<ConnectionPoint> points = connectionPoints;
+        connectionPoints = new ArrayList<>();
+        setupConnectionPoints();
+        List<ConnectionPoint> layout = connectionPoints;
+        connectionPoints = points;
+        for (int i = 0; i < points.size() && i < layout.size(); i++) {
+            points.get(i).setRelative(layout.get(i).getRelativeX(), layout.get(i).getRelativeY());
+        }
+    }
+    public void setColor(FlowColor color) {
         this.color = color; 
+        fireChanged();
+    }
+    public void setLabel(String label) { this.label = label; fireChanged(); }
+    public void setSelected(boolean selected) {
+        if (this.selected == selected) return;
+        this.selected = selected;
+        fireChanged();
     }
-    public void setLabel(String label) { this.label = label; }
-    public void setSelected(boolean selected) { this.selected = selected; }
-    public void setLink(String link) { this.link = link; }
+    public void setLink(String link) { this.link = link; fireChanged(); }
 
     @Override
     public FlowchartShape clone() throws CloneNotSupportedException {
         FlowchartShape cloned = (FlowchartShape) super.clone();
         cloned.link = this.link;
+        cloned.listener = null; // 副本不属于任何画布
+        cloned.id = 0; // 副本加入文档时分配新 ID
         return cloned;
     }
 }
\ No newline at end of file
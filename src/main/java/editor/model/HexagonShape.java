@@ -1,19 +1,8 @@
 package editor.model;
 
-import javafx.scene.paint.Color;
-import javafx.scene.shape.Polygon;
-import javafx.scene.shape.Shape;
-import org.json.JSONObject;
-
 public class HexagonShape extends FlowchartShape {
-    private Polygon hexagon;
-
     public HexagonShape(double x, double y, double width, double height, String label) {
         super(x, y, width, height, label);
-        hexagon = new Polygon();
-        updateHexagonPoints();
-        hexagon.setFill(color);
-        hexagon.setStroke(Color.BLACK);
     }
 
     public HexagonShape(double x, double y, double width, double height, String label, String link) {
@@ -21,30 +10,29 @@ public class HexagonShape extends FlowchartShape {
         this.link = link;
     }
 
-    private void updateHexagonPoints() {
+    // 六边形的六个顶点坐标
+    private double[] points() {
         double centerX = x + width / 2;
         double centerY = y + height / 2;
         double radius = Math.min(width, height) / 2;
 
-        hexagon.getPoints().clear();
+        double[] p = new double[12];
         for (int i = 0; i < 6; i++) {
             double angle = Math.toRadians(60 * i); // 六边形每个角间隔60度
-            hexagon.getPoints().add(centerX + radius * Math.cos(angle));
-            hexagon.getPoints().add(centerY + radius * Math.sin(angle));
+            p[i * 2] = centerX + radius * Math.cos(angle);
+            p[i * 2 + 1] = centerY + radius * Math.sin(angle);
         }
+        return p;
     }
 
     @Override
-    public Shape getShape() {
-        updateHexagonPoints(); // 每次获取图形时更新顶点，以反映位置和大小变化
-        hexagon.setFill(color);
-        hexagon.setStroke(selected ? Color.RED : Color.BLACK);
-        return hexagon;
+    public void outline(OutlineVisitor visitor) {
+        visitor.polygon(points());
     }
 
     @Override
     public boolean contains(double px, double py) {
-        return hexagon.contains(px, py);
+        return polygonContains(points(), px, py);
     }
 
     @Override
@@ -53,17 +41,8 @@ public class HexagonShape extends FlowchartShape {
     }
 
     @Override
-    public JSONObject toJsonObject() {
-        JSONObject json = new JSONObject();
-        json.put("type", "hexagon");
-        json.put("x", x);
-        json.put("y", y);
-        json.put("width", width);
-        json.put("height", height);
-        json.put("label", label);
-        json.put("color", color.toString());
-        json.put("link", link);
-        return json;
+    public String getType() {
+        return "hexagon";
     }
 
     @Override
@@ -0,0 +1,40 @@
+package editor.model;
+
+/**
+ * 连接线的描边样式：颜色和线宽。不可变，相同样式的连接线共用一个实例（见 StyleTable）。
+ */
+public final class LineStyle {
+    public static final LineStyle DEFAULT = new LineStyle(FlowColor.BLACK, 2.0);
+
+    private final FlowColor color;
+    private final double strokeWidth;
+
+    public LineStyle(FlowColor color, double strokeWidth) {
+        this.color = color;
+        this.strokeWidth = strokeWidth;
+    }
+
+    public FlowColor getColor() { return color; }
+    public double getStrokeWidth() { return strokeWidth; }
+
+    public LineStyle withColor(FlowColor color) {
+        return new LineStyle(color, strokeWidth);
+    }
+
+    public LineStyle withStrokeWidth(double strokeWidth) {
+        return new LineStyle(color, strokeWidth);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof LineStyle)) return false;
+        LineStyle s = (LineStyle) o;
+        return color.equals(s.color) && Double.compare(strokeWidth, s.strokeWidth) == 0;
+    }
+
+    @Override
+    public int hashCode() {
+        return color.hashCode() * 31 + Double.hashCode(strokeWidth);
+    }
+}
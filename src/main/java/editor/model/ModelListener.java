@@ -0,0 +1,10 @@
+package editor.model;
+
+/**
+ * 模型变更监听器。图形或连接线的位置、大小、样式、选中状态发生变化时回调，
+ * 画布据此只刷新真正改变的对象。
+ */
+public interface ModelListener {
+    void shapeChanged(FlowchartShape shape);
+    void lineChanged(ConnectionLine line);
+}
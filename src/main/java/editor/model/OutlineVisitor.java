@@ -0,0 +1,14 @@
+package editor.model;
+
+/**
+ * 图形轮廓的几何描述。绘制端（Canvas、导出等）实现该接口，
+ * 直接按模型坐标作图，不需要经过 getShape() 返回的 JavaFX 节点。
+ */
+public interface OutlineVisitor {
+    void rectangle(double x, double y, double width, double height);
+    void ellipse(double centerX, double centerY, double radiusX, double radiusY);
+    /**
+     * @param points 多边形顶点，格式为 [x0, y0, x1, y1, ...]
+     */
+    void polygon(double[] points);
+}
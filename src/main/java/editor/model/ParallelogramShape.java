@@ -1,23 +1,8 @@
 package editor.model;
 
-import javafx.scene.paint.Color;
-import javafx.scene.shape.Polygon;
-import javafx.scene.shape.Shape;
-import org.json.JSONObject;
-
 public class ParallelogramShape extends FlowchartShape {
-    private Polygon parallelogram;
-
     public ParallelogramShape(double x, double y, double width, double height, String label) {
         super(x, y, width, height, label);
-        parallelogram = new Polygon(
-            x, y,
-            x + width * 0.75, y,
-            x + width, y + height,
-            x + width * 0.25, y + height
-        );
-        parallelogram.setFill(color);
-        parallelogram.setStroke(Color.BLACK);
     }
 
     public ParallelogramShape(double x, double y, double width, double height, String label, String link) {
@@ -25,22 +10,24 @@ public class ParallelogramShape extends FlowchartShape {
         this.link = link;
     }
 
-    @Override
-    public Shape getShape() {
-        parallelogram.getPoints().setAll(
+    // 平行四边形的四个顶点坐标
+    private double[] points() {
+        return new double[] {
             x, y,
             x + width * 0.75, y,
             x + width, y + height,
             x + width * 0.25, y + height
-        );
-        parallelogram.setFill(color);
-        parallelogram.setStroke(selected ? Color.RED : Color.BLACK);
-        return parallelogram;
+        };
+    }
+
+    @Override
+    public void outline(OutlineVisitor visitor) {
+        visitor.polygon(points());
     }
 
     @Override
     public boolean contains(double px, double py) {
-        return parallelogram.contains(px, py);
+        return polygonContains(points(), px, py);
     }
 
     @Override
@@ -49,17 +36,8 @@ public class ParallelogramShape extends FlowchartShape {
     }
 
     @Override
-    public JSONObject toJsonObject() {
-        JSONObject json = new JSONObject();
-        json.put("type", "parallelogram");
-        json.put("x", x);
-        json.put("y", y);
-        json.put("width", width);
-        json.put("height", height);
-        json.put("label", label);
-        json.put("color", color.toString());
-        json.put("link", link);
-        return json;
+    public String getType() {
+        return "parallelogram";
     }
 
     @Override
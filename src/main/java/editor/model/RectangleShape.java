@@ -1,18 +1,8 @@
 package editor.model;
 
-import javafx.scene.paint.Color;
-import javafx.scene.shape.Rectangle;
-import javafx.scene.shape.Shape;
-import org.json.JSONObject;
-
 public class RectangleShape extends FlowchartShape {
-    private Rectangle rect;  // 持久化形状实例
-
     public RectangleShape(double x, double y, double width, double height, String label) {
         super(x, y, width, height, label);
-        rect = new Rectangle(x, y, width, height);
-        rect.setFill(color);
-        rect.setStroke(Color.BLACK);
     }
 
     public RectangleShape(double x, double y, double width, double height, String label, String link) {
@@ -30,17 +20,8 @@ public class RectangleShape extends FlowchartShape {
     }
 
     @Override
-    public Shape getShape() {
-        System.out.println("RectangleShape.getShape() called for " + this.label + ", using color: " + this.color);
-        // 更新图形的位置、大小、颜色
-        rect.setX(x);
-        rect.setY(y);
-        rect.setWidth(width);
-        rect.setHeight(height);
-        rect.setFill(color);
-        rect.setStroke(selected ? Color.RED : Color.BLACK);
-        rect.setStrokeWidth(selected ? 2.0 : 1.0);
-        return rect;
+    public void outline(OutlineVisitor visitor) {
+        visitor.rectangle(x, y, width, height);
     }
 
     @Override
@@ -55,16 +36,7 @@ public class RectangleShape extends FlowchartShape {
     }
 
     @Override
-    public JSONObject toJsonObject() {
-        JSONObject json = new JSONObject();
-        json.put("type", "rectangle");
-        json.put("x", x);
-        json.put("y", y);
-        json.put("width", width);
-        json.put("height", height);
-        json.put("label", label);
-        json.put("color", color.toString()); // Color to String
-        json.put("link", link);
-        return json;
+    public String getType() {
+        return "rectangle";
     }
 }
@@ -0,0 +1,170 @@
+package editor.model;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 文件中的样式表（顶层 "styles" 字段），写在 "shapes" 之前：
+ * <pre>
+ *   "styles": {
+ *     "colors": ["0xffffffff", ...],
+ *     "strings": ["处理", ...],
+ *     "lineStyles": [{"color": 0, "width": 2}, ...]
+ *   }
+ * </pre>
+ * 图形记录的 "color" 是颜色表中的序号，"label"/"link" 可以是字符串表中的序号（只有重复出现的字符串才放入表中）；
+ * 连接线记录用 "style" 引用 lineStyles。颜色只在读样式表时解析一次。
+ * 没有样式表的旧文件中颜色仍是字符串，按字符串缓存解析结果。
+ * 创建后只读（缓存除外），可以在多个线程上同时解析记录。
+ */
+public class StyleSection {
+    /** 不缓存任何内容，用于单条记录（如操作日志）的解析。 */
+    public static final StyleSection NONE = new StyleSection(null);
+
+    private final List<FlowColor> colors = new ArrayList<>();
+    private final List<String> strings = new ArrayList<>();
+    private final List<LineStyle> lineStyles = new ArrayList<>();
+    private final Map<FlowColor, Integer> colorIndex = new HashMap<>();
+    private final Map<String, Integer> stringIndex = new HashMap<>();
+    private final Map<LineStyle, Integer> lineStyleIndex = new HashMap<>();
+    private final Map<String, FlowColor> parsedColors; // 旧文件中的颜色字符串 → 颜色
+
+    public StyleSection() {
+        this(new ConcurrentHashMap<>());
+    }
+
+    private StyleSection(Map<String, FlowColor> parsedColors) {
+        this.parsedColors = parsedColors;
+    }
+
+    /**
+     * 收集要保存的图形和连接线用到的样式，按首次出现的顺序编号。
+     */
+    public static StyleSection collect(Collection<FlowchartShape> shapes, Collection<ConnectionLine> lines) {
+        StyleSection section = new StyleSection();
+        Map<String, Integer> counts = new HashMap<>();
+        for (FlowchartShape shape : shapes) {
+            section.addColor(shape.getColor());
+            counts.merge(shape.getLabel(), 1, Integer::sum);
+            counts.merge(shape.getLink(), 1, Integer::sum);
+        }
+        for (FlowchartShape shape : shapes) {
+            section.addString(shape.getLabel(), counts);
+            section.addString(shape.getLink(), counts);
+        }
+        for (ConnectionLine line : lines) {
+            if (line.getStartPoint() == null) continue;
+            LineStyle style = line.getStyle();
+            section.addColor(style.getColor());
+            if (section.lineStyleIndex.putIfAbsent(style, section.lineStyles.size()) == null) {
+                section.lineStyles.add(style);
+            }
+        }
+        return section;
+    }
+
+    private void addColor(FlowColor color) {
+        if (colorIndex.putIfAbsent(color, colors.size()) == null) colors.add(color);
+    }
+
+    // 只有出现两次以上的非空字符串才值得放入表中
+    private void addString(String s, Map<String, Integer> counts) {
+        if (s.isEmpty() || counts.get(s) < 2) return;
+        if (stringIndex.putIfAbsent(s, strings.size()) == null) strings.add(s);
+    }
+
+    /**
+     * 读取文件中的 "styles" 对象。
+     */
+    public static StyleSection fromJsonObject(JSONObject json) {
+        StyleSection section = new StyleSection();
+        JSONArray colors = json.optJSONArray("colors");
+        if (colors != null) {
+            for (int i = 0; i < colors.length(); i++) section.colors.add(FlowColor.valueOf(colors.getString(i)));
+        }
+        JSONArray strings = json.optJSONArray("strings");
+        if (strings != null) {
+            for (int i = 0; i < strings.length(); i++) section.strings.add(strings.getString(i));
+        }
+        JSONArray lineStyles = json.optJSONArray("lineStyles");
+        if (lineStyles != null) {
+            for (int i = 0; i < lineStyles.length(); i++) {
+                JSONObject style = lineStyles.getJSONObject(i);
+                section.lineStyles.add(new LineStyle(section.color(style.get("color")), style.getDouble("width")));
+            }
+        }
+        return section;
+    }
+
+    public List<FlowColor> getColors() {
+        return Collections.unmodifiableList(colors);
+    }
+
+    public List<String> getStrings() {
+        return Collections.unmodifiableList(strings);
+    }
+
+    public List<LineStyle> getLineStyles() {
+        return Collections.unmodifiableList(lineStyles);
+    }
+
+    public boolean isEmpty() {
+        return colors.isEmpty() && strings.isEmpty() && lineStyles.isEmpty();
+    }
+
+    // ---- 写出：值 → 序号 ----
+
+    public int indexOf(FlowColor color) {
+        return colorIndex.getOrDefault(color, -1);
+    }
+
+    /**
+     * @return 字符串在表中的序号，不在表中（应直接写出）时返回 -1。
+     */
+    public int indexOf(String s) {
+        return stringIndex.getOrDefault(s, -1);
+    }
+
+    public int indexOf(LineStyle style) {
+        return lineStyleIndex.getOrDefault(style, -1);
+    }
+
+    // ---- 读取：字段值 → 对象 ----
+
+    /**
+     * @param value 颜色表序号或颜色字符串
+     */
+    public FlowColor color(Object value) {
+        if (value instanceof Number) return get(colors, ((Number) value).intValue(), "颜色");
+        if (!(value instanceof String)) throw new JSONException("颜色应为字符串或序号: " + value);
+        if (parsedColors == null) return FlowColor.valueOf((String) value);
+        return parsedColors.computeIfAbsent((String) value, FlowColor::valueOf);
+    }
+
+    /**
+     * @param value 字符串表序号或字符串本身
+     */
+    public String string(Object value) {
+        if (value instanceof String) return (String) value;
+        if (value instanceof Number) return get(strings, ((Number) value).intValue(), "字符串");
+        throw new JSONException("应为字符串或序号: " + value);
+    }
+
+    public LineStyle lineStyle(int index) {
+        return get(lineStyles, index, "连接线样式");
+    }
+
+    private static <T> T get(List<T> list, int index, String what) {
+        if (index < 0 || index >= list.size()) throw new JSONException("样式表中没有" + what + "序号 " + index);
+        return list.get(index);
+    }
+}
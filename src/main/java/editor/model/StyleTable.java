@@ -0,0 +1,42 @@
+package editor.model;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 文档级的样式与字符串池。颜色、连接线样式和文字/链接字符串在加入文档时去重，
+ * 相同的值在内存中只保留一个实例；流程图里颜色只有几种，"处理"、"是"、"否" 之类的文字大量重复。
+ * 只在一个线程上使用（画布的 FX 线程，或读取文件的线程）。
+ */
+public class StyleTable {
+    private final Map<String, String> strings = new HashMap<>();
+    private final Map<FlowColor, FlowColor> colors = new HashMap<>();
+    private final Map<LineStyle, LineStyle> lineStyles = new HashMap<>();
+
+    public String intern(String s) {
+        if (s == null || s.isEmpty()) return s;
+        String existing = strings.putIfAbsent(s, s);
+        return existing != null ? existing : s;
+    }
+
+    public FlowColor intern(FlowColor color) {
+        FlowColor existing = colors.putIfAbsent(color, color);
+        return existing != null ? existing : color;
+    }
+
+    public LineStyle intern(LineStyle style) {
+        LineStyle existing = lineStyles.get(style);
+        if (existing != null) return existing;
+        // 样式里的颜色也使用池中的实例
+        FlowColor color = intern(style.getColor());
+        if (color != style.getColor()) style = new LineStyle(color, style.getStrokeWidth());
+        lineStyles.put(style, style);
+        return style;
+    }
+
+    public void clear() {
+        strings.clear();
+        colors.clear();
+        lineStyles.clear();
+    }
+}
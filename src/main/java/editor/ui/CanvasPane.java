@@ -2,8 +2,18 @@ package editor.ui;
 
 import editor.model.*;
 import editor.action.*;
+import editor.io.DirtyChunks;
+import editor.io.FlowchartData;
+import editor.io.FlowchartDiff;
+import editor.io.Journal;
+import editor.io.JsonFlowchartReader;
+import editor.io.JsonFlowchartWriter;
 import javafx.scene.layout.Pane;
+import javafx.scene.input.MouseButton;
 import javafx.scene.input.MouseEvent;
+import javafx.scene.Group;
+import javafx.scene.transform.Scale;
+import javafx.scene.transform.Translate;
 import javafx.scene.input.KeyCode;
 import javafx.scene.paint.Color;
 import javafx.scene.text.Text;
@@ -16,27 +26,69 @@ import javafx.scene.input.TransferMode;
 import javafx.scene.input.DragEvent;
 import javafx.scene.input.Dragboard;
 import javafx.scene.input.ClipboardContent;
-import org.json.JSONArray;
-import org.json.JSONObject;
-import javafx.scene.shape.Polyline;
-import javafx.scene.shape.QuadCurve;
+import javafx.collections.FXCollections;
+import javafx.collections.ListChangeListener;
 import javafx.collections.ObservableList;
-import javafx.embed.swing.SwingFXUtils;
-import javafx.scene.image.WritableImage;
-import javafx.scene.SnapshotParameters;
-import javax.imageio.ImageIO;
-import java.io.File;
 import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Set;
 import java.util.Stack;
 
 public class CanvasPane extends Pane {
-    private List<FlowchartShape> shapes = new ArrayList<>();
+    /**
+     * 渲染方式：SCENE_GRAPH 为每个可见对象维护节点；CANVAS 直接画在画布上，适合超大图。
+     */
+    public enum RenderMode { SCENE_GRAPH, CANVAS }
+
+    private ObservableList<FlowchartShape> shapes = FXCollections.observableArrayList();
     private List<FlowchartShape> selectedShapes = new ArrayList<>();
     private List<FlowchartShape> clipboard = new ArrayList<>();
-    private List<ConnectionLine> connectionLines = new ArrayList<>();
+    private ObservableList<ConnectionLine> connectionLines = FXCollections.observableArrayList();
+    private final FlowchartDocument document = new FlowchartDocument(); // 图形和连接线的 ID 表
+    private final HitTester hitTester = new HitTester(shapes, connectionLines); // 空间索引命中测试
+    private DiagramRenderer renderer = new SceneRenderer(hitTester); // 当前渲染后端
+    private RenderMode renderMode = RenderMode.SCENE_GRAPH;
+    private JournalRecorder journalRecorder; // 操作日志，为 null 时不记录
+    private final DirtyChunks dirtyChunks = new DirtyChunks(); // 增量保存用的修改记录
+    private boolean trackDirty = true; // 追加文件内容时为 false，这些内容已在文件中
+    private boolean readOnly = false; // 分块打开文件期间只能平移和缩放
+    // 将模型变化同时分发给命中测试索引、渲染器和操作日志
+    private final ModelListener modelListener = new ModelListener() {
+        @Override
+        public void shapeChanged(FlowchartShape shape) {
+            dirtyChunks.shapeChanged(shape);
+            hitTester.shapeChanged(shape);
+            renderer.shapeChanged(shape);
+            if (journalRecorder != null) journalRecorder.shapeChanged(shape);
+        }
+
+        @Override
+        public void lineChanged(ConnectionLine line) {
+            dirtyChunks.lineChanged(line);
+            hitTester.lineChanged(line);
+            renderer.lineChanged(line);
+            if (journalRecorder != null) journalRecorder.lineChanged(line);
+        }
+    };
+
+    // 无限画布：所有图形位于 world 中，通过平移和缩放变换映射到屏幕
+    private final Group world = new Group();
+    private final Group overlay = new Group(); // 框选矩形、临时图形、临时连线
+    private final Translate viewTranslate = new Translate();
+    private final Scale viewScale = new Scale(1, 1);
+    private static final double MIN_ZOOM = 0.1;
+    private static final double MAX_ZOOM = 8.0;
+    private boolean isPanning = false;
+    private double panStartX, panStartY, panOriginX, panOriginY;
+    private long lastRedrawNanos;
+    private final RedrawScheduler redrawScheduler = new RedrawScheduler(this, this::redrawNow); // 每帧最多重绘一次
     private String currentTool = "选择"; // 重新引入，用于顶部工具栏选择的图形类型
     private double dragOffsetX, dragOffsetY;
     private double selectStartX, selectStartY;
@@ -56,17 +108,18 @@ public class CanvasPane extends Pane {
     private static final int GRID_SIZE = 20;
     private boolean showGrid = true; // 是否显示网格
     private boolean snapToGridEnabled = true; // 是否启用网格对齐
-    private List<javafx.scene.shape.Line> gridLines = new ArrayList<>(); // 存储网格线
+    private final GridLayer gridLayer = new GridLayer(GRID_SIZE); // 网格背景层
 
-    // 记录拖动前每个选中图形的初始位置
-    private List<Double> dragStartX = new ArrayList<>();
-    private List<Double> dragStartY = new ArrayList<>();
+    // 拖动起点（世界坐标）
     private double dragOriginMouseX, dragOriginMouseY;
     private boolean isDraggingShapes = false;
+    private DragPreview dragPreview; // 拖动选区时的预览，模型坐标在松开鼠标时才写回
+    private double dragDx, dragDy;
 
     // 连接线相关变量
     private ConnectionPoint startConnectionPoint = null;
     private ConnectionLine tempConnectionLine = null;
+    private LineView tempLineView = null; // 临时连线的显示节点
 
     private boolean isConnecting = false;
 
@@ -77,26 +130,23 @@ public class CanvasPane extends Pane {
         setupMouseHandlers();
         setupKeyHandlers();
         setupDragAndDropHandlers(); // New method for drag and drop
+        setupModelListeners();
         setupGrid();
+        setupViewport();
 
         selectionRect.setStroke(Color.BLUE);
         selectionRect.setFill(Color.LIGHTBLUE.deriveColor(1, 1, 1, 0.3));
         selectionRect.getStrokeDashArray().addAll(5.0, 5.0);
         selectionRect.setVisible(false);
-        getChildren().add(selectionRect);
+        overlay.getChildren().add(selectionRect);
 
         // 鼠标移动时，动态改变指针形状
         this.setOnMouseMoved(event -> {
             boolean ctrl = event.isControlDown();
             boolean onLinkShape = false;
             if (ctrl) {
-                for (int i = shapes.size() - 1; i >= 0; i--) {
-                    FlowchartShape s = shapes.get(i);
-                    if (s.contains(event.getX(), event.getY()) && s.getLink() != null && !s.getLink().isEmpty()) {
-                        onLinkShape = true;
-                        break;
-                    }
-                }
+                onLinkShape = hitTester.shapeAt(toWorldX(event.getX()), toWorldY(event.getY()),
+                        s -> s.getLink() != null && !s.getLink().isEmpty()) != null;
             }
             if (onLinkShape) {
                 setCursor(javafx.scene.Cursor.HAND);
@@ -110,11 +160,224 @@ public class CanvasPane extends Pane {
         this.currentTool = tool;
         isDrawingNewShape = false; // 重置绘图状态
         if (tempDrawingShape != null) {
-            getChildren().remove(tempDrawingShape);
+            overlay.getChildren().remove(tempDrawingShape);
             tempDrawingShape = null;
         }
     }
 
+    // 建立 world 图层、视口裁剪以及平移缩放的交互
+    private void setupViewport() {
+        world.getTransforms().addAll(viewTranslate, viewScale);
+        world.getChildren().addAll(renderer.getWorldLayers());
+        world.getChildren().add(overlay);
+        world.setManaged(false); // 内容范围不参与画布自身的尺寸计算
+        getChildren().addAll(renderer.getScreenLayers());
+        getChildren().add(world);
+
+        Rectangle clip = new Rectangle();
+        clip.widthProperty().bind(widthProperty());
+        clip.heightProperty().bind(heightProperty());
+        setClip(clip);
+
+        widthProperty().addListener((obs, oldVal, newVal) -> {
+            gridLayer.setViewSize(getWidth(), getHeight());
+            updateViewport();
+        });
+        heightProperty().addListener((obs, oldVal, newVal) -> {
+            gridLayer.setViewSize(getWidth(), getHeight());
+            updateViewport();
+        });
+
+        // Ctrl+滚轮缩放，滚轮平移
+        this.setOnScroll(event -> {
+            if (event.isControlDown()) {
+                double factor = event.getDeltaY() > 0 ? 1.1 : 1 / 1.1;
+                zoomAt(event.getX(), event.getY(), getZoom() * factor);
+            } else {
+                panBy(event.getDeltaX(), event.getDeltaY());
+            }
+            event.consume();
+        });
+    }
+
+    // 屏幕坐标 -> 世界坐标
+    private double toWorldX(double screenX) {
+        return (screenX - viewTranslate.getX()) / viewScale.getX();
+    }
+
+    private double toWorldY(double screenY) {
+        return (screenY - viewTranslate.getY()) / viewScale.getY();
+    }
+
+    public double getZoom() {
+        return viewScale.getX();
+    }
+
+    /**
+     * 以屏幕上的点 (screenX, screenY) 为中心缩放，该点下的内容保持不动。
+     */
+    public void zoomAt(double screenX, double screenY, double zoom) {
+        zoom = Math.max(MIN_ZOOM, Math.min(MAX_ZOOM, zoom));
+        double worldX = toWorldX(screenX);
+        double worldY = toWorldY(screenY);
+        viewScale.setX(zoom);
+        viewScale.setY(zoom);
+        viewTranslate.setX(screenX - worldX * zoom);
+        viewTranslate.setY(screenY - worldY * zoom);
+        updateViewport();
+    }
+
+    public void zoomIn() {
+        zoomAt(getWidth() / 2, getHeight() / 2, getZoom() * 1.25);
+    }
+
+    public void zoomOut() {
+        zoomAt(getWidth() / 2, getHeight() / 2, getZoom() / 1.25);
+    }
+
+    /**
+     * 恢复 100% 缩放并回到原点。
+     */
+    public void resetView() {
+        viewScale.setX(1);
+        viewScale.setY(1);
+        viewTranslate.setX(0);
+        viewTranslate.setY(0);
+        updateViewport();
+    }
+
+    public void panBy(double dx, double dy) {
+        viewTranslate.setX(viewTranslate.getX() + dx);
+        viewTranslate.setY(viewTranslate.getY() + dy);
+        updateViewport();
+    }
+
+    // 视口变化后更新网格，并通知渲染器重新裁剪或重画可见内容
+    private void updateViewport() {
+        gridLayer.setView(getZoom(), viewTranslate.getX(), viewTranslate.getY());
+        renderer.viewChanged(getZoom(), viewTranslate.getX(), viewTranslate.getY(), getWidth(), getHeight());
+        redraw();
+    }
+
+    /**
+     * 切换渲染方式。新渲染器接管当前文档的全部图形和连接线。
+     */
+    public void setRenderMode(RenderMode mode) {
+        if (mode == renderMode) return;
+        renderMode = mode;
+        DiagramRenderer old = renderer;
+        old.dispose();
+        getChildren().removeAll(old.getScreenLayers());
+        world.getChildren().removeAll(old.getWorldLayers());
+
+        renderer = mode == RenderMode.CANVAS ? new CanvasRenderer(hitTester) : new SceneRenderer(hitTester);
+        getChildren().addAll(getChildren().indexOf(world), renderer.getScreenLayers());
+        world.getChildren().addAll(0, renderer.getWorldLayers());
+        renderer.shapesAdded(shapes);
+        renderer.linesAdded(connectionLines);
+        updateViewport();
+    }
+
+    public RenderMode getRenderMode() {
+        return renderMode;
+    }
+
+    /**
+     * 设置操作日志：之后画布上的所有修改（命令、移动、属性编辑、增删）都记入该日志。
+     * 传入 null 停止记录，尚未写出的修改会被丢弃。
+     */
+    public void setJournal(Journal journal) {
+        if (journalRecorder != null) journalRecorder.dispose();
+        journalRecorder = journal != null ? new JournalRecorder(journal, shapes, connectionLines) : null;
+    }
+
+    /**
+     * 立即把尚未写出的修改交给操作日志。
+     */
+    public void flushJournal() {
+        if (journalRecorder != null) journalRecorder.flush();
+    }
+
+    /**
+     * @return 自上次保存以来修改过的数据块。
+     */
+    public DirtyChunks getDirtyChunks() {
+        return dirtyChunks;
+    }
+
+    /**
+     * 设置只读：分块打开文件或重新载入外部修改期间禁止编辑，只能平移和缩放。
+     * 进入只读时取消选中，属性面板不再能修改图形。
+     */
+    public void setReadOnly(boolean readOnly) {
+        this.readOnly = readOnly;
+        if (!readOnly) return;
+        selectedShapes.forEach(s -> s.setSelected(false));
+        selectedShapes.clear();
+        if (selectedLine != null) selectedLine.setSelected(false);
+        selectedLine = null;
+        if (propertyPanel != null) {
+            propertyPanel.showShape(null);
+            propertyPanel.showLine(null);
+        }
+        redraw();
+    }
+
+    /**
+     * @return 当前文档的图形 ID 表。
+     */
+    public FlowchartDocument getDocument() {
+        return document;
+    }
+
+    // 图形和连接线加入画布时注册变更监听，移除时注销
+    private void setupModelListeners() {
+        shapes.addListener((ListChangeListener<FlowchartShape>) change -> {
+            while (change.next()) {
+                for (FlowchartShape shape : change.getRemoved()) {
+                    shape.setModelListener(null);
+                    document.unregister(shape);
+                }
+                for (FlowchartShape shape : change.getAddedSubList()) {
+                    shape.setModelListener(modelListener);
+                    document.register(shape);
+                }
+                if (trackDirty) {
+                    dirtyChunks.shapesChanged(change.getRemoved());
+                    dirtyChunks.shapesChanged(change.getAddedSubList());
+                }
+                renderer.shapesRemoved(change.getRemoved());
+                renderer.shapesAdded(change.getAddedSubList());
+                if (journalRecorder != null) {
+                    journalRecorder.shapesRemoved(change.getRemoved());
+                    journalRecorder.shapesAdded(change.getAddedSubList());
+                }
+            }
+        });
+        connectionLines.addListener((ListChangeListener<ConnectionLine>) change -> {
+            while (change.next()) {
+                for (ConnectionLine line : change.getRemoved()) {
+                    line.setModelListener(null);
+                    document.unregisterLine(line);
+                }
+                for (ConnectionLine line : change.getAddedSubList()) {
+                    line.setModelListener(modelListener);
+                    document.registerLine(line);
+                }
+                if (trackDirty) {
+                    dirtyChunks.linesChanged(change.getRemoved());
+                    dirtyChunks.linesChanged(change.getAddedSubList());
+                }
+                renderer.linesRemoved(change.getRemoved());
+                renderer.linesAdded(change.getAddedSubList());
+                if (journalRecorder != null) {
+                    journalRecorder.linesRemoved(change.getRemoved());
+                    journalRecorder.linesAdded(change.getAddedSubList());
+                }
+            }
+        });
+    }
+
     private void setupMouseHandlers() {
         this.setOnMousePressed(this::handleMousePressed);
         this.setOnMouseDragged(this::handleMouseDragged);
@@ -141,7 +404,7 @@ public class CanvasPane extends Pane {
     private void setupDragAndDropHandlers() {
         this.setOnDragOver(event -> {
             // 仅接受来自 ShapeLibraryPanel 的拖放
-            if (event.getGestureSource() != this && event.getDragboard().hasString()) {
+            if (!readOnly && event.getGestureSource() != this && event.getDragboard().hasString()) {
                 event.acceptTransferModes(TransferMode.COPY_OR_MOVE);
             }
             event.consume();
@@ -153,8 +416,8 @@ public class CanvasPane extends Pane {
             if (db.hasString()) {
                 String shapeType = db.getString();
                 // 应用网格对齐到拖放位置
-                double x = snapToGridEnabled ? snapToGrid(event.getX()) : event.getX();
-                double y = snapToGridEnabled ? snapToGrid(event.getY()) : event.getY();
+                double x = snapToGridEnabled ? snapToGrid(toWorldX(event.getX())) : toWorldX(event.getX());
+                double y = snapToGridEnabled ? snapToGrid(toWorldY(event.getY())) : toWorldY(event.getY());
 
                 FlowchartShape newShape = null;
                 switch (shapeType) {
@@ -189,24 +452,31 @@ public class CanvasPane extends Pane {
 
     public void setPropertyPanel(PropertyPanel panel) {
         this.propertyPanel = panel;
+        // 编辑完成后才放入样式池，输入过程中的半截文字不会留在池中
+        panel.setOnShapeCommitted(document::intern);
+        panel.setOnLineCommitted(document::intern);
     }
 
     private void handleMousePressed(MouseEvent event) {
         this.requestFocus();
-        mousePressedX = event.getX();
-        mousePressedY = event.getY();
+        // 中键或右键拖动平移画布
+        if (event.getButton() == MouseButton.MIDDLE || event.getButton() == MouseButton.SECONDARY) {
+            isPanning = true;
+            panStartX = event.getX();
+            panStartY = event.getY();
+            panOriginX = viewTranslate.getX();
+            panOriginY = viewTranslate.getY();
+            return;
+        }
+        if (readOnly) return;
+        double worldX = toWorldX(event.getX()), worldY = toWorldY(event.getY());
+        mousePressedX = worldX;
+        mousePressedY = worldY;
         isDraggingShapes = false;
         isDrawingNewShape = false;
 
         // 先检测是否点击了图形并需要跳转
-        FlowchartShape clickedShape = null;
-        for (int i = shapes.size() - 1; i >= 0; i--) {
-            FlowchartShape s = shapes.get(i);
-            if (s.contains(event.getX(), event.getY())) {
-                clickedShape = s;
-                break;
-            }
-        }
+        FlowchartShape clickedShape = hitTester.shapeAt(worldX, worldY);
         if (event.isControlDown() && clickedShape != null && clickedShape.getLink() != null && !clickedShape.getLink().isEmpty()) {
             String url = clickedShape.getLink();
             if (!url.startsWith("http://") && !url.startsWith("https://")) {
@@ -222,7 +492,7 @@ public class CanvasPane extends Pane {
         }
 
         // 优先检测是否点击了连接线
-        ConnectionLine clickedLine = findConnectionLine(event.getX(), event.getY());
+        ConnectionLine clickedLine = findConnectionLine(worldX, worldY);
         if (clickedLine != null) {
             // 只允许单选线
             if (selectedLine != null) selectedLine.setSelected(false);
@@ -246,19 +516,20 @@ public class CanvasPane extends Pane {
             isDrawingNewShape = true;
             tempDrawingShape = createTempJavaFXShape(currentTool, mousePressedX, mousePressedY);
             if (tempDrawingShape != null) {
-                getChildren().add(tempDrawingShape);
+                overlay.getChildren().add(tempDrawingShape);
             }
             return;
         }
 
         // 检查是否点击了连接点（只有点在连接点上才允许开始连线）
-        ConnectionPoint cp = findConnectionPoint(event.getX(), event.getY());
+        ConnectionPoint cp = findConnectionPoint(worldX, worldY);
         if (cp != null) {
             startConnectionPoint = cp;
             tempConnectionLine = new ConnectionLine();
             tempConnectionLine.setStartPoint(startConnectionPoint);
             tempConnectionLine.setTempEnd(startConnectionPoint.getX(), startConnectionPoint.getY());
-            getChildren().addAll(tempConnectionLine.getLine(), tempConnectionLine.getArrow());
+            tempLineView = new LineView(tempConnectionLine);
+            overlay.getChildren().add(tempLineView.getNode());
             isConnecting = true;
             redraw();
             return;
@@ -283,14 +554,8 @@ public class CanvasPane extends Pane {
                 selectedShapes.remove(clickedShape);
             }
             isDraggingShapes = true; // 准备拖动已选中的图形
-            dragOriginMouseX = event.getX();
-            dragOriginMouseY = event.getY();
-            dragStartX.clear();
-            dragStartY.clear();
-            for (FlowchartShape s : selectedShapes) {
-                dragStartX.add(s.getX());
-                dragStartY.add(s.getY());
-            }
+            dragOriginMouseX = worldX;
+            dragOriginMouseY = worldY;
         } else { // 点击空白处，清除所有选中
             selectedShapes.forEach(s -> {
                 s.setSelected(false);
@@ -298,8 +563,8 @@ public class CanvasPane extends Pane {
             });
             selectedShapes.clear();
             isSelecting = true;
-            selectStartX = event.getX();
-            selectStartY = event.getY();
+            selectStartX = worldX;
+            selectStartY = worldY;
             selectionRect.setX(selectStartX);
             selectionRect.setY(selectStartY);
             selectionRect.setWidth(0);
@@ -319,7 +584,14 @@ public class CanvasPane extends Pane {
     }
 
     private void handleMouseDragged(MouseEvent event) {
-        double x = event.getX(), y = event.getY();
+        if (isPanning) {
+            viewTranslate.setX(panOriginX + event.getX() - panStartX);
+            viewTranslate.setY(panOriginY + event.getY() - panStartY);
+            updateViewport();
+            return;
+        }
+        if (readOnly) return;
+        double x = toWorldX(event.getX()), y = toWorldY(event.getY());
 
         // 拖动创建新图形
         if (isDrawingNewShape && tempDrawingShape != null) {
@@ -341,18 +613,24 @@ public class CanvasPane extends Pane {
         if (isDraggingShapes && !selectedShapes.isEmpty()) {
             double dx = snapToGridEnabled ? snapToGrid(x - dragOriginMouseX) : (x - dragOriginMouseX);
             double dy = snapToGridEnabled ? snapToGrid(y - dragOriginMouseY) : (y - dragOriginMouseY);
-            for (int i = 0; i < selectedShapes.size(); i++) {
-                FlowchartShape s = selectedShapes.get(i);
-                s.setX(dragStartX.get(i) + dx);
-                s.setY(dragStartY.get(i) + dy);
+            if (dragPreview == null) {
+                dragPreview = new DragPreview(selectedShapes);
+                world.getChildren().add(0, dragPreview.getLayer());
+                renderer.beginDrag(dragPreview);
+                redraw();
             }
-            redraw();
+            // 拖动期间只平移显示，不修改模型
+            dragDx = dx;
+            dragDy = dy;
+            dragPreview.update(dx, dy);
+            renderer.dragTo(dx, dy);
             return;
         }
 
         // 处理连接线的拖动（连线模式下实时显示临时线和箭头）
         if (isConnecting && startConnectionPoint != null && tempConnectionLine != null) {
             tempConnectionLine.setTempEnd(x, y);
+            tempLineView.update();
             return;
         }
 
@@ -375,18 +653,23 @@ public class CanvasPane extends Pane {
     }
 
     private void handleMouseReleased(MouseEvent event) {
-        double x = event.getX(), y = event.getY();
+        if (isPanning) {
+            isPanning = false;
+            return;
+        }
+        if (readOnly) return;
+        double x = toWorldX(event.getX()), y = toWorldY(event.getY());
 
         // 处理连接线的完成
         if (startConnectionPoint != null && tempConnectionLine != null) {
             ConnectionPoint endPoint = findConnectionPoint(x, y);
+            overlay.getChildren().remove(tempLineView.getNode());
+            tempLineView = null;
             if (endPoint != null && endPoint != startConnectionPoint) {
                 tempConnectionLine.setEndPoint(endPoint);
                 connectionLines.add(tempConnectionLine);
                 startConnectionPoint.getParentShape().addOutgoingLine(tempConnectionLine);
                 endPoint.getParentShape().addIncomingLine(tempConnectionLine);
-            } else {
-                getChildren().removeAll(tempConnectionLine.getLine(), tempConnectionLine.getArrow());
             }
             startConnectionPoint = null;
             tempConnectionLine = null;
@@ -397,7 +680,7 @@ public class CanvasPane extends Pane {
 
         // 完成新图形的绘制
         if (isDrawingNewShape && tempDrawingShape != null) {
-            getChildren().remove(tempDrawingShape); // 移除临时图形
+            overlay.getChildren().remove(tempDrawingShape); // 移除临时图形
             double startX = mousePressedX;
             double startY = mousePressedY;
             double endX = snapToGridEnabled ? snapToGrid(x) : x;
@@ -460,15 +743,11 @@ public class CanvasPane extends Pane {
             double minY = selectionRect.getY();
             double maxX = minX + selectionRect.getWidth();
             double maxY = minY + selectionRect.getHeight();
+            selectedShapes.forEach(s -> s.setSelected(false));
             selectedShapes.clear();
-            for (FlowchartShape s : shapes) {
-                if (s.getX() >= minX && s.getY() >= minY &&
-                    s.getX() + s.getWidth() <= maxX && s.getY() + s.getHeight() <= maxY) {
-                    selectedShapes.add(s);
-                    s.setSelected(true);
-                } else {
-                    s.setSelected(false);
-                }
+            for (FlowchartShape s : hitTester.shapesInside(minX, minY, maxX, maxY)) {
+                selectedShapes.add(s);
+                s.setSelected(true);
             }
             selectionRect.setVisible(false);
             isSelecting = false;
@@ -484,10 +763,22 @@ public class CanvasPane extends Pane {
                 }
             }
         }
+        if (dragPreview != null) {
+            finishDrag();
+        }
         isDraggingShapes = false;
         redraw();
     }
 
+    // 结束拖动，把位移一次性写回模型
+    private void finishDrag() {
+        renderer.endDrag();
+        world.getChildren().remove(dragPreview.getLayer());
+        dragPreview = null;
+        // 拖动期间模型未变，所有选中图形的位移相同
+        FlowchartShape.moveAll(selectedShapes, dragDx, dragDy);
+    }
+
     /**
      * 清空画布上的所有图形和选中状态。
      */
@@ -497,6 +788,7 @@ public class CanvasPane extends Pane {
         connectionLines.clear();
         undoStack.clear();
         redoStack.clear();
+        document.clear(); // 样式池只保留当前文档的值
         redraw();
         if (propertyPanel != null) {
             propertyPanel.showShape(null);
@@ -509,18 +801,13 @@ public class CanvasPane extends Pane {
      * @return 包含所有图形数据的JSON字符串。
      */
     public String saveShapesToJson() {
-        JSONObject root = new JSONObject();
-        JSONArray shapeArray = new JSONArray();
-        for (FlowchartShape shape : shapes) {
-            shapeArray.put(shape.toJsonObject());
-        }
-        root.put("shapes", shapeArray);
-        JSONArray lineArray = new JSONArray();
-        for (ConnectionLine line : connectionLines) {
-            lineArray.put(line.toJsonObject(shapes));
+        StringWriter out = new StringWriter();
+        try {
+            new JsonFlowchartWriter(out, false).write(shapes, connectionLines);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e); // StringWriter 不会抛出
         }
-        root.put("connections", lineArray);
-        return root.toString(4);
+        return out.toString();
     }
 
     /**
@@ -528,59 +815,125 @@ public class CanvasPane extends Pane {
      * @param jsonString 包含图形数据的JSON字符串。
      */
     public void loadShapesFromJson(String jsonString) {
-        clearCanvas();
-        JSONObject root = new JSONObject(jsonString);
-        JSONArray shapeArray = root.getJSONArray("shapes");
-        for (int i = 0; i < shapeArray.length(); i++) {
-            JSONObject json = shapeArray.getJSONObject(i);
-            String type = json.getString("type");
-            double x = json.getDouble("x");
-            double y = json.getDouble("y");
-            double width = json.getDouble("width");
-            double height = json.getDouble("height");
-            String label = json.getString("label");
-            Color color = Color.valueOf(json.getString("color"));
-            FlowchartShape newShape = null;
-            switch (type) {
-                case "rectangle":
-                    newShape = new RectangleShape(x, y, width, height, label);
-                    break;
-                case "ellipse":
-                    newShape = new EllipseShape(x, y, width, height, label);
-                    break;
-                case "diamond":
-                    newShape = new DiamondShape(x, y, width, height, label);
-                    break;
-                case "parallelogram":
-                    newShape = new ParallelogramShape(x, y, width, height, label);
-                    break;
-                case "circle":
-                    newShape = new CircleShape(x, y, width, height, label);
-                    break;
-                case "hexagon":
-                    newShape = new HexagonShape(x, y, width, height, label);
-                    break;
-            }
-            if (newShape != null) {
-                newShape.setColor(color);
-                shapes.add(newShape);
-            }
+        try {
+            loadData(new JsonFlowchartReader(new StringReader(jsonString)).read());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
         }
-        // 加载连接线
-        if (root.has("connections")) {
-            JSONArray lineArray = root.getJSONArray("connections");
-            for (int i = 0; i < lineArray.length(); i++) {
-                JSONObject lineJson = lineArray.getJSONObject(i);
-                ConnectionLine line = ConnectionLine.fromJsonObject(lineJson, shapes);
-                connectionLines.add(line);
-                // 维护入线/出线
-                line.getStartPoint().getParentShape().addOutgoingLine(line);
-                if (line.getEndPoint() != null) {
-                    line.getEndPoint().getParentShape().addIncomingLine(line);
-                }
-            }
+    }
+
+    /**
+     * 用读取到的文档内容替换画布内容。图形和连接线各用一次 setAll 替换，
+     * 渲染器和命中测试只收到一次批量变更，最后重绘一次。
+     */
+    public void loadData(FlowchartData data) {
+        selectedShapes.clear();
+        undoStack.clear();
+        redoStack.clear();
+        connectionLines.clear();
+        document.clear(); // 旧文档的 ID 和样式池，新内容加入时重新登记
+        shapes.setAll(data.getShapes()); // 加入时登记 ID
+        connectionLines.setAll(data.getConnections());
+        dirtyChunks.reset(null); // 内容与任何文件都不对应，下次保存完整写出
+        redraw();
+        if (propertyPanel != null) {
+            propertyPanel.showShape(null);
+            propertyPanel.showLine(null);
+        }
+    }
+
+    /**
+     * 追加一块读取到的内容（分块打开文件时使用），连接线在这里登记到两端图形上。
+     * 追加的内容来自文件，不记入操作日志，也不记为增量保存要写出的修改。
+     */
+    public void appendData(FlowchartData chunk) {
+        JournalRecorder recorder = journalRecorder;
+        journalRecorder = null;
+        trackDirty = false;
+        for (ConnectionLine line : chunk.getConnections()) line.attach();
+        shapes.addAll(chunk.getShapes());
+        connectionLines.addAll(chunk.getConnections());
+        trackDirty = true;
+        journalRecorder = recorder;
+        redraw();
+    }
+
+    /**
+     * 应用文件被外部修改后的差异：只增删改有变化的图形和连接线，保留其余对象、选中状态和撤销历史。
+     * 修改的对象仍是画布上原来的对象，属性面板和撤销命令中的引用继续有效。
+     */
+    public void applyExternalChanges(FlowchartDiff diff) {
+        if (diff.isEmpty()) return;
+        Set<Object> removed = Collections.newSetFromMap(new IdentityHashMap<>());
+        removed.addAll(diff.getRemovedLines());
+        removed.addAll(diff.getRemovedShapes());
+        for (ConnectionLine line : diff.getRemovedLines()) line.detach();
+        if (removed.contains(selectedLine)) selectedLine = null;
+        connectionLines.removeAll(removed); // 一次批量变更
+        selectedShapes.removeIf(removed::contains);
+        shapes.removeAll(removed);
+
+        diff.getChangedShapes().forEach((shape, updated) -> {
+            shape.setBounds(updated.getX(), updated.getY(), updated.getWidth(), updated.getHeight());
+            shape.setLabel(updated.getLabel());
+            shape.setColor(updated.getColor());
+            shape.setLink(updated.getLink());
+            document.intern(shape);
+        });
+        for (FlowchartShape shape : diff.getAddedShapes()) {
+            shape.getIncomingLines().clear(); // 文件中的连接线在下面按画布上的图形重新连接
+            shape.getOutgoingLines().clear();
+        }
+        shapes.addAll(diff.getAddedShapes());
+
+        diff.getChangedLines().forEach((line, updated) -> {
+            line.detach();
+            copyLine(updated, line);
+            line.attach();
+            document.intern(line);
+        });
+        List<ConnectionLine> added = new ArrayList<>(diff.getAddedLines().size());
+        for (ConnectionLine updated : diff.getAddedLines()) {
+            ConnectionLine line = new ConnectionLine();
+            line.setId(updated.getId());
+            copyLine(updated, line);
+            if (line.getStartPoint() == null) continue;
+            line.attach();
+            added.add(line);
         }
+        connectionLines.addAll(added);
         redraw();
+        if (propertyPanel != null) {
+            propertyPanel.showShape(selectedShapes.isEmpty() ? null : selectedShapes.get(selectedShapes.size() - 1));
+            propertyPanel.showLine(selectedLine);
+        }
+    }
+
+    // 把文件中连接线的两端（按图形 ID 换成画布上的图形）和样式复制到画布上的连接线
+    private void copyLine(ConnectionLine from, ConnectionLine to) {
+        ConnectionPoint start = from.getStartPoint();
+        ConnectionPoint end = from.getEndPoint();
+        to.setStartPoint(FlowchartDocument.getPoint(document.getShape(start.getParentShape().getId()), start.getIndex()));
+        ConnectionPoint newEnd = end == null ? null
+                : FlowchartDocument.getPoint(document.getShape(end.getParentShape().getId()), end.getIndex());
+        to.setEndPoint(newEnd);
+        to.setLineType(from.getLineType());
+        to.setStyle(from.getStyle());
+        to.setArrowEnabled(from.isArrowEnabled());
+    }
+
+    /**
+     * @return 画布上的图形（只读）。
+     */
+    public List<FlowchartShape> getShapes() {
+        return Collections.unmodifiableList(shapes);
+    }
+
+    /**
+     * @return 画布上的连接线（只读）。
+     */
+    public List<ConnectionLine> getConnectionLines() {
+        return Collections.unmodifiableList(connectionLines);
     }
 
     // 根据工具类型创建临时 JavaFX Shape
@@ -671,48 +1024,64 @@ public class CanvasPane extends Pane {
         }
     }
 
+    /**
+     * 请求重绘。同一帧内的多次请求合并为一次，在下一个脉冲布局前执行。
+     */
     public void redraw() {
-        getChildren().removeIf(n -> (n instanceof Shape && n != tempDrawingShape && n != selectionRect) || n instanceof Text);
-        
-        // 绘制所有连接线
-        for (ConnectionLine line : connectionLines) {
-            getChildren().addAll(line.getLine(), line.getArrow());
-        }
-        
-        // 绘制所有图形
-        for (FlowchartShape shape : shapes) {
-            Shape fxShape = shape.getShape();
-            getChildren().add(fxShape);
-            Text text = new Text(shape.getX() + 20, shape.getY() + shape.getHeight() / 2, shape.getLabel());
-            getChildren().add(text);
-            
-            // 绘制连接点
-            for (ConnectionPoint point : shape.getConnectionPoints()) {
-                if (isConnecting || shape.isSelected()) {
-                    point.show();
-                    getChildren().add(point.getVisualPoint());
-                } else {
-                    point.hide();
-                }
-            }
-        }
-        
-        // 确保临时绘制的图形在最顶层
-        if (tempDrawingShape != null && !getChildren().contains(tempDrawingShape)) {
-            getChildren().add(tempDrawingShape);
-        }
-        if (selectionRect.isVisible() && !getChildren().contains(selectionRect)) {
-            getChildren().add(selectionRect);
-        }
-        // 保证临时连线在最顶层
-        if (isConnecting && tempConnectionLine != null) {
-            if (!getChildren().contains(tempConnectionLine.getLine())) {
-                getChildren().add(tempConnectionLine.getLine());
-            }
-            if (!getChildren().contains(tempConnectionLine.getArrow())) {
-                getChildren().add(tempConnectionLine.getArrow());
-            }
-        }
+        redrawScheduler.request();
+    }
+
+    /**
+     * 立即执行尚未完成的重绘。
+     */
+    public void flushRedraw() {
+        redrawScheduler.flush();
+    }
+
+    /**
+     * 将模型的变化同步到画布。渲染器只处理发生变化的图形和连接线，
+     * 临时图形、框选矩形和临时连线位于 overlay 层，始终在图层之上。
+     */
+    private void redrawNow() {
+        long start = System.nanoTime();
+        renderer.setShowAllConnectionPoints(isConnecting);
+        renderer.sync();
+        lastRedrawNanos = System.nanoTime() - start;
+    }
+
+    /**
+     * @return 画布图层中当前的节点数量。
+     */
+    public int getRenderedNodeCount() {
+        return renderer.getNodeCount();
+    }
+
+    /**
+     * @return 最近一次重绘耗时（纳秒）。
+     */
+    public long getLastRedrawNanos() {
+        return lastRedrawNanos;
+    }
+
+    /**
+     * @return 最近一次重绘中实际修补的图形与连接线数量。
+     */
+    public int getLastPatchedCount() {
+        return renderer.getLastPatchedCount();
+    }
+
+    /**
+     * @return 被合并掉的多余重绘请求数。
+     */
+    public long getCollapsedRedrawCount() {
+        return redrawScheduler.getCollapsedCount();
+    }
+
+    /**
+     * @return 实际执行的重绘次数。
+     */
+    public long getRedrawRunCount() {
+        return redrawScheduler.getRunCount();
     }
 
     private void executeCommand(Command command) {
@@ -722,7 +1091,7 @@ public class CanvasPane extends Pane {
     }
 
     public void undo() {
-        if (!undoStack.isEmpty()) {
+        if (!readOnly && !undoStack.isEmpty()) {
             Command command = undoStack.pop();
             command.undo();
             redoStack.push(command);
@@ -731,7 +1100,7 @@ public class CanvasPane extends Pane {
     }
 
     public void redo() {
-        if (!redoStack.isEmpty()) {
+        if (!readOnly && !redoStack.isEmpty()) {
             Command command = redoStack.pop();
             command.execute();
             undoStack.push(command);
@@ -758,7 +1127,7 @@ public class CanvasPane extends Pane {
     // 粘贴
     public void pasteShapes() {
         System.out.println("pasteShapes() called. clipboard size: " + clipboard.size());
-        if (!clipboard.isEmpty()) {
+        if (!readOnly && !clipboard.isEmpty()) {
             selectedShapes.forEach(s -> s.setSelected(false)); // 清除当前选中
             selectedShapes.clear();
             for (FlowchartShape shape : clipboard) {
@@ -793,7 +1162,7 @@ public class CanvasPane extends Pane {
 
     // 删除选中的图形
     public void deleteSelectedShapes() {
-        if (!selectedShapes.isEmpty()) {
+        if (!readOnly && !selectedShapes.isEmpty()) {
             // 从 shapes 列表中移除选中的图形
             shapes.removeAll(selectedShapes);
             selectedShapes.clear(); // 清空选中列表
@@ -807,38 +1176,16 @@ public class CanvasPane extends Pane {
         return Math.round(value / GRID_SIZE) * GRID_SIZE;
     }
 
-    // 设置网格
+    // 设置网格：网格层是独立的 Canvas 节点，位于所有图层之下，不进入图形的子节点列表
     private void setupGrid() {
-        // 清除现有的网格线
-        gridLines.forEach(line -> getChildren().remove(line));
-        gridLines.clear();
-
-        if (!showGrid) return;
-
-        // 创建垂直线
-        for (int x = 0; x < getWidth(); x += GRID_SIZE) {
-            javafx.scene.shape.Line line = new javafx.scene.shape.Line(x, 0, x, getHeight());
-            line.setStroke(Color.LIGHTGRAY);
-            line.setStrokeWidth(0.5);
-            gridLines.add(line);
-            getChildren().add(line);
-        }
-
-        // 创建水平线
-        for (int y = 0; y < getHeight(); y += GRID_SIZE) {
-            javafx.scene.shape.Line line = new javafx.scene.shape.Line(0, y, getWidth(), y);
-            line.setStroke(Color.LIGHTGRAY);
-            line.setStrokeWidth(0.5);
-            gridLines.add(line);
-            getChildren().add(line);
-        }
+        gridLayer.setVisible(showGrid);
+        getChildren().add(0, gridLayer);
     }
 
     // 切换网格显示
     public void toggleGrid() {
         showGrid = !showGrid;
-        setupGrid();
-        redraw();
+        gridLayer.setVisible(showGrid);
     }
 
     // 切换网格对齐
@@ -846,65 +1193,11 @@ public class CanvasPane extends Pane {
         snapToGridEnabled = !snapToGridEnabled;
     }
 
-    // 重写布局方法以更新网格
-    @Override
-    protected void layoutChildren() {
-        super.layoutChildren();
-        setupGrid();
-    }
-
     private ConnectionPoint findConnectionPoint(double x, double y) {
-        for (FlowchartShape shape : shapes) {
-            for (ConnectionPoint point : shape.getConnectionPoints()) {
-                double dx = point.getX() - x;
-                double dy = point.getY() - y;
-                if (point.isVisible() && Math.sqrt(dx * dx + dy * dy) < 12) {
-                    return point;
-                }
-            }
-        }
-        return null;
+        return hitTester.connectionPointNear(x, y, 12);
     }
 
     private ConnectionLine findConnectionLine(double x, double y) {
-        for (ConnectionLine line : connectionLines) {
-            Shape shape = line.getLine();
-            if (shape instanceof javafx.scene.shape.Line) {
-                javafx.scene.shape.Line l = (javafx.scene.shape.Line) shape;
-                if (pointToSegmentDistance(x, y, l.getStartX(), l.getStartY(), l.getEndX(), l.getEndY()) < 8) return line;
-            } else if (shape instanceof Polyline) {
-                Polyline poly = (Polyline) shape;
-                ObservableList<Double> pts = poly.getPoints();
-                for (int i = 0; i < pts.size() - 2; i += 2) {
-                    double x1 = pts.get(i), y1 = pts.get(i + 1);
-                    double x2 = pts.get(i + 2), y2 = pts.get(i + 3);
-                    if (pointToSegmentDistance(x, y, x1, y1, x2, y2) < 8) return line;
-                }
-            } else if (shape instanceof QuadCurve) {
-                QuadCurve curve = (QuadCurve) shape;
-                // 近似用端点和控制点分段检测
-                if (pointToSegmentDistance(x, y, curve.getStartX(), curve.getStartY(), curve.getControlX(), curve.getControlY()) < 8) return line;
-                if (pointToSegmentDistance(x, y, curve.getControlX(), curve.getControlY(), curve.getEndX(), curve.getEndY()) < 8) return line;
-            }
-        }
-        return null;
-    }
-
-    private double pointToSegmentDistance(double px, double py, double x1, double y1, double x2, double y2) {
-        double dx = x2 - x1, dy = y2 - y1;
-        if (dx == 0 && dy == 0) return Math.hypot(px - x1, py - y1);
-        double t = ((px - x1) * dx + (py - y1) * dy) / (dx * dx + dy * dy);
-        t = Math.max(0, Math.min(1, t));
-        double projX = x1 + t * dx, projY = y1 + t * dy;
-        return Math.hypot(px - projX, py - projY);
-    }
-
-    public void exportAsPng(File file) {
-        WritableImage image = this.snapshot(new SnapshotParameters(), null);
-        try {
-            ImageIO.write(SwingFXUtils.fromFXImage(image, null), "png", file);
-        } catch (IOException e) {
-            e.printStackTrace();
-        }
+        return hitTester.lineNear(x, y, 8);
     }
-}
\ No newline at end of file
+}
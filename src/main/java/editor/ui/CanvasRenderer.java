@@ -0,0 +1,424 @@
+package editor.ui;
+
+import editor.export.DiagramBounds;
+import editor.model.ConnectionLine;
+import editor.model.FlowchartShape;
+import editor.model.OutlineVisitor;
+import javafx.scene.Group;
+import javafx.scene.Node;
+import javafx.scene.canvas.Canvas;
+import javafx.scene.canvas.GraphicsContext;
+import javafx.scene.paint.Color;
+import javafx.scene.text.Font;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 立即模式渲染器：所有图形、连接线和文字直接画在一个与视口等大的 Canvas 上，
+ * 场景图大小与文档规模无关。模型变化时只重画受影响的脏矩形；平移、缩放时整屏重画。
+ * 连接点仍然是真实节点，放在世界坐标的连接点层中，供连线交互使用。
+ */
+public class CanvasRenderer implements DiagramRenderer {
+    private static final double CELL_SIZE = 128;
+    private static final double MIN_TEXT_SIZE = 4; // 屏幕上字号小于该值时不绘制文字
+
+    private final Canvas canvas = new Canvas();
+    private final Canvas dragCanvas = new Canvas(); // 拖动中的选区单独画在这一层，通过平移移动
+    private final Group pointLayer = new Group();
+    private final HitTester hitTester; // 提供图形、连接线的前后顺序
+    // 记录每个对象上次绘制占用的范围（含文字、箭头），用于计算脏矩形和局部重画时的查询
+    private final SpatialIndex<FlowchartShape> shapePaintIndex = new SpatialIndex<>(CELL_SIZE);
+    private final SpatialIndex<ConnectionLine> linePaintIndex = new SpatialIndex<>(CELL_SIZE);
+    private final Set<FlowchartShape> dirtyShapes = new LinkedHashSet<>(); // 连接点可能需要更新的图形
+    private final Map<FlowchartShape, PointHandles> pointHandles = new HashMap<>(); // 已挂上连接点的图形
+    private final Font font = Font.getDefault();
+
+    private double zoom = 1, offsetX, offsetY, viewWidth, viewHeight;
+    private boolean showAllPoints = false;
+    private boolean fullRepaint = true;
+    private boolean pointsStale = false; // 视图或显示模式变化后需要重新检查全部连接点
+    private boolean hasDirty = false;
+    private double dirtyMinX, dirtyMinY, dirtyMaxX, dirtyMaxY; // 脏矩形（世界坐标）
+    private long lastSyncNanos;
+    private int lastPatchedCount;
+    private DragPreview drag; // 当前拖动，未拖动时为 null
+    private final Set<ConnectionLine> dragLines = new HashSet<>(); // 拖动期间不画在主画布上的连接线
+
+    public CanvasRenderer(HitTester hitTester) {
+        this.hitTester = hitTester;
+        canvas.setMouseTransparent(true);
+        canvas.setManaged(false);
+        dragCanvas.setMouseTransparent(true);
+        dragCanvas.setManaged(false);
+    }
+
+    @Override
+    public List<Node> getScreenLayers() {
+        return List.of(canvas, dragCanvas);
+    }
+
+    @Override
+    public List<Node> getWorldLayers() {
+        return List.of(pointLayer);
+    }
+
+    @Override
+    public void shapeChanged(FlowchartShape shape) {
+        if (!shapePaintIndex.contains(shape)) return; // 尚未加入或已移除
+        markDirty(shapePaintIndex.bounds(shape));
+        double[] bounds = paintBounds(shape);
+        shapePaintIndex.put(shape, bounds[0], bounds[1], bounds[2], bounds[3]);
+        markDirty(bounds);
+        dirtyShapes.add(shape);
+    }
+
+    @Override
+    public void lineChanged(ConnectionLine line) {
+        if (!linePaintIndex.contains(line)) return;
+        markDirty(linePaintIndex.bounds(line));
+        double[] bounds = paintBounds(line);
+        if (bounds == null) return;
+        linePaintIndex.put(line, bounds[0], bounds[1], bounds[2], bounds[3]);
+        markDirty(bounds);
+    }
+
+    @Override
+    public void shapesAdded(List<? extends FlowchartShape> shapes) {
+        for (FlowchartShape shape : shapes) {
+            double[] bounds = paintBounds(shape);
+            shapePaintIndex.put(shape, bounds[0], bounds[1], bounds[2], bounds[3]);
+            markDirty(bounds);
+            dirtyShapes.add(shape);
+        }
+    }
+
+    @Override
+    public void shapesRemoved(List<? extends FlowchartShape> shapes) {
+        for (FlowchartShape shape : shapes) {
+            markDirty(shapePaintIndex.bounds(shape));
+            shapePaintIndex.remove(shape);
+            dirtyShapes.remove(shape);
+            detachPoints(shape);
+        }
+    }
+
+    @Override
+    public void linesAdded(List<? extends ConnectionLine> lines) {
+        for (ConnectionLine line : lines) {
+            double[] bounds = paintBounds(line);
+            if (bounds == null) continue;
+            linePaintIndex.put(line, bounds[0], bounds[1], bounds[2], bounds[3]);
+            markDirty(bounds);
+        }
+    }
+
+    @Override
+    public void linesRemoved(List<? extends ConnectionLine> lines) {
+        for (ConnectionLine line : lines) {
+            markDirty(linePaintIndex.bounds(line));
+            linePaintIndex.remove(line);
+        }
+    }
+
+    @Override
+    public void setShowAllConnectionPoints(boolean show) {
+        if (showAllPoints == show) return;
+        showAllPoints = show;
+        pointsStale = true;
+    }
+
+    @Override
+    public void viewChanged(double zoom, double offsetX, double offsetY, double width, double height) {
+        if (zoom == this.zoom && offsetX == this.offsetX && offsetY == this.offsetY
+                && width == viewWidth && height == viewHeight) return;
+        this.zoom = zoom;
+        this.offsetX = offsetX;
+        this.offsetY = offsetY;
+        this.viewWidth = width;
+        this.viewHeight = height;
+        fullRepaint = true;
+        pointsStale = true;
+    }
+
+    /**
+     * 视图变化后整屏重画，否则只重画脏矩形；随后更新连接点层。
+     */
+    @Override
+    public void sync() {
+        long start = System.nanoTime();
+        int painted = 0;
+        if (fullRepaint) {
+            if (canvas.getWidth() != viewWidth) canvas.setWidth(viewWidth);
+            if (canvas.getHeight() != viewHeight) canvas.setHeight(viewHeight);
+            painted = repaint(viewMinX(), viewMinY(), viewMaxX(), viewMaxY());
+            if (drag != null) paintDragCanvas();
+        } else if (hasDirty) {
+            double minX = Math.max(dirtyMinX, viewMinX()), minY = Math.max(dirtyMinY, viewMinY());
+            double maxX = Math.min(dirtyMaxX, viewMaxX()), maxY = Math.min(dirtyMaxY, viewMaxY());
+            if (minX < maxX && minY < maxY) painted = repaint(minX, minY, maxX, maxY);
+        }
+        fullRepaint = false;
+        hasDirty = false;
+        syncPoints();
+        lastPatchedCount = painted;
+        lastSyncNanos = System.nanoTime() - start;
+    }
+
+    // 重画世界坐标范围内的内容：先连接线后图形，各自按文档顺序叠放
+    private int repaint(double minX, double minY, double maxX, double maxY) {
+        GraphicsContext gc = canvas.getGraphicsContext2D();
+        // 对齐到整像素，避免抗锯齿边缘残留
+        double sx0 = Math.floor(minX * zoom + offsetX), sy0 = Math.floor(minY * zoom + offsetY);
+        double sx1 = Math.ceil(maxX * zoom + offsetX), sy1 = Math.ceil(maxY * zoom + offsetY);
+        gc.save();
+        gc.beginPath();
+        gc.rect(sx0, sy0, sx1 - sx0, sy1 - sy0);
+        gc.clip();
+        gc.clearRect(sx0, sy0, sx1 - sx0, sy1 - sy0);
+        gc.setTransform(zoom, 0, 0, zoom, offsetX, offsetY);
+
+        // 查询范围按像素对齐后的区域换算回世界坐标
+        minX = (sx0 - offsetX) / zoom;
+        minY = (sy0 - offsetY) / zoom;
+        maxX = (sx1 - offsetX) / zoom;
+        maxY = (sy1 - offsetY) / zoom;
+
+        List<ConnectionLine> lines = linePaintIndex.query(minX, minY, maxX, maxY);
+        lines.sort(Comparator.comparingLong(hitTester::order));
+        for (ConnectionLine line : lines) {
+            if (!dragLines.contains(line)) paintLine(gc, line);
+        }
+        List<FlowchartShape> shapes = shapePaintIndex.query(minX, minY, maxX, maxY);
+        shapes.sort(Comparator.comparingLong(hitTester::order));
+        gc.setFont(font);
+        for (FlowchartShape shape : shapes) {
+            if (drag == null || !drag.getShapes().contains(shape)) paintShape(gc, shape);
+        }
+        gc.restore();
+        return lines.size() + shapes.size();
+    }
+
+    /**
+     * 选区从主画布上擦除，改画到拖动层；边界连接线由 DragPreview 预览。
+     */
+    @Override
+    public void beginDrag(DragPreview preview) {
+        drag = preview;
+        dragLines.addAll(preview.getInternalLines());
+        dragLines.addAll(preview.getBoundaryLines());
+        markDragDirty();
+        paintDragCanvas();
+    }
+
+    @Override
+    public void dragTo(double dx, double dy) {
+        dragCanvas.setTranslateX(dx * zoom);
+        dragCanvas.setTranslateY(dy * zoom);
+        pointLayer.setTranslateX(dx);
+        pointLayer.setTranslateY(dy);
+    }
+
+    @Override
+    public void endDrag() {
+        if (drag == null) return;
+        markDragDirty(); // 选区重新画回主画布
+        drag = null;
+        dragLines.clear();
+        dragCanvas.getGraphicsContext2D().clearRect(0, 0, dragCanvas.getWidth(), dragCanvas.getHeight());
+        dragTo(0, 0);
+    }
+
+    private void markDragDirty() {
+        for (FlowchartShape shape : drag.getShapes()) {
+            markDirty(shapePaintIndex.bounds(shape));
+        }
+        for (ConnectionLine line : dragLines) {
+            markDirty(linePaintIndex.bounds(line));
+        }
+    }
+
+    // 在拖动层上按原位置画出选中图形和内部连接线
+    private void paintDragCanvas() {
+        if (dragCanvas.getWidth() != viewWidth) dragCanvas.setWidth(viewWidth);
+        if (dragCanvas.getHeight() != viewHeight) dragCanvas.setHeight(viewHeight);
+        GraphicsContext gc = dragCanvas.getGraphicsContext2D();
+        gc.clearRect(0, 0, viewWidth, viewHeight);
+        gc.save();
+        gc.setTransform(zoom, 0, 0, zoom, offsetX, offsetY);
+        List<ConnectionLine> lines = new ArrayList<>(drag.getInternalLines());
+        lines.sort(Comparator.comparingLong(hitTester::order));
+        for (ConnectionLine line : lines) {
+            paintLine(gc, line);
+        }
+        List<FlowchartShape> shapes = new ArrayList<>(drag.getShapes());
+        shapes.sort(Comparator.comparingLong(hitTester::order));
+        gc.setFont(font);
+        for (FlowchartShape shape : shapes) {
+            paintShape(gc, shape);
+        }
+        gc.restore();
+    }
+
+    private void paintShape(GraphicsContext gc, FlowchartShape shape) {
+        gc.setFill(FxColors.toFx(shape.getColor()));
+        gc.setStroke(shape.isSelected() ? Color.RED : Color.BLACK);
+        gc.setLineWidth(shape.isSelected() ? 2.0 : 1.0);
+        shape.outline(new OutlineVisitor() {
+            @Override
+            public void rectangle(double x, double y, double width, double height) {
+                gc.fillRect(x, y, width, height);
+                gc.strokeRect(x, y, width, height);
+            }
+
+            @Override
+            public void ellipse(double centerX, double centerY, double radiusX, double radiusY) {
+                gc.fillOval(centerX - radiusX, centerY - radiusY, radiusX * 2, radiusY * 2);
+                gc.strokeOval(centerX - radiusX, centerY - radiusY, radiusX * 2, radiusY * 2);
+            }
+
+            @Override
+            public void polygon(double[] points) {
+                int n = points.length / 2;
+                double[] xs = new double[n], ys = new double[n];
+                for (int i = 0; i < n; i++) {
+                    xs[i] = points[i * 2];
+                    ys[i] = points[i * 2 + 1];
+                }
+                gc.fillPolygon(xs, ys, n);
+                gc.strokePolygon(xs, ys, n);
+            }
+        });
+        String label = shape.getLabel();
+        // 缩得很小时文字已无法辨认，省去文字绘制
+        if (label != null && !label.isEmpty() && font.getSize() * zoom >= MIN_TEXT_SIZE) {
+            gc.setFill(Color.BLACK);
+            gc.fillText(label, shape.getX() + 20, shape.getY() + shape.getHeight() / 2);
+        }
+    }
+
+    private void paintLine(GraphicsContext gc, ConnectionLine line) {
+        double[] p = line.getPathPoints();
+        if (p.length == 0) return;
+        Color color = line.isSelected() ? Color.DODGERBLUE : FxColors.toFx(line.getColor());
+        gc.setStroke(color);
+        gc.setLineWidth(line.isSelected() ? line.getStrokeWidth() + 2 : line.getStrokeWidth());
+        gc.beginPath();
+        gc.moveTo(p[0], p[1]);
+        if (line.getLineType() == ConnectionLine.LineType.CURVE) {
+            gc.quadraticCurveTo(p[2], p[3], p[4], p[5]);
+        } else {
+            for (int i = 2; i < p.length; i += 2) {
+                gc.lineTo(p[i], p[i + 1]);
+            }
+        }
+        gc.stroke();
+
+        if (line.isArrowVisible()) {
+            double[] head = ConnectionLine.arrowHead(p);
+            double[] xs = { head[0], head[2], head[4] };
+            double[] ys = { head[1], head[3], head[5] };
+            gc.setFill(color);
+            gc.setLineWidth(line.getStrokeWidth());
+            gc.fillPolygon(xs, ys, 3);
+            gc.strokePolygon(xs, ys, 3);
+        }
+    }
+
+    // 挂上选中图形（连线时为全部可见图形）的连接点，摘下不再需要的
+    private void syncPoints() {
+        Set<FlowchartShape> candidates = dirtyShapes;
+        if (pointsStale) {
+            candidates = new HashSet<>(pointHandles.keySet());
+            candidates.addAll(dirtyShapes);
+            if (showAllPoints) {
+                candidates.addAll(shapePaintIndex.query(viewMinX(), viewMinY(), viewMaxX(), viewMaxY()));
+            }
+        }
+        for (FlowchartShape shape : candidates) {
+            boolean inView = shape.getX() + shape.getWidth() >= viewMinX() && shape.getX() <= viewMaxX()
+                    && shape.getY() + shape.getHeight() >= viewMinY() && shape.getY() <= viewMaxY();
+            if (inView && (showAllPoints || shape.isSelected())) {
+                attachPoints(shape);
+                pointHandles.get(shape).update();
+            } else {
+                detachPoints(shape);
+            }
+        }
+        dirtyShapes.clear();
+        pointsStale = false;
+    }
+
+    private void attachPoints(FlowchartShape shape) {
+        if (pointHandles.containsKey(shape)) return;
+        PointHandles handles = new PointHandles(shape);
+        pointHandles.put(shape, handles);
+        shape.showConnectionPoints();
+        pointLayer.getChildren().addAll(handles.getNodes());
+    }
+
+    private void detachPoints(FlowchartShape shape) {
+        PointHandles handles = pointHandles.remove(shape);
+        if (handles == null) return;
+        shape.hideConnectionPoints();
+        pointLayer.getChildren().removeAll(handles.getNodes());
+    }
+
+    // 图形的绘制范围：包围盒加描边，再加上文字可能超出的部分，与导出使用相同的估算
+    private double[] paintBounds(FlowchartShape shape) {
+        return DiagramBounds.of(shape, font.getSize());
+    }
+
+    private double[] paintBounds(ConnectionLine line) {
+        return DiagramBounds.of(line);
+    }
+
+    private void markDirty(double[] bounds) {
+        if (bounds == null) return;
+        if (!hasDirty) {
+            dirtyMinX = bounds[0]; dirtyMinY = bounds[1]; dirtyMaxX = bounds[2]; dirtyMaxY = bounds[3];
+            hasDirty = true;
+            return;
+        }
+        dirtyMinX = Math.min(dirtyMinX, bounds[0]);
+        dirtyMinY = Math.min(dirtyMinY, bounds[1]);
+        dirtyMaxX = Math.max(dirtyMaxX, bounds[2]);
+        dirtyMaxY = Math.max(dirtyMaxY, bounds[3]);
+    }
+
+    private double viewMinX() { return -offsetX / zoom; }
+    private double viewMinY() { return -offsetY / zoom; }
+    private double viewMaxX() { return (viewWidth - offsetX) / zoom; }
+    private double viewMaxY() { return (viewHeight - offsetY) / zoom; }
+
+    @Override
+    public void dispose() {
+        for (FlowchartShape shape : new ArrayList<>(pointHandles.keySet())) {
+            detachPoints(shape);
+        }
+    }
+
+    /**
+     * @return 画布本身加上连接点层中的节点数量。
+     */
+    @Override
+    public int getNodeCount() {
+        return 1 + pointLayer.getChildren().size();
+    }
+
+    @Override
+    public long getLastSyncNanos() {
+        return lastSyncNanos;
+    }
+
+    @Override
+    public int getLastPatchedCount() {
+        return lastPatchedCount;
+    }
+}
@@ -0,0 +1,83 @@
+package editor.ui;
+
+import editor.model.ConnectionLine;
+import editor.model.FlowchartShape;
+import editor.model.ModelListener;
+import javafx.scene.Node;
+
+import java.util.List;
+
+/**
+ * 画布渲染后端。CanvasPane 把模型变化、图形增删和视图变化转发给渲染器，
+ * 渲染器决定如何把它们呈现到屏幕上。
+ */
+public interface DiagramRenderer extends ModelListener {
+    /**
+     * @return 屏幕坐标下的图层，位于网格之上、world 之下。
+     */
+    List<Node> getScreenLayers();
+
+    /**
+     * @return 世界坐标下的图层，随 world 一起平移缩放，按从下到上的顺序排列。
+     */
+    List<Node> getWorldLayers();
+
+    void shapesAdded(List<? extends FlowchartShape> shapes);
+
+    void shapesRemoved(List<? extends FlowchartShape> shapes);
+
+    void linesAdded(List<? extends ConnectionLine> lines);
+
+    void linesRemoved(List<? extends ConnectionLine> lines);
+
+    /**
+     * 连线过程中需要显示所有图形的连接点。
+     */
+    void setShowAllConnectionPoints(boolean show);
+
+    /**
+     * 视图变化：缩放比例、平移量（屏幕像素）以及视口尺寸。
+     */
+    void viewChanged(double zoom, double offsetX, double offsetY, double width, double height);
+
+    /**
+     * 将积累的变化呈现到屏幕上。
+     */
+    void sync();
+
+    /**
+     * 开始拖动选区：选中图形及其内部连接线作为一个整体平移显示，
+     * 边界连接线由 DragPreview 预览。拖动期间模型保持不变。
+     */
+    void beginDrag(DragPreview preview);
+
+    /**
+     * 拖动选区到相对起点 (dx, dy) 的位置（世界坐标）。
+     */
+    void dragTo(double dx, double dy);
+
+    /**
+     * 结束拖动，恢复正常显示。随后由调用方一次性写回模型坐标。
+     */
+    void endDrag();
+
+    /**
+     * 渲染器被替换前调用，隐藏并摘下它挂上的连接点。
+     */
+    void dispose();
+
+    /**
+     * @return 渲染器当前占用的场景图节点数量。
+     */
+    int getNodeCount();
+
+    /**
+     * @return 最近一次同步耗时（纳秒）。
+     */
+    long getLastSyncNanos();
+
+    /**
+     * @return 最近一次同步中被重绘或修补的对象数量。
+     */
+    int getLastPatchedCount();
+}
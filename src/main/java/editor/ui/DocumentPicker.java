@@ -0,0 +1,166 @@
+package editor.ui;
+
+import editor.export.ThumbnailCache;
+import editor.io.FlowchartCodec;
+import editor.io.FlowchartCodecs;
+import javafx.application.Platform;
+import javafx.geometry.Insets;
+import javafx.geometry.Pos;
+import javafx.scene.Scene;
+import javafx.scene.control.Button;
+import javafx.scene.control.Label;
+import javafx.scene.control.ScrollPane;
+import javafx.scene.control.Tooltip;
+import javafx.scene.image.Image;
+import javafx.scene.image.ImageView;
+import javafx.scene.layout.BorderPane;
+import javafx.scene.layout.HBox;
+import javafx.scene.layout.StackPane;
+import javafx.scene.layout.TilePane;
+import javafx.scene.layout.VBox;
+import javafx.stage.DirectoryChooser;
+import javafx.stage.Modality;
+import javafx.stage.Stage;
+import javafx.stage.Window;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
+import java.util.prefs.Preferences;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * 带缩略图的文档选择窗口：列出最近打开的文档和文档库目录中的流程图，单击打开。
+ * 缩略图在后台线程上从缓存读取或生成（见 ThumbnailCache），生成前显示占位文字；窗口关闭时放弃尚未开始的生成。
+ */
+public class DocumentPicker extends Stage {
+    private static final String LIBRARY_DIRECTORY = "libraryDirectory";
+
+    private final ThumbnailCache cache;
+    private final Consumer<Path> onOpen;
+    private final ExecutorService loader = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "flowchart-thumbnails");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final TilePane recentTiles = createTiles();
+    private final TilePane libraryTiles = createTiles();
+    private final Label libraryLabel = new Label();
+
+    /**
+     * @param recent 最近打开的文档，最近的在前
+     * @param onOpen 选中文档后调用（FX 线程）
+     */
+    public DocumentPicker(Window owner, ThumbnailCache cache, List<Path> recent, Consumer<Path> onOpen) {
+        this.cache = cache;
+        this.onOpen = onOpen;
+        initOwner(owner);
+        initModality(Modality.WINDOW_MODAL);
+        setTitle("浏览文档");
+
+        Button chooseBtn = new Button("选择目录...");
+        chooseBtn.setOnAction(e -> chooseLibrary());
+        HBox header = new HBox(8, new Label("文档库："), libraryLabel, chooseBtn);
+        header.setAlignment(Pos.CENTER_LEFT);
+        header.setPadding(new Insets(8));
+
+        VBox sections = new VBox(8, sectionTitle("最近打开"), recentTiles, sectionTitle("文档库"), libraryTiles);
+        sections.setPadding(new Insets(8));
+        ScrollPane scroll = new ScrollPane(sections);
+        scroll.setFitToWidth(true);
+        BorderPane root = new BorderPane(scroll);
+        root.setTop(header);
+        setScene(new Scene(root, 960, 640));
+        setOnHidden(e -> loader.shutdownNow());
+
+        for (Path document : recent) {
+            if (Files.isRegularFile(document)) recentTiles.getChildren().add(tile(document));
+        }
+        String library = Preferences.userNodeForPackage(DocumentPicker.class).get(LIBRARY_DIRECTORY, "");
+        if (!library.isEmpty() && Files.isDirectory(Path.of(library))) showLibrary(Path.of(library));
+    }
+
+    private static TilePane createTiles() {
+        TilePane tiles = new TilePane(8, 8);
+        tiles.setPrefTileWidth(ThumbnailCache.WIDTH + 8);
+        return tiles;
+    }
+
+    private static Label sectionTitle(String text) {
+        Label label = new Label(text);
+        label.setStyle("-fx-font-weight: bold;");
+        return label;
+    }
+
+    private void chooseLibrary() {
+        DirectoryChooser chooser = new DirectoryChooser();
+        chooser.setTitle("选择文档库目录");
+        File directory = chooser.showDialog(this);
+        if (directory == null) return;
+        Preferences.userNodeForPackage(DocumentPicker.class).put(LIBRARY_DIRECTORY, directory.toString());
+        showLibrary(directory.toPath());
+    }
+
+    // 列出目录（不含子目录）中能打开的流程图
+    private void showLibrary(Path directory) {
+        libraryLabel.setText(directory.toString());
+        libraryTiles.getChildren().clear();
+        List<String> extensions = new ArrayList<>();
+        for (FlowchartCodec codec : FlowchartCodecs.all()) extensions.add("." + codec.getExtension());
+        List<Path> documents;
+        try (Stream<Path> files = Files.list(directory)) {
+            documents = files.filter(Files::isRegularFile)
+                    .filter(file -> extensions.stream().anyMatch(file.getFileName().toString().toLowerCase(Locale.ROOT)::endsWith))
+                    .sorted()
+                    .collect(Collectors.toList());
+        } catch (IOException e) {
+            e.printStackTrace();
+            return;
+        }
+        for (Path document : documents) libraryTiles.getChildren().add(tile(document));
+    }
+
+    // 一个文档：缩略图加文件名，缩略图在后台加载
+    private VBox tile(Path document) {
+        ImageView view = new ImageView();
+        view.setFitWidth(ThumbnailCache.WIDTH);
+        view.setFitHeight(ThumbnailCache.HEIGHT);
+        view.setPreserveRatio(true);
+        Label placeholder = new Label("正在生成预览...");
+        StackPane frame = new StackPane(placeholder, view);
+        frame.setPrefSize(ThumbnailCache.WIDTH, ThumbnailCache.HEIGHT);
+        frame.setStyle("-fx-border-color: #c0c0c0; -fx-background-color: white;");
+
+        Label name = new Label(document.getFileName().toString());
+        name.setMaxWidth(ThumbnailCache.WIDTH);
+        VBox tile = new VBox(4, frame, name);
+        tile.setAlignment(Pos.TOP_CENTER);
+        Tooltip.install(tile, new Tooltip(document.toString()));
+        tile.setOnMouseClicked(e -> {
+            close();
+            onOpen.accept(document);
+        });
+
+        loader.execute(() -> {
+            try {
+                Path thumbnail = cache.get(document);
+                Image image = new Image(thumbnail.toUri().toString());
+                Platform.runLater(() -> {
+                    view.setImage(image);
+                    placeholder.setVisible(false);
+                });
+            } catch (IOException | RuntimeException e) {
+                Platform.runLater(() -> placeholder.setText("无法预览"));
+            }
+        });
+        return tile;
+    }
+}
@@ -0,0 +1,92 @@
+package editor.ui;
+
+import editor.model.ConnectionLine;
+import editor.model.FlowchartShape;
+import javafx.scene.Group;
+import javafx.scene.paint.Color;
+import javafx.scene.shape.Path;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * 拖动选中图形时的预览信息。两端都在选区内的连接线随选区整体平移；
+ * 只有一端在选区内的边界连接线形状会变化，用临时路径预览，模型在松开鼠标前保持不变。
+ */
+public class DragPreview {
+    private final Set<FlowchartShape> shapes;
+    private final List<ConnectionLine> internalLines = new ArrayList<>();
+    private final List<ConnectionLine> boundaryLines = new ArrayList<>();
+    private final List<Path> boundaryPaths = new ArrayList<>();
+    private final Group layer = new Group();
+
+    public DragPreview(Collection<FlowchartShape> selection) {
+        this.shapes = new LinkedHashSet<>(selection);
+        Set<ConnectionLine> seen = new LinkedHashSet<>();
+        for (FlowchartShape shape : shapes) {
+            seen.addAll(shape.getIncomingLines());
+            seen.addAll(shape.getOutgoingLines());
+        }
+        for (ConnectionLine line : seen) {
+            if (line.getStartPoint() == null || line.getEndPoint() == null) continue;
+            if (moves(line, true) && moves(line, false)) {
+                internalLines.add(line);
+            } else {
+                boundaryLines.add(line);
+                Path path = new Path();
+                path.setStroke(FxColors.toFx(line.getColor()));
+                path.setStrokeWidth(line.getStrokeWidth());
+                path.setFill(Color.TRANSPARENT);
+                boundaryPaths.add(path);
+            }
+        }
+        layer.getChildren().addAll(boundaryPaths);
+        layer.setMouseTransparent(true);
+    }
+
+    private boolean moves(ConnectionLine line, boolean start) {
+        FlowchartShape parent = (start ? line.getStartPoint() : line.getEndPoint()).getParentShape();
+        return shapes.contains(parent);
+    }
+
+    /**
+     * 按当前拖动偏移量重新计算边界连接线的预览路径。
+     */
+    public void update(double dx, double dy) {
+        for (int i = 0; i < boundaryLines.size(); i++) {
+            ConnectionLine line = boundaryLines.get(i);
+            boolean startMoves = moves(line, true);
+            double[] p = line.getPathPoints(startMoves ? dx : 0, startMoves ? dy : 0,
+                    startMoves ? 0 : dx, startMoves ? 0 : dy);
+            boundaryPaths.get(i).getElements().setAll(LineView.pathElements(line.getLineType(), p));
+        }
+    }
+
+    public Set<FlowchartShape> getShapes() {
+        return shapes;
+    }
+
+    /**
+     * @return 两端都在选区内、随选区整体平移的连接线。
+     */
+    public List<ConnectionLine> getInternalLines() {
+        return internalLines;
+    }
+
+    /**
+     * @return 只有一端在选区内、拖动时需要预览的连接线。
+     */
+    public List<ConnectionLine> getBoundaryLines() {
+        return boundaryLines;
+    }
+
+    /**
+     * @return 边界连接线预览路径所在的图层（世界坐标）。
+     */
+    public Group getLayer() {
+        return layer;
+    }
+}
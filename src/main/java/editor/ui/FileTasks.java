@@ -0,0 +1,261 @@
+package editor.ui;
+
+import editor.export.DiagramExporter;
+import editor.io.ChunkedFlowchartCodec;
+import editor.io.FlowchartCodec;
+import editor.io.FlowchartCodecs;
+import editor.io.FlowchartData;
+import editor.io.FlowchartDiff;
+import editor.io.Journal;
+import editor.io.ProgressListener;
+import editor.model.ConnectionLine;
+import editor.model.FlowchartShape;
+import javafx.application.Platform;
+import javafx.concurrent.Task;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.function.Consumer;
+
+/**
+ * 在后台线程执行打开和保存。所有文件操作按提交顺序在同一个线程上依次执行，
+ * 同一个文件不会被同时读写。
+ */
+public final class FileTasks {
+    private static final ExecutorService EXECUTOR = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "flowchart-file-io");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    // 导出图片可能耗时很长，单独一个线程，不耽误保存
+    private static final ExecutorService EXPORT_EXECUTOR = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "flowchart-export");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private static final int MAX_CHUNKS_IN_FLIGHT = 2;
+
+    private FileTasks() {
+    }
+
+    /**
+     * 后台读取并解析文件，可以取消。结果在 FX 线程上通过 getValue() 取得。
+     */
+    public static Task<FlowchartData> open(Path file) {
+        FlowchartCodec codec = FlowchartCodecs.forFile(file);
+        Task<FlowchartData> task = new Task<>() {
+            @Override
+            protected FlowchartData call() throws Exception {
+                updateMessage("正在打开 " + file.getFileName());
+                ProgressListener progress = (done, total) -> {
+                    if (isCancelled()) throw new CancellationException();
+                    updateProgress(done, total);
+                };
+                // 文档旁有未保存的操作日志时重放（上次崩溃或未保存就退出），基准文件用 read() 读取
+                Path journal = Journal.forDocument(file);
+                boolean recover = Journal.isDirty(journal);
+                FlowchartData data = recover ? codec.read(file, progress) : codec.readForOpen(file, progress);
+                if (recover) {
+                    updateMessage("正在恢复未保存的修改");
+                    data = Journal.replay(journal, data);
+                    updateMessage("已打开 " + file.getFileName() + " 并恢复了未保存的修改");
+                } else {
+                    updateMessage("已打开 " + file.getFileName() + "（" + data.getShapes().size() + " 个图形）");
+                }
+                return data;
+            }
+        };
+        EXECUTOR.execute(task);
+        return task;
+    }
+
+    /**
+     * 后台分块读取文件，每读到一块就在 FX 线程上交给 onChunk，画布可以边读边显示。
+     * 最多两块在 FX 线程上排队，读取速度超过显示速度时读取线程等待。
+     * 任务的结果是读到的图形数。
+     */
+    public static Task<Integer> openProgressive(Path file, Consumer<FlowchartData> onChunk) {
+        FlowchartCodec codec = FlowchartCodecs.forFile(file);
+        Task<Integer> task = new Task<>() {
+            @Override
+            protected Integer call() throws Exception {
+                String name = file.getFileName().toString();
+                updateMessage("正在打开 " + name);
+                Semaphore inFlight = new Semaphore(MAX_CHUNKS_IN_FLIGHT);
+                int[] loaded = {0};
+                codec.readChunks(file, (done, total) -> {
+                    if (isCancelled()) throw new CancellationException();
+                    updateProgress(done, total);
+                }, chunk -> {
+                    if (isCancelled()) throw new CancellationException();
+                    inFlight.acquireUninterruptibly();
+                    Platform.runLater(() -> {
+                        try {
+                            if (!isCancelled()) onChunk.accept(chunk);
+                        } finally {
+                            inFlight.release();
+                        }
+                    });
+                    loaded[0] += chunk.getShapes().size();
+                    updateMessage("正在打开 " + name + "（已载入 " + loaded[0] + " 个图形）");
+                });
+                updateMessage("已打开 " + name + "（" + loaded[0] + " 个图形）");
+                return loaded[0];
+            }
+        };
+        EXECUTOR.execute(task);
+        return task;
+    }
+
+    /**
+     * 后台重放没有对应文档的操作日志（未保存过的新文档）。
+     */
+    public static Task<FlowchartData> recover(Path journal) {
+        Task<FlowchartData> task = new Task<>() {
+            @Override
+            protected FlowchartData call() throws Exception {
+                updateMessage("正在恢复未保存的文档");
+                FlowchartData data = Journal.replay(journal, new FlowchartData(new ArrayList<>(), new ArrayList<>()));
+                updateMessage("已恢复未保存的文档（" + data.getShapes().size() + " 个图形）");
+                return data;
+            }
+        };
+        EXECUTOR.execute(task);
+        return task;
+    }
+
+    /**
+     * 重新载入外部修改的结果：与画布的差异，以及 .fcx 文件当前各块的 CRC（其他格式为 null）。
+     */
+    static final class Reload {
+        final FlowchartDiff diff;
+        final Map<Long, Integer> checksums;
+
+        Reload(FlowchartDiff diff, Map<Long, Integer> checksums) {
+            this.diff = diff;
+            this.checksums = checksums;
+        }
+    }
+
+    /**
+     * 文件被外部修改后在后台重新读取并与画布比较，不重放操作日志。期间画布必须只读。
+     * .fcx 文件已知上次各块的 CRC 时只读取和比较 CRC 有变化的块以及画布上修改过的块。
+     * @param shapes 在 FX 线程上取得的画布图形列表副本
+     * @param checksums 画布与文件一致时各块的 CRC，null 表示未知，读取整个文件
+     */
+    public static Task<Reload> reload(Path file, List<FlowchartShape> shapes, List<ConnectionLine> lines,
+                                      Map<Long, Integer> checksums, Set<Long> dirtyShapes, Set<Long> dirtyLines) {
+        FlowchartCodec codec = FlowchartCodecs.forFile(file);
+        Task<Reload> task = new Task<>() {
+            @Override
+            protected Reload call() throws Exception {
+                updateMessage("正在重新读取 " + file.getFileName());
+                if (!(codec instanceof ChunkedFlowchartCodec)) {
+                    FlowchartData data = codec.read(file, (done, total) -> updateProgress(done, total));
+                    return new Reload(FlowchartDiff.compute(shapes, lines, data), null);
+                }
+                if (checksums == null) {
+                    Map<Long, Integer> current = ChunkedFlowchartCodec.checksums(file);
+                    FlowchartData data = codec.read(file, (done, total) -> updateProgress(done, total));
+                    return new Reload(FlowchartDiff.compute(shapes, lines, data), current);
+                }
+                updateProgress(-1, 1);
+                Map<Long, FlowchartShape> byId = new HashMap<>(); // 只在需要复制端点图形时建立
+                ChunkedFlowchartCodec.Changes changes = ChunkedFlowchartCodec.readChanges(file, checksums, dirtyShapes,
+                        dirtyLines, id -> {
+                            if (byId.isEmpty()) for (FlowchartShape shape : shapes) byId.put(shape.getId(), shape);
+                            return byId.get(id);
+                        });
+                FlowchartDiff diff = FlowchartDiff.compute(shapes, lines, changes.getData(),
+                        changes.getShapeChunks(), changes.getLineChunks());
+                updateProgress(1, 1);
+                return new Reload(diff, changes.getChecksums());
+            }
+        };
+        EXECUTOR.execute(task);
+        return task;
+    }
+
+    /**
+     * 在后台读取 .fcx 文件各块的 CRC。紧接在打开或保存任务之后提交，读到的就是刚打开或保存的内容。
+     */
+    public static Task<Map<Long, Integer>> checksums(Path file) {
+        Task<Map<Long, Integer>> task = new Task<>() {
+            @Override
+            protected Map<Long, Integer> call() throws Exception {
+                return ChunkedFlowchartCodec.checksums(file);
+            }
+        };
+        EXECUTOR.execute(task);
+        return task;
+    }
+
+    /**
+     * 增量保存 .fcx 文件：只写出修改过的数据块。
+     */
+    public static Task<Void> saveChunks(Path file, List<ChunkedFlowchartCodec.Chunk> chunks) {
+        Task<Void> task = new Task<>() {
+            @Override
+            protected Void call() throws Exception {
+                updateMessage("正在保存 " + file.getFileName());
+                updateProgress(-1, 1);
+                ChunkedFlowchartCodec.update(file, chunks);
+                updateMessage("已保存 " + file.getFileName() + "（" + chunks.size() + " 个数据块）");
+                updateProgress(1, 1);
+                return null;
+            }
+        };
+        EXECUTOR.execute(task);
+        return task;
+    }
+
+    /**
+     * 后台写出快照。快照在调用线程（FX 线程）上取得，之后对画布的编辑不影响本次保存。
+     */
+    public static Task<Void> save(Path file, FlowchartData snapshot) {
+        FlowchartCodec codec = FlowchartCodecs.forFile(file);
+        Task<Void> task = new Task<>() {
+            @Override
+            protected Void call() throws Exception {
+                updateMessage("正在保存 " + file.getFileName());
+                updateProgress(-1, 1);
+                codec.write(file, snapshot.getShapes(), snapshot.getConnections());
+                updateMessage("已保存 " + file.getFileName());
+                updateProgress(1, 1);
+                return null;
+            }
+        };
+        EXECUTOR.execute(task);
+        return task;
+    }
+
+    /**
+     * 后台把快照导出为图片、矢量图等，可以取消。
+     */
+    public static Task<Void> export(Path file, FlowchartData snapshot, DiagramExporter exporter) {
+        Task<Void> task = new Task<>() {
+            @Override
+            protected Void call() throws Exception {
+                updateMessage("正在导出 " + file.getFileName());
+                exporter.export(file, snapshot.getShapes(), snapshot.getConnections(), (done, total) -> {
+                    if (isCancelled()) throw new CancellationException();
+                    updateProgress(done, total);
+                });
+                updateMessage("已导出 " + file.getFileName());
+                return null;
+            }
+        };
+        EXPORT_EXECUTOR.execute(task);
+        return task;
+    }
+}
@@ -0,0 +1,22 @@
+package editor.ui;
+
+import editor.model.FlowColor;
+import javafx.scene.paint.Color;
+
+/**
+ * 模型颜色与 JavaFX 颜色之间的转换。
+ */
+public final class FxColors {
+    private FxColors() {
+    }
+
+    public static Color toFx(FlowColor color) {
+        if (color == null) return null;
+        return Color.color(color.getRed(), color.getGreen(), color.getBlue(), color.getOpacity());
+    }
+
+    public static FlowColor fromFx(Color color) {
+        if (color == null) return null;
+        return new FlowColor(color.getRed(), color.getGreen(), color.getBlue(), color.getOpacity());
+    }
+}
@@ -0,0 +1,87 @@
+package editor.ui;
+
+import javafx.scene.canvas.Canvas;
+import javafx.scene.canvas.GraphicsContext;
+import javafx.scene.paint.Color;
+
+/**
+ * 网格背景层：用一个 Canvas 节点画出所有网格线，代替逐条创建的 Line 节点。
+ * 画布比视口多出一格，平移时只调整自身的平移量；只有尺寸、缩放或网格大小变化时才重画。
+ */
+public class GridLayer extends Canvas {
+    private static final double MIN_STEP = 4; // 屏幕上网格间距小于该值时不再绘制
+
+    private double gridSize;
+    private double zoom = 1;
+    private double viewWidth, viewHeight;
+    private int repaintCount = 0;
+
+    public GridLayer(double gridSize) {
+        this.gridSize = gridSize;
+        setMouseTransparent(true);
+        setManaged(false);
+        visibleProperty().addListener((obs, oldVal, newVal) -> {
+            if (newVal) repaint();
+        });
+    }
+
+    /**
+     * 视口尺寸变化。
+     */
+    public void setViewSize(double width, double height) {
+        if (width == viewWidth && height == viewHeight) return;
+        viewWidth = width;
+        viewHeight = height;
+        repaint();
+    }
+
+    /**
+     * 视图平移或缩放变化。缩放变化时重画，平移只移动画布。
+     */
+    public void setView(double zoom, double offsetX, double offsetY) {
+        if (zoom != this.zoom) {
+            this.zoom = zoom;
+            repaint();
+        }
+        double step = gridSize * zoom;
+        setTranslateX(((offsetX % step) + step) % step - step);
+        setTranslateY(((offsetY % step) + step) % step - step);
+    }
+
+    public void setGridSize(double gridSize) {
+        if (gridSize == this.gridSize) return;
+        this.gridSize = gridSize;
+        repaint();
+    }
+
+    public double getGridSize() {
+        return gridSize;
+    }
+
+    /**
+     * @return 网格的重画次数，用于确认平移不会触发重画。
+     */
+    public int getRepaintCount() {
+        return repaintCount;
+    }
+
+    private void repaint() {
+        double step = gridSize * zoom;
+        // 多留一格，供平移时错位使用
+        setWidth(viewWidth + step);
+        setHeight(viewHeight + step);
+        GraphicsContext gc = getGraphicsContext2D();
+        gc.clearRect(0, 0, getWidth(), getHeight());
+        if (!isVisible() || step < MIN_STEP) return;
+        repaintCount++;
+
+        gc.setStroke(Color.LIGHTGRAY);
+        gc.setLineWidth(0.5);
+        for (double x = 0; x < getWidth(); x += step) {
+            gc.strokeLine(x, 0, x, getHeight());
+        }
+        for (double y = 0; y < getHeight(); y += step) {
+            gc.strokeLine(0, y, getWidth(), y);
+        }
+    }
+}
@@ -0,0 +1,163 @@
+package editor.ui;
+
+import editor.model.ConnectionLine;
+import editor.model.ConnectionPoint;
+import editor.model.FlowchartShape;
+import editor.model.ModelListener;
+import javafx.collections.ListChangeListener;
+import javafx.collections.ObservableList;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Predicate;
+
+/**
+ * 画布命中测试。图形包围盒和连接线线段分别登记在空间索引中，
+ * 随图形移动、连接线几何变化实时更新，鼠标事件只需检查附近的少量对象。
+ */
+public class HitTester implements ModelListener {
+    private static final double CELL_SIZE = 128;
+
+    private final SpatialIndex<FlowchartShape> shapeIndex = new SpatialIndex<>(CELL_SIZE);
+    private final SpatialIndex<ConnectionLine> lineIndex = new SpatialIndex<>(CELL_SIZE);
+
+    public HitTester(ObservableList<FlowchartShape> shapes, ObservableList<ConnectionLine> lines) {
+        shapes.addListener((ListChangeListener<FlowchartShape>) change -> {
+            while (change.next()) {
+                for (FlowchartShape shape : change.getRemoved()) {
+                    shapeIndex.remove(shape);
+                }
+                for (FlowchartShape shape : change.getAddedSubList()) {
+                    shapeChanged(shape);
+                }
+            }
+        });
+        lines.addListener((ListChangeListener<ConnectionLine>) change -> {
+            while (change.next()) {
+                for (ConnectionLine line : change.getRemoved()) {
+                    lineIndex.remove(line);
+                }
+                for (ConnectionLine line : change.getAddedSubList()) {
+                    lineChanged(line);
+                }
+            }
+        });
+    }
+
+    @Override
+    public void shapeChanged(FlowchartShape shape) {
+        shapeIndex.put(shape, shape.getX(), shape.getY(),
+                shape.getX() + shape.getWidth(), shape.getY() + shape.getHeight());
+    }
+
+    @Override
+    public void lineChanged(ConnectionLine line) {
+        double[] p = line.getPathPoints();
+        if (p.length == 0) return;
+        double minX = p[0], minY = p[1], maxX = p[0], maxY = p[1];
+        for (int i = 2; i < p.length; i += 2) {
+            minX = Math.min(minX, p[i]);
+            maxX = Math.max(maxX, p[i]);
+            minY = Math.min(minY, p[i + 1]);
+            maxY = Math.max(maxY, p[i + 1]);
+        }
+        lineIndex.put(line, minX, minY, maxX, maxY);
+    }
+
+    /**
+     * @return 图形的前后顺序，越大越靠上；不在画布上时返回 -1。
+     */
+    public long order(FlowchartShape shape) {
+        return shapeIndex.order(shape);
+    }
+
+    public long order(ConnectionLine line) {
+        return lineIndex.order(line);
+    }
+
+    /**
+     * 查找包围盒与矩形相交的图形（视口裁剪用）。
+     */
+    public List<FlowchartShape> shapesIn(double minX, double minY, double maxX, double maxY) {
+        return shapeIndex.query(minX, minY, maxX, maxY);
+    }
+
+    public List<ConnectionLine> linesIn(double minX, double minY, double maxX, double maxY) {
+        return lineIndex.query(minX, minY, maxX, maxY);
+    }
+
+    /**
+     * 查找包含指定点、且满足条件的最上层图形。
+     */
+    public FlowchartShape shapeAt(double x, double y, Predicate<FlowchartShape> filter) {
+        FlowchartShape top = null;
+        long topOrder = -1;
+        for (FlowchartShape s : shapeIndex.query(x, y)) {
+            long order = shapeIndex.order(s);
+            if (order > topOrder && filter.test(s) && s.contains(x, y)) {
+                top = s;
+                topOrder = order;
+            }
+        }
+        return top;
+    }
+
+    public FlowchartShape shapeAt(double x, double y) {
+        return shapeAt(x, y, s -> true);
+    }
+
+    /**
+     * 查找完全落在矩形范围内的图形（框选）。
+     */
+    public List<FlowchartShape> shapesInside(double minX, double minY, double maxX, double maxY) {
+        List<FlowchartShape> result = new ArrayList<>();
+        for (FlowchartShape s : shapeIndex.query(minX, minY, maxX, maxY)) {
+            if (s.getX() >= minX && s.getY() >= minY &&
+                s.getX() + s.getWidth() <= maxX && s.getY() + s.getHeight() <= maxY) {
+                result.add(s);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 查找距离指定点小于 radius 的可见连接点。
+     * 连接点都位于所属图形的包围盒上，因此只需检查包围盒与查询范围相交的图形。
+     */
+    public ConnectionPoint connectionPointNear(double x, double y, double radius) {
+        double r2 = radius * radius;
+        for (FlowchartShape shape : shapeIndex.query(x - radius, y - radius, x + radius, y + radius)) {
+            for (ConnectionPoint point : shape.getConnectionPoints()) {
+                double dx = point.getX() - x;
+                double dy = point.getY() - y;
+                if (point.isVisible() && dx * dx + dy * dy < r2) {
+                    return point;
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 查找与指定点距离小于 tolerance 的连接线。
+     */
+    public ConnectionLine lineNear(double x, double y, double tolerance) {
+        for (ConnectionLine line : lineIndex.query(x - tolerance, y - tolerance, x + tolerance, y + tolerance)) {
+            double[] p = line.getPathPoints();
+            // 曲线近似用起点-控制点-终点组成的折线检测
+            for (int i = 0; i + 3 < p.length; i += 2) {
+                if (pointToSegmentDistance(x, y, p[i], p[i + 1], p[i + 2], p[i + 3]) < tolerance) return line;
+            }
+        }
+        return null;
+    }
+
+    private static double pointToSegmentDistance(double px, double py, double x1, double y1, double x2, double y2) {
+        double dx = x2 - x1, dy = y2 - y1;
+        if (dx == 0 && dy == 0) return Math.hypot(px - x1, py - y1);
+        double t = ((px - x1) * dx + (py - y1) * dy) / (dx * dx + dy * dy);
+        t = Math.max(0, Math.min(1, t));
+        double projX = x1 + t * dx, projY = y1 + t * dy;
+        return Math.hypot(px - projX, py - projY);
+    }
+}
@@ -0,0 +1,130 @@
+package editor.ui;
+
+import editor.io.Journal;
+import editor.model.ConnectionLine;
+import editor.model.FlowchartShape;
+import editor.model.ModelListener;
+import javafx.animation.PauseTransition;
+import javafx.util.Duration;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * 把画布上的修改记入操作日志。修改只在 FX 线程上标记为脏，
+ * 每秒最多生成一批记录交给日志的后台线程写出；同一对象在一批内多次修改只记一条，
+ * 所以写日志的开销与修改量成正比，与文档大小无关。
+ * 日志超过 COMPACT_THRESHOLD 时写一个完整的检查点来压缩。
+ */
+public class JournalRecorder implements ModelListener {
+    private static final Duration FLUSH_DELAY = Duration.seconds(1);
+    private static final long COMPACT_THRESHOLD = 8L << 20;
+
+    private final Journal journal;
+    private final Collection<FlowchartShape> shapes; // 画布上的全部图形，压缩时使用
+    private final Collection<ConnectionLine> lines;
+    private final Set<FlowchartShape> dirtyShapes = new LinkedHashSet<>();
+    private final Set<ConnectionLine> dirtyLines = new LinkedHashSet<>();
+    private final List<String> removals = new ArrayList<>();
+    private final PauseTransition timer = new PauseTransition(FLUSH_DELAY);
+    private boolean scheduled = false;
+
+    public JournalRecorder(Journal journal, Collection<FlowchartShape> shapes, Collection<ConnectionLine> lines) {
+        this.journal = journal;
+        this.shapes = shapes;
+        this.lines = lines;
+        timer.setOnFinished(e -> flush());
+    }
+
+    public Journal getJournal() {
+        return journal;
+    }
+
+    @Override
+    public void shapeChanged(FlowchartShape shape) {
+        dirtyShapes.add(shape);
+        schedule();
+    }
+
+    @Override
+    public void lineChanged(ConnectionLine line) {
+        dirtyLines.add(line);
+        schedule();
+    }
+
+    public void shapesAdded(Collection<? extends FlowchartShape> added) {
+        dirtyShapes.addAll(added);
+        schedule();
+    }
+
+    public void shapesRemoved(Collection<? extends FlowchartShape> removed) {
+        for (FlowchartShape shape : removed) {
+            dirtyShapes.remove(shape);
+            removals.add(Journal.removeShapeRecord(shape.getId()));
+        }
+        schedule();
+    }
+
+    public void linesAdded(Collection<? extends ConnectionLine> added) {
+        dirtyLines.addAll(added);
+        schedule();
+    }
+
+    public void linesRemoved(Collection<? extends ConnectionLine> removed) {
+        for (ConnectionLine line : removed) {
+            dirtyLines.remove(line);
+            removals.add(Journal.removeLineRecord(line.getId()));
+        }
+        schedule();
+    }
+
+    // 第一次修改时启动计时，之后的修改合并到同一批
+    private void schedule() {
+        if (scheduled) return;
+        scheduled = true;
+        timer.playFromStart();
+    }
+
+    /**
+     * 立即写出待记录的修改（保存前、退出前调用）。
+     */
+    public void flush() {
+        timer.stop();
+        scheduled = false;
+        if (dirtyShapes.isEmpty() && dirtyLines.isEmpty() && removals.isEmpty()) return;
+        // 先删除后更新：删除后又撤销恢复的对象最终仍然存在
+        List<String> records = new ArrayList<>(removals);
+        for (FlowchartShape shape : dirtyShapes) records.add(Journal.shapeRecord(shape));
+        for (ConnectionLine line : dirtyLines) {
+            if (line.getStartPoint() != null) records.add(Journal.lineRecord(line));
+        }
+        removals.clear();
+        dirtyShapes.clear();
+        dirtyLines.clear();
+        journal.append(records);
+        if (journal.size() > COMPACT_THRESHOLD) compact();
+    }
+
+    private void compact() {
+        List<String> records = new ArrayList<>(shapes.size() + lines.size());
+        for (FlowchartShape shape : shapes) records.add(Journal.shapeRecord(shape));
+        for (ConnectionLine line : lines) {
+            if (line.getStartPoint() != null) records.add(Journal.lineRecord(line));
+        }
+        journal.checkpoint(records);
+    }
+
+    /**
+     * 停止记录，丢弃尚未写出的修改。
+     */
+    public void dispose() {
+        timer.stop();
+        scheduled = false;
+        dirtyShapes.clear();
+        dirtyLines.clear();
+        removals.clear();
+    }
+}
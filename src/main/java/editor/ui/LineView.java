@@ -0,0 +1,76 @@
+package editor.ui;
+
+import editor.model.ConnectionLine;
+import javafx.scene.Group;
+import javafx.scene.paint.Color;
+import javafx.scene.shape.LineTo;
+import javafx.scene.shape.MoveTo;
+import javafx.scene.shape.Path;
+import javafx.scene.shape.PathElement;
+import javafx.scene.shape.Polygon;
+import javafx.scene.shape.QuadCurveTo;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 连接线模型在场景图中的表示：一条路径 + 终点处的箭头。
+ * 三种线型都用 Path 表示，切换线型时不需要替换节点。
+ */
+public class LineView {
+    private final ConnectionLine line;
+    private final Path path = new Path();
+    private final Polygon arrow = new Polygon();
+    private final Group group = new Group(path, arrow);
+
+    public LineView(ConnectionLine line) {
+        this.line = line;
+        update();
+    }
+
+    public ConnectionLine getLine() {
+        return line;
+    }
+
+    public Group getNode() {
+        return group;
+    }
+
+    /**
+     * 从模型同步路径、颜色、粗细、箭头与选中高亮。
+     */
+    public void update() {
+        double[] p = line.getPathPoints();
+        path.getElements().setAll(pathElements(line.getLineType(), p));
+        Color color = line.isSelected() ? Color.DODGERBLUE : FxColors.toFx(line.getColor());
+        path.setStroke(color);
+        path.setStrokeWidth(line.isSelected() ? line.getStrokeWidth() + 2 : line.getStrokeWidth());
+
+        boolean showArrow = line.isArrowVisible() && p.length > 0;
+        arrow.setVisible(showArrow);
+        if (showArrow) {
+            double[] head = ConnectionLine.arrowHead(p);
+            arrow.getPoints().setAll(head[0], head[1], head[2], head[3], head[4], head[5]);
+            arrow.setFill(color);
+            arrow.setStroke(color);
+            arrow.setStrokeWidth(line.getStrokeWidth());
+        }
+    }
+
+    /**
+     * 把 ConnectionLine.getPathPoints() 的结果转换为路径元素。
+     */
+    public static List<PathElement> pathElements(ConnectionLine.LineType type, double[] p) {
+        List<PathElement> elements = new ArrayList<>();
+        if (p.length == 0) return elements;
+        elements.add(new MoveTo(p[0], p[1]));
+        if (type == ConnectionLine.LineType.CURVE) {
+            elements.add(new QuadCurveTo(p[2], p[3], p[4], p[5]));
+        } else {
+            for (int i = 2; i < p.length; i += 2) {
+                elements.add(new LineTo(p[i], p[i + 1]));
+            }
+        }
+        return elements;
+    }
+}
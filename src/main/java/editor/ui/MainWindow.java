@@ -1,23 +1,76 @@
 package editor.ui;
 
 import editor.action.AddShapeCommand;
+import editor.export.DiagramExporter;
+import editor.export.PdfExporter;
+import editor.export.PngExporter;
+import editor.export.SvgExporter;
+import editor.export.ThumbnailCache;
+import editor.io.ChunkedFlowchartCodec;
+import editor.io.DirtyChunks;
+import editor.io.FlowchartCodec;
+import editor.io.FlowchartCodecs;
+import editor.io.FileWatcher;
+import editor.io.FlowchartData;
+import editor.io.FlowchartDiff;
+import editor.io.Journal;
+import javafx.application.Platform;
+import javafx.concurrent.Task;
+import javafx.concurrent.Worker;
+import javafx.concurrent.WorkerStateEvent;
 import editor.model.*;
 import javafx.scene.layout.BorderPane;
 import javafx.stage.FileChooser;
 import javafx.stage.Stage;
-import javafx.scene.paint.Color;
+import javafx.stage.WindowEvent;
+import org.apache.pdfbox.pdmodel.common.PDRectangle;
 import org.json.JSONObject;
+import javafx.scene.control.Alert;
 import javafx.scene.control.Button;
+import javafx.scene.control.ButtonBar;
+import javafx.scene.control.ButtonType;
+import javafx.scene.control.ChoiceDialog;
 
 import java.io.File;
-import java.io.FileWriter;
 import java.io.IOException;
 import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.prefs.Preferences;
+import java.util.stream.Collectors;
 
 public class MainWindow extends BorderPane {
     private CanvasPane canvas;
     private Stage primaryStage;
+    private final StatusBar statusBar = new StatusBar();
+    private Task<?> openTask; // 正在进行的打开操作
+    private boolean reloading; // 正在询问或重新读取外部修改
+    private Path documentPath; // 当前文档，null 表示未保存过的新文档
+    private Journal journal;   // 当前文档的操作日志
+    private FileWatcher watcher; // 监视当前文档被其他程序修改
+    private String knownStamp;   // 最近一次读写后文档的修改时间和大小，用于忽略自己保存产生的事件
+    private int savesInFlight;
+    private static final List<Integer> EXPORT_DPIS = List.of(96, 150, 300, 600);
+    private static final Map<String, PDRectangle> EXPORT_PAPERS = new LinkedHashMap<>();
+    static {
+        EXPORT_PAPERS.put("A4 纵向", PDRectangle.A4);
+        EXPORT_PAPERS.put("A4 横向", new PDRectangle(PDRectangle.A4.getHeight(), PDRectangle.A4.getWidth()));
+        EXPORT_PAPERS.put("A3 纵向", PDRectangle.A3);
+        EXPORT_PAPERS.put("A3 横向", new PDRectangle(PDRectangle.A3.getHeight(), PDRectangle.A3.getWidth()));
+        EXPORT_PAPERS.put("Letter 纵向", PDRectangle.LETTER);
+        EXPORT_PAPERS.put("Letter 横向", new PDRectangle(PDRectangle.LETTER.getHeight(), PDRectangle.LETTER.getWidth()));
+    }
+    private static final String LAST_DOCUMENT = "lastDocument";
+    private static final String RECENT_DOCUMENTS = "recentDocuments";
+    private static final int MAX_RECENT = 10;
+    private static final int MAX_THUMBNAILS = 500;
+    private ThumbnailCache thumbnails; // 第一次浏览文档时创建
+    private static final FlowchartData EMPTY = new FlowchartData(List.of(), List.of());
 
     public MainWindow(Stage primaryStage) {
         this.primaryStage = primaryStage;
@@ -33,94 +86,387 @@ public class MainWindow extends BorderPane {
         setLeft(shapeLibrary);
         setCenter(canvas);
         setRight(propertyPanel);
+        setBottom(statusBar);
 
         // 添加导出图片按钮
         Button exportBtn = new Button("导出图片");
-        exportBtn.setOnAction(e -> {
-            FileChooser fileChooser = new FileChooser();
-            fileChooser.setTitle("导出为PNG图片");
-            fileChooser.getExtensionFilters().add(new FileChooser.ExtensionFilter("PNG 图片", "*.png"));
-            File file = fileChooser.showSaveDialog(primaryStage);
-            if (file != null) {
-                canvas.exportAsPng(file);
+        exportBtn.setOnAction(e -> exportImage());
+        if (toolbar != null) toolbar.getItems().add(exportBtn);
+
+        // 退出时写完操作日志，下次启动可以恢复未保存的修改
+        primaryStage.addEventHandler(WindowEvent.WINDOW_HIDDEN, e -> {
+            canvas.flushJournal();
+            if (journal != null) journal.close();
+            watch(null);
+        });
+        restoreSession();
+    }
+
+    // 启动时如果上次的文档或新文档留有未保存的操作日志，重放恢复
+    private void restoreSession() {
+        String last = Preferences.userNodeForPackage(MainWindow.class).get(LAST_DOCUMENT, "");
+        Path lastDocument = last.isEmpty() ? null : Paths.get(last);
+        if (lastDocument != null && Files.isRegularFile(lastDocument) && Journal.isDirty(Journal.forDocument(lastDocument))) {
+            open(lastDocument);
+        } else {
+            restoreUntitled();
+        }
+    }
+
+    // 切换到新文档，未保存过的新文档留有操作日志时先重放
+    private void restoreUntitled() {
+        if (Journal.isDirty(Journal.untitled())) {
+            Task<FlowchartData> task = FileTasks.recover(Journal.untitled());
+            task.setOnSucceeded(e -> attachDocument(null, task.getValue()));
+            task.setOnFailed(e -> {
+                task.getException().printStackTrace();
+                newFile();
+            });
+            statusBar.show(task, false);
+        } else {
+            attachDocument(null, EMPTY);
+        }
+    }
+
+    /**
+     * 切换到新的文档：把当前文档未写出的修改写入其日志，载入新内容，并开始记录新文档的日志。
+     * @param data 新文档内容，null 表示保持画布当前内容
+     */
+    private void attachDocument(Path document, FlowchartData data) {
+        canvas.setReadOnly(false);
+        canvas.flushJournal();
+        canvas.setJournal(null);
+        if (journal != null) journal.close();
+        if (data != null) canvas.loadData(data); // 一次性替换画布内容
+        documentPath = document;
+        journal = new Journal(document != null ? Journal.forDocument(document) : Journal.untitled());
+        canvas.setJournal(journal);
+        // 下次启动时恢复当前文档；最近打开列表只在打开或保存成功后更新
+        Preferences.userNodeForPackage(MainWindow.class).put(LAST_DOCUMENT, document != null ? document.toString() : "");
+        watch(document);
+    }
+
+    // 记住当前文档（下次启动时恢复）并把它放到最近打开列表的最前面
+    private void rememberDocument(Path document) {
+        Preferences preferences = Preferences.userNodeForPackage(MainWindow.class);
+        preferences.put(LAST_DOCUMENT, document != null ? document.toString() : "");
+        if (document == null) return;
+        List<Path> recent = recentDocuments();
+        recent.remove(document);
+        recent.add(0, document);
+        if (recent.size() > MAX_RECENT) recent.subList(MAX_RECENT, recent.size()).clear();
+        preferences.put(RECENT_DOCUMENTS, recent.stream().map(Path::toString).collect(Collectors.joining("\n")));
+    }
+
+    private static List<Path> recentDocuments() {
+        String value = Preferences.userNodeForPackage(MainWindow.class).get(RECENT_DOCUMENTS, "");
+        List<Path> recent = new ArrayList<>();
+        for (String line : value.split("\n")) {
+            if (!line.isEmpty()) recent.add(Paths.get(line));
+        }
+        return recent;
+    }
+
+    /**
+     * 打开带缩略图的文档选择窗口。
+     */
+    public void browseDocuments() {
+        if (thumbnails == null) {
+            try {
+                thumbnails = new ThumbnailCache(ThumbnailCache.defaultDirectory(), MAX_THUMBNAILS);
+            } catch (IOException e) {
+                e.printStackTrace();
+                openFile(); // 无法使用缩略图缓存时退回普通的打开对话框
+                return;
+            }
+        }
+        new DocumentPicker(primaryStage, thumbnails, recentDocuments(), this::open).show();
+    }
+
+    // 改为监视指定文档，null 表示停止监视
+    private void watch(Path document) {
+        if (watcher != null && document != null && watcher.getFile().equals(document.toAbsolutePath())) {
+            knownStamp = stamp(document);
+            return;
+        }
+        if (watcher != null) watcher.close();
+        watcher = null;
+        knownStamp = null;
+        if (document == null) return;
+        try {
+            watcher = new FileWatcher(document, () -> Platform.runLater(() -> externalChange(document)));
+            knownStamp = stamp(document);
+        } catch (IOException e) {
+            e.printStackTrace(); // 无法监视时只是不能自动重新载入
+        }
+    }
+
+    private static String stamp(Path file) {
+        try {
+            return Files.getLastModifiedTime(file) + ":" + Files.size(file);
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    // 文档被其他程序修改：重新读取，只把有变化的图形和连接线应用到画布上。
+    // 有未保存的本地修改时先询问，保留本地修改则不载入，下次保存时覆盖外部修改
+    private void externalChange(Path document) {
+        if (!document.equals(documentPath) || savesInFlight > 0 || openTask != null || reloading) return;
+        String current = stamp(document);
+        if (current == null || current.equals(knownStamp)) return; // 自己保存的，或文件暂时不存在
+        knownStamp = current;
+        canvas.flushJournal(); // 尚未写出的修改也算本地修改
+        reloading = true; // 询问和重新读取期间的修改事件在结束后统一检查
+        if (journal.size() > 0 && !confirmReload(document)) {
+            reloading = false;
+            statusBar.setMessage("已保留本地修改，外部修改未载入");
+            return;
+        }
+        // 重新读取和比较都在后台进行。期间画布只读：编辑会被载入的内容覆盖，比较时画布内容也不能变化
+        canvas.setReadOnly(true);
+        DirtyChunks dirty = canvas.getDirtyChunks();
+        Task<FileTasks.Reload> task = FileTasks.reload(document, new ArrayList<>(canvas.getShapes()),
+                new ArrayList<>(canvas.getConnectionLines()), document.equals(dirty.getBase()) ? dirty.getChecksums() : null,
+                dirty.getShapeChunks(), dirty.getLineChunks());
+        statusBar.show(task, false);
+        // 在状态栏的监听器之后执行，状态栏显示差异的大小。其他程序可能还没写完，读取失败时等下一次修改事件
+        task.stateProperty().addListener((obs, oldState, state) -> {
+            if (state == Worker.State.FAILED) task.getException().printStackTrace();
+            if (state != Worker.State.SUCCEEDED && state != Worker.State.FAILED && state != Worker.State.CANCELLED) return;
+            reloading = false;
+            if (!document.equals(documentPath)) return;
+            canvas.setReadOnly(false);
+            if (state == Worker.State.SUCCEEDED) {
+                FlowchartDiff diff = task.getValue().diff;
+                // 载入后画布与文件一致：外部修改不记入日志，被放弃的本地修改也从日志中删除
+                canvas.setJournal(null);
+                canvas.applyExternalChanges(diff);
+                journal.discard();
+                canvas.setJournal(journal);
+                dirty.reset(document);
+                if (task.getValue().checksums != null) dirty.setChecksums(document, task.getValue().checksums);
+                statusBar.setMessage("已载入外部修改：" + diff.size() + " 处变化");
             }
+            if (!current.equals(stamp(document))) Platform.runLater(() -> externalChange(document)); // 期间又被修改
         });
-        if (toolbar != null) toolbar.getItems().add(exportBtn);
+    }
+
+    // 紧接在打开或保存之后读取 .fcx 文件各块的 CRC，外部修改时只需比较有变化的块。
+    // 打开或保存失败时 base 已不是该文件，结果被忽略
+    private void readChecksums(Path document) {
+        if (!(FlowchartCodecs.forFile(document) instanceof ChunkedFlowchartCodec)) return;
+        Task<Map<Long, Integer>> task = FileTasks.checksums(document);
+        task.setOnSucceeded(e -> canvas.getDirtyChunks().setChecksums(document, task.getValue()));
+        task.setOnFailed(e -> task.getException().printStackTrace());
+    }
+
+    private boolean confirmReload(Path document) {
+        ButtonType reload = new ButtonType("重新载入", ButtonBar.ButtonData.YES);
+        ButtonType keep = new ButtonType("保留我的修改", ButtonBar.ButtonData.NO);
+        Alert alert = new Alert(Alert.AlertType.CONFIRMATION, "", reload, keep);
+        alert.initOwner(primaryStage);
+        alert.setTitle("文件已被修改");
+        alert.setHeaderText(document.getFileName() + " 已被其他程序修改");
+        alert.setContentText("画布上有尚未保存的修改。重新载入将放弃这些修改；保留则下次保存时覆盖外部修改。");
+        return alert.showAndWait().orElse(keep) == reload;
     }
 
     public void newFile() {
+        if (openTask != null) {
+            Task<?> loading = openTask;
+            openTask = null; // 不再切回上一个文档
+            loading.cancel();
+        }
+        attachDocument(null, null); // 已有文档未保存的修改保留在它自己的日志中
+        canvas.setJournal(null);
         canvas.clearCanvas();
+        journal.discard(); // 新文档从空日志开始
+        canvas.setJournal(journal);
     }
 
     public void saveFile() {
+        if (openTask != null) {
+            statusBar.setMessage("文档尚未载入完成，暂时不能保存"); // 画布上只有部分内容
+            return;
+        }
         FileChooser fileChooser = new FileChooser();
         fileChooser.setTitle("保存流程图");
-        fileChooser.getExtensionFilters().add(new FileChooser.ExtensionFilter("JSON Files", "*.json"));
+        List<FlowchartCodec> codecs = addCodecFilters(fileChooser);
         File file = fileChooser.showSaveDialog(primaryStage);
 
         if (file != null) {
-            try (FileWriter fileWriter = new FileWriter(file)) {
-                fileWriter.write(canvas.saveShapesToJson());
-            } catch (IOException e) {
-                e.printStackTrace();
-                // Handle error (e.g., show an alert to the user)
+            // 没写扩展名时使用所选过滤器对应的格式
+            int selected = fileChooser.getExtensionFilters().indexOf(fileChooser.getSelectedExtensionFilter());
+            if (selected >= 0 && !file.getName().contains(".")) {
+                file = new File(file.getPath() + "." + codecs.get(selected).getExtension());
             }
+            Path target = file.toPath();
+            canvas.flushJournal();
+            Journal saving = journal;
+            saving.mark(); // 此前的日志记录都包含在快照中
+            DirtyChunks dirty = canvas.getDirtyChunks();
+            Task<Void> task;
+            if (target.equals(dirty.getBase()) && FlowchartCodecs.forFile(target) instanceof ChunkedFlowchartCodec) {
+                // 保存回打开的 .fcx 文件：只序列化修改过的块，耗时与文档大小无关
+                List<ChunkedFlowchartCodec.Chunk> chunks = dirty.take(canvas.getDocument());
+                task = FileTasks.saveChunks(target, chunks);
+                readChecksums(target);
+                task.setOnFailed(e -> {
+                    task.getException().printStackTrace();
+                    if (saving == journal) dirty.reset(null); // 文件状态未知，下次完整保存
+                });
+            } else {
+                // 在 FX 线程上取快照，序列化和写文件在后台进行，保存期间可以继续编辑
+                FlowchartData snapshot = FlowchartData.copyOf(canvas.getShapes(), canvas.getConnectionLines());
+                dirty.reset(null); // 保存完成之前的修改从这里开始记录
+                task = FileTasks.save(target, snapshot);
+                task.setOnFailed(e -> task.getException().printStackTrace());
+                readChecksums(target);
+            }
+            savesInFlight++;
+            task.runningProperty().addListener((obs, was, running) -> {
+                if (!running) savesInFlight--;
+            });
+            task.setOnSucceeded(e -> {
+                knownStamp = stamp(target);
+                // 丢弃已保存的日志记录，另存为时日志随文档移动
+                saving.commitSave(Journal.forDocument(target));
+                if (saving == journal) {
+                    documentPath = target;
+                    rememberDocument(target);
+                    if (dirty.getBase() == null) dirty.setBase(target);
+                    watch(target);
+                }
+            });
+            statusBar.show(task, false);
+        }
+    }
+
+    // 导出整个文档为 PNG、SVG 或 PDF，PNG 的分辨率和 PDF 的纸张由用户选择，导出在后台进行
+    private void exportImage() {
+        FileChooser fileChooser = new FileChooser();
+        fileChooser.setTitle("导出图片");
+        List<String> formats = List.of("png", "svg", "pdf");
+        fileChooser.getExtensionFilters().addAll(
+                new FileChooser.ExtensionFilter("PNG 图片 (*.png)", "*.png"),
+                new FileChooser.ExtensionFilter("SVG 矢量图 (*.svg)", "*.svg"),
+                new FileChooser.ExtensionFilter("PDF 文档 (*.pdf)", "*.pdf"));
+        File file = fileChooser.showSaveDialog(primaryStage);
+        if (file == null) return;
+        String name = file.getName().toLowerCase();
+        String format = name.contains(".") ? name.substring(name.lastIndexOf('.') + 1) : "";
+        if (!formats.contains(format)) {
+            format = formats.get(Math.max(0, fileChooser.getExtensionFilters().indexOf(fileChooser.getSelectedExtensionFilter())));
+        }
+        DiagramExporter exporter;
+        if (format.equals("svg")) {
+            exporter = new SvgExporter();
+        } else if (format.equals("pdf")) {
+            List<String> papers = new ArrayList<>(EXPORT_PAPERS.keySet());
+            Optional<String> paper = choose("导出为PDF文档", "纸张：", papers);
+            if (paper.isEmpty()) return;
+            PdfExporter pdf = new PdfExporter();
+            pdf.setPaper(EXPORT_PAPERS.get(paper.get()));
+            exporter = pdf;
+        } else {
+            Optional<Integer> dpi = choose("导出为PNG图片", "分辨率 (DPI)：", EXPORT_DPIS);
+            if (dpi.isEmpty()) return;
+            exporter = new PngExporter(dpi.get());
+        }
+        Path target = file.toPath();
+        if (!name.endsWith("." + exporter.getExtension())) {
+            target = target.resolveSibling(file.getName() + "." + exporter.getExtension());
         }
+        FlowchartData snapshot = FlowchartData.copyOf(canvas.getShapes(), canvas.getConnectionLines());
+        Task<Void> task = FileTasks.export(target, snapshot, exporter);
+        task.setOnFailed(e -> task.getException().printStackTrace());
+        statusBar.show(task, true);
+    }
+
+    private <T> Optional<T> choose(String title, String label, List<T> choices) {
+        ChoiceDialog<T> dialog = new ChoiceDialog<>(choices.get(0), choices);
+        dialog.setTitle(title);
+        dialog.setHeaderText(null);
+        dialog.setContentText(label);
+        return dialog.showAndWait();
     }
 
     public void openFile() {
         FileChooser fileChooser = new FileChooser();
         fileChooser.setTitle("打开流程图");
-        fileChooser.getExtensionFilters().add(new FileChooser.ExtensionFilter("JSON Files", "*.json"));
+        List<String> patterns = new ArrayList<>();
+        for (FlowchartCodec codec : FlowchartCodecs.all()) patterns.add("*." + codec.getExtension());
+        fileChooser.getExtensionFilters().add(new FileChooser.ExtensionFilter("所有流程图", patterns));
+        addCodecFilters(fileChooser);
         File file = fileChooser.showOpenDialog(primaryStage);
 
         if (file != null) {
-            try {
-                String jsonString = new String(Files.readAllBytes(file.toPath()));
-                canvas.loadShapesFromJson(jsonString);
-            } catch (IOException e) {
-                e.printStackTrace();
-                // Handle error
+            open(file.toPath());
+        }
+    }
+
+    private void open(Path document) {
+        if (openTask != null) openTask.cancel(); // 只保留最后一次打开
+        if (Journal.isDirty(Journal.forDocument(document))) {
+            // 需要重放操作日志，读完整个文件后一次性载入
+            Task<FlowchartData> task = FileTasks.open(document);
+            openTask = task;
+            task.setOnSucceeded(e -> {
+                attachDocument(document, task.getValue());
+                rememberDocument(document);
+            });
+            watchOpen(task);
+        } else {
+            // 边读边显示：先切换到空文档，读到的内容分块追加到画布上。
+            // 载入期间画布只读：追加的内容与文件一致，不记为修改，也不会有新图形占用文件中的 ID
+            attachDocument(document, EMPTY);
+            canvas.setReadOnly(true);
+            canvas.getDirtyChunks().reset(document);
+            Task<Integer> task = FileTasks.openProgressive(document, canvas::appendData);
+            openTask = task;
+            readChecksums(document);
+            task.setOnSucceeded(e -> {
+                canvas.setReadOnly(false);
+                rememberDocument(document);
+            });
+            watchOpen(task);
+        }
+    }
+
+    // 打开结束后清理；取消或失败时画布上只有部分内容，不能再作为该文档保存，切回新文档
+    private void watchOpen(Task<?> task) {
+        task.addEventHandler(WorkerStateEvent.WORKER_STATE_SUCCEEDED, e -> {
+            if (openTask == task) openTask = null;
+        });
+        task.setOnFailed(e -> {
+            task.getException().printStackTrace();
+            if (openTask == task) {
+                openTask = null;
+                restoreUntitled();
+            }
+        });
+        task.setOnCancelled(e -> {
+            if (openTask == task) {
+                openTask = null;
+                restoreUntitled();
             }
+        });
+        statusBar.show(task, true);
+    }
+
+    // 每种文件格式一个过滤器，返回的列表与过滤器顺序一致
+    private static List<FlowchartCodec> addCodecFilters(FileChooser fileChooser) {
+        List<FlowchartCodec> codecs = FlowchartCodecs.all();
+        for (FlowchartCodec codec : codecs) {
+            fileChooser.getExtensionFilters().add(new FileChooser.ExtensionFilter(
+                    codec.getDescription() + " (*." + codec.getExtension() + ")", "*." + codec.getExtension()));
         }
+        return codecs;
     }
 
-    // Method to create FlowchartShape from JSON (used by loadShapesFromJson in CanvasPane)
-    // This method is now in CanvasPane, but keeping it here for clarity if needed elsewhere
+    // 根据 JSON 创建图形，实际逻辑在 FlowchartShape.fromJsonObject 中
     public static FlowchartShape createShapeFromJson(JSONObject json) {
-        String type = json.getString("type");
-        double x = json.getDouble("x");
-        double y = json.getDouble("y");
-        double width = json.getDouble("width");
-        double height = json.getDouble("height");
-        String label = json.getString("label");
-        Color color = Color.valueOf(json.getString("color"));
-        String link = json.has("link") ? json.getString("link") : "";
-
-        FlowchartShape newShape = null;
-        switch (type) {
-            case "rectangle":
-                newShape = new RectangleShape(x, y, width, height, label, link);
-                break;
-            case "ellipse":
-                newShape = new EllipseShape(x, y, width, height, label, link);
-                break;
-            case "diamond":
-                newShape = new DiamondShape(x, y, width, height, label, link);
-                break;
-            case "parallelogram":
-                newShape = new ParallelogramShape(x, y, width, height, label, link);
-                break;
-            case "circle":
-                newShape = new CircleShape(x, y, width, height, label, link);
-                break;
-            case "hexagon":
-                newShape = new HexagonShape(x, y, width, height, label, link);
-                break;
-        }
-        if (newShape != null) {
-            newShape.setColor(color);
-        }
-        return newShape;
+        return FlowchartShape.fromJsonObject(json);
     }
 }
\ No newline at end of file
@@ -0,0 +1,47 @@
+package editor.ui;
+
+import editor.model.ConnectionPoint;
+import editor.model.FlowchartShape;
+import javafx.scene.Node;
+import javafx.scene.paint.Color;
+import javafx.scene.shape.Circle;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 一个图形的连接点控制柄（小圆点），位置取自模型中的连接点。
+ */
+public class PointHandles {
+    private static final double POINT_RADIUS = 5.0;
+
+    private final FlowchartShape shape;
+    private final List<Circle> circles = new ArrayList<>();
+
+    public PointHandles(FlowchartShape shape) {
+        this.shape = shape;
+        for (int i = 0; i < shape.getConnectionPoints().size(); i++) {
+            Circle circle = new Circle(POINT_RADIUS);
+            circle.setFill(Color.WHITE);
+            circle.setStroke(Color.BLUE);
+            circle.setStrokeWidth(1.5);
+            circles.add(circle);
+        }
+        update();
+    }
+
+    public List<? extends Node> getNodes() {
+        return circles;
+    }
+
+    /**
+     * 按连接点的当前位置移动控制柄。
+     */
+    public void update() {
+        List<ConnectionPoint> points = shape.getConnectionPoints();
+        for (int i = 0; i < circles.size() && i < points.size(); i++) {
+            circles.get(i).setCenterX(points.get(i).getX());
+            circles.get(i).setCenterY(points.get(i).getY());
+        }
+    }
+}
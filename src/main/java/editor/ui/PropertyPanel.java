@@ -9,6 +9,7 @@ import javafx.scene.control.TextField;
 import javafx.scene.layout.VBox;
 import javafx.scene.paint.Color;
 import java.util.List;
+import java.util.function.Consumer;
 import javafx.scene.control.ComboBox;
 import javafx.scene.control.CheckBox;
 import javafx.scene.control.Spinner;
@@ -62,9 +63,18 @@ public class PropertyPanel extends VBox {
         strokeWidthSpinner.setValueFactory(new SpinnerValueFactory.DoubleSpinnerValueFactory(1, 10, 2, 1));
         arrowCheckBox.setSelected(true);
         // 事件绑定
-        labelField.setOnAction(e -> updateShape());
+        labelField.setOnAction(e -> {
+            updateShape();
+            commitShape();
+        });
         labelField.textProperty().addListener((obs, oldVal, newVal) -> updateShape());
-        shapeColorPicker.setOnAction(e -> updateShape());
+        labelField.focusedProperty().addListener((obs, was, focused) -> {
+            if (!focused) commitShape();
+        });
+        shapeColorPicker.setOnAction(e -> {
+            updateShape();
+            commitShape();
+        });
         lineTypeBox.setOnAction(e -> {
             if (currentLine != null && lineTypeBox.getValue() != null) {
                 String val = lineTypeBox.getValue();
@@ -74,17 +84,25 @@ public class PropertyPanel extends VBox {
             }
         });
         lineColorPicker.setOnAction(e -> {
-            if (currentLine != null) currentLine.setColor(lineColorPicker.getValue());
+            if (currentLine != null) currentLine.setColor(FxColors.fromFx(lineColorPicker.getValue()));
+            commitLine();
         });
         strokeWidthSpinner.valueProperty().addListener((obs, oldVal, newVal) -> {
             if (currentLine != null) currentLine.setStrokeWidth(newVal);
+            commitLine();
         });
         arrowCheckBox.setOnAction(e -> {
             if (currentLine != null) currentLine.setArrowEnabled(arrowCheckBox.isSelected());
         });
         linkField.setPromptText("http(s)://...");
-        linkField.setOnAction(e -> updateShape());
+        linkField.setOnAction(e -> {
+            updateShape();
+            commitShape();
+        });
         linkField.textProperty().addListener((obs, oldVal, newVal) -> updateShape());
+        linkField.focusedProperty().addListener((obs, was, focused) -> {
+            if (!focused) commitShape();
+        });
     }
 
     private void setShapeControlsEnabled(boolean enabled) {
@@ -105,12 +123,12 @@ public class PropertyPanel extends VBox {
         if (isMultiSelect && selectedShapes != null) {
             for (FlowchartShape shape : selectedShapes) {
                 shape.setLabel(labelField.getText());
-                shape.setColor(shapeColorPicker.getValue());
+                shape.setColor(FxColors.fromFx(shapeColorPicker.getValue()));
                 shape.setLink(linkField.getText());
             }
         } else if (currentShape != null) {
             currentShape.setLabel(labelField.getText());
-            currentShape.setColor(shapeColorPicker.getValue());
+            currentShape.setColor(FxColors.fromFx(shapeColorPicker.getValue()));
             currentShape.setLink(linkField.getText());
         }
 
@@ -118,6 +136,7 @@ public class PropertyPanel extends VBox {
     }
 
     public void showShape(FlowchartShape shape) {
+        commitShape();
         this.currentShape = shape;
         this.selectedShapes = null;
         isMultiSelect = false;
@@ -131,12 +150,13 @@ public class PropertyPanel extends VBox {
         setShapeControlsEnabled(true);
         isUpdatingFromShape = true;
         labelField.setText(shape.getLabel());
-        shapeColorPicker.setValue(shape.getColor());
+        shapeColorPicker.setValue(FxColors.toFx(shape.getColor()));
         linkField.setText(shape.getLink());
         isUpdatingFromShape = false;
     }
 
     public void showSelectedShapes(List<FlowchartShape> shapes) {
+        commitShape();
         this.selectedShapes = shapes;
         this.currentShape = null;
         isMultiSelect = true;
@@ -156,6 +176,7 @@ public class PropertyPanel extends VBox {
     }
 
     public void showLine(ConnectionLine line) {
+        commitLine();
         this.currentLine = line;
         if (line == null) {
             lineTypeBox.setValue(null);
@@ -168,7 +189,7 @@ public class PropertyPanel extends VBox {
         setLineControlsEnabled(true);
         lineTypeBox.setValue(line.getLineType() == ConnectionLine.LineType.STRAIGHT ? "直线" :
                              line.getLineType() == ConnectionLine.LineType.POLYLINE ? "折线" : "曲线");
-        lineColorPicker.setValue(line.getColor());
+        lineColorPicker.setValue(FxColors.toFx(line.getColor()));
         strokeWidthSpinner.getValueFactory().setValue(line.getStrokeWidth());
         arrowCheckBox.setSelected(line.isArrowEnabled());
     }
@@ -188,8 +209,32 @@ public class PropertyPanel extends VBox {
     }
 
     private Runnable onShapeChanged;
+    // 编辑完成（回车、失去焦点、选择颜色、改为显示其他对象）时调用，输入过程中不调用
+    private Consumer<FlowchartShape> onShapeCommitted;
+    private Consumer<ConnectionLine> onLineCommitted;
 
     public void setOnShapeChanged(Runnable callback) {
         this.onShapeChanged = callback;
     }
+
+    public void setOnShapeCommitted(Consumer<FlowchartShape> callback) {
+        this.onShapeCommitted = callback;
+    }
+
+    public void setOnLineCommitted(Consumer<ConnectionLine> callback) {
+        this.onLineCommitted = callback;
+    }
+
+    private void commitShape() {
+        if (onShapeCommitted == null) return;
+        if (isMultiSelect && selectedShapes != null) {
+            selectedShapes.forEach(onShapeCommitted);
+        } else if (currentShape != null) {
+            onShapeCommitted.accept(currentShape);
+        }
+    }
+
+    private void commitLine() {
+        if (onLineCommitted != null && currentLine != null) onLineCommitted.accept(currentLine);
+    }
 }
\ No newline at end of file
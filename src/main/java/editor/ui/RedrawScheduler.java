@@ -0,0 +1,88 @@
+package editor.ui;
+
+import javafx.application.Platform;
+import javafx.scene.Node;
+import javafx.scene.Scene;
+
+/**
+ * 重绘调度器：request() 只做标记，实际重绘在下一个 JavaFX 脉冲的布局之前执行一次。
+ * 同一帧内的多次请求（拖动、逐键输入、撤销重做等）被合并为一次重绘。
+ * 节点尚未加入场景时没有脉冲可用，直接同步执行。
+ */
+public class RedrawScheduler {
+    private final Node owner;
+    private final Runnable task;
+    private final Runnable pulseListener = this::flush;
+    private boolean pending = false;
+    private long requestCount = 0;
+    private long collapsedCount = 0;
+    private long runCount = 0;
+
+    public RedrawScheduler(Node owner, Runnable task) {
+        this.owner = owner;
+        this.task = task;
+        // 监听器常驻在所在场景上，没有待处理的请求时直接返回
+        owner.sceneProperty().addListener((obs, oldScene, newScene) -> {
+            if (oldScene != null) oldScene.removePreLayoutPulseListener(pulseListener);
+            if (newScene != null) newScene.addPreLayoutPulseListener(pulseListener);
+        });
+        Scene scene = owner.getScene();
+        if (scene != null) scene.addPreLayoutPulseListener(pulseListener);
+    }
+
+    /**
+     * 请求一次重绘。本帧已有待处理的请求时只计数，不重复执行。
+     */
+    public void request() {
+        requestCount++;
+        if (pending) {
+            collapsedCount++;
+            return;
+        }
+        if (owner.getScene() == null) {
+            run();
+            return;
+        }
+        pending = true;
+        Platform.requestNextPulse();
+    }
+
+    /**
+     * 立即执行待处理的重绘（例如截图前需要画面是最新的）。
+     */
+    public void flush() {
+        if (!pending) return;
+        pending = false;
+        run();
+    }
+
+    private void run() {
+        runCount++;
+        task.run();
+    }
+
+    public boolean isPending() {
+        return pending;
+    }
+
+    /**
+     * @return 收到的重绘请求总数。
+     */
+    public long getRequestCount() {
+        return requestCount;
+    }
+
+    /**
+     * @return 被合并掉的多余请求数。
+     */
+    public long getCollapsedCount() {
+        return collapsedCount;
+    }
+
+    /**
+     * @return 实际执行重绘的次数。
+     */
+    public long getRunCount() {
+        return runCount;
+    }
+}
@@ -0,0 +1,367 @@
+package editor.ui;
+
+import editor.model.ConnectionLine;
+import editor.model.FlowchartShape;
+import javafx.scene.Group;
+import javafx.scene.Node;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 保留模式渲染器：为每个可见的图形、连接线维护一个稳定的节点，
+ * 只在模型发生变化时修补对应节点，而不是每次重绘都重建整个子节点列表。
+ * 只有与视口（含边距）相交的对象才会挂到场景图上，场景图大小取决于屏幕内容而非文档大小。
+ */
+public class SceneRenderer implements DiagramRenderer {
+    private static final double VIEWPORT_MARGIN = 200; // 视口外额外挂载的范围（屏幕像素）
+
+    private final Group lineLayer = new Group();  // 连接线层
+    private final Group shapeLayer = new Group(); // 图形与文字层
+    private final Group pointLayer = new Group(); // 连接点层，位于最上方
+    private final Group dragLineGroup = new Group();  // 拖动中的内部连接线
+    private final Group dragShapeGroup = new Group(); // 拖动中的图形
+    private final Group dragLayer = new Group(dragLineGroup, dragShapeGroup); // 整体平移的拖动层
+
+    private final HitTester hitTester; // 提供视口查询和图形的前后顺序
+    private final Map<FlowchartShape, ShapeNode> shapeNodes = new HashMap<>(); // 仅包含已挂载的图形
+    private final Map<ConnectionLine, LineView> lineNodes = new HashMap<>();  // 仅包含已挂载的连接线
+    private final Set<FlowchartShape> dirtyShapes = new LinkedHashSet<>();
+    private final Set<ConnectionLine> dirtyLines = new LinkedHashSet<>();
+
+    private boolean showAllPoints = false; // 连线过程中显示所有连接点
+    private boolean hasViewport = false;
+    private double viewMinX, viewMinY, viewMaxX, viewMaxY; // 挂载范围（世界坐标）
+    private long lastSyncNanos;
+    private int lastPatchedCount;
+    private DragPreview drag; // 当前拖动，未拖动时为 null
+
+    // 单个已挂载图形的节点：图形视图 + 连接点控制柄（挂上连接点时才创建）
+    private static class ShapeNode {
+        final ShapeView view;
+        PointHandles handles;
+
+        ShapeNode(FlowchartShape shape) {
+            view = new ShapeView(shape);
+        }
+    }
+
+    public SceneRenderer(HitTester hitTester) {
+        this.hitTester = hitTester;
+    }
+
+    @Override
+    public List<Node> getScreenLayers() {
+        return List.of();
+    }
+
+    @Override
+    public List<Node> getWorldLayers() {
+        return List.of(lineLayer, shapeLayer, dragLayer, pointLayer);
+    }
+
+    @Override
+    public void shapesAdded(List<? extends FlowchartShape> shapes) {
+        dirtyShapes.addAll(shapes);
+    }
+
+    @Override
+    public void shapesRemoved(List<? extends FlowchartShape> shapes) {
+        // 批量移除，避免逐个 remove 时对子节点列表的线性查找
+        Set<Node> removed = new HashSet<>();
+        for (FlowchartShape shape : shapes) {
+            dirtyShapes.remove(shape);
+            ShapeNode node = forgetShape(shape);
+            if (node != null) removed.add(node.view.getNode());
+        }
+        if (!removed.isEmpty()) shapeLayer.getChildren().removeAll(removed);
+    }
+
+    @Override
+    public void linesAdded(List<? extends ConnectionLine> lines) {
+        dirtyLines.addAll(lines);
+    }
+
+    @Override
+    public void linesRemoved(List<? extends ConnectionLine> lines) {
+        Set<Node> removed = new HashSet<>();
+        for (ConnectionLine line : lines) {
+            dirtyLines.remove(line);
+            LineView view = lineNodes.remove(line);
+            if (view != null) removed.add(view.getNode());
+        }
+        if (!removed.isEmpty()) lineLayer.getChildren().removeAll(removed);
+    }
+
+    @Override
+    public void shapeChanged(FlowchartShape shape) {
+        dirtyShapes.add(shape);
+    }
+
+    @Override
+    public void lineChanged(ConnectionLine line) {
+        dirtyLines.add(line);
+    }
+
+    /**
+     * 切换时标记全部已挂载图形为脏。
+     */
+    @Override
+    public void setShowAllConnectionPoints(boolean show) {
+        if (showAllPoints == show) return;
+        showAllPoints = show;
+        if (!show) {
+            // 一次性清空连接点层，选中图形的连接点会在同步时重新挂上
+            pointLayer.getChildren().clear();
+            for (Map.Entry<FlowchartShape, ShapeNode> entry : shapeNodes.entrySet()) {
+                if (entry.getValue().handles == null) continue;
+                entry.getKey().hideConnectionPoints();
+                entry.getValue().handles = null;
+            }
+        }
+        dirtyShapes.addAll(shapeNodes.keySet());
+    }
+
+    /**
+     * 视口仍在当前挂载范围之内时（平移距离不超过边距）无需重新裁剪。
+     */
+    @Override
+    public void viewChanged(double zoom, double offsetX, double offsetY, double width, double height) {
+        double minX = -offsetX / zoom, minY = -offsetY / zoom;
+        double maxX = (width - offsetX) / zoom, maxY = (height - offsetY) / zoom;
+        if (hasViewport && minX >= viewMinX && minY >= viewMinY && maxX <= viewMaxX && maxY <= viewMaxY) return;
+        double margin = VIEWPORT_MARGIN / zoom;
+        setViewport(minX - margin, minY - margin, maxX + margin, maxY + margin);
+    }
+
+    /**
+     * 设置挂载范围（世界坐标，已包含边距），挂上新进入范围的对象，摘下离开范围的对象。
+     */
+    private void setViewport(double minX, double minY, double maxX, double maxY) {
+        hasViewport = true;
+        viewMinX = minX; viewMinY = minY; viewMaxX = maxX; viewMaxY = maxY;
+
+        List<FlowchartShape> visibleShapes = hitTester.shapesIn(minX, minY, maxX, maxY);
+        Set<FlowchartShape> visibleShapeSet = new HashSet<>(visibleShapes);
+        Set<Node> removed = new HashSet<>();
+        for (FlowchartShape shape : new ArrayList<>(shapeNodes.keySet())) {
+            if (!visibleShapeSet.contains(shape)) removed.add(forgetShape(shape).view.getNode());
+        }
+        shapeLayer.getChildren().removeAll(removed);
+        for (FlowchartShape shape : visibleShapes) {
+            if (!shapeNodes.containsKey(shape)) dirtyShapes.add(shape);
+        }
+
+        List<ConnectionLine> visibleLines = hitTester.linesIn(minX, minY, maxX, maxY);
+        Set<ConnectionLine> visibleLineSet = new HashSet<>(visibleLines);
+        removed.clear();
+        for (ConnectionLine line : new ArrayList<>(lineNodes.keySet())) {
+            if (!visibleLineSet.contains(line)) removed.add(lineNodes.remove(line).getNode());
+        }
+        lineLayer.getChildren().removeAll(removed);
+        for (ConnectionLine line : visibleLines) {
+            if (!lineNodes.containsKey(line)) dirtyLines.add(line);
+        }
+    }
+
+    /**
+     * 将脏对象同步到场景图：进入挂载范围的对象挂上，离开的摘下，其余只修补属性。
+     */
+    @Override
+    public void sync() {
+        long start = System.nanoTime();
+        int patched = 0;
+        List<Node> addedShapes = new ArrayList<>();
+        Set<Node> removedShapes = new HashSet<>();
+        for (FlowchartShape shape : dirtyShapes) {
+            ShapeNode node = shapeNodes.get(shape);
+            if (!isVisible(shape)) {
+                if (node != null) removedShapes.add(forgetShape(shape).view.getNode());
+                continue;
+            }
+            if (node == null) {
+                node = new ShapeNode(shape);
+                node.view.getNode().setViewOrder(-hitTester.order(shape)); // 按文档顺序叠放，后加入的在上
+                shapeNodes.put(shape, node);
+                addedShapes.add(node.view.getNode());
+            }
+            patchShape(shape, node);
+            patched++;
+        }
+        dirtyShapes.clear();
+        if (!removedShapes.isEmpty()) shapeLayer.getChildren().removeAll(removedShapes);
+        if (!addedShapes.isEmpty()) shapeLayer.getChildren().addAll(addedShapes);
+
+        List<Node> addedLines = new ArrayList<>();
+        Set<Node> removedLines = new HashSet<>();
+        for (ConnectionLine line : dirtyLines) {
+            LineView view = lineNodes.get(line);
+            if (!isVisible(line)) {
+                if (view != null) removedLines.add(lineNodes.remove(line).getNode());
+                continue;
+            }
+            if (view == null) {
+                view = new LineView(line);
+                view.getNode().setViewOrder(-hitTester.order(line));
+                lineNodes.put(line, view);
+                addedLines.add(view.getNode());
+            } else {
+                view.update();
+            }
+            patched++;
+        }
+        dirtyLines.clear();
+        if (!removedLines.isEmpty()) lineLayer.getChildren().removeAll(removedLines);
+        if (!addedLines.isEmpty()) lineLayer.getChildren().addAll(addedLines);
+
+        lastPatchedCount = patched;
+        lastSyncNanos = System.nanoTime() - start;
+    }
+
+    // 已从文档移除的对象在索引中查不到顺序，视为不可见
+    private boolean isVisible(FlowchartShape shape) {
+        if (!hasViewport || hitTester.order(shape) < 0) return false;
+        return shape.getX() + shape.getWidth() >= viewMinX && shape.getX() <= viewMaxX
+                && shape.getY() + shape.getHeight() >= viewMinY && shape.getY() <= viewMaxY;
+    }
+
+    private boolean isVisible(ConnectionLine line) {
+        if (!hasViewport || hitTester.order(line) < 0) return false;
+        double[] p = line.getPathPoints();
+        double minX = Double.MAX_VALUE, minY = Double.MAX_VALUE, maxX = -Double.MAX_VALUE, maxY = -Double.MAX_VALUE;
+        for (int i = 0; i + 1 < p.length; i += 2) {
+            minX = Math.min(minX, p[i]);
+            maxX = Math.max(maxX, p[i]);
+            minY = Math.min(minY, p[i + 1]);
+            maxY = Math.max(maxY, p[i + 1]);
+        }
+        return maxX >= viewMinX && minX <= viewMaxX && maxY >= viewMinY && minY <= viewMaxY;
+    }
+
+    private ShapeNode forgetShape(FlowchartShape shape) {
+        ShapeNode node = shapeNodes.remove(shape);
+        if (node != null) detachPoints(shape, node);
+        return node;
+    }
+
+    private void patchShape(FlowchartShape shape, ShapeNode node) {
+        node.view.update();
+        if (showAllPoints || shape.isSelected()) {
+            attachPoints(shape, node);
+            node.handles.update();
+        } else {
+            detachPoints(shape, node);
+        }
+    }
+
+    private void attachPoints(FlowchartShape shape, ShapeNode node) {
+        if (node.handles != null) return;
+        shape.showConnectionPoints();
+        node.handles = new PointHandles(shape);
+        pointLayer.getChildren().addAll(node.handles.getNodes());
+    }
+
+    private void detachPoints(FlowchartShape shape, ShapeNode node) {
+        if (node.handles == null) return;
+        shape.hideConnectionPoints();
+        pointLayer.getChildren().removeAll(node.handles.getNodes());
+        node.handles = null;
+    }
+
+    /**
+     * 把已挂载的选中图形和内部连接线的节点移入拖动层，边界连接线暂时隐藏。
+     */
+    @Override
+    public void beginDrag(DragPreview preview) {
+        drag = preview;
+        Set<Node> movedShapes = new HashSet<>();
+        for (FlowchartShape shape : preview.getShapes()) {
+            ShapeNode node = shapeNodes.get(shape);
+            if (node != null) movedShapes.add(node.view.getNode());
+        }
+        shapeLayer.getChildren().removeAll(movedShapes);
+        dragShapeGroup.getChildren().addAll(movedShapes);
+
+        Set<Node> movedLines = new HashSet<>();
+        for (ConnectionLine line : preview.getInternalLines()) {
+            LineView view = lineNodes.get(line);
+            if (view != null) movedLines.add(view.getNode());
+        }
+        lineLayer.getChildren().removeAll(movedLines);
+        dragLineGroup.getChildren().addAll(movedLines);
+
+        for (ConnectionLine line : preview.getBoundaryLines()) {
+            LineView view = lineNodes.get(line);
+            if (view != null) view.getNode().setVisible(false);
+        }
+    }
+
+    @Override
+    public void dragTo(double dx, double dy) {
+        // 拖动时连接点层只含选中图形的连接点，随选区一起平移
+        dragLayer.setTranslateX(dx);
+        dragLayer.setTranslateY(dy);
+        pointLayer.setTranslateX(dx);
+        pointLayer.setTranslateY(dy);
+    }
+
+    /**
+     * 把仍处于挂载状态的节点放回原图层，前后顺序由 viewOrder 保持。
+     */
+    @Override
+    public void endDrag() {
+        if (drag == null) return;
+        dragShapeGroup.getChildren().clear();
+        dragLineGroup.getChildren().clear();
+        List<Node> shapeGroups = new ArrayList<>();
+        for (FlowchartShape shape : drag.getShapes()) {
+            ShapeNode node = shapeNodes.get(shape);
+            if (node != null) shapeGroups.add(node.view.getNode());
+        }
+        shapeLayer.getChildren().addAll(shapeGroups);
+        List<Node> lineGroups = new ArrayList<>();
+        for (ConnectionLine line : drag.getInternalLines()) {
+            LineView view = lineNodes.get(line);
+            if (view != null) lineGroups.add(view.getNode());
+        }
+        lineLayer.getChildren().addAll(lineGroups);
+        for (ConnectionLine line : drag.getBoundaryLines()) {
+            LineView view = lineNodes.get(line);
+            if (view != null) view.getNode().setVisible(true);
+        }
+        dragTo(0, 0);
+        drag = null;
+    }
+
+    @Override
+    public void dispose() {
+        for (Map.Entry<FlowchartShape, ShapeNode> entry : shapeNodes.entrySet()) {
+            detachPoints(entry.getKey(), entry.getValue());
+        }
+    }
+
+    /**
+     * @return 当前挂在场景图上的节点数量（含图层内的分组、图形、文字、箭头与连接点）。
+     */
+    @Override
+    public int getNodeCount() {
+        return (shapeLayer.getChildren().size() + dragShapeGroup.getChildren().size()) * 3
+                + (lineLayer.getChildren().size() + dragLineGroup.getChildren().size()) * 3
+                + pointLayer.getChildren().size();
+    }
+
+    @Override
+    public long getLastSyncNanos() {
+        return lastSyncNanos;
+    }
+
+    @Override
+    public int getLastPatchedCount() {
+        return lastPatchedCount;
+    }
+}
@@ -0,0 +1,84 @@
+package editor.ui;
+
+import editor.model.FlowchartShape;
+import editor.model.OutlineVisitor;
+import javafx.scene.Group;
+import javafx.scene.paint.Color;
+import javafx.scene.shape.Ellipse;
+import javafx.scene.shape.Polygon;
+import javafx.scene.shape.Rectangle;
+import javafx.scene.shape.Shape;
+import javafx.scene.text.Text;
+
+/**
+ * 图形模型在场景图中的表示：轮廓节点 + 文字标签。
+ * 节点类型由模型的 outline() 决定，update() 时从模型读取最新的几何和样式。
+ */
+public class ShapeView {
+    private final FlowchartShape shape;
+    private final Group group = new Group();
+    private final Text text = new Text();
+    private Shape outlineNode;
+
+    private final OutlineVisitor updater = new OutlineVisitor() {
+        @Override
+        public void rectangle(double x, double y, double width, double height) {
+            Rectangle rect = outlineNode instanceof Rectangle ? (Rectangle) outlineNode : replace(new Rectangle());
+            rect.setX(x);
+            rect.setY(y);
+            rect.setWidth(width);
+            rect.setHeight(height);
+        }
+
+        @Override
+        public void ellipse(double centerX, double centerY, double radiusX, double radiusY) {
+            Ellipse ellipse = outlineNode instanceof Ellipse ? (Ellipse) outlineNode : replace(new Ellipse());
+            ellipse.setCenterX(centerX);
+            ellipse.setCenterY(centerY);
+            ellipse.setRadiusX(radiusX);
+            ellipse.setRadiusY(radiusY);
+        }
+
+        @Override
+        public void polygon(double[] points) {
+            Polygon polygon = outlineNode instanceof Polygon ? (Polygon) outlineNode : replace(new Polygon());
+            Double[] values = new Double[points.length];
+            for (int i = 0; i < points.length; i++) values[i] = points[i];
+            polygon.getPoints().setAll(values);
+        }
+    };
+
+    public ShapeView(FlowchartShape shape) {
+        this.shape = shape;
+        group.getChildren().add(text);
+        update();
+    }
+
+    private <T extends Shape> T replace(T node) {
+        if (outlineNode != null) group.getChildren().remove(outlineNode);
+        group.getChildren().add(0, node);
+        outlineNode = node;
+        return node;
+    }
+
+    public FlowchartShape getShape() {
+        return shape;
+    }
+
+    public Group getNode() {
+        return group;
+    }
+
+    /**
+     * 从模型同步位置、大小、颜色、选中状态和文字。
+     */
+    public void update() {
+        shape.outline(updater);
+        outlineNode.setFill(FxColors.toFx(shape.getColor()));
+        outlineNode.setStroke(shape.isSelected() ? Color.RED : Color.BLACK);
+        outlineNode.setStrokeWidth(shape.isSelected() ? 2.0 : 1.0);
+        text.setX(shape.getX() + 20);
+        text.setY(shape.getY() + shape.getHeight() / 2);
+        text.setText(shape.getLabel());
+    }
+}
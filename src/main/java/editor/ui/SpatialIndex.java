@@ -0,0 +1,176 @@
+package editor.ui;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 均匀网格空间索引。每个对象按包围盒登记到覆盖的网格单元中，
+ * 点查询和矩形查询只需检查相关单元里的少量对象。
+ * 覆盖单元过多的超大对象单独存放，查询时逐个检查。
+ */
+public class SpatialIndex<T> {
+    private static final int MAX_CELLS_PER_ITEM = 64;
+
+    private final double cellSize;
+    private final Map<Long, List<Entry<T>>> cells = new HashMap<>();
+    private final Map<T, Entry<T>> entries = new HashMap<>();
+    private final List<Entry<T>> oversized = new ArrayList<>();
+    private long nextOrder = 0;
+    private long queryStamp = 0;
+
+    private static class Entry<T> {
+        final T item;
+        final long order; // 插入顺序，越大越靠上
+        double minX, minY, maxX, maxY;
+        int cellMinX, cellMinY, cellMaxX, cellMaxY;
+        boolean isOversized;
+        long seenStamp; // 查询去重用
+
+        Entry(T item, long order) {
+            this.item = item;
+            this.order = order;
+        }
+    }
+
+    public SpatialIndex(double cellSize) {
+        this.cellSize = cellSize;
+    }
+
+    /**
+     * 插入对象，或在对象已存在时更新其包围盒。
+     */
+    public void put(T item, double minX, double minY, double maxX, double maxY) {
+        Entry<T> entry = entries.get(item);
+        if (entry == null) {
+            entry = new Entry<>(item, nextOrder++);
+            entries.put(item, entry);
+        } else {
+            int cx0 = cell(minX), cy0 = cell(minY), cx1 = cell(maxX), cy1 = cell(maxY);
+            if (!entry.isOversized && cx0 == entry.cellMinX && cy0 == entry.cellMinY
+                    && cx1 == entry.cellMaxX && cy1 == entry.cellMaxY) {
+                // 覆盖的单元没变，只更新包围盒
+                entry.minX = minX; entry.minY = minY; entry.maxX = maxX; entry.maxY = maxY;
+                return;
+            }
+            unlink(entry);
+        }
+        entry.minX = minX; entry.minY = minY; entry.maxX = maxX; entry.maxY = maxY;
+        link(entry);
+    }
+
+    public void remove(T item) {
+        Entry<T> entry = entries.remove(item);
+        if (entry != null) unlink(entry);
+    }
+
+    public void clear() {
+        cells.clear();
+        entries.clear();
+        oversized.clear();
+    }
+
+    public boolean contains(T item) {
+        return entries.containsKey(item);
+    }
+
+    /**
+     * @return 对象的插入顺序，未登记时返回 -1。
+     */
+    public long order(T item) {
+        Entry<T> entry = entries.get(item);
+        return entry == null ? -1 : entry.order;
+    }
+
+    /**
+     * @return 对象登记的包围盒 [minX, minY, maxX, maxY]，未登记时返回 null。
+     */
+    public double[] bounds(T item) {
+        Entry<T> entry = entries.get(item);
+        return entry == null ? null : new double[] { entry.minX, entry.minY, entry.maxX, entry.maxY };
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    /**
+     * 查询包围盒与给定矩形相交的所有对象。
+     */
+    public List<T> query(double minX, double minY, double maxX, double maxY) {
+        List<T> result = new ArrayList<>();
+        long stamp = ++queryStamp;
+        int cx0 = cell(minX), cy0 = cell(minY), cx1 = cell(maxX), cy1 = cell(maxY);
+        for (int cx = cx0; cx <= cx1; cx++) {
+            for (int cy = cy0; cy <= cy1; cy++) {
+                List<Entry<T>> bucket = cells.get(key(cx, cy));
+                if (bucket == null) continue;
+                for (Entry<T> e : bucket) {
+                    collect(e, stamp, minX, minY, maxX, maxY, result);
+                }
+            }
+        }
+        for (Entry<T> e : oversized) {
+            collect(e, stamp, minX, minY, maxX, maxY, result);
+        }
+        return result;
+    }
+
+    /**
+     * 查询包围盒包含给定点的所有对象。
+     */
+    public List<T> query(double x, double y) {
+        return query(x, y, x, y);
+    }
+
+    private void collect(Entry<T> e, long stamp, double minX, double minY, double maxX, double maxY, List<T> result) {
+        if (e.seenStamp == stamp) return;
+        e.seenStamp = stamp;
+        if (e.maxX >= minX && e.minX <= maxX && e.maxY >= minY && e.minY <= maxY) {
+            result.add(e.item);
+        }
+    }
+
+    private void link(Entry<T> e) {
+        e.cellMinX = cell(e.minX);
+        e.cellMinY = cell(e.minY);
+        e.cellMaxX = cell(e.maxX);
+        e.cellMaxY = cell(e.maxY);
+        long cellCount = (long) (e.cellMaxX - e.cellMinX + 1) * (e.cellMaxY - e.cellMinY + 1);
+        e.isOversized = cellCount > MAX_CELLS_PER_ITEM;
+        if (e.isOversized) {
+            oversized.add(e);
+            return;
+        }
+        for (int cx = e.cellMinX; cx <= e.cellMaxX; cx++) {
+            for (int cy = e.cellMinY; cy <= e.cellMaxY; cy++) {
+                cells.computeIfAbsent(key(cx, cy), k -> new ArrayList<>(4)).add(e);
+            }
+        }
+    }
+
+    private void unlink(Entry<T> e) {
+        if (e.isOversized) {
+            oversized.remove(e);
+            return;
+        }
+        for (int cx = e.cellMinX; cx <= e.cellMaxX; cx++) {
+            for (int cy = e.cellMinY; cy <= e.cellMaxY; cy++) {
+                long k = key(cx, cy);
+                List<Entry<T>> bucket = cells.get(k);
+                if (bucket == null) continue;
+                bucket.remove(e);
+                if (bucket.isEmpty()) cells.remove(k);
+            }
+        }
+    }
+
+    private int cell(double v) {
+        return (int) Math.floor(v / cellSize);
+    }
+
+    private static long key(int cx, int cy) {
+        return ((long) cx << 32) | (cy & 0xffffffffL);
+    }
+}
@@ -0,0 +1,70 @@
+package editor.ui;
+
+import javafx.concurrent.Task;
+import javafx.concurrent.Worker;
+import javafx.geometry.Insets;
+import javafx.geometry.Pos;
+import javafx.scene.control.Button;
+import javafx.scene.control.Label;
+import javafx.scene.control.ProgressBar;
+import javafx.scene.layout.HBox;
+
+/**
+ * 窗口底部的状态栏：显示后台任务的消息和进度，可取消的任务显示取消按钮。
+ */
+public class StatusBar extends HBox {
+    private final Label message = new Label("就绪");
+    private final ProgressBar progress = new ProgressBar();
+    private final Button cancelBtn = new Button("取消");
+    private Task<?> current; // 当前显示的任务
+
+    public StatusBar() {
+        setSpacing(8);
+        setPadding(new Insets(2, 8, 2, 8));
+        setAlignment(Pos.CENTER_LEFT);
+        progress.setPrefWidth(160);
+        getChildren().addAll(message, progress, cancelBtn);
+        setIdle();
+    }
+
+    /**
+     * 显示任务的消息和进度，任务结束后恢复空闲状态。
+     * @param cancellable 是否显示取消按钮
+     */
+    public void show(Task<?> task, boolean cancellable) {
+        current = task;
+        message.textProperty().bind(task.messageProperty());
+        progress.progressProperty().bind(task.progressProperty());
+        progress.setVisible(true);
+        cancelBtn.setVisible(cancellable);
+        cancelBtn.setOnAction(e -> task.cancel());
+        task.stateProperty().addListener((obs, oldState, state) -> {
+            if (current != task) return; // 已被后来的任务替换
+            if (state == Worker.State.SUCCEEDED) {
+                String text = task.getMessage();
+                setIdle();
+                message.setText(text);
+            } else if (state == Worker.State.CANCELLED) {
+                setIdle();
+                message.setText("已取消");
+            } else if (state == Worker.State.FAILED) {
+                setIdle();
+                Throwable error = task.getException();
+                message.setText("失败: " + (error != null ? error.getMessage() : "未知错误"));
+            }
+        });
+    }
+
+    private void setIdle() {
+        current = null;
+        message.textProperty().unbind();
+        progress.progressProperty().unbind();
+        progress.setVisible(false);
+        cancelBtn.setVisible(false);
+        cancelBtn.setOnAction(null);
+    }
+
+    public void setMessage(String text) {
+        message.setText(text);
+    }
+}
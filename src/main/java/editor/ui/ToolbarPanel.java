@@ -30,6 +30,8 @@ public class ToolbarPanel extends ToolBar {
         newBtn.setOnAction(e -> mainWindow.newFile());
         Button openBtn = createToolbarButton("打开", null);
         openBtn.setOnAction(e -> mainWindow.openFile());
+        Button browseBtn = createToolbarButton("浏览", null);
+        browseBtn.setOnAction(e -> mainWindow.browseDocuments());
         Button saveBtn = createToolbarButton("保存", null);
         saveBtn.setOnAction(e -> mainWindow.saveFile());
 
@@ -77,11 +79,28 @@ public class ToolbarPanel extends ToolBar {
         Button snapBtn = createToolButton("对齐");
         snapBtn.setOnAction(e -> canvas.toggleSnapToGrid());
 
+        // 视图缩放按钮
+        Button zoomInBtn = createToolButton("放大");
+        zoomInBtn.setOnAction(e -> canvas.zoomIn());
+        Button zoomOutBtn = createToolButton("缩小");
+        zoomOutBtn.setOnAction(e -> canvas.zoomOut());
+        Button resetViewBtn = createToolButton("重置视图");
+        resetViewBtn.setOnAction(e -> canvas.resetView());
+
+        // 切换渲染方式：超大图可改用画布绘制
+        Button renderModeBtn = createToolButton("画布渲染");
+        renderModeBtn.setOnAction(e -> {
+            boolean toCanvas = canvas.getRenderMode() == CanvasPane.RenderMode.SCENE_GRAPH;
+            canvas.setRenderMode(toCanvas ? CanvasPane.RenderMode.CANVAS : CanvasPane.RenderMode.SCENE_GRAPH);
+            renderModeBtn.setText(toCanvas ? "节点渲染" : "画布渲染");
+        });
+
         getItems().addAll(
-                newBtn, openBtn, saveBtn, new Separator(),
+                newBtn, openBtn, browseBtn, saveBtn, new Separator(),
                 copyBtn, pasteBtn, deleteBtn, undoBtn, redoBtn, new Separator(),
                 selectToolBtn, rectToolBtn, ellipseToolBtn, diamondToolBtn, circleToolBtn, parallelogramToolBtn, hexagonToolBtn,
-                new Separator(), gridBtn, snapBtn
+                new Separator(), gridBtn, snapBtn,
+                new Separator(), zoomInBtn, zoomOutBtn, resetViewBtn, renderModeBtn
         );
 
         // 默认选择"选择"工具
@@ -0,0 +1,147 @@
+package editor.io;
+
+import editor.model.ConnectionLine;
+import editor.model.FlowColor;
+import editor.model.FlowchartShape;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * .fcb 文件的读写：记录数超过读取缓冲区时的往返、与 JSON 互相转换、文件头损坏。
+ */
+class BinaryFlowchartCodecTest {
+    private static final int SHAPE_COUNT = 5000; // 图形记录约 270KB，远超 64KB 的读取缓冲区
+
+    @TempDir
+    Path dir;
+
+    private final BinaryFlowchartCodec codec = new BinaryFlowchartCodec();
+    private Path file;
+    private List<FlowchartShape> shapes;
+    private List<ConnectionLine> lines;
+
+    @BeforeEach
+    void writeDocument() throws IOException {
+        file = dir.resolve("test.fcb");
+        shapes = new ArrayList<>();
+        for (int i = 1; i <= SHAPE_COUNT; i++) {
+            String type = i % 3 == 0 ? "diamond" : "rectangle";
+            FlowchartShape shape = FlowchartShape.create(type, i * 10.5, i * 5, 100, 60, "处理" + i, i % 7 == 0 ? "https://example.com/" + i : "");
+            shape.setId(i);
+            if (i % 5 == 0) shape.setColor(FlowColor.fromRgba(0x336699ff));
+            shapes.add(shape);
+        }
+        shapes.get(0).setLabel("长".repeat(40_000)); // UTF-8 下 120KB，超过读取缓冲区
+        lines = new ArrayList<>();
+        for (int i = 1; i < SHAPE_COUNT; i++) {
+            ConnectionLine line = new ConnectionLine();
+            line.setId(i);
+            line.setStartPoint(shapes.get(i - 1).getConnectionPoints().get(i % 4));
+            line.setEndPoint(shapes.get(i).getConnectionPoints().get((i + 1) % 4));
+            line.setArrowEnabled(i % 2 == 0);
+            lines.add(line);
+        }
+        codec.write(file, shapes, lines);
+    }
+
+    @Test
+    void readsWhatWasWritten() throws IOException {
+        assertEquals(describe(shapes, lines), describe(codec.read(file)));
+    }
+
+    @Test
+    void convertsToAndFromJson() throws IOException {
+        JsonFlowchartCodec json = new JsonFlowchartCodec();
+        Path original = dir.resolve("original.json");
+        json.write(original, shapes, lines);
+
+        FlowchartData fromJson = json.read(original);
+        Path converted = dir.resolve("converted.fcb");
+        codec.write(converted, fromJson.getShapes(), fromJson.getConnections());
+        FlowchartData fromBinary = codec.read(converted);
+        Path back = dir.resolve("back.json");
+        json.write(back, fromBinary.getShapes(), fromBinary.getConnections());
+
+        assertEquals(describe(shapes, lines), describe(fromBinary));
+        assertArrayEquals(Files.readAllBytes(original), Files.readAllBytes(back));
+    }
+
+    @Test
+    void corruptHeaderIsRejected() throws IOException {
+        putLong(40, Files.size(file)); // 连接线表偏移越过文件末尾
+        IOException e = assertThrows(IOException.class, () -> codec.read(file));
+        assertTrue(e.getMessage().contains("文件头损坏"), e.getMessage());
+    }
+
+    @Test
+    void corruptStringTableIsRejected() throws IOException {
+        putInt(64, Integer.MAX_VALUE); // 第一个字符串的长度
+        IOException e = assertThrows(IOException.class, () -> codec.read(file));
+        assertTrue(e.getMessage().contains("字符串表损坏"), e.getMessage());
+    }
+
+    @Test
+    void oldVersionIsReportedAsUnsupported() throws IOException {
+        putInt(4, 1);
+        IOException e = assertThrows(IOException.class, () -> codec.read(file));
+        assertTrue(e.getMessage().contains("不支持的 .fcb 版本"), e.getMessage());
+    }
+
+    @Test
+    void truncatedFileIsRejected() throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.truncate(40);
+        }
+        assertThrows(IOException.class, () -> codec.read(file));
+    }
+
+    private static String describe(FlowchartData data) {
+        return describe(data.getShapes(), data.getConnections());
+    }
+
+    private static String describe(List<FlowchartShape> shapes, List<ConnectionLine> lines) {
+        StringBuilder sb = new StringBuilder();
+        for (FlowchartShape shape : shapes) {
+            sb.append(shape.getId()).append(' ').append(shape.getType()).append(' ').append(shape.getX()).append(' ')
+                    .append(shape.getY()).append(' ').append(shape.getWidth()).append(' ').append(shape.getHeight())
+                    .append(' ').append(shape.getColor().toRgba()).append(' ').append(shape.getLabel())
+                    .append(' ').append(shape.getLink()).append('\n');
+        }
+        for (ConnectionLine line : lines) {
+            sb.append(line.getId()).append(' ').append(line.getStartPoint().getId()).append(" -> ")
+                    .append(line.getEndPoint().getId()).append(' ').append(line.getLineType()).append(' ')
+                    .append(line.isArrowEnabled()).append(' ').append(line.getStrokeWidth()).append('\n');
+        }
+        return sb.toString();
+    }
+
+    private void putInt(long position, int value) throws IOException {
+        write(position, ByteBuffer.allocate(4).order(ByteOrder.LITTLE_ENDIAN).putInt(0, value));
+    }
+
+    private void putLong(long position, long value) throws IOException {
+        write(position, ByteBuffer.allocate(8).order(ByteOrder.LITTLE_ENDIAN).putLong(0, value));
+    }
+
+    private void write(long position, ByteBuffer bytes) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.write(bytes, position);
+        }
+    }
+}
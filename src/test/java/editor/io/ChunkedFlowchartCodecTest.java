@@ -0,0 +1,216 @@
+package editor.io;
+
+import editor.model.ConnectionLine;
+import editor.model.FlowchartShape;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * .fcx 文件的崩溃安全性：文件尾部丢失、单个字节损坏、文件头两个槽轮流写入、整理后重新打开。
+ */
+class ChunkedFlowchartCodecTest {
+    private static final int SHAPE_COUNT = 3 * ChunkedFlowchartCodec.CHUNK_SIZE - 1; // ID 从 1 开始，正好三个图形块
+
+    @TempDir
+    Path dir;
+
+    private final ChunkedFlowchartCodec codec = new ChunkedFlowchartCodec();
+    private Path file;
+    private List<FlowchartShape> shapes;
+    private List<ConnectionLine> lines;
+
+    @BeforeEach
+    void writeDocument() throws IOException {
+        file = dir.resolve("test.fcx");
+        shapes = new ArrayList<>();
+        for (int i = 1; i <= SHAPE_COUNT; i++) {
+            FlowchartShape shape = FlowchartShape.create("rectangle", i * 10, i * 5, 100, 60, "处理" + i, "");
+            shape.setId(i);
+            shapes.add(shape);
+        }
+        lines = new ArrayList<>();
+        for (int i = 1; i < SHAPE_COUNT; i++) {
+            ConnectionLine line = new ConnectionLine();
+            line.setId(i);
+            line.setStartPoint(shapes.get(i - 1).getConnectionPoints().get(0));
+            line.setEndPoint(shapes.get(i).getConnectionPoints().get(1));
+            lines.add(line);
+        }
+        codec.write(file, shapes, lines);
+    }
+
+    @Test
+    void readsWhatWasWritten() throws IOException {
+        assertEquals(describe(shapes, lines), describe(codec.read(file)));
+    }
+
+    @Test
+    void truncatedTailFallsBackToPreviousSave() throws IOException {
+        String before = describe(shapes, lines);
+        relabel(0, "已修改");
+        long sizeBefore = Files.size(file);
+        ChunkedFlowchartCodec.update(file, List.of(shapeChunk(0)));
+        assertEquals(describe(shapes, lines), describe(codec.read(file)));
+
+        // 新索引的末尾丢失：新文件头指向的索引越过文件末尾，改用另一个槽中上一次保存的索引
+        truncate(Files.size(file) - 10);
+        assertEquals(before, describe(codec.read(file)));
+
+        // 只写了一半的新块（文件头未切换），读取不受影响，之后的保存覆盖这些残余
+        truncate(sizeBefore + 100);
+        assertEquals(before, describe(codec.read(file)));
+        ChunkedFlowchartCodec.update(file, List.of(shapeChunk(0)));
+        assertEquals(describe(shapes, lines), describe(codec.read(file)));
+    }
+
+    @Test
+    void flippedByteInChunkIsDetected() throws IOException {
+        flip(64 + 100); // 第一个块的数据
+        IOException e = assertThrows(IOException.class, () -> codec.read(file));
+        assertTrue(e.getMessage().contains("校验失败"), e.getMessage());
+    }
+
+    @Test
+    void flippedByteInIndexIsDetected() throws IOException {
+        flip(Files.size(file) - 6);
+        IOException e = assertThrows(IOException.class, () -> codec.read(file));
+        assertTrue(e.getMessage().contains("索引损坏"), e.getMessage());
+    }
+
+    @Test
+    void flippedByteInHeaderFallsBackToOtherSlot() throws IOException {
+        String before = describe(shapes, lines);
+        relabel(5, "已修改");
+        ChunkedFlowchartCodec.update(file, List.of(shapeChunk(0)));
+        flip(activeSlot() * 32 + 12); // 最新文件头的序号
+        assertEquals(before, describe(codec.read(file)));
+    }
+
+    @Test
+    void headerSlotsAlternate() throws IOException {
+        assertEquals(1, sequence(1)); // 新文件的序号为 1，写在槽 1
+        for (int save = 2; save <= 5; save++) {
+            relabel(save, "第 " + save + " 次保存");
+            ChunkedFlowchartCodec.update(file, List.of(shapeChunk(0)));
+            int slot = save % 2;
+            assertEquals(slot, activeSlot());
+            assertEquals(save, sequence(slot));
+            assertEquals(save - 1, sequence(1 - slot)); // 另一个槽保留上一次保存
+            assertEquals(describe(shapes, lines), describe(codec.read(file)));
+        }
+    }
+
+    @Test
+    void compactionKeepsContentAndReopens() throws IOException {
+        for (int save = 0; save < 20; save++) {
+            relabel(save, "修改 " + save);
+            ChunkedFlowchartCodec.update(file, List.of(shapeChunk(0), shapeChunk(1)));
+        }
+        long size = Files.size(file);
+        String expected = describe(shapes, lines);
+
+        ChunkedFlowchartCodec.compact(file);
+        assertTrue(Files.size(file) < size, "整理后文件应变小");
+        assertEquals(expected, describe(codec.read(file)));
+        assertTrue(Files.notExists(file.resolveSibling(file.getFileName() + ".tmp")));
+
+        // 整理后的文件可以继续增量保存
+        relabel(SHAPE_COUNT - 1, "整理后修改");
+        ChunkedFlowchartCodec.update(file, List.of(shapeChunk(2)));
+        assertEquals(describe(shapes, lines), describe(codec.read(file)));
+    }
+
+    @Test
+    void emptyChunkIsRemoved() throws IOException {
+        List<FlowchartShape> removed = new ArrayList<>(shapes.subList(2 * ChunkedFlowchartCodec.CHUNK_SIZE - 1, SHAPE_COUNT));
+        shapes.removeAll(removed);
+        lines.removeIf(line -> removed.contains(line.getStartPoint().getParentShape())
+                || removed.contains(line.getEndPoint().getParentShape()));
+        ChunkedFlowchartCodec.update(file, List.of(shapeChunk(2), lineChunk(1), lineChunk(2)));
+        assertEquals(describe(shapes, lines), describe(codec.read(file)));
+    }
+
+    private void relabel(int index, String label) {
+        shapes.get(index).setLabel(label);
+    }
+
+    private ChunkedFlowchartCodec.Chunk shapeChunk(long key) {
+        List<FlowchartShape> chunk = new ArrayList<>();
+        for (FlowchartShape shape : shapes) {
+            if (ChunkedFlowchartCodec.chunkOf(shape.getId()) == key) chunk.add(shape);
+        }
+        return ChunkedFlowchartCodec.chunk(ChunkedFlowchartCodec.SHAPES, key, chunk, List.of());
+    }
+
+    private ChunkedFlowchartCodec.Chunk lineChunk(long key) {
+        List<ConnectionLine> chunk = new ArrayList<>();
+        for (ConnectionLine line : lines) {
+            if (ChunkedFlowchartCodec.chunkOf(line.getId()) == key) chunk.add(line);
+        }
+        return ChunkedFlowchartCodec.chunk(ChunkedFlowchartCodec.LINES, key, List.of(), chunk);
+    }
+
+    private static String describe(FlowchartData data) {
+        return describe(data.getShapes(), data.getConnections());
+    }
+
+    private static String describe(List<FlowchartShape> shapes, List<ConnectionLine> lines) {
+        StringBuilder sb = new StringBuilder();
+        for (FlowchartShape shape : shapes) {
+            sb.append(shape.getId()).append(' ').append(shape.getType()).append(' ').append(shape.getX()).append(' ')
+                    .append(shape.getY()).append(' ').append(shape.getLabel()).append('\n');
+        }
+        for (ConnectionLine line : lines) {
+            sb.append(line.getId()).append(' ').append(line.getStartPoint().getId()).append(" -> ")
+                    .append(line.getEndPoint().getId()).append('\n');
+        }
+        return sb.toString();
+    }
+
+    private ByteBuffer header() throws IOException {
+        ByteBuffer buf = ByteBuffer.allocate(64).order(ByteOrder.LITTLE_ENDIAN);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            while (buf.hasRemaining() && channel.read(buf, buf.position()) >= 0) { }
+        }
+        return buf;
+    }
+
+    private long sequence(int slot) throws IOException {
+        return header().getLong(slot * 32 + 8);
+    }
+
+    private int activeSlot() throws IOException {
+        return sequence(0) > sequence(1) ? 0 : 1;
+    }
+
+    private void truncate(long size) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.truncate(size);
+        }
+    }
+
+    private void flip(long position) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            ByteBuffer b = ByteBuffer.allocate(1);
+            channel.read(b, position);
+            b.put(0, (byte) (b.get(0) ^ 0x40));
+            b.rewind();
+            channel.write(b, position);
+        }
+    }
+}
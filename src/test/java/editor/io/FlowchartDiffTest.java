@@ -0,0 +1,109 @@
+package editor.io;
+
+import editor.model.ConnectionLine;
+import editor.model.FlowchartShape;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 画布内容与重新读取的文件内容之间的差异。
+ */
+class FlowchartDiffTest {
+    private static final long OTHER_CHUNK = ChunkedFlowchartCodec.CHUNK_SIZE; // 块 1 的第一个 ID
+
+    @Test
+    void unchangedContentGivesEmptyDiff() {
+        FlowchartShape a = shape("rectangle", 1, "处理"), b = shape("rectangle", 2, "判定");
+        ConnectionLine line = line(1, a, b);
+        FlowchartShape a2 = shape("rectangle", 1, "处理"), b2 = shape("rectangle", 2, "判定");
+        FlowchartDiff diff = FlowchartDiff.compute(List.of(a, b), List.of(line),
+                new FlowchartData(List.of(a2, b2), List.of(line(1, a2, b2))));
+        assertTrue(diff.isEmpty());
+    }
+
+    @Test
+    void labelWithSameStringHashIsChanged() {
+        assertEquals("Aa".hashCode(), "BB".hashCode());
+        FlowchartShape shape = shape("rectangle", 1, "Aa");
+        FlowchartShape updated = shape("rectangle", 1, "BB");
+        FlowchartDiff diff = FlowchartDiff.compute(List.of(shape), List.of(), new FlowchartData(List.of(updated), List.of()));
+        assertEquals(1, diff.size());
+        assertSame(updated, diff.getChangedShapes().get(shape));
+    }
+
+    @Test
+    void typeChangeReplacesShapeAndRelinksLines() {
+        FlowchartShape a = shape("rectangle", 1, "处理"), b = shape("rectangle", 2, "判定");
+        ConnectionLine line = line(1, a, b);
+        FlowchartShape a2 = shape("rectangle", 1, "处理"), b2 = shape("diamond", 2, "判定");
+        ConnectionLine line2 = line(1, a2, b2);
+        FlowchartDiff diff = FlowchartDiff.compute(List.of(a, b), List.of(line),
+                new FlowchartData(List.of(a2, b2), List.of(line2)));
+        assertEquals(List.of(b), diff.getRemovedShapes());
+        assertEquals(List.of(b2), diff.getAddedShapes());
+        assertSame(line2, diff.getChangedLines().get(line)); // 字段相同，但终点换成了新图形
+        assertTrue(diff.getChangedShapes().isEmpty());
+    }
+
+    @Test
+    void removedStartShapeRemovesItsLines() {
+        FlowchartShape a = shape("rectangle", 1, "处理"), b = shape("rectangle", 2, "判定");
+        ConnectionLine line = line(1, a, b);
+        FlowchartShape b2 = shape("rectangle", 2, "判定");
+        FlowchartDiff diff = FlowchartDiff.compute(List.of(a, b), List.of(line), new FlowchartData(List.of(b2), List.of()));
+        assertEquals(List.of(a), diff.getRemovedShapes());
+        assertEquals(List.of(line), diff.getRemovedLines());
+        assertEquals(2, diff.size());
+    }
+
+    @Test
+    void scopedDiffOnlyComparesReadChunks() {
+        FlowchartShape a = shape("rectangle", 1, "处理");
+        FlowchartShape far = shape("rectangle", OTHER_CHUNK, "远处");
+        // 只读取了块 0：块 1 的图形不在文件内容中，也不能当作已删除
+        FlowchartShape a2 = shape("rectangle", 1, "BB");
+        a.setLabel("Aa");
+        FlowchartDiff diff = FlowchartDiff.compute(List.of(a, far), List.of(),
+                new FlowchartData(List.of(a2), List.of()), Set.of(0L), Set.of());
+        assertEquals(1, diff.size());
+        assertSame(a2, diff.getChangedShapes().get(a));
+    }
+
+    @Test
+    void scopedDiffHandlesLinesOutsideReadChunks() {
+        FlowchartShape start = shape("rectangle", 1, "起点");
+        FlowchartShape end = shape("rectangle", 2, "终点");
+        FlowchartShape other = shape("rectangle", 3, "其他");
+        ConnectionLine fromStart = line(OTHER_CHUNK, start, other);     // 起点被删除：删除
+        ConnectionLine toEnd = line(OTHER_CHUNK + 1, other, end);       // 终点被删除：保留，按 ID 重新连接
+        FlowchartShape other2 = shape("rectangle", 3, "其他");
+        // 文件中图形块 0 只剩下 other，连接线块 1 没有变化，不读取
+        FlowchartDiff diff = FlowchartDiff.compute(List.of(start, end, other), List.of(fromStart, toEnd),
+                new FlowchartData(List.of(other2), List.of()), Set.of(0L), Set.of());
+        assertEquals(List.of(start, end), diff.getRemovedShapes());
+        assertEquals(List.of(fromStart), diff.getRemovedLines());
+        assertSame(toEnd, diff.getChangedLines().get(toEnd));
+        assertEquals(4, diff.size());
+    }
+
+    private static FlowchartShape shape(String type, long id, String label) {
+        FlowchartShape shape = FlowchartShape.create(type, 10, 20, 100, 60, label, "");
+        shape.setId(id);
+        return shape;
+    }
+
+    private static ConnectionLine line(long id, FlowchartShape start, FlowchartShape end) {
+        ConnectionLine line = new ConnectionLine();
+        line.setId(id);
+        line.setStartPoint(start.getConnectionPoints().get(0));
+        line.setEndPoint(end.getConnectionPoints().get(1));
+        line.attach();
+        return line;
+    }
+}
@@ -0,0 +1,130 @@
+package editor.io;
+
+import editor.model.ConnectionLine;
+import editor.model.FlowchartShape;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * 崩溃恢复：保存的文档加上日志重放，日志最后一行不完整、含检查点，以及保存中途失败时基准文件不受影响。
+ */
+class JournalTest {
+    @TempDir
+    Path dir;
+
+    @Test
+    void replaysOnSavedBaseAndIgnoresTornLastLine() throws IOException {
+        for (FlowchartCodec codec : List.of(new JsonFlowchartCodec(), new GzipJsonFlowchartCodec(),
+                new BinaryFlowchartCodec())) {
+            Path file = dir.resolve("doc." + codec.getExtension());
+            List<FlowchartShape> shapes = shapes(3);
+            List<ConnectionLine> lines = List.of(line(1, shapes.get(0), shapes.get(1)), line(2, shapes.get(1), shapes.get(2)));
+            codec.write(file, shapes, lines);
+
+            shapes.get(0).setLabel("已修改");
+            FlowchartShape added = shape(4, "新增");
+            Path journal = Journal.forDocument(file);
+            Journal writer = new Journal(journal);
+            writer.append(List.of(Journal.shapeRecord(shapes.get(0)), Journal.shapeRecord(added),
+                    Journal.removeShapeRecord(3), Journal.removeLineRecord(2)));
+            writer.close();
+            // 写入时崩溃：最后一条记录只写了一半，其中的修改不应生效
+            Files.writeString(journal, Journal.removeShapeRecord(1).substring(0, 12),
+                    StandardCharsets.UTF_8, StandardOpenOption.APPEND);
+
+            FlowchartData data = Journal.replay(journal, codec.read(file));
+            assertEquals("1 已修改, 2 处理2, 4 新增 | 1: 1 -> 2", describe(data), codec.getExtension());
+        }
+    }
+
+    @Test
+    void resetCheckpointReplacesBase() throws IOException {
+        JsonFlowchartCodec codec = new JsonFlowchartCodec();
+        Path file = dir.resolve("doc.json");
+        List<FlowchartShape> shapes = shapes(3);
+        codec.write(file, shapes, List.of(line(1, shapes.get(0), shapes.get(1))));
+
+        Path journal = Journal.forDocument(file);
+        Journal writer = new Journal(journal);
+        writer.append(List.of(Journal.removeShapeRecord(2)));
+        List<FlowchartShape> kept = shapes(2);
+        writer.checkpoint(List.of(Journal.shapeRecord(kept.get(1)), Journal.lineRecord(line(5, kept.get(1), kept.get(1)))));
+        writer.append(List.of(Journal.shapeRecord(shape(7, "检查点之后"))));
+        writer.close();
+        Files.writeString(journal, "{\"op\":\"reset\"", StandardCharsets.UTF_8, StandardOpenOption.APPEND);
+
+        FlowchartData data = Journal.replay(journal, codec.read(file));
+        assertEquals("2 处理2, 7 检查点之后 | 5: 2 -> 2", describe(data));
+    }
+
+    @Test
+    void failedSaveKeepsPreviousBase() throws IOException {
+        JsonFlowchartCodec codec = new JsonFlowchartCodec();
+        Path file = dir.resolve("doc.json");
+        List<FlowchartShape> shapes = shapes(2);
+        codec.write(file, shapes, List.of());
+        byte[] saved = Files.readAllBytes(file);
+
+        IOException e = assertThrows(IOException.class, () -> AtomicFiles.write(file, channel -> {
+            channel.write(ByteBuffer.wrap("{\"shapes\":[".getBytes(StandardCharsets.UTF_8)));
+            throw new IOException("磁盘已满");
+        }));
+        assertEquals("磁盘已满", e.getMessage());
+        assertArrayEquals(saved, Files.readAllBytes(file));
+        try (Stream<Path> files = Files.list(dir)) {
+            assertEquals(List.of(file), files.toList()); // 临时文件已删除
+        }
+        assertEquals("1 处理1, 2 处理2 | ", describe(Journal.replay(Journal.forDocument(file), codec.read(file))));
+    }
+
+    private static List<FlowchartShape> shapes(int count) {
+        List<FlowchartShape> shapes = new ArrayList<>();
+        for (int i = 1; i <= count; i++) shapes.add(shape(i, "处理" + i));
+        return shapes;
+    }
+
+    private static FlowchartShape shape(long id, String label) {
+        FlowchartShape shape = FlowchartShape.create("rectangle", id * 10, 20, 100, 60, label, "");
+        shape.setId(id);
+        return shape;
+    }
+
+    private static ConnectionLine line(long id, FlowchartShape start, FlowchartShape end) {
+        ConnectionLine line = new ConnectionLine();
+        line.setId(id);
+        line.setStartPoint(start.getConnectionPoints().get(0));
+        line.setEndPoint(end.getConnectionPoints().get(1));
+        return line;
+    }
+
+    private static String describe(FlowchartData data) {
+        StringBuilder sb = new StringBuilder();
+        for (FlowchartShape shape : data.getShapes()) {
+            if (sb.length() > 0) sb.append(", ");
+            sb.append(shape.getId()).append(' ').append(shape.getLabel());
+        }
+        sb.append(" | ");
+        boolean first = true;
+        for (ConnectionLine line : data.getConnections()) {
+            if (!first) sb.append(", ");
+            first = false;
+            sb.append(line.getId()).append(": ").append(line.getStartPoint().getParentShape().getId())
+                    .append(" -> ").append(line.getEndPoint().getParentShape().getId());
+        }
+        return sb.toString();
+    }
+}
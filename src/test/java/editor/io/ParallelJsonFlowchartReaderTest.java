@@ -0,0 +1,134 @@
+package editor.io;
+
+import editor.model.ConnectionLine;
+import editor.model.FlowColor;
+import editor.model.FlowchartShape;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 并行读取与顺序读取 JsonFlowchartReader 的结果必须相同，包括只有图形位置、没有 ID 的旧文件；
+ * 无法识别的颜色、线型两者都报告为文件格式错误。
+ */
+class ParallelJsonFlowchartReaderTest {
+    private static final int SHAPE_COUNT = 5000; // 远超每个子任务的记录数，确保任务被拆分
+
+    @TempDir
+    Path dir;
+
+    private final ForkJoinPool pool = new ForkJoinPool(4);
+
+    @AfterEach
+    void shutdown() {
+        pool.shutdown();
+    }
+
+    @Test
+    void savedDocumentMatchesSerialReader() throws IOException {
+        List<FlowchartShape> shapes = new ArrayList<>();
+        for (int i = 1; i <= SHAPE_COUNT; i++) {
+            FlowchartShape shape = FlowchartShape.create(i % 3 == 0 ? "diamond" : "rectangle", i * 10.5, i * 5, 100, 60,
+                    "处理 \"" + i % 50 + "\"", i % 7 == 0 ? "https://example.com/" + i : "");
+            shape.setId(i * 2L);
+            if (i % 5 == 0) shape.setColor(FlowColor.fromRgba(0x336699ff));
+            shapes.add(shape);
+        }
+        List<ConnectionLine> lines = new ArrayList<>();
+        for (int i = 1; i < SHAPE_COUNT; i++) {
+            ConnectionLine line = new ConnectionLine();
+            line.setId(i);
+            line.setStartPoint(shapes.get(i - 1).getConnectionPoints().get(i % 4));
+            line.setEndPoint(shapes.get(i).getConnectionPoints().get((i + 1) % 4));
+            line.setArrowEnabled(i % 2 == 0);
+            lines.add(line);
+        }
+        for (boolean compact : new boolean[] {true, false}) {
+            Path file = dir.resolve(compact ? "compact.json" : "indented.json");
+            JsonFlowchartWriter.save(file, shapes, lines, compact);
+            assertSameAsSerial(file);
+        }
+    }
+
+    @Test
+    void oldIndexBasedConnectionsMatchSerialReader() throws IOException {
+        StringBuilder shapes = new StringBuilder();
+        StringBuilder connections = new StringBuilder();
+        for (int i = 0; i < SHAPE_COUNT; i++) {
+            if (i > 0) shapes.append(',');
+            shapes.append("{\"type\":\"").append(i % 2 == 0 ? "ellipse" : "rectangle").append("\",\"x\":").append(i)
+                    .append(",\"y\":").append(i * 2).append(",\"width\":80,\"height\":40,\"label\":\"步骤").append(i)
+                    .append("\",\"color\":\"0x").append(i % 3 == 0 ? "ff0000ff" : "add8e6ff").append("\"}");
+        }
+        for (int i = 0; i < SHAPE_COUNT; i++) {
+            if (i > 0) connections.append(',');
+            // 最后一条的终点位置越界：连接线保留，没有终点
+            connections.append("{\"startShape\":").append(i).append(",\"startPoint\":").append(i % 4)
+                    .append(",\"endShape\":").append(i + 1).append(",\"endPoint\":").append((i + 2) % 4)
+                    .append(",\"lineType\":\"").append(i % 2 == 0 ? "STRAIGHT" : "POLYLINE")
+                    .append("\",\"color\":\"0x000000ff\",\"strokeWidth\":").append(1 + i % 3).append('}');
+        }
+        connections.append(",{\"startShape\":").append(SHAPE_COUNT).append(",\"startPoint\":0}"); // 起点不存在：丢弃
+
+        Path file = dir.resolve("old.json");
+        Files.writeString(file, "{\"shapes\":[" + shapes + "],\"connections\":[" + connections + "]}", StandardCharsets.UTF_8);
+        assertSameAsSerial(file);
+        // 更早的文件中 "connections" 出现在 "shapes" 之前
+        Path reversed = dir.resolve("reversed.json");
+        Files.writeString(reversed, "{\"connections\":[" + connections + "],\n \"shapes\":[" + shapes + "]}", StandardCharsets.UTF_8);
+        assertSameAsSerial(reversed);
+    }
+
+    @Test
+    void invalidEnumValuesAreFormatErrors() throws IOException {
+        String shape = "{\"type\":\"rectangle\",\"x\":0,\"y\":0,\"width\":80,\"height\":40,\"label\":\"\",\"color\":\"%s\"}";
+        String line = "{\"startShape\":0,\"startPoint\":0,\"endShape\":0,\"endPoint\":1,\"lineType\":\"%s\"}";
+        for (String json : List.of(
+                "{\"shapes\":[" + String.format(shape, "不是颜色") + "],\"connections\":[]}",
+                "{\"shapes\":[" + String.format(shape, "0x000000ff") + "],\"connections\":[" + String.format(line, "ZIGZAG") + "]}")) {
+            Path file = dir.resolve("invalid.json");
+            Files.writeString(file, json, StandardCharsets.UTF_8);
+            IOException serial = assertThrows(IOException.class, () -> JsonFlowchartReader.load(file));
+            IOException parallel = assertThrows(IOException.class,
+                    () -> new ParallelJsonFlowchartReader(pool, ProgressListener.NONE).read(file));
+            assertTrue(serial.getMessage().startsWith("流程图文件格式错误"), serial.getMessage());
+            assertTrue(parallel.getMessage().startsWith("流程图文件格式错误"), parallel.getMessage());
+        }
+    }
+
+    private void assertSameAsSerial(Path file) throws IOException {
+        String serial = describe(JsonFlowchartReader.load(file));
+        String parallel = describe(new ParallelJsonFlowchartReader(pool, ProgressListener.NONE).read(file));
+        assertEquals(serial, parallel, file.getFileName().toString());
+    }
+
+    private static String describe(FlowchartData data) {
+        StringBuilder sb = new StringBuilder();
+        for (FlowchartShape shape : data.getShapes()) {
+            sb.append(shape.getId()).append(' ').append(shape.getType()).append(' ').append(shape.getX()).append(' ')
+                    .append(shape.getY()).append(' ').append(shape.getWidth()).append(' ').append(shape.getHeight())
+                    .append(' ').append(shape.getColor().toRgba()).append(' ').append(shape.getLabel())
+                    .append(' ').append(shape.getLink()).append('\n');
+        }
+        for (ConnectionLine line : data.getConnections()) {
+            sb.append(line.getId()).append(' ').append(line.getStartPoint().getId()).append(" -> ")
+                    .append(line.getEndPoint() != null ? line.getEndPoint().getId() : "无").append(' ')
+                    .append(line.getLineType()).append(' ').append(line.isArrowEnabled()).append(' ')
+                    .append(line.getColor().toRgba()).append(' ').append(line.getStrokeWidth()).append(' ')
+                    .append(line.getStartPoint().getParentShape().getIncomingLines().size()).append('\n');
+        }
+        return sb.toString();
+    }
+}